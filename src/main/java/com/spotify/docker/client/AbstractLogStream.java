@@ -0,0 +1,317 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.Closer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Implements the consuming operations of {@link ExtendedLogStream} on top of its iterator, so that
+ * every source of log messages behaves the same way.
+ */
+abstract class AbstractLogStream extends AbstractIterator<LogMessage>
+    implements ExtendedLogStream {
+
+  private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+  private static final int MAX_DEMULTIPLEXED_BYTES = 1024 * 1024;
+
+  private LogStreamDemultiplexer demultiplexer;
+
+  public String readFully() {
+    final StringBuilder stringBuilder = new StringBuilder();
+    while (hasNext()) {
+      stringBuilder.append(UTF_8.decode(next().content()));
+    }
+    return stringBuilder.toString();
+  }
+
+  public LogCapture readAtMost(final int maxBytes) {
+    checkArgument(maxBytes >= 0, "maxBytes must not be negative");
+    final byte[] bytes = new byte[maxBytes];
+    int length = 0;
+    long total = 0;
+    while (hasNext()) {
+      final ByteBuffer content = next().content();
+      total += content.remaining();
+      final int size = Math.min(content.remaining(), maxBytes - length);
+      content.get(bytes, length, size);
+      length += size;
+      if (content.hasRemaining()) {
+        if (isContinuation(content.get(content.position()))) {
+          // do not cut a multi-byte character in half
+          while (length > 0 && isContinuation(bytes[length - 1])) {
+            length--;
+          }
+          length = Math.max(0, length - 1);
+        }
+        close();
+        break;
+      }
+    }
+    return new LogCapture(new String(bytes, 0, length, UTF_8), total, total - length);
+  }
+
+  public LogCapture readTail(final int maxBytes) {
+    return readTail(maxBytes, Integer.MAX_VALUE);
+  }
+
+  public LogCapture readTail(final int maxBytes, final int maxLines) {
+    checkArgument(maxBytes > 0, "maxBytes must be positive");
+    checkArgument(maxLines > 0, "maxLines must be positive");
+    final byte[] ring = new byte[maxBytes];
+    long total = 0;
+    while (hasNext()) {
+      final ByteBuffer content = next().content();
+      final int skipped = Math.max(0, content.remaining() - maxBytes);
+      content.position(content.position() + skipped);
+      total += skipped;
+      final int size = content.remaining();
+      final int offset = (int) (total % maxBytes);
+      final int first = Math.min(size, maxBytes - offset);
+      content.get(ring, offset, first);
+      content.get(ring, 0, size - first);
+      total += size;
+    }
+
+    final int length = (int) Math.min(total, maxBytes);
+    final byte[] tail = new byte[length];
+    final int offset = (int) ((total - length) % maxBytes);
+    final int first = Math.min(length, maxBytes - offset);
+    System.arraycopy(ring, offset, tail, 0, first);
+    System.arraycopy(ring, 0, tail, first, length - first);
+
+    int start = 0;
+    int lines = 0;
+    for (int i = length - 2; i >= 0; i--) {
+      if (tail[i] == '\n' && ++lines == maxLines) {
+        start = i + 1;
+        break;
+      }
+    }
+    while (start < length && isContinuation(tail[start])) {
+      start++;
+    }
+    return new LogCapture(new String(tail, start, length - start, UTF_8), total,
+                          total - (length - start));
+  }
+
+  public void attach(final OutputStream stdout, final OutputStream stderr) throws IOException {
+    attach(stdout, stderr, true);
+  }
+
+  public void attach(final OutputStream stdout, final OutputStream stderr, boolean closeAtEof)
+      throws IOException {
+    final Closer closer = Closer.create();
+    try {
+      if (closeAtEof) {
+        closer.register(stdout);
+        closer.register(stderr);
+      }
+
+      while (this.hasNext()) {
+        final LogMessage message = this.next();
+        final ByteBuffer content = message.content();
+
+        switch (message.stream()) {
+          case STDOUT:
+            writeAndFlush(content, stdout);
+            break;
+          case STDERR:
+            writeAndFlush(content, stderr);
+            break;
+          case STDIN:
+          default:
+            break;
+        }
+      }
+    } catch (Throwable t) {
+      throw closer.rethrow(t);
+    } finally {
+      closer.close();
+    }
+  }
+
+  public void attach(final WritableByteChannel stdout, final WritableByteChannel stderr)
+      throws IOException {
+    attach(stdout, stderr, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+  }
+
+  public void attach(final WritableByteChannel stdout, final WritableByteChannel stderr,
+                     final int bufferSize, final long flushIntervalMillis) throws IOException {
+    checkArgument(bufferSize > 0, "bufferSize must be positive");
+    final BufferedChannelWriter stdoutWriter =
+        new BufferedChannelWriter(stdout, bufferSize, flushIntervalMillis);
+    // keep the order of the output when both go to the same channel
+    final BufferedChannelWriter stderrWriter = stderr == stdout
+        ? stdoutWriter
+        : new BufferedChannelWriter(stderr, bufferSize, flushIntervalMillis);
+    transfer(stdoutWriter, stderrWriter);
+    stdoutWriter.flush();
+    stderrWriter.flush();
+  }
+
+  /**
+   * Writes the remaining messages to the writers. Overridden by streams that can do so without
+   * decoding every message.
+   */
+  void transfer(final BufferedChannelWriter stdout, final BufferedChannelWriter stderr)
+      throws IOException {
+    while (true) {
+      final int available = available();
+      stdout.beforeRead(available);
+      stderr.beforeRead(available);
+      if (!hasNext()) {
+        return;
+      }
+      final LogMessage message = next();
+      switch (message.stream()) {
+        case STDOUT:
+          stdout.write(message.content());
+          break;
+        case STDERR:
+          stderr.write(message.content());
+          break;
+        case STDIN:
+        default:
+          break;
+      }
+    }
+  }
+
+  /**
+   * What the source of this stream can be read for without blocking, as estimated by
+   * {@link InputStream#available()}. Streams that cannot tell return 0, so that buffered output
+   * is written before every message they read.
+   */
+  int available() throws IOException {
+    return 0;
+  }
+
+  public InputStream stdoutStream() {
+    return demultiplexer().view(LogMessage.Stream.STDOUT);
+  }
+
+  public InputStream stderrStream() {
+    return demultiplexer().view(LogMessage.Stream.STDERR);
+  }
+
+  public ReadableByteChannel stdoutChannel() {
+    return demultiplexer().view(LogMessage.Stream.STDOUT);
+  }
+
+  public ReadableByteChannel stderrChannel() {
+    return demultiplexer().view(LogMessage.Stream.STDERR);
+  }
+
+  private synchronized LogStreamDemultiplexer demultiplexer() {
+    if (demultiplexer == null) {
+      demultiplexer = new LogStreamDemultiplexer(this, MAX_DEMULTIPLEXED_BYTES);
+    }
+    return demultiplexer;
+  }
+
+  public ExtendedLogStream filter(final LogFilter filter) {
+    return new FilteredLogStream(this, new FrameFilter(filter));
+  }
+
+  /** Write the contents of the given ByteBuffer to the OutputStream and flush the stream. */
+  private static void writeAndFlush(
+      final ByteBuffer buffer, final OutputStream outputStream) throws IOException {
+
+    if (buffer.hasArray()) {
+      outputStream.write(buffer.array(), buffer.position(), buffer.remaining());
+    } else {
+      // cannot access underlying byte array, need to copy into a temporary array
+      while (buffer.hasRemaining()) {
+        // figure out how much to read, but use an upper limit of 8kb. LogMessages should be rather
+        // small so we don't expect this to get hit but avoid large temporary buffers, just in case.
+        final int size = Math.min(buffer.remaining(), 8 * 1024);
+        final byte[] chunk = new byte[size];
+        buffer.get(chunk);
+        outputStream.write(chunk);
+      }
+    }
+    outputStream.flush();
+  }
+
+  private static boolean isContinuation(final byte value) {
+    return (value & 0xc0) == 0x80;
+  }
+
+  /**
+   * Filters the messages of another log stream.
+   */
+  private static class FilteredLogStream extends AbstractLogStream {
+
+    private final LogStream source;
+    private final FrameFilter filter;
+    private byte[] copy = new byte[0];
+
+    private FilteredLogStream(final LogStream source, final FrameFilter filter) {
+      this.source = source;
+      this.filter = filter;
+    }
+
+    @Override
+    protected LogMessage computeNext() {
+      String containerId = null;
+      while (source.hasNext()) {
+        final LogMessage message = source.next();
+        final ByteBuffer content = message.content();
+        containerId = message.containerId();
+        final LogMessage filtered;
+        if (content.hasArray()) {
+          filtered = filter.filter(message.stream(), content.array(),
+                                   content.arrayOffset() + content.position(),
+                                   content.remaining(), containerId);
+        } else {
+          if (copy.length < content.remaining()) {
+            copy = new byte[content.remaining()];
+          }
+          final int length = content.remaining();
+          content.get(copy, 0, length);
+          filtered = filter.filter(message.stream(), copy, 0, length, containerId);
+        }
+        if (filtered != null) {
+          return filtered;
+        }
+      }
+      final LogMessage last = filter.finish(containerId);
+      return last == null ? endOfData() : last;
+    }
+
+    @Override
+    public void close() {
+      source.close();
+    }
+  }
+}
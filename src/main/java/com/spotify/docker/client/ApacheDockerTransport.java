@@ -0,0 +1,313 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+
+/**
+ * A {@link DockerTransport} on Apache HttpClient that does not go through Jersey. Building one
+ * only sets up a connection pool, which makes it considerably cheaper to create than a
+ * {@link DefaultDockerClient}, and each request skips the JAX-RS filter and provider chain.
+ * Requests may override the read timeout and set an overall deadline without needing a separate
+ * connection pool; see {@link DockerRequest.Builder#readTimeout} and
+ * {@link DockerRequest.Builder#deadline}.
+ *
+ * <pre>
+ * try (DockerTransport transport = ApacheDockerTransport.create(
+ *          DefaultDockerClient.fromEnv().apiVersion("v1.32"));
+ *      DockerResponse response = transport.execute(DockerRequest.get("/version").build())) {
+ *   Version version = response.readEntity(Version.class);
+ * }
+ * </pre>
+ *
+ * <p>Proxy settings of the builder are not applied.</p>
+ *
+ * <p>Only the requests bypass Jersey. The transport is configured from a
+ * {@link DefaultDockerClient.Builder}, so Jersey must still be on the classpath, and
+ * {@link DefaultDockerClient} sends its own calls through Jersey rather than through a
+ * transport.</p>
+ */
+public class ApacheDockerTransport implements DockerTransport {
+
+  private static final Escaper PATH_ESCAPER = UrlEscapers.urlPathSegmentEscaper();
+  private static final Escaper QUERY_ESCAPER = UrlEscapers.urlFormParameterEscaper();
+  private static final InputStream EMPTY = new ByteArrayInputStream(new byte[0]);
+
+  private final String baseUri;
+  private final Map<String, Object> headers;
+  private final RequestConfig requestConfig;
+  private final CloseableHttpClient client;
+
+  ApacheDockerTransport(final URI uri, final String apiVersion, final Map<String, Object> headers,
+                        final HttpClientConnectionManager cm,
+                        final boolean sharedConnectionManager,
+                        final RequestConfig requestConfig) {
+    final String base = uri.toString().replaceAll("/+$", "");
+    this.baseUri = isNullOrEmpty(apiVersion) ? base : base + "/" + apiVersion;
+    this.headers = headers;
+    this.requestConfig = requestConfig;
+    this.client = HttpClients.custom()
+        .setConnectionManager(cm)
+        .setConnectionManagerShared(sharedConnectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .disableCookieManagement()
+        .build();
+  }
+
+  /**
+   * Create a transport using the URI, API version, certificates, pool size, timeouts and headers
+   * of a {@link DefaultDockerClient.Builder}.
+   *
+   * @param builder The client configuration.
+   * @return A new transport with its own connection pool.
+   */
+  public static ApacheDockerTransport create(final DefaultDockerClient.Builder builder) {
+    final URI uri = checkNotNull(builder.uri(), "uri");
+    checkNotNull(uri.getScheme(), "url has null scheme");
+    final RequestConfig requestConfig = RequestConfig.custom()
+        .setConnectionRequestTimeout((int) builder.connectTimeoutMillis())
+        .setConnectTimeout((int) builder.connectTimeoutMillis())
+        .setSocketTimeout((int) builder.readTimeoutMillis())
+        .build();
+    return new ApacheDockerTransport(
+        uri.getScheme().equals("unix") ? UnixConnectionSocketFactory.sanitizeUri(uri) : uri,
+        builder.apiVersion(), builder.headers(),
+        DefaultDockerClient.getConnectionManager(builder), false, requestConfig);
+  }
+
+  @Override
+  public DockerResponse execute(final DockerRequest request) throws IOException {
+    final HttpUriRequest httpRequest = toHttpRequest(request);
+    if (request.deadlineMillis() < 0) {
+      return new Response(execute(httpRequest, request.lane()), null);
+    }
+
+    final ScheduledFuture<?> deadline = Deadlines.SCHEDULER.schedule(new Runnable() {
+      @Override
+      public void run() {
+        httpRequest.abort();
+      }
+    }, request.deadlineMillis(), MILLISECONDS);
+    try {
+      return new Response(execute(httpRequest, request.lane()), deadline);
+    } catch (IOException e) {
+      deadline.cancel(false);
+      if (httpRequest.isAborted()) {
+        final SocketTimeoutException timeout = new SocketTimeoutException(
+            "Deadline of " + request.deadlineMillis() + " ms exceeded: " + request);
+        timeout.initCause(e);
+        throw timeout;
+      }
+      throw e;
+    }
+  }
+
+  CloseableHttpResponse execute(final HttpUriRequest request, final ConnectionLane lane)
+      throws IOException {
+    final Exchange exchange = new Exchange(request.getMethod(), request.getURI().getRawPath(),
+                                           lane);
+    final Exchange previous = LaneConnectionManager.enter(exchange);
+    try {
+      return client.execute(request);
+    } catch (IOException | RuntimeException e) {
+      exchange.failed(e);
+      throw e;
+    } finally {
+      LaneConnectionManager.exit(previous);
+    }
+  }
+
+  HttpUriRequest toHttpRequest(final DockerRequest request) {
+    final RequestBuilder builder = RequestBuilder.create(request.method())
+        .setUri(uri(request));
+    if (request.readTimeoutMillis() >= 0) {
+      builder.setConfig(RequestConfig.copy(requestConfig)
+                            .setSocketTimeout((int) request.readTimeoutMillis())
+                            .build());
+    }
+    for (final Map.Entry<String, Object> header : headers.entrySet()) {
+      builder.addHeader(header.getKey(), String.valueOf(header.getValue()));
+    }
+    for (final Map.Entry<String, String> header : request.headers().entrySet()) {
+      builder.setHeader(header.getKey(), header.getValue());
+    }
+    if (request.body() != null) {
+      builder.setEntity(new BodyEntity(request.body()));
+    }
+    return builder.build();
+  }
+
+  private String uri(final DockerRequest request) {
+    final String path = request.path();
+    final StringBuilder uri = new StringBuilder(baseUri.length() + path.length() + 16)
+        .append(baseUri);
+    int start = 1;
+    while (start <= path.length()) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      uri.append('/').append(PATH_ESCAPER.escape(path.substring(start, end)));
+      start = end + 1;
+    }
+    char separator = '?';
+    for (final Map.Entry<String, String> param : request.query().entries()) {
+      uri.append(separator)
+          .append(QUERY_ESCAPER.escape(param.getKey()))
+          .append('=')
+          .append(QUERY_ESCAPER.escape(param.getValue()));
+      separator = '&';
+    }
+    return uri.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+
+  private static class BodyEntity extends AbstractHttpEntity {
+
+    private final DockerRequest.Body body;
+
+    BodyEntity(final DockerRequest.Body body) {
+      this.body = body;
+      setContentType(body.contentType());
+      setChunked(body.contentLength() < 0);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return body.isRepeatable();
+    }
+
+    @Override
+    public long getContentLength() {
+      return body.contentLength();
+    }
+
+    /**
+     * HttpClient writes the body with {@link #writeTo(OutputStream)}, but reads it for wire
+     * logging or buffering. A repeatable body is written into a buffer for that.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+      if (!body.isRepeatable()) {
+        throw new IllegalStateException(
+            "The request body is a one-shot stream and can only be written, not read");
+      }
+      final long length = body.contentLength();
+      final ByteArrayOutputStream buffer =
+          new ByteArrayOutputStream(length < 0 || length > Integer.MAX_VALUE ? 512 : (int) length);
+      body.writeTo(buffer);
+      return new ByteArrayInputStream(buffer.toByteArray());
+    }
+
+    @Override
+    public void writeTo(final OutputStream outstream) throws IOException {
+      body.writeTo(outstream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+      return false;
+    }
+  }
+
+  /**
+   * Aborts requests whose deadline has passed. A single daemon thread is enough since an abort
+   * only shuts down a socket.
+   */
+  private static class Deadlines {
+
+    static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(
+        1, new ThreadFactoryBuilder()
+               .setNameFormat("docker-transport-deadline-%d")
+               .setDaemon(true)
+               .build());
+
+    static {
+      SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+  }
+
+  private static class Response extends DockerResponse {
+
+    private final CloseableHttpResponse response;
+    private final ScheduledFuture<?> deadline;
+
+    Response(final CloseableHttpResponse response, final ScheduledFuture<?> deadline) {
+      this.response = response;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public int status() {
+      return response.getStatusLine().getStatusCode();
+    }
+
+    @Override
+    public String header(final String name) {
+      final Header header = response.getFirstHeader(name);
+      return header == null ? null : header.getValue();
+    }
+
+    @Override
+    public InputStream body() throws IOException {
+      final HttpEntity entity = response.getEntity();
+      return entity == null ? EMPTY : entity.getContent();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (deadline != null) {
+        deadline.cancel(false);
+      }
+      response.close();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffers log output for a channel, writing it once the buffer is full or the flush interval has
+ * passed, instead of once per message. Output is also written before a read that may block, so
+ * that it is not held back while the log is idle.
+ */
+class BufferedChannelWriter {
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final long flushIntervalNanos;
+  private long lastFlush;
+
+  BufferedChannelWriter(final WritableByteChannel channel, final int bufferSize,
+                        final long flushIntervalMillis) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+    this.flushIntervalNanos = MILLISECONDS.toNanos(flushIntervalMillis);
+    this.lastFlush = System.nanoTime();
+  }
+
+  void write(final ByteBuffer content) throws IOException {
+    if (content.remaining() > buffer.remaining()) {
+      flush();
+      if (content.remaining() >= buffer.capacity()) {
+        // too large to be worth buffering
+        writeFully(content);
+        return;
+      }
+    }
+    buffer.put(content);
+  }
+
+  /**
+   * Copies {@code length} bytes from the stream straight into the buffer, or all of its remaining
+   * bytes if {@code length} is negative. Each read takes what the stream has, so that the buffer
+   * is written when due even while a long or endless copy is in progress.
+   */
+  void transferFrom(final InputStream stream, final long length) throws IOException {
+    long remaining = length;
+    while (remaining != 0) {
+      beforeRead(stream.available());
+      if (!buffer.hasRemaining()) {
+        flush();
+      }
+      final int size = remaining < 0
+                       ? buffer.remaining()
+                       : (int) Math.min(remaining, buffer.remaining());
+      final int read = stream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+      if (read < 0) {
+        if (length < 0) {
+          return;
+        }
+        throw new EOFException();
+      }
+      buffer.position(buffer.position() + read);
+      if (remaining > 0) {
+        remaining -= read;
+      }
+    }
+  }
+
+  /**
+   * Writes the buffer if the flush interval has passed, or if the next read may block.
+   *
+   * @param available What the source can be read for without blocking, as estimated by
+   *                  {@link InputStream#available()}; 0 if it may block or is not known.
+   */
+  void beforeRead(final int available) throws IOException {
+    if (buffer.position() > 0
+        && (available <= 0 || System.nanoTime() - lastFlush >= flushIntervalNanos)) {
+      flush();
+    }
+  }
+
+  void flush() throws IOException {
+    buffer.flip();
+    writeFully(buffer);
+    buffer.clear();
+    lastFlush = System.nanoTime();
+  }
+
+  private void writeFully(final ByteBuffer content) throws IOException {
+    while (content.hasRemaining()) {
+      channel.write(content);
+    }
+  }
+}
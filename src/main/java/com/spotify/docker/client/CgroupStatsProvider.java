@@ -0,0 +1,503 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.spotify.docker.client.exceptions.DockerException;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerStats;
+import com.spotify.docker.client.messages.MemoryStats;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads {@link ContainerStats} for containers running on the local host straight from the cgroup
+ * filesystem instead of asking the Docker daemon, which reads the very same files but adds a lot
+ * of latency and daemon CPU to every {@link DockerClient#stats(String)} call.
+ *
+ * <p>Both the legacy (v1) per-controller hierarchy and the unified (v2) hierarchy are supported,
+ * as are the cgroupfs and systemd cgroup drivers. A container's cgroup is resolved once from
+ * {@link ContainerInfo#id()} and its {@code HostConfig.CgroupParent} and then cached, for up to
+ * 4096 containers that were queried in the last 10 minutes.
+ *
+ * <p>Whenever the cgroup files cannot be found or read, e.g. because this process is not running
+ * on the Docker host, this provider falls back to {@link DockerClient#stats(String)}. That outcome
+ * is cached as well, so a container that has fallen back costs one daemon call per snapshot, the
+ * same as without this provider.
+ *
+ * <p>Network counters live in the container's network namespace rather than in its cgroup, so
+ * {@link ContainerStats#networks()} is not populated by the fast path.
+ */
+public class CgroupStatsProvider {
+
+  private static final Logger log = LoggerFactory.getLogger(CgroupStatsProvider.class);
+
+  private static final Path DEFAULT_CGROUP_ROOT = Paths.get("/sys/fs/cgroup");
+  private static final Path DEFAULT_PROC_STAT = Paths.get("/proc/stat");
+
+  // cpuacct.stat and /proc/stat count in USER_HZ, which is 100 on every mainstream kernel.
+  // Docker itself makes the same assumption.
+  private static final long NANOS_PER_TICK = SECONDS.toNanos(1) / 100;
+
+  private static final Splitter WHITESPACE = Splitter.on(' ').trimResults().omitEmptyStrings();
+
+  private static final int MAX_CACHED_CONTAINERS = 4096;
+  private static final int CACHE_EXPIRY_MINUTES = 10;
+
+  // Cached for containers whose stats come from the daemon
+  private static final Cgroup DAEMON_ONLY = new Cgroup(null, null, false);
+
+  private final DockerClient docker;
+  private final Path cgroupRoot;
+  private final Path procStat;
+  private final ConcurrentMap<String, Cgroup> cgroups = newCache();
+  private final ConcurrentMap<String, ObjectNode> previousCpuStats = newCache();
+
+  /**
+   * Create a provider reading from {@code /sys/fs/cgroup}.
+   *
+   * @param docker The client used to resolve containers and as a fallback.
+   */
+  public CgroupStatsProvider(final DockerClient docker) {
+    this(docker, DEFAULT_CGROUP_ROOT, DEFAULT_PROC_STAT);
+  }
+
+  @VisibleForTesting
+  CgroupStatsProvider(final DockerClient docker, final Path cgroupRoot, final Path procStat) {
+    this.docker = checkNotNull(docker, "docker");
+    this.cgroupRoot = checkNotNull(cgroupRoot, "cgroupRoot");
+    this.procStat = checkNotNull(procStat, "procStat");
+  }
+
+  /**
+   * Get a one-shot stats snapshot of a container. The {@code precpu_stats} are those of the
+   * previous call for the same container, or zero for the first call.
+   *
+   * @param containerId The id or name of the container.
+   * @return The container stats.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  public ContainerStats stats(final String containerId)
+      throws DockerException, InterruptedException {
+    final Cgroup cgroup = cgroup(containerId);
+    if (cgroup != DAEMON_ONLY) {
+      try {
+        return read(containerId, cgroup);
+      } catch (IOException | IllegalArgumentException e) {
+        log.debug("Could not read cgroup stats of container {}, falling back to the daemon",
+                  containerId, e);
+        cgroups.put(containerId, DAEMON_ONLY);
+        previousCpuStats.remove(containerId);
+      }
+    }
+    return docker.stats(containerId);
+  }
+
+  /**
+   * Returns the cached cgroup of a container, resolving it first if needed, or
+   * {@link #DAEMON_ONLY} if its stats have to come from the daemon.
+   */
+  private Cgroup cgroup(final String containerId) throws DockerException, InterruptedException {
+    Cgroup cgroup = cgroups.get(containerId);
+    if (cgroup == null) {
+      if (Files.isDirectory(cgroupRoot)) {
+        final ContainerInfo info = docker.inspectContainer(containerId);
+        final String parent = info.hostConfig() == null ? null : info.hostConfig().cgroupParent();
+        cgroup = resolve(info.id(), parent);
+      }
+      if (cgroup == null) {
+        cgroup = DAEMON_ONLY;
+      }
+      cgroups.put(containerId, cgroup);
+    }
+    return cgroup;
+  }
+
+  private static <V> ConcurrentMap<String, V> newCache() {
+    return CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_CONTAINERS)
+        .expireAfterAccess(CACHE_EXPIRY_MINUTES, MINUTES)
+        .<String, V>build()
+        .asMap();
+  }
+
+  private Cgroup resolve(final String id, final String cgroupParent) {
+    final boolean unified = Files.exists(cgroupRoot.resolve("cgroup.controllers"));
+    for (final String relative : candidates(id, cgroupParent)) {
+      final Cgroup cgroup = new Cgroup(cgroupRoot, relative, unified);
+      if (Files.isDirectory(cgroup.dir("memory"))) {
+        return cgroup;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Lists the cgroup paths Docker may have placed the container at. The cgroupfs driver uses
+   * {@code <parent>/<id>} with a default parent of {@code docker}, the systemd driver uses
+   * {@code <expanded slice>/docker-<id>.scope} with a default slice of {@code system.slice}.
+   */
+  @VisibleForTesting
+  static List<String> candidates(final String id, final String cgroupParent) {
+    if (isNullOrEmpty(cgroupParent)) {
+      return ImmutableList.of("docker/" + id, "system.slice/docker-" + id + ".scope");
+    }
+    final String parent = cgroupParent.replaceAll("^/+|/+$", "");
+    if (parent.endsWith(".slice")) {
+      return ImmutableList.of(expandSlice(parent) + "/docker-" + id + ".scope",
+                              parent + "/" + id);
+    }
+    return ImmutableList.of(parent + "/" + id);
+  }
+
+  /**
+   * Expands a systemd slice name into its path, e.g. {@code a-b.slice} becomes
+   * {@code a.slice/a-b.slice}.
+   */
+  private static String expandSlice(final String slice) {
+    if (slice.contains("/") || slice.equals("-.slice")) {
+      return slice;
+    }
+    final String name = slice.substring(0, slice.length() - ".slice".length());
+    final StringBuilder path = new StringBuilder();
+    int dash = name.indexOf('-');
+    while (dash > 0) {
+      path.append(name, 0, dash).append(".slice/");
+      dash = name.indexOf('-', dash + 1);
+    }
+    return path.append(slice).toString();
+  }
+
+  private ContainerStats read(final String containerId, final Cgroup cgroup)
+      throws IOException {
+    final ObjectNode stats = objectMapper().createObjectNode();
+    stats.put("read", System.currentTimeMillis());
+
+    final ObjectNode cpuStats = cgroup.unified ? cpuStatsV2(cgroup) : cpuStatsV1(cgroup);
+    final Long systemCpuUsage = systemCpuUsage();
+    if (systemCpuUsage != null) {
+      cpuStats.put("system_cpu_usage", systemCpuUsage);
+    }
+    final ObjectNode precpuStats = previousCpuStats.put(containerId, cpuStats);
+    stats.set("cpu_stats", cpuStats);
+    stats.set("precpu_stats", precpuStats == null ? zeroCpuStats() : precpuStats);
+    stats.set("memory_stats", cgroup.unified ? memoryStatsV2(cgroup) : memoryStatsV1(cgroup));
+    stats.set("blkio_stats", cgroup.unified ? blockIoStatsV2(cgroup) : blockIoStatsV1(cgroup));
+    stats.set("pids_stats", pidsStats(cgroup));
+
+    return objectMapper().treeToValue(stats, ContainerStats.class);
+  }
+
+  private ObjectNode cpuStatsV1(final Cgroup cgroup) throws IOException {
+    final Path cpuacct = cgroup.dir("cpuacct");
+    final Map<String, Long> stat = readKeyValues(cpuacct.resolve("cpuacct.stat"));
+
+    final ObjectNode cpuUsage = objectMapper().createObjectNode();
+    cpuUsage.put("total_usage", readLong(cpuacct.resolve("cpuacct.usage")));
+    final ArrayNode percpuUsage = cpuUsage.putArray("percpu_usage");
+    final String percpu = readString(cpuacct.resolve("cpuacct.usage_percpu"));
+    for (final String usage : WHITESPACE.split(percpu)) {
+      percpuUsage.add(Long.parseLong(usage));
+    }
+    cpuUsage.put("usage_in_kernelmode", value(stat, "system") * NANOS_PER_TICK);
+    cpuUsage.put("usage_in_usermode", value(stat, "user") * NANOS_PER_TICK);
+
+    final Map<String, Long> throttling = readKeyValues(cgroup.dir("cpu").resolve("cpu.stat"));
+    return cpuStats(cpuUsage, value(throttling, "nr_periods"), value(throttling, "nr_throttled"),
+                    value(throttling, "throttled_time"));
+  }
+
+  private ObjectNode cpuStatsV2(final Cgroup cgroup) throws IOException {
+    final Map<String, Long> stat = readKeyValues(cgroup.dir("cpu").resolve("cpu.stat"));
+
+    final ObjectNode cpuUsage = objectMapper().createObjectNode();
+    cpuUsage.put("total_usage", MICROSECONDS.toNanos(value(stat, "usage_usec")));
+    cpuUsage.put("usage_in_kernelmode", MICROSECONDS.toNanos(value(stat, "system_usec")));
+    cpuUsage.put("usage_in_usermode", MICROSECONDS.toNanos(value(stat, "user_usec")));
+
+    return cpuStats(cpuUsage, value(stat, "nr_periods"), value(stat, "nr_throttled"),
+                    MICROSECONDS.toNanos(value(stat, "throttled_usec")));
+  }
+
+  private static ObjectNode zeroCpuStats() {
+    final ObjectNode cpuUsage = objectMapper().createObjectNode();
+    cpuUsage.put("total_usage", 0L);
+    cpuUsage.put("usage_in_kernelmode", 0L);
+    cpuUsage.put("usage_in_usermode", 0L);
+    return cpuStats(cpuUsage, 0L, 0L, 0L);
+  }
+
+  private static ObjectNode cpuStats(final ObjectNode cpuUsage, final long periods,
+                                     final long throttledPeriods, final long throttledTime) {
+    final ObjectNode cpuStats = objectMapper().createObjectNode();
+    cpuStats.set("cpu_usage", cpuUsage);
+    final ObjectNode throttlingData = cpuStats.putObject("throttling_data");
+    throttlingData.put("periods", periods);
+    throttlingData.put("throttled_periods", throttledPeriods);
+    throttlingData.put("throttled_time", throttledTime);
+    return cpuStats;
+  }
+
+  /**
+   * Sums the first seven fields of the aggregate {@code cpu} line of /proc/stat, the same way
+   * Docker computes {@code system_cpu_usage}.
+   */
+  private Long systemCpuUsage() throws IOException {
+    if (!Files.isReadable(procStat)) {
+      return null;
+    }
+    for (final String line : Files.readAllLines(procStat, UTF_8)) {
+      if (line.startsWith("cpu ")) {
+        final List<String> fields = WHITESPACE.splitToList(line);
+        long ticks = 0;
+        for (int i = 1; i < Math.min(fields.size(), 8); i++) {
+          ticks += Long.parseLong(fields.get(i));
+        }
+        return ticks * NANOS_PER_TICK;
+      }
+    }
+    return null;
+  }
+
+  private ObjectNode memoryStatsV1(final Cgroup cgroup) throws IOException {
+    final Path memory = cgroup.dir("memory");
+    final ObjectNode memoryStats = objectMapper().createObjectNode();
+    memoryStats.put("usage", readLong(memory.resolve("memory.usage_in_bytes")));
+    memoryStats.put("max_usage", readLong(memory.resolve("memory.max_usage_in_bytes")));
+    memoryStats.put("failcnt", readLong(memory.resolve("memory.failcnt")));
+    memoryStats.put("limit", readLong(memory.resolve("memory.limit_in_bytes")));
+
+    // The v1 memory.stat keys are exactly the ones Docker reports, but older kernels lack some of
+    // them. Only include the breakdown if it is complete.
+    final ObjectNode stat = objectMapper().createObjectNode();
+    for (final Map.Entry<String, Long> entry
+        : readKeyValues(memory.resolve("memory.stat")).entrySet()) {
+      stat.put(entry.getKey(), entry.getValue());
+    }
+    try {
+      objectMapper().treeToValue(stat, MemoryStats.Stats.class);
+      memoryStats.set("stats", stat);
+    } catch (JsonProcessingException e) {
+      log.debug("Incomplete memory.stat for cgroup {}", memory, e);
+    }
+    return memoryStats;
+  }
+
+  private ObjectNode memoryStatsV2(final Cgroup cgroup) throws IOException {
+    final Path memory = cgroup.dir("memory");
+    final ObjectNode memoryStats = objectMapper().createObjectNode();
+    memoryStats.put("usage", readLong(memory.resolve("memory.current")));
+    memoryStats.put("limit", readLong(memory.resolve("memory.max")));
+    final Path peak = memory.resolve("memory.peak");
+    if (Files.exists(peak)) {
+      memoryStats.put("max_usage", readLong(peak));
+    }
+    return memoryStats;
+  }
+
+  private ObjectNode blockIoStatsV1(final Cgroup cgroup) throws IOException {
+    final Path blkio = cgroup.dir("blkio");
+    final ObjectNode blockIoStats = objectMapper().createObjectNode();
+    blockIoEntries(blockIoStats, "io_service_bytes_recursive", blkio,
+                   "blkio.io_service_bytes_recursive", "blkio.throttle.io_service_bytes_recursive");
+    blockIoEntries(blockIoStats, "io_serviced_recursive", blkio,
+                   "blkio.io_serviced_recursive", "blkio.throttle.io_serviced_recursive");
+    blockIoEntries(blockIoStats, "io_queue_recursive", blkio, "blkio.io_queued_recursive");
+    blockIoEntries(blockIoStats, "io_service_time_recursive", blkio,
+                   "blkio.io_service_time_recursive");
+    blockIoEntries(blockIoStats, "io_wait_time_recursive", blkio, "blkio.io_wait_time_recursive");
+    blockIoEntries(blockIoStats, "io_merged_recursive", blkio, "blkio.io_merged_recursive");
+    blockIoEntries(blockIoStats, "io_time_recursive", blkio, "blkio.time_recursive");
+    blockIoEntries(blockIoStats, "sectors_recursive", blkio, "blkio.sectors_recursive");
+    return blockIoStats;
+  }
+
+  /**
+   * Reads the first existing of the given blkio files, whose lines look like
+   * {@code 8:0 Read 4096} or {@code 8:0 4096}.
+   */
+  private static void blockIoEntries(final ObjectNode blockIoStats, final String field,
+                                     final Path blkio, final String... files)
+      throws IOException {
+    for (final String file : files) {
+      final Path path = blkio.resolve(file);
+      if (!Files.exists(path)) {
+        continue;
+      }
+      final ArrayNode entries = blockIoStats.putArray(field);
+      for (final String line : Files.readAllLines(path, UTF_8)) {
+        final List<String> fields = WHITESPACE.splitToList(line);
+        if (fields.size() < 2 || fields.get(0).equals("Total")) {
+          continue;
+        }
+        final int colon = fields.get(0).indexOf(':');
+        final ObjectNode entry = entries.addObject();
+        entry.put("major", Long.parseLong(fields.get(0).substring(0, colon)));
+        entry.put("minor", Long.parseLong(fields.get(0).substring(colon + 1)));
+        entry.put("op", fields.size() > 2 ? fields.get(1) : "");
+        entry.put("value", Long.parseLong(fields.get(fields.size() - 1)));
+      }
+      return;
+    }
+  }
+
+  /**
+   * Maps the v2 io.stat lines, e.g. {@code 8:0 rbytes=4096 wbytes=0 rios=1 wios=0}, onto the v1
+   * fields the same way Docker does.
+   */
+  private ObjectNode blockIoStatsV2(final Cgroup cgroup) throws IOException {
+    final ObjectNode blockIoStats = objectMapper().createObjectNode();
+    final ArrayNode serviceBytes = blockIoStats.putArray("io_service_bytes_recursive");
+    final ArrayNode serviced = blockIoStats.putArray("io_serviced_recursive");
+
+    final Path ioStat = cgroup.dir("io").resolve("io.stat");
+    if (!Files.exists(ioStat)) {
+      return blockIoStats;
+    }
+    for (final String line : Files.readAllLines(ioStat, UTF_8)) {
+      final List<String> fields = WHITESPACE.splitToList(line);
+      if (fields.isEmpty()) {
+        continue;
+      }
+      final String device = fields.get(0);
+      final int colon = device.indexOf(':');
+      final long major = Long.parseLong(device.substring(0, colon));
+      final long minor = Long.parseLong(device.substring(colon + 1));
+      for (final String field : fields.subList(1, fields.size())) {
+        final int eq = field.indexOf('=');
+        final String key = field.substring(0, eq);
+        final long value = Long.parseLong(field.substring(eq + 1));
+        switch (key) {
+          case "rbytes":
+            addBlockIoEntry(serviceBytes, major, minor, "read", value);
+            break;
+          case "wbytes":
+            addBlockIoEntry(serviceBytes, major, minor, "write", value);
+            break;
+          case "rios":
+            addBlockIoEntry(serviced, major, minor, "read", value);
+            break;
+          case "wios":
+            addBlockIoEntry(serviced, major, minor, "write", value);
+            break;
+          default:
+            break;
+        }
+      }
+    }
+    return blockIoStats;
+  }
+
+  private static void addBlockIoEntry(final ArrayNode entries, final long major, final long minor,
+                                      final String op, final long value) {
+    final ObjectNode entry = entries.addObject();
+    entry.put("major", major);
+    entry.put("minor", minor);
+    entry.put("op", op);
+    entry.put("value", value);
+  }
+
+  private ObjectNode pidsStats(final Cgroup cgroup) throws IOException {
+    final Path pids = cgroup.dir("pids");
+    final ObjectNode pidsStats = objectMapper().createObjectNode();
+    if (Files.exists(pids.resolve("pids.current"))) {
+      pidsStats.put("current", readLong(pids.resolve("pids.current")));
+      pidsStats.put("limit", readLong(pids.resolve("pids.max")));
+    }
+    return pidsStats;
+  }
+
+  private static String readString(final Path path) throws IOException {
+    return new String(Files.readAllBytes(path), UTF_8).trim();
+  }
+
+  /**
+   * Reads a single numeric value. Unlimited values, written as {@code max} by cgroup v2, are
+   * returned as null.
+   */
+  private static Long readLong(final Path path) throws IOException {
+    final String value = readString(path);
+    return value.equals("max") ? null : Long.valueOf(value);
+  }
+
+  /**
+   * Reads a flat keyed file such as cpu.stat or memory.stat, with one {@code key value} per line.
+   */
+  private static Map<String, Long> readKeyValues(final Path path) throws IOException {
+    final Map<String, Long> values = new LinkedHashMap<>();
+    for (final String line : Files.readAllLines(path, UTF_8)) {
+      final List<String> fields = WHITESPACE.splitToList(line);
+      if (fields.size() == 2) {
+        values.put(fields.get(0), Long.valueOf(fields.get(1)));
+      }
+    }
+    return values;
+  }
+
+  private static long value(final Map<String, Long> values, final String key) {
+    final Long value = values.get(key);
+    return value == null ? 0 : value;
+  }
+
+  private static class Cgroup {
+
+    private final Path root;
+    private final String relative;
+    private final boolean unified;
+
+    private Cgroup(final Path root, final String relative, final boolean unified) {
+      this.root = root;
+      this.relative = relative;
+      this.unified = unified;
+    }
+
+    /**
+     * Returns the directory of the given controller. With cgroup v2 all controllers share a
+     * single directory.
+     */
+    private Path dir(final String controller) {
+      return unified ? root.resolve(relative) : root.resolve(controller).resolve(relative);
+    }
+  }
+}
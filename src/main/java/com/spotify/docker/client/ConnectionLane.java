@@ -0,0 +1,43 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+/**
+ * Partitions of the connection pool shared by all calls of a {@link DefaultDockerClient}.
+ * Streaming calls can hold a connection for as long as a container runs, so they are capped below
+ * the pool size; the remainder is reserved for short control calls such as inspect or start.
+ *
+ * @see DefaultDockerClient.Builder#streamingConnectionLimit(int)
+ * @see DefaultDockerClient#laneStats(ConnectionLane)
+ */
+public enum ConnectionLane {
+
+  /**
+   * Short request/response calls. May use any connection of the pool.
+   */
+  CONTROL,
+
+  /**
+   * Calls that keep the connection open without a read timeout: logs, attach, events, exec
+   * start, build, wait and stop.
+   */
+  STREAMING
+}
@@ -0,0 +1,57 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A snapshot of the connections held and awaited by one {@link ConnectionLane}.
+ */
+@AutoValue
+public abstract class ConnectionLaneStats {
+
+  public abstract ConnectionLane lane();
+
+  /**
+   * @return The number of connections currently leased by calls of this lane.
+   */
+  public abstract int leased();
+
+  /**
+   * @return The number of calls waiting for a connection.
+   */
+  public abstract int pending();
+
+  /**
+   * @return The maximum number of connections this lane may hold.
+   */
+  public abstract int max();
+
+  /**
+   * @return The highest value {@link #leased()} has reached since the pool was created.
+   */
+  public abstract int peakLeased();
+
+  static ConnectionLaneStats create(final ConnectionLane lane, final int leased,
+                                    final int pending, final int max, final int peakLeased) {
+    return new AutoValue_ConnectionLaneStats(lane, leased, pending, max, peakLeased);
+  }
+}
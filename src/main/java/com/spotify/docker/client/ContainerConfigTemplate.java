@@ -0,0 +1,303 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.PortBinding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ContainerConfig} encoded once, for creating many containers that differ only in their
+ * environment, command, labels or port bindings. The rest of the config is encoded to JSON when
+ * the template is made; each {@code with} method encodes just the part it replaces, and
+ * {@link DockerClient#createContainer(ContainerConfigTemplate, String)} splices the parts together
+ * without going through Jackson again. For example:
+ *
+ * <pre>
+ * ContainerConfigTemplate template = ContainerConfigTemplate.of(config);
+ * for (int i = 0; i &lt; 1000; i++) {
+ *   docker.createContainer(template.withEnv("WORKER=" + i), "worker-" + i);
+ * }
+ * </pre>
+ *
+ * <p>Templates are immutable and can be shared between threads.</p>
+ */
+public final class ContainerConfigTemplate {
+
+  private static final byte[] ENV = fieldName("Env");
+  private static final byte[] CMD = fieldName("Cmd");
+  private static final byte[] LABELS = fieldName("Labels");
+  private static final byte[] HOST_CONFIG = fieldName("HostConfig");
+  private static final byte[] PORT_BINDINGS = fieldName("PortBindings");
+
+  private final ContainerConfig config;
+  // The config without the parts below, and the offset just inside its HostConfig object, or -1
+  private final byte[] json;
+  private final int hostConfigOffset;
+  private final Part<ImmutableList<String>> env;
+  private final Part<ImmutableList<String>> cmd;
+  private final Part<ImmutableMap<String, String>> labels;
+  private final Part<ImmutableMap<String, List<PortBinding>>> portBindings;
+
+  private ContainerConfigTemplate(
+      final ContainerConfig config, final byte[] json, final int hostConfigOffset,
+      final Part<ImmutableList<String>> env, final Part<ImmutableList<String>> cmd,
+      final Part<ImmutableMap<String, String>> labels,
+      final Part<ImmutableMap<String, List<PortBinding>>> portBindings) {
+    this.config = config;
+    this.json = json;
+    this.hostConfigOffset = hostConfigOffset;
+    this.env = env;
+    this.cmd = cmd;
+    this.labels = labels;
+    this.portBindings = portBindings;
+  }
+
+  /**
+   * Encodes a config as a template.
+   *
+   * @param config The config that containers are created with, unless changed by the template.
+   * @return The template.
+   */
+  public static ContainerConfigTemplate of(final ContainerConfig config) {
+    checkNotNull(config, "config");
+    final HostConfig hostConfig = config.hostConfig();
+    final ContainerConfig.Builder invariant = config.toBuilder()
+        .env((List<String>) null)
+        .cmd((List<String>) null)
+        .labels(null);
+    if (hostConfig != null) {
+      invariant.hostConfig(hostConfig.toBuilder().portBindings(null).build());
+    }
+    try {
+      final byte[] json = objectMapper().writeValueAsBytes(invariant.build());
+      return new ContainerConfigTemplate(
+          config, json, hostConfigOffset(json),
+          Part.of(config.env()), Part.of(config.cmd()), Part.of(config.labels()),
+          Part.of(hostConfig == null ? null : hostConfig.portBindings()));
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot encode " + config, e);
+    }
+  }
+
+  private static int hostConfigOffset(final byte[] json) throws IOException {
+    try (final JsonParser parser = objectMapper().getFactory().createParser(json)) {
+      parser.nextToken();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = parser.getCurrentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && name.equals("HostConfig")) {
+          return (int) parser.getTokenLocation().getByteOffset() + 1;
+        }
+        parser.skipChildren();
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param env The environment of the containers, or null for none.
+   * @return A template that creates containers with this environment.
+   */
+  public ContainerConfigTemplate withEnv(final List<String> env) {
+    return new ContainerConfigTemplate(config, json, hostConfigOffset,
+        Part.of(env == null ? null : ImmutableList.copyOf(env)), cmd, labels, portBindings);
+  }
+
+  /**
+   * @param env The environment of the containers.
+   * @return A template that creates containers with this environment.
+   */
+  public ContainerConfigTemplate withEnv(final String... env) {
+    return withEnv(Arrays.asList(env));
+  }
+
+  /**
+   * @param cmd The command of the containers, or null for the image's.
+   * @return A template that creates containers with this command.
+   */
+  public ContainerConfigTemplate withCmd(final List<String> cmd) {
+    return new ContainerConfigTemplate(config, json, hostConfigOffset, env,
+        Part.of(cmd == null ? null : ImmutableList.copyOf(cmd)), labels, portBindings);
+  }
+
+  /**
+   * @param cmd The command of the containers.
+   * @return A template that creates containers with this command.
+   */
+  public ContainerConfigTemplate withCmd(final String... cmd) {
+    return withCmd(Arrays.asList(cmd));
+  }
+
+  /**
+   * @param labels The labels of the containers, or null for none.
+   * @return A template that creates containers with these labels.
+   */
+  public ContainerConfigTemplate withLabels(final Map<String, String> labels) {
+    return new ContainerConfigTemplate(config, json, hostConfigOffset, env, cmd,
+        Part.of(labels == null ? null : ImmutableMap.copyOf(labels)), portBindings);
+  }
+
+  /**
+   * @param portBindings The port bindings of the containers, or null for none.
+   * @return A template that creates containers with these port bindings.
+   */
+  public ContainerConfigTemplate withPortBindings(
+      final Map<String, List<PortBinding>> portBindings) {
+    return new ContainerConfigTemplate(config, json, hostConfigOffset, env, cmd, labels,
+        Part.of(portBindings == null ? null : ImmutableMap.copyOf(portBindings)));
+  }
+
+  /**
+   * @return The config that containers are created with.
+   */
+  public ContainerConfig toConfig() {
+    final ContainerConfig.Builder builder = config.toBuilder()
+        .env(env.value)
+        .cmd(cmd.value)
+        .labels(labels.value);
+    final HostConfig hostConfig = config.hostConfig();
+    if (hostConfig != null) {
+      builder.hostConfig(hostConfig.toBuilder().portBindings(portBindings.value).build());
+    } else if (portBindings.value != null) {
+      builder.hostConfig(HostConfig.builder().portBindings(portBindings.value).build());
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return The image that containers are created from.
+   */
+  String image() {
+    return config.image();
+  }
+
+  /**
+   * @return The JSON encoding of {@link #toConfig()}, though its fields may be in another order.
+   */
+  byte[] toJson() {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(
+        json.length + env.size() + cmd.size() + labels.size() + portBindings.size() + 64);
+    // The config is a JSON object, so the parts go right after its opening brace
+    out.write('{');
+    boolean empty = true;
+    empty = env.writeTo(out, ENV, empty);
+    empty = cmd.writeTo(out, CMD, empty);
+    empty = labels.writeTo(out, LABELS, empty);
+    if (hostConfigOffset < 0 && portBindings.value != null) {
+      if (!empty) {
+        out.write(',');
+      }
+      out.write(HOST_CONFIG, 0, HOST_CONFIG.length);
+      out.write('{');
+      portBindings.writeTo(out, PORT_BINDINGS, true);
+      out.write('}');
+      empty = false;
+    }
+    int offset = 1;
+    if (!empty && json[offset] != '}') {
+      out.write(',');
+    }
+    if (hostConfigOffset >= 0) {
+      out.write(json, offset, hostConfigOffset - offset);
+      offset = hostConfigOffset;
+      if (!portBindings.writeTo(out, PORT_BINDINGS, true) && json[offset] != '}') {
+        out.write(',');
+      }
+    }
+    out.write(json, offset, json.length - offset);
+    return out.toByteArray();
+  }
+
+  @Override
+  public String toString() {
+    return "ContainerConfigTemplate{image=" + config.image()
+           + ", env=" + env.value
+           + ", cmd=" + cmd.value
+           + ", labels=" + labels.value
+           + ", portBindings=" + portBindings.value
+           + "}";
+  }
+
+  private static byte[] fieldName(final String name) {
+    return ("\"" + name + "\":").getBytes(UTF_8);
+  }
+
+  /**
+   * A value that the template replaces, along with its encoding.
+   */
+  private static final class Part<T> {
+
+    private final T value;
+    private final byte[] json;
+
+    private Part(final T value, final byte[] json) {
+      this.value = value;
+      this.json = json;
+    }
+
+    static <T> Part<T> of(final T value) {
+      if (value == null) {
+        return new Part<>(null, null);
+      }
+      try {
+        return new Part<>(value, objectMapper().writeValueAsBytes(value));
+      } catch (JsonProcessingException e) {
+        throw new IllegalArgumentException("Cannot encode " + value, e);
+      }
+    }
+
+    int size() {
+      return (json == null) ? 0 : json.length + 16;
+    }
+
+    /**
+     * Writes the part as a field, unless it is null.
+     *
+     * @return Whether the object it is written to is still empty.
+     */
+    boolean writeTo(final ByteArrayOutputStream out, final byte[] name, final boolean empty) {
+      if (json == null) {
+        return empty;
+      }
+      if (!empty) {
+        out.write(',');
+      }
+      out.write(name, 0, name.length);
+      out.write(json, 0, json.length);
+      return false;
+    }
+  }
+}
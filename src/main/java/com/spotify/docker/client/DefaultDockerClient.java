@@ -33,6 +33,7 @@ import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
 import static com.spotify.docker.client.VersionCompare.compareVersion;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singletonMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static javax.ws.rs.HttpMethod.DELETE;
 import static javax.ws.rs.HttpMethod.GET;
@@ -45,6 +46,7 @@ import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
 import static javax.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
@@ -52,6 +54,7 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -133,7 +136,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
-import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
@@ -151,6 +153,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.ws.rs.ProcessingException;
@@ -166,6 +171,8 @@ import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import org.apache.commons.compress.utils.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -175,8 +182,8 @@ import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.glassfish.hk2.api.MultiException;
 import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
@@ -335,7 +342,10 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   private static final GenericType<List<Secret>> SECRET_LIST = new GenericType<List<Secret>>() { };
 
   private final Client client;
-  private final Client noTimeoutClient;
+  private final RequestConfig requestConfig;
+  private final ApacheDockerTransport transport;
+  private final LaneConnectionManager connectionManager;
+  private final RequestListener requestListener;
 
   private final URI uri;
   private final String apiVersion;
@@ -343,12 +353,43 @@ public class DefaultDockerClient implements DockerClient, Closeable {
 
   private final Map<String, Object> headers;
 
+  // Set on the clients returned by withReadTimeout and withDeadline, -1 where not set
+  private final long readTimeoutMillis;
+  private final long deadlineMillis;
+  private final boolean view;
+
   Client getClient() {
     return client;
   }
 
-  Client getNoTimeoutClient() {
-    return noTimeoutClient;
+  /**
+   * A {@link DockerTransport} that shares this client's connection pool, timeouts and headers.
+   * It is closed together with the client.
+   *
+   * @return The transport.
+   */
+  public DockerTransport transport() {
+    return transport;
+  }
+
+  /**
+   * Report how many pooled connections a lane holds and how many calls are waiting for one,
+   * for sizing {@link Builder#connectionPoolSize(int)} and
+   * {@link Builder#streamingConnectionLimit(int)}.
+   *
+   * @param lane The lane.
+   * @return A snapshot of the lane's connections.
+   */
+  public ConnectionLaneStats laneStats(final ConnectionLane lane) {
+    return connectionManager.stats(lane);
+  }
+
+  /**
+   * @return Leased, pending, available and maximum connections of the connection pool shared by
+   *     all calls of this client.
+   */
+  public PoolStats poolStats() {
+    return connectionManager.getTotalStats();
   }
 
   /**
@@ -400,17 +441,18 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       this.uri = originalUri;
     }
 
-    final PoolingHttpClientConnectionManager cm = getConnectionManager(builder);
-    final PoolingHttpClientConnectionManager noTimeoutCm = getConnectionManager(builder);
+    final LaneConnectionManager cm = getConnectionManager(builder);
+    this.connectionManager = cm;
+    this.requestListener = builder.requestListener;
 
-    final RequestConfig requestConfig = RequestConfig.custom()
+    this.requestConfig = RequestConfig.custom()
         .setConnectionRequestTimeout((int) builder.connectTimeoutMillis)
         .setConnectTimeout((int) builder.connectTimeoutMillis)
         .setSocketTimeout((int) builder.readTimeoutMillis)
         .build();
 
     final ClientConfig config = updateProxy(defaultConfig, builder)
-        .connectorProvider(new ApacheConnectorProvider())
+        .connectorProvider(new LaneConnectorProvider(new ApacheConnectorProvider()))
         .property(ApacheClientProperties.CONNECTION_MANAGER, cm)
         .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
 
@@ -424,19 +466,85 @@ public class DefaultDockerClient implements DockerClient, Closeable {
         .withConfig(config)
         .build();
 
-    // ApacheConnector doesn't respect per-request timeout settings.
-    // Workaround: instead create a client with infinite read timeout,
-    // and use it for waitContainer, stopContainer, attachContainer, logs, and build
-    final RequestConfig noReadTimeoutRequestConfig = RequestConfig.copy(requestConfig)
-        .setSocketTimeout((int) NO_TIMEOUT)
-        .build();
-    this.noTimeoutClient = ClientBuilder.newBuilder()
-        .withConfig(config)
-        .property(ApacheClientProperties.CONNECTION_MANAGER, noTimeoutCm)
-        .property(ApacheClientProperties.REQUEST_CONFIG, noReadTimeoutRequestConfig)
-        .build();
-
     this.headers = new HashMap<>(builder.headers());
+
+    // The Jersey client owns the pool; the transport borrows connections from it.
+    this.transport = new ApacheDockerTransport(this.uri, apiVersion, headers, cm, true,
+                                               requestConfig);
+
+    this.readTimeoutMillis = -1;
+    this.deadlineMillis = -1;
+    this.view = false;
+  }
+
+  /**
+   * Create a client that shares everything with another one, but has its own timeouts.
+   */
+  private DefaultDockerClient(final DefaultDockerClient parent, final long readTimeoutMillis,
+                              final long deadlineMillis) {
+    this.client = parent.client;
+    this.requestConfig = parent.requestConfig;
+    this.transport = parent.transport;
+    this.connectionManager = parent.connectionManager;
+    this.requestListener = parent.requestListener;
+    this.uri = parent.uri;
+    this.apiVersion = parent.apiVersion;
+    this.registryAuthSupplier = parent.registryAuthSupplier;
+    this.headers = parent.headers;
+    this.readTimeoutMillis = readTimeoutMillis;
+    this.deadlineMillis = deadlineMillis;
+    this.view = true;
+  }
+
+  /**
+   * Returns a client whose calls time out after the given time without data from Docker. This
+   * includes calls that otherwise wait indefinitely, such as waitContainer, stopContainer, logs,
+   * attachContainer, build, execStart and events. For example, to give up on a container that
+   * has not exited within a minute:
+   *
+   * <pre>
+   * docker.withReadTimeout(1, TimeUnit.MINUTES).waitContainer(id);
+   * </pre>
+   *
+   * <p>The returned client shares the connection pool, configuration and registry auth of this
+   * one and can be kept and used concurrently with it. Closing it does nothing; it stops working
+   * when this client is closed.</p>
+   *
+   * @param timeout The read timeout, or 0 to wait indefinitely.
+   * @param unit The unit of {@code timeout}.
+   * @return A client with the given read timeout.
+   */
+  public DefaultDockerClient withReadTimeout(final long timeout, final TimeUnit unit) {
+    checkArgument(timeout >= 0, "timeout must not be negative");
+    return new DefaultDockerClient(this, unit.toMillis(timeout), deadlineMillis);
+  }
+
+  /**
+   * Returns a client whose calls each give up after the given time, e.g. to bound a wait for a
+   * container to exit while other calls keep their usual timeouts:
+   *
+   * <pre>
+   * docker.withDeadline(10, TimeUnit.MINUTES).waitContainer(id);
+   * </pre>
+   *
+   * <p>Calls that return a decoded result, such as waitContainer or inspectContainer, fail with a
+   * {@link DockerTimeoutException} once the deadline has passed. Streamed responses, those of
+   * logs, attachContainer, build, execStart and events, are not cut off while data keeps coming:
+   * they fail when none arrives for as long as the deadline, or the read timeout if that is
+   * shorter. The read timeout of every call is capped at the deadline, so that no connection is
+   * held much longer than it.</p>
+   *
+   * <p>The returned client shares the connection pool, configuration and registry auth of this
+   * one and can be kept and used concurrently with it. Closing it does nothing; it stops working
+   * when this client is closed.</p>
+   *
+   * @param timeout The deadline of each call, from when it is sent.
+   * @param unit The unit of {@code timeout}.
+   * @return A client with the given deadline.
+   */
+  public DefaultDockerClient withDeadline(final long timeout, final TimeUnit unit) {
+    checkArgument(timeout > 0, "timeout must be positive");
+    return new DefaultDockerClient(this, readTimeoutMillis, unit.toMillis(timeout));
   }
 
   private ClientConfig updateProxy(ClientConfig config, Builder builder) {
@@ -484,18 +592,15 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     return fromNullable(uri.getHost()).or("localhost");
   }
 
-  private PoolingHttpClientConnectionManager getConnectionManager(Builder builder) {
-    final PoolingHttpClientConnectionManager cm =
-        new PoolingHttpClientConnectionManager(getSchemeRegistry(builder));
-
+  static LaneConnectionManager getConnectionManager(final Builder builder) {
     // Use all available connections instead of artificially limiting ourselves to 2 per server.
-    cm.setMaxTotal(builder.connectionPoolSize);
-    cm.setDefaultMaxPerRoute(cm.getMaxTotal());
-
-    return cm;
+    return new LaneConnectionManager(getSchemeRegistry(builder), builder.connectionPoolSize,
+                                     builder.streamingConnectionLimit(),
+                                     builder.prioritizeControlLeases,
+                                     builder.requestListener);
   }
 
-  private Registry<ConnectionSocketFactory> getSchemeRegistry(final Builder builder) {
+  private static Registry<ConnectionSocketFactory> getSchemeRegistry(final Builder builder) {
     final SSLConnectionSocketFactory https;
     if (builder.dockerCertificatesStore == null) {
       https = SSLConnectionSocketFactory.getSocketFactory();
@@ -510,16 +615,35 @@ public class DefaultDockerClient implements DockerClient, Closeable {
         .register("http", PlainConnectionSocketFactory.getSocketFactory());
 
     if (builder.uri.getScheme().equals(UNIX_SCHEME)) {
-      registryBuilder.register(UNIX_SCHEME, new UnixConnectionSocketFactory(builder.uri));
+      registryBuilder.register(UNIX_SCHEME, unixConnectionSocketFactory(builder.uri));
     }
 
     return registryBuilder.build();
   }
 
+  private static ConnectionSocketFactory unixConnectionSocketFactory(final URI uri) {
+    if (NativeUnixConnectionSocketFactory.isSupported()) {
+      try {
+        return new NativeUnixConnectionSocketFactory(uri);
+      } catch (IOException | RuntimeException e) {
+        log.warn("Falling back to jnr-unixsocket for {}", uri, e);
+      }
+    }
+    return new UnixConnectionSocketFactory(uri);
+  }
+
   @Override
   public void close() {
+    if (view) {
+      // The pool belongs to the client this one was created from
+      return;
+    }
+    try {
+      transport.close();
+    } catch (IOException e) {
+      log.warn("Failed to close transport", e);
+    }
     client.close();
-    noTimeoutClient.close();
   }
 
   @Override
@@ -552,9 +676,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public List<Container> listContainers(final ListContainersParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource()
-        .path("containers").path("json");
-    resource = addParameters(resource, params);
+    final WebTarget resource = listContainersResource(params);
 
     try {
       return request(GET, CONTAINER_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
@@ -568,6 +690,44 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     }
   }
 
+  @Override
+  public <T> List<T> listContainers(final Projection<T> projection,
+                                    final ListContainersParam... params)
+      throws DockerException, InterruptedException {
+    return drain(streamContainers(projection, params));
+  }
+
+  @Override
+  public ListStream<Container> streamContainers(final ListContainersParam... params)
+      throws DockerException, InterruptedException {
+    return streamContainers(Projection.all(Container.class), params);
+  }
+
+  @Override
+  public <T> ListStream<T> streamContainers(final Projection<T> projection,
+                                            final ListContainersParam... params)
+      throws DockerException, InterruptedException {
+    final WebTarget resource = listContainersResource(params);
+
+    try {
+      return stream(resource, projection);
+    } catch (DockerRequestException e) {
+      switch (e.status()) {
+        case 400:
+          throw new BadParamException(getQueryParamMap(resource), e);
+        default:
+          throw e;
+      }
+    }
+  }
+
+  private WebTarget listContainersResource(final ListContainersParam... params)
+      throws DockerException {
+    final WebTarget resource = resource()
+        .path("containers").path("json");
+    return addParameters(resource, params);
+  }
+
   private WebTarget addParameters(WebTarget resource, final Param... params)
       throws DockerException {
     final Map<String, List<String>> filters = newHashMap();
@@ -646,12 +806,22 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public List<Image> listImages(final ListImagesParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource()
-        .path("images").path("json");
-    resource = addParameters(resource, params);
+    final WebTarget resource = listImagesResource(params);
     return request(GET, IMAGE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
   }
 
+  @Override
+  public ListStream<Image> streamImages(final ListImagesParam... params)
+      throws DockerException, InterruptedException {
+    return stream(listImagesResource(params), Image.class);
+  }
+
+  private WebTarget listImagesResource(final ListImagesParam... params) throws DockerException {
+    final WebTarget resource = resource()
+        .path("images").path("json");
+    return addParameters(resource, params);
+  }
+
   @Override
   public ContainerCreation createContainer(final ContainerConfig config)
       throws DockerException, InterruptedException {
@@ -661,6 +831,24 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public ContainerCreation createContainer(final ContainerConfig config, final String name)
       throws DockerException, InterruptedException {
+    log.debug("Creating container with ContainerConfig: {}", config);
+
+    return createContainer(name, Entity.json(config), config.image());
+  }
+
+  @Override
+  public ContainerCreation createContainer(final ContainerConfigTemplate template,
+                                           final String name)
+      throws DockerException, InterruptedException {
+    log.debug("Creating container with {}", template);
+
+    return createContainer(name, Entity.entity(template.toJson(), APPLICATION_JSON_TYPE),
+                           template.image());
+  }
+
+  private ContainerCreation createContainer(final String name, final Entity<?> config,
+                                            final String image)
+      throws DockerException, InterruptedException {
     WebTarget resource = resource()
         .path("containers").path("create");
 
@@ -670,15 +858,13 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       resource = resource.queryParam("name", name);
     }
 
-    log.debug("Creating container with ContainerConfig: {}", config);
-
     try {
       return request(POST, ContainerCreation.class, resource, resource
-          .request(APPLICATION_JSON_TYPE), Entity.json(config));
+          .request(APPLICATION_JSON_TYPE), config);
     } catch (DockerRequestException e) {
       switch (e.status()) {
         case 404:
-          throw new ImageNotFoundException(config.image(), e);
+          throw new ImageNotFoundException(image, e);
         case 406:
           throw new DockerException("Impossible to attach. Container not running.", e);
         default:
@@ -777,10 +963,10 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public void stopContainer(final String containerId, final int secondsToWaitBeforeKilling)
       throws DockerException, InterruptedException {
     try {
-      final WebTarget resource = noTimeoutResource()
+      final WebTarget resource = resource()
           .path("containers").path(containerId).path("stop")
           .queryParam("t", String.valueOf(secondsToWaitBeforeKilling));
-      request(POST, resource, resource.request());
+      request(POST, resource, longRunning(resource.request()));
     } catch (DockerRequestException e) {
       switch (e.status()) {
         case 304: // already stopped, so we're cool
@@ -797,11 +983,11 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public ContainerExit waitContainer(final String containerId)
       throws DockerException, InterruptedException {
     try {
-      final WebTarget resource = noTimeoutResource()
+      final WebTarget resource = resource()
           .path("containers").path(containerId).path("wait");
       // Wait forever
       return request(POST, ContainerExit.class, resource,
-                     resource.request(APPLICATION_JSON_TYPE));
+                     longRunning(resource.request(APPLICATION_JSON_TYPE)));
     } catch (DockerRequestException e) {
       switch (e.status()) {
         case 404:
@@ -1024,6 +1210,38 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     }
   }
 
+  @Override
+  public <T> T inspectContainer(final String containerId, final Projection<T> projection)
+      throws DockerException, InterruptedException {
+    try {
+      final WebTarget resource = resource().path("containers").path(containerId).path("json");
+      return read(resource, projection);
+    } catch (DockerRequestException e) {
+      switch (e.status()) {
+        case 404:
+          throw new ContainerNotFoundException(containerId, e);
+        default:
+          throw e;
+      }
+    }
+  }
+
+  @Override
+  public ContainerInfo inspectContainerLazily(final String containerId)
+      throws DockerException, InterruptedException {
+    try {
+      final WebTarget resource = resource().path("containers").path(containerId).path("json");
+      return new LazyContainerInfo(readRaw(resource));
+    } catch (DockerRequestException e) {
+      switch (e.status()) {
+        case 404:
+          throw new ContainerNotFoundException(containerId, e);
+        default:
+          throw e;
+      }
+    }
+  }
+
   @Override
   public ContainerCreation commitContainer(final String containerId,
                                            final String repo,
@@ -1407,7 +1625,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       throws DockerException, InterruptedException, IOException {
     checkNotNull(handler, "handler");
 
-    WebTarget resource = noTimeoutResource().path("build");
+    WebTarget resource = resource().path("build");
 
     for (final BuildParam param : params) {
       resource = resource.queryParam(param.name(), param.value());
@@ -1426,7 +1644,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
          final InputStream fileStream = Files.newInputStream(compressedDirectory.file());
          final ProgressStream build =
              request(POST, ProgressStream.class, resource,
-                     resource.request(APPLICATION_JSON_TYPE)
+                     longRunning(resource.request(APPLICATION_JSON_TYPE))
                          .header("X-Registry-Config",
                                  authRegistryHeader(registryConfigs)),
                      Entity.entity(fileStream, "application/tar"))) {
@@ -1459,6 +1677,22 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     }
   }
 
+  @Override
+  public ImageInfo inspectImageLazily(final String image)
+      throws DockerException, InterruptedException {
+    try {
+      final WebTarget resource = resource().path("images").path(image).path("json");
+      return new LazyImageInfo(readRaw(resource));
+    } catch (DockerRequestException e) {
+      switch (e.status()) {
+        case 404:
+          throw new ImageNotFoundException(image, e);
+        default:
+          throw e;
+      }
+    }
+  }
+
   @Override
   public List<RemovedImage> removeImage(String image)
       throws DockerException, InterruptedException {
@@ -1507,7 +1741,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public LogStream logs(final String containerId, final LogsParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = noTimeoutResource()
+    WebTarget resource = resource()
         .path("containers").path(containerId)
         .path("logs");
 
@@ -1521,13 +1755,15 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public EventStream events(EventsParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = noTimeoutResource().path("events");
+    WebTarget resource = resource().path("events");
     resource = addParameters(resource, params);
 
     try {
-      final CloseableHttpClient client = (CloseableHttpClient) ApacheConnectorProvider
-          .getHttpClient(noTimeoutClient);
-      final CloseableHttpResponse response = client.execute(new HttpGet(resource.getUri()));
+      final HttpGet request = new HttpGet(resource.getUri());
+      request.setConfig(RequestConfig.copy(requestConfig)
+                            .setSocketTimeout(readTimeout(NO_TIMEOUT))
+                            .build());
+      final CloseableHttpResponse response = transport.execute(request, ConnectionLane.STREAMING);
       return new EventStream(response, objectMapper());
     } catch (IOException exception) {
       throw new DockerException(exception);
@@ -1539,7 +1775,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                                    final AttachParameter... params) throws DockerException,
                                                                            InterruptedException {
     checkNotNull(containerId, "containerId");
-    WebTarget resource = noTimeoutResource().path("containers").path(containerId).path("attach");
+    WebTarget resource = resource().path("containers").path(containerId).path("attach");
 
     for (final AttachParameter param : params) {
       resource = resource.queryParam(param.name().toLowerCase(Locale.ROOT), String.valueOf(true));
@@ -1552,7 +1788,8 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                                  final String containerId)
       throws DockerException, InterruptedException {
     try {
-      final Invocation.Builder request = resource.request("application/vnd.docker.raw-stream");
+      final Invocation.Builder request =
+          longRunning(resource.request("application/vnd.docker.raw-stream"));
       return request(method, LogStream.class, resource, request);
     } catch (DockerRequestException e) {
       switch (e.status()) {
@@ -1570,7 +1807,8 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                                         final String serviceId)
       throws DockerException, InterruptedException {
     try {
-      final Invocation.Builder request = resource.request("application/vnd.docker.raw-stream");
+      final Invocation.Builder request =
+          longRunning(resource.request("application/vnd.docker.raw-stream"));
       return request(method, LogStream.class, resource, request);
     } catch (DockerRequestException e) {
       switch (e.status()) {
@@ -1596,9 +1834,9 @@ public class DefaultDockerClient implements DockerClient, Closeable {
 
     final WebTarget resource = resource().path("containers").path(containerId).path("exec");
 
-    final StringWriter writer = new StringWriter();
+    final Entity<byte[]> entity;
     try {
-      final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
+      final JsonGenerator generator = JsonEntities.generator();
       generator.writeStartObject();
 
       for (final ExecCreateParam param : params) {
@@ -1616,14 +1854,14 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       generator.writeEndArray();
 
       generator.writeEndObject();
-      generator.close();
+      entity = JsonEntities.entity(generator);
     } catch (IOException e) {
       throw new DockerException(e);
     }
 
     try {
       return request(POST, ExecCreation.class, resource, resource.request(APPLICATION_JSON_TYPE),
-                     Entity.json(writer.toString()));
+                     entity);
     } catch (DockerRequestException e) {
       switch (e.status()) {
         case 404:
@@ -1640,11 +1878,11 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public LogStream execStart(final String execId, final ExecStartParameter... params)
       throws DockerException, InterruptedException {
-    final WebTarget resource = noTimeoutResource().path("exec").path(execId).path("start");
+    final WebTarget resource = resource().path("exec").path(execId).path("start");
 
-    final StringWriter writer = new StringWriter();
+    final Entity<byte[]> entity;
     try {
-      final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
+      final JsonGenerator generator = JsonEntities.generator();
       generator.writeStartObject();
 
       for (final ExecStartParameter param : params) {
@@ -1652,15 +1890,15 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       }
 
       generator.writeEndObject();
-      generator.close();
+      entity = JsonEntities.entity(generator);
     } catch (IOException e) {
       throw new DockerException(e);
     }
 
     try {
       return request(POST, LogStream.class, resource,
-                     resource.request("application/vnd.docker.raw-stream"),
-                     Entity.json(writer.toString()));
+                     longRunning(resource.request("application/vnd.docker.raw-stream")),
+                     entity);
     } catch (DockerRequestException e) {
       switch (e.status()) {
         case 404:
@@ -1928,6 +2166,24 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public List<Service> listServices(final Service.Criteria criteria)
       throws DockerException, InterruptedException {
     assertApiVersionIsAbove("1.24");
+    final WebTarget resource = listServicesResource(criteria);
+    return request(GET, SERVICE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public ListStream<Service> streamServices() throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(resource().path("services"), Service.class);
+  }
+
+  @Override
+  public ListStream<Service> streamServices(final Service.Criteria criteria)
+      throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(listServicesResource(criteria), Service.class);
+  }
+
+  private WebTarget listServicesResource(final Service.Criteria criteria) throws DockerException {
     final Map<String, List<String>> filters = new HashMap<>();
 
     if (criteria.serviceId() != null) {
@@ -1950,9 +2206,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       filters.put("label", labels);
     }
 
-    WebTarget resource = resource().path("services");
-    resource = resource.queryParam("filters", urlEncodeFilters(filters));
-    return request(GET, SERVICE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+    return resource().path("services").queryParam("filters", urlEncodeFilters(filters));
   }
 
   @Override
@@ -1975,7 +2229,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public LogStream serviceLogs(String serviceId, LogsParam... params)
           throws DockerException, InterruptedException {
     assertApiVersionIsAbove("1.25");
-    WebTarget resource = noTimeoutResource()
+    WebTarget resource = resource()
             .path("services").path(serviceId)
             .path("logs");
 
@@ -2013,6 +2267,38 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public List<Task> listTasks(final Task.Criteria criteria)
       throws DockerException, InterruptedException {
     assertApiVersionIsAbove("1.24");
+    final WebTarget resource = listTasksResource(criteria);
+    return request(GET, TASK_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public <T> List<T> listTasks(final Projection<T> projection, final Task.Criteria criteria)
+      throws DockerException, InterruptedException {
+    return drain(streamTasks(projection, criteria));
+  }
+
+  @Override
+  public ListStream<Task> streamTasks() throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(resource().path("tasks"), Task.class);
+  }
+
+  @Override
+  public ListStream<Task> streamTasks(final Task.Criteria criteria)
+      throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(listTasksResource(criteria), Task.class);
+  }
+
+  @Override
+  public <T> ListStream<T> streamTasks(final Projection<T> projection,
+                                       final Task.Criteria criteria)
+      throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(listTasksResource(criteria), projection);
+  }
+
+  private WebTarget listTasksResource(final Task.Criteria criteria) throws DockerException {
     final Map<String, List<String>> filters = new HashMap<>();
 
     if (criteria.taskId() != null) {
@@ -2034,9 +2320,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       filters.put("desired-state", Collections.singletonList(criteria.desiredState()));
     }
 
-    WebTarget resource = resource().path("tasks");
-    resource = resource.queryParam("filters", urlEncodeFilters(filters));
-    return request(GET, TASK_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+    return resource().path("tasks").queryParam("filters", urlEncodeFilters(filters));
   }
 
   @Override
@@ -2187,6 +2471,24 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public List<Node> listNodes(Node.Criteria criteria) throws DockerException, InterruptedException {
     assertApiVersionIsAbove("1.24");
+    final WebTarget resource = listNodesResource(criteria);
+    return request(GET, NODE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public ListStream<Node> streamNodes() throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(resource().path("nodes"), Node.class);
+  }
+
+  @Override
+  public ListStream<Node> streamNodes(final Node.Criteria criteria)
+      throws DockerException, InterruptedException {
+    assertApiVersionIsAbove("1.24");
+    return stream(listNodesResource(criteria), Node.class);
+  }
+
+  private WebTarget listNodesResource(final Node.Criteria criteria) throws DockerException {
     final Map<String, List<String>> filters = new HashMap<>();
 
     if (criteria.nodeId() != null) {
@@ -2205,9 +2507,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       filters.put("role", Collections.singletonList(criteria.nodeRole()));
     }
 
-    WebTarget resource = resource().path("nodes");
-    resource = resource.queryParam("filters", urlEncodeFilters(filters));
-    return request(GET, NODE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+    return resource().path("nodes").queryParam("filters", urlEncodeFilters(filters));
   }
 
   @Override
@@ -2383,11 +2683,16 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public List<Network> listNetworks(final ListNetworksParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource().path("networks");
-    resource = addParameters(resource, params);
+    final WebTarget resource = addParameters(resource().path("networks"), params);
     return request(GET, NETWORK_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
   }
 
+  @Override
+  public ListStream<Network> streamNetworks(final ListNetworksParam... params)
+      throws DockerException, InterruptedException {
+    return stream(addParameters(resource().path("networks"), params), Network.class);
+  }
+
   @Override
   public Network inspectNetwork(String networkId) throws DockerException, InterruptedException {
     final WebTarget resource = resource().path("networks").path(networkId);
@@ -2627,19 +2932,142 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     return target;
   }
 
-  private WebTarget noTimeoutResource() {
-    final WebTarget target = noTimeoutClient.target(uri);
-    if (!isNullOrEmpty(apiVersion)) {
-      return target.path(apiVersion);
+  /**
+   * Lifts the read timeout for calls that may legitimately block for a long time, such as
+   * waitContainer, stopContainer, attachContainer, logs and build, unless this client was given
+   * one with {@link #withReadTimeout} or {@link #withDeadline}, and moves them to the streaming
+   * lane. ApacheConnector resolves the read timeout property per request, so these share the
+   * connection pool with all other calls, within the limit of the streaming lane.
+   *
+   * <p>The properties are set on the request, not on the WebTarget: a WebTarget with properties of
+   * its own gets a Jersey runtime and connector of its own, which is slow to build and shuts the
+   * shared connection manager down when it is finalized.</p>
+   */
+  private Invocation.Builder longRunning(final Invocation.Builder request) {
+    return request
+        .property(ClientProperties.READ_TIMEOUT, readTimeout(NO_TIMEOUT))
+        .property(LaneConnectorProvider.LANE_PROPERTY, ConnectionLane.STREAMING);
+  }
+
+  /**
+   * The read timeout of a call that would otherwise have the given one: the timeout of
+   * {@link #withReadTimeout} if set, at most the deadline of {@link #withDeadline}.
+   */
+  private int readTimeout(final long defaultMillis) {
+    long timeout = readTimeoutMillis >= 0 ? readTimeoutMillis : defaultMillis;
+    if (deadlineMillis >= 0 && (timeout == NO_TIMEOUT || timeout > deadlineMillis)) {
+      timeout = deadlineMillis;
     }
-    return target;
+    return (int) Math.min(timeout, Integer.MAX_VALUE);
+  }
+
+  private <T> ListStream<T> stream(final WebTarget resource, final Class<T> type)
+      throws DockerException, InterruptedException {
+    return stream(resource, Projection.all(type));
+  }
+
+  /**
+   * Sends a GET for a JSON array and returns its elements as a stream that decodes them on demand.
+   * Unlike {@link #request(String, GenericType, WebTarget, Invocation.Builder)} this bypasses
+   * Jersey, so the response can be handed out before it has been read.
+   */
+  private <T> ListStream<T> stream(final WebTarget resource, final Projection<T> projection)
+      throws DockerException, InterruptedException {
+    return new ListStream<>(get(resource), projection);
+  }
+
+  /**
+   * Sends a GET and decodes the projected fields of the response.
+   */
+  private <T> T read(final WebTarget resource, final Projection<T> projection)
+      throws DockerException, InterruptedException {
+    try (final CloseableHttpResponse response = get(resource)) {
+      final HttpEntity entity = response.getEntity();
+      final T value;
+      try (final JsonParser parser = objectMapper().getFactory().createParser(
+          entity.getContent())) {
+        value = parser.nextToken() == null ? null : projection.read(parser);
+      }
+      EntityUtils.consume(entity);
+      return value;
+    } catch (IOException e) {
+      throw failed(GET, resource, ioFailure(GET, resource, e));
+    }
+  }
+
+  /**
+   * Sends a GET and keeps the JSON object it returns undecoded.
+   */
+  private RawJsonObject readRaw(final WebTarget resource)
+      throws DockerException, InterruptedException {
+    try (final CloseableHttpResponse response = get(resource)) {
+      return RawJsonObject.parse(EntityUtils.toByteArray(response.getEntity()));
+    } catch (IOException e) {
+      throw failed(GET, resource, ioFailure(GET, resource, e));
+    }
+  }
+
+  private static <T> List<T> drain(final ListStream<T> stream) {
+    try {
+      return ImmutableList.copyOf(stream);
+    } finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Sends a GET through the transport and returns the response if it succeeded.
+   */
+  private CloseableHttpResponse get(final WebTarget resource)
+      throws DockerException, InterruptedException {
+    final HttpGet request = new HttpGet(resource.getUri());
+    final int readTimeout = readTimeout(requestConfig.getSocketTimeout());
+    if (readTimeout != requestConfig.getSocketTimeout()) {
+      request.setConfig(RequestConfig.copy(requestConfig).setSocketTimeout(readTimeout).build());
+    }
+    request.addHeader(HttpHeaders.ACCEPT, APPLICATION_JSON);
+    for (final Map.Entry<String, Object> header : headers.entrySet()) {
+      request.addHeader(header.getKey(), String.valueOf(header.getValue()));
+    }
+
+    final CloseableHttpResponse response;
+    try {
+      response = transport.execute(request, ConnectionLane.CONTROL);
+    } catch (IOException e) {
+      throw failed(GET, resource, ioFailure(GET, resource, e));
+    }
+
+    final int status = response.getStatusLine().getStatusCode();
+    if (status / 100 != 2) {
+      String message = null;
+      try {
+        message = EntityUtils.toString(response.getEntity(), UTF_8);
+      } catch (IOException | RuntimeException e) {
+        log.debug("Failed to read error response of GET {}", resource, e);
+      } finally {
+        IOUtils.closeQuietly(response);
+      }
+      throw failed(GET, resource,
+                   new DockerRequestException(GET, resource.getUri(), status, message, null));
+    }
+    return response;
+  }
+
+  private static Exception ioFailure(final String method, final WebTarget resource,
+                                     final IOException ex) {
+    if ((ex instanceof SocketTimeoutException) || (ex instanceof ConnectTimeoutException)) {
+      return new DockerTimeoutException(method, resource.getUri(), ex);
+    } else if (ex instanceof InterruptedIOException) {
+      return new InterruptedException("Interrupted: " + method + " " + resource);
+    }
+    return new DockerException(ex);
   }
 
   private <T> T request(final String method, final GenericType<T> type,
                         final WebTarget resource, final Invocation.Builder request)
       throws DockerException, InterruptedException {
     try {
-      return headers(request).async().method(method, type).get();
+      return await(method, resource, headers(request).async().method(method, type), false);
     } catch (ExecutionException | MultiException e) {
       throw propagate(method, resource, e);
     }
@@ -2649,7 +3077,8 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                         final WebTarget resource, final Invocation.Builder request)
       throws DockerException, InterruptedException {
     try {
-      return headers(request).async().method(method, clazz).get();
+      return await(method, resource, headers(request).async().method(method, clazz),
+                   Closeable.class.isAssignableFrom(clazz));
     } catch (ExecutionException | MultiException e) {
       throw propagate(method, resource, e);
     }
@@ -2660,7 +3089,8 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                         final Entity<?> entity)
       throws DockerException, InterruptedException {
     try {
-      return headers(request).async().method(method, entity, clazz).get();
+      return await(method, resource, headers(request).async().method(method, entity, clazz),
+                   Closeable.class.isAssignableFrom(clazz));
     } catch (ExecutionException | MultiException e) {
       throw propagate(method, resource, e);
     }
@@ -2671,12 +3101,31 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                        final Invocation.Builder request)
       throws DockerException, InterruptedException {
     try {
-      headers(request).async().method(method, String.class).get();
+      await(method, resource, headers(request).async().method(method, String.class), false);
     } catch (ExecutionException | MultiException e) {
       throw propagate(method, resource, e);
     }
   }
 
+  /**
+   * Waits for the result of a request, until the deadline of {@link #withDeadline} if set. A
+   * stream is waited for without one, since once given up on it would hold its connection until
+   * it was read; the read timeout, which the deadline caps, bounds it instead.
+   */
+  private <T> T await(final String method, final WebTarget resource, final Future<T> result,
+                      final boolean stream)
+      throws DockerException, InterruptedException, ExecutionException {
+    if (deadlineMillis < 0 || stream) {
+      return result.get();
+    }
+    try {
+      return result.get(deadlineMillis, MILLISECONDS);
+    } catch (TimeoutException e) {
+      result.cancel(true);
+      throw failed(method, resource, new DockerTimeoutException(method, resource.getUri(), e));
+    }
+  }
+
   private Invocation.Builder headers(final Invocation.Builder request) {
     final Set<Map.Entry<String, Object>> entries = headers.entrySet();
 
@@ -2684,6 +3133,14 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       request.header(entry.getKey(), entry.getValue());
     }
 
+    // Only differs on a client from withReadTimeout or withDeadline. A default rather than the
+    // read timeout itself, so that what longRunning sets wins. Setting it on the target instead
+    // would give each target a Jersey runtime of its own, see longRunning.
+    final int readTimeout = readTimeout(requestConfig.getSocketTimeout());
+    if (readTimeout != requestConfig.getSocketTimeout()) {
+      request.property(LaneConnectorProvider.DEFAULT_READ_TIMEOUT_PROPERTY, readTimeout);
+    }
+
     return request;
   }
 
@@ -2710,18 +3167,43 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       cause = cause.getCause();
     }
 
+    final Exception error;
     if (response != null) {
-      throw new DockerRequestException(method, resource.getUri(), response.getStatus(),
-                                       message(response), cause);
+      error = new DockerRequestException(method, resource.getUri(), response.getStatus(),
+                                         message(response), cause);
     } else if ((cause instanceof SocketTimeoutException)
                || (cause instanceof ConnectTimeoutException)) {
-      throw new DockerTimeoutException(method, resource.getUri(), ex);
+      error = new DockerTimeoutException(method, resource.getUri(), ex);
     } else if ((cause instanceof InterruptedIOException)
                || (cause instanceof InterruptedException)) {
-      throw new InterruptedException("Interrupted: " + method + " " + resource);
+      error = new InterruptedException("Interrupted: " + method + " " + resource);
     } else {
-      throw new DockerException(ex);
+      error = new DockerException(ex);
+    }
+
+    throw failed(method, resource, error);
+  }
+
+  /**
+   * Tells the request listener about a failed request and returns the error, which must be a
+   * {@link DockerException} or {@link InterruptedException}, to be thrown by the caller. The
+   * InterruptedException is thrown right away.
+   */
+  private DockerException failed(final String method, final WebTarget resource,
+                                 final Exception error) throws InterruptedException {
+    if (requestListener != null) {
+      try {
+        requestListener.requestFailed(
+            method, EndpointTemplates.template(resource.getUri().getRawPath()), error);
+      } catch (RuntimeException e) {
+        log.warn("Request listener failed", e);
+      }
+    }
+
+    if (error instanceof InterruptedException) {
+      throw (InterruptedException) error;
     }
+    return (DockerException) error;
   }
 
   private String message(final Response response) {
@@ -2849,6 +3331,9 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
     private long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
     private int connectionPoolSize = DEFAULT_CONNECTION_POOL_SIZE;
+    private Integer streamingConnectionLimit;
+    private boolean prioritizeControlLeases = true;
+    private RequestListener requestListener;
     private DockerCertificatesStore dockerCertificatesStore;
     private boolean dockerAuth;
     private boolean useProxy = true;
@@ -2942,10 +3427,8 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     }
 
     /**
-     * Set the size of the connection pool for connections to Docker. Note that due to a known
-     * issue, DefaultDockerClient maintains two separate connection pools, each of which is capped
-     * at this size. Therefore, the maximum number of concurrent connections to Docker may be up to
-     * 2 * connectionPoolSize.
+     * Set the size of the connection pool for connections to Docker. Streaming calls may use up
+     * to {@link #streamingConnectionLimit(int)} of these connections.
      *
      * @param connectionPoolSize connection pool size
      * @return Builder
@@ -2955,6 +3438,61 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       return this;
     }
 
+    public int streamingConnectionLimit() {
+      if (streamingConnectionLimit != null) {
+        return streamingConnectionLimit;
+      }
+      return Math.max(1, connectionPoolSize - Math.max(1, connectionPoolSize / 10));
+    }
+
+    /**
+     * Set how many pooled connections streaming calls (logs, attach, events, exec start, build,
+     * wait and stop) may hold at once. The rest of the pool is reserved for control calls, which
+     * would otherwise time out waiting for a connection while many streams are open. Defaults to
+     * the pool size less 10%, and at least one connection is always reserved unless the pool has
+     * only one.
+     *
+     * @param streamingConnectionLimit maximum number of streaming connections
+     * @return Builder
+     */
+    public Builder streamingConnectionLimit(final int streamingConnectionLimit) {
+      this.streamingConnectionLimit = streamingConnectionLimit;
+      return this;
+    }
+
+    public RequestListener requestListener() {
+      return requestListener;
+    }
+
+    /**
+     * Report the timings, status and byte counts of every request, and the exceptions thrown by
+     * failed calls, to a listener. See {@link InMemoryRequestMetrics} for an implementation that
+     * keeps latency histograms per endpoint.
+     *
+     * @param requestListener the listener
+     * @return Builder
+     */
+    public Builder requestListener(final RequestListener requestListener) {
+      this.requestListener = requestListener;
+      return this;
+    }
+
+    public boolean prioritizeControlLeases() {
+      return prioritizeControlLeases;
+    }
+
+    /**
+     * Whether streaming calls should wait while control calls are waiting for a connection, so
+     * that control calls are served first when the pool is exhausted. Enabled by default.
+     *
+     * @param prioritizeControlLeases whether to prioritize control calls
+     * @return Builder
+     */
+    public Builder prioritizeControlLeases(final boolean prioritizeControlLeases) {
+      this.prioritizeControlLeases = prioritizeControlLeases;
+      return this;
+    }
+
     public boolean dockerAuth() {
       return dockerAuth;
     }
@@ -20,21 +20,17 @@
 
 package com.spotify.docker.client;
 
-import static com.google.common.base.Charsets.UTF_8;
-
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
-import com.google.common.collect.AbstractIterator;
-import com.google.common.io.Closer;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.ByteBuffer;
 
-class DefaultLogStream extends AbstractIterator<LogMessage> implements LogStream {
+class DefaultLogStream extends AbstractLogStream {
 
   private final LogReader reader;
+  private final FrameFilter filter;
+  private boolean started;
 
   private DefaultLogStream(final InputStream stream) {
     this(new LogReader(stream));
@@ -42,18 +38,50 @@ class DefaultLogStream extends AbstractIterator<LogMessage> implements LogStream
 
   @VisibleForTesting
   DefaultLogStream(final LogReader reader) {
+    this(reader, null);
+  }
+
+  private DefaultLogStream(final LogReader reader, final FrameFilter filter) {
     this.reader = reader;
+    this.filter = filter;
   }
 
   static DefaultLogStream create(final InputStream stream) {
     return new DefaultLogStream(stream);
   }
 
+  @Override
+  public ExtendedLogStream filter(final LogFilter filter) {
+    if (started || this.filter != null) {
+      return super.filter(filter);
+    }
+    started = true;
+    return new DefaultLogStream(reader, new FrameFilter(filter));
+  }
+
+  @Override
+  void transfer(final BufferedChannelWriter stdout, final BufferedChannelWriter stderr)
+      throws IOException {
+    if (started || filter != null) {
+      super.transfer(stdout, stderr);
+    } else {
+      started = true;
+      reader.transferTo(stdout, stderr);
+    }
+  }
+
+  @Override
+  int available() throws IOException {
+    // A filtered read may go on past what is available, looking for a matching frame
+    return filter == null ? reader.available() : 0;
+  }
+
   @Override
   protected LogMessage computeNext() {
+    started = true;
     final LogMessage message;
     try {
-      message = reader.nextMessage();
+      message = filter == null ? reader.nextMessage() : reader.nextMessage(filter);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -71,69 +99,4 @@ class DefaultLogStream extends AbstractIterator<LogMessage> implements LogStream
       throw Throwables.propagate(e);
     }
   }
-
-  public String readFully() {
-    final StringBuilder stringBuilder = new StringBuilder();
-    while (hasNext()) {
-      stringBuilder.append(UTF_8.decode(next().content()));
-    }
-    return stringBuilder.toString();
-  }
-
-  public void attach(final OutputStream stdout, final OutputStream stderr) throws IOException {
-    attach(stdout, stderr, true);
-  }
-
-  public void attach(final OutputStream stdout, final OutputStream stderr, boolean closeAtEof)
-      throws IOException {
-    final Closer closer = Closer.create();
-    try {
-      if (closeAtEof) {
-        closer.register(stdout);
-        closer.register(stderr);
-      }
-
-      while (this.hasNext()) {
-        final LogMessage message = this.next();
-        final ByteBuffer content = message.content();
-
-        switch (message.stream()) {
-          case STDOUT:
-            writeAndFlush(content, stdout);
-            break;
-          case STDERR:
-            writeAndFlush(content, stderr);
-            break;
-          case STDIN:
-          default:
-            break;
-        }
-      }
-    } catch (Throwable t) {
-      throw closer.rethrow(t);
-    } finally {
-      closer.close();
-    }
-  }
-
-  /** Write the contents of the given ByteBuffer to the OutputStream and flush the stream. */
-  private static void writeAndFlush(
-      final ByteBuffer buffer, final OutputStream outputStream) throws IOException {
-
-    if (buffer.hasArray()) {
-      outputStream.write(buffer.array(), buffer.position(), buffer.remaining());
-    } else {
-      // cannot access underlying byte array, need to copy into a temporary array
-      while (buffer.hasRemaining()) {
-        // figure out how much to read, but use an upper limit of 8kb. LogMessages should be rather
-        // small so we don't expect this to get hit but avoid large temporary buffers, just in case.
-        final int size = Math.min(buffer.remaining(), 8 * 1024);
-        final byte[] chunk = new byte[size];
-        buffer.get(chunk);
-        outputStream.write(chunk);
-      }
-    }
-    outputStream.flush();
-  }
-
 }
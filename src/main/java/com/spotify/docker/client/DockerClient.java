@@ -152,6 +152,58 @@ public interface DockerClient extends Closeable {
   List<Container> listContainers(ListContainersParam... params)
       throws DockerException, InterruptedException;
 
+  /**
+   * List only the given fields of docker containers.
+   *
+   * <p>Fields outside the projection are skipped without being decoded, which makes this cheaper
+   * than {@link #listContainers(ListContainersParam...)} when only a few fields are needed.
+   * Containers that have none of the fields are returned empty.
+   *
+   * @param projection The fields to decode, see {@link Projection}.
+   * @param params Container listing and filtering options.
+   * @param <T> The type the projected fields are decoded to.
+   * @return A list of projected containers.
+   * @throws BadParamException
+   *                            if one or more params were bad (400)
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  <T> List<T> listContainers(Projection<T> projection, ListContainersParam... params)
+      throws DockerException, InterruptedException;
+
+  /**
+   * List docker containers as a stream.
+   *
+   * <p>Unlike {@link #listContainers(ListContainersParam...)}, the elements are decoded one at a
+   * time as the stream is iterated, so only one is held in memory at a time. The stream must be
+   * read to the end or closed.
+   *
+   * @param params Container listing and filtering options.
+   * @return A stream of containers.
+   * @throws BadParamException
+   *                            if one or more params were bad (400)
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Container> streamContainers(ListContainersParam... params)
+      throws DockerException, InterruptedException;
+
+  /**
+   * List only the given fields of docker containers as a stream.
+   *
+   * @param projection The fields to decode, see {@link Projection}.
+   * @param params Container listing and filtering options.
+   * @param <T> The type the projected fields are decoded to.
+   * @return A stream of projected containers.
+   * @throws BadParamException
+   *                            if one or more params were bad (400)
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   * @see #listContainers(Projection, ListContainersParam...)
+   */
+  <T> ListStream<T> streamContainers(Projection<T> projection, ListContainersParam... params)
+      throws DockerException, InterruptedException;
+
   /**
    * List docker images.
    *
@@ -164,6 +216,21 @@ public interface DockerClient extends Closeable {
    */
   List<Image> listImages(ListImagesParam... params) throws DockerException, InterruptedException;
 
+  /**
+   * List docker images as a stream.
+   *
+   * <p>Unlike {@link #listImages(ListImagesParam...)}, the elements are decoded one at a time as
+   * the stream is iterated, so only one is held in memory at a time. The stream must be read to the
+   * end or closed.
+   *
+   * @param params Image listing and filtering options.
+   * @return A stream of images.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Image> streamImages(ListImagesParam... params)
+      throws DockerException, InterruptedException;
+
   /**
    * Inspect a docker container.
    *
@@ -176,6 +243,40 @@ public interface DockerClient extends Closeable {
    */
   ContainerInfo inspectContainer(String containerId) throws DockerException, InterruptedException;
 
+  /**
+   * Inspect only the given fields of a docker container.
+   *
+   * @param containerId The id of the container to inspect.
+   * @param projection The fields to decode, see {@link Projection}.
+   * @param <T> The type the projected fields are decoded to.
+   * @return The projected info about the container, empty if it has none of the fields.
+   * @throws ContainerNotFoundException
+   *                            if container was not found (404)
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  <T> T inspectContainer(String containerId, Projection<T> projection)
+      throws DockerException, InterruptedException;
+
+  /**
+   * Inspect a docker container, decoding its info only as it is read.
+   *
+   * <p>The returned info keeps the JSON response and decodes each field, such as
+   * {@link ContainerInfo#hostConfig()} or {@link ContainerInfo#state()}, the first time it is
+   * accessed. This suits callers that read few of the fields, or that keep many inspections around:
+   * until fields are read, the info takes little more memory than the response itself. Its
+   * {@code equals}, {@code hashCode} and {@code toString} decode every field.</p>
+   *
+   * @param containerId The id of the container to inspect.
+   * @return Info about the container.
+   * @throws ContainerNotFoundException
+   *                            if container was not found (404)
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ContainerInfo inspectContainerLazily(String containerId)
+      throws DockerException, InterruptedException;
+
   /**
    * Create a new image from a container's changes.
    *
@@ -211,6 +312,19 @@ public interface DockerClient extends Closeable {
    */
   ImageInfo inspectImage(String image) throws DockerException, InterruptedException;
 
+  /**
+   * Inspect a docker container image, decoding its info only as it is read.
+   *
+   * @param image The image to inspect.
+   * @return Info about the image.
+   * @throws ImageNotFoundException
+   *                            if image was not found (404)
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   * @see #inspectContainerLazily(String)
+   */
+  ImageInfo inspectImageLazily(String image) throws DockerException, InterruptedException;
+
   /**
    * Remove a docker image.
    *
@@ -839,6 +953,23 @@ public interface DockerClient extends Closeable {
   ContainerCreation createContainer(ContainerConfig config, String name)
       throws DockerException, InterruptedException;
 
+  /**
+   * Create a docker container from a template. Unlike
+   * {@link #createContainer(ContainerConfig, String)} the config is not encoded again for each
+   * container, which makes this cheaper when creating many containers from the same template.
+   *
+   * @param template The container configuration.
+   * @param name   The container name, or null to let Docker choose one.
+   * @return Container creation result with container id and eventual warnings from docker.
+   * @throws ImageNotFoundException
+   *                            if the requested parent image was not found (404)
+   * @throws DockerException   if logs cannot be attached, because container is not running (406),
+   *                              or if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ContainerCreation createContainer(ContainerConfigTemplate template, String name)
+      throws DockerException, InterruptedException;
+
   /**
    * Rename a docker container.
    *
@@ -1634,6 +1765,35 @@ public interface DockerClient extends Closeable {
   List<Service> listServices(Service.Criteria criteria)
           throws DockerException, InterruptedException;
 
+  /**
+   * List all services as a stream. Only available in Docker API &gt;= 1.24.
+   *
+   * <p>Unlike {@link #listServices()}, the elements are decoded one at a time as the stream is
+   * iterated, so only one is held in memory at a time. The stream must be read to the end or
+   * closed.
+   *
+   * @return A stream of services.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Service> streamServices() throws DockerException, InterruptedException;
+
+  /**
+   * List services that match the given criteria as a stream. Only available in Docker API &gt;=
+   * 1.24.
+   *
+   * <p>Unlike {@link #listServices(Service.Criteria)}, the elements are decoded one at a time as
+   * the stream is iterated, so only one is held in memory at a time. The stream must be read to the
+   * end or closed.
+   *
+   * @param criteria Service listing and filtering options.
+   * @return A stream of services.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Service> streamServices(Service.Criteria criteria)
+      throws DockerException, InterruptedException;
+
   /**
    * Remove an existing service. Only available in Docker API &gt;= 1.24.
    *
@@ -1692,6 +1852,62 @@ public interface DockerClient extends Closeable {
   List<Task> listTasks(Task.Criteria criteria)
           throws DockerException, InterruptedException;
 
+  /**
+   * List only the given fields of tasks that match the given criteria. Only available in Docker
+   * API &gt;= 1.24.
+   *
+   * @param projection The fields to decode, see {@link Projection}.
+   * @param criteria {@link Task.Criteria}
+   * @param <T> The type the projected fields are decoded to.
+   * @return A list of projected tasks.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  <T> List<T> listTasks(Projection<T> projection, Task.Criteria criteria)
+      throws DockerException, InterruptedException;
+
+  /**
+   * List all tasks as a stream. Only available in Docker API &gt;= 1.24.
+   *
+   * <p>Unlike {@link #listTasks()}, the elements are decoded one at a time as the stream is
+   * iterated, so only one is held in memory at a time. The stream must be read to the end or
+   * closed.
+   *
+   * @return A stream of tasks.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Task> streamTasks() throws DockerException, InterruptedException;
+
+  /**
+   * List tasks that match the given criteria as a stream. Only available in Docker API &gt;= 1.24.
+   *
+   * <p>Unlike {@link #listTasks(Task.Criteria)}, the elements are decoded one at a time as the
+   * stream is iterated, so only one is held in memory at a time. The stream must be read to the end
+   * or closed.
+   *
+   * @param criteria {@link Task.Criteria}
+   * @return A stream of tasks.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Task> streamTasks(Task.Criteria criteria)
+      throws DockerException, InterruptedException;
+
+  /**
+   * List only the given fields of tasks that match the given criteria as a stream. Only available
+   * in Docker API &gt;= 1.24.
+   *
+   * @param projection The fields to decode, see {@link Projection}.
+   * @param criteria {@link Task.Criteria}
+   * @param <T> The type the projected fields are decoded to.
+   * @return A stream of projected tasks.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  <T> ListStream<T> streamTasks(Projection<T> projection, Task.Criteria criteria)
+      throws DockerException, InterruptedException;
+
   /**
    * Supported parameters for {@link #execStart}.
    */
@@ -1782,6 +1998,21 @@ public interface DockerClient extends Closeable {
   List<Network> listNetworks(ListNetworksParam... params)
       throws DockerException, InterruptedException;
 
+  /**
+   * List all or a subset of the networks as a stream.
+   *
+   * <p>Unlike {@link #listNetworks(ListNetworksParam...)}, the elements are decoded one at a time
+   * as the stream is iterated, so only one is held in memory at a time. The stream must be read to
+   * the end or closed.
+   *
+   * @param params Network listing and filtering options.
+   * @return A stream of networks.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  ListStream<Network> streamNetworks(ListNetworksParam... params)
+      throws DockerException, InterruptedException;
+
   /**
    * Parameters for {@link #listNetworks(ListNetworksParam...)}
    * @since Docker 1.10, API version 1.22
@@ -3000,6 +3231,37 @@ public interface DockerClient extends Closeable {
    */
   List<Node> listNodes(final Node.Criteria criteria) throws DockerException, InterruptedException;
 
+  /**
+   * List swarm nodes as a stream. Only available in Docker API &gt;= 1.24.
+   *
+   * <p>Unlike {@link #listNodes()}, the elements are decoded one at a time as the stream is
+   * iterated, so only one is held in memory at a time. The stream must be read to the end or
+   * closed.
+   *
+   * @return A stream of nodes.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   * @since Docker 1.12, API version 1.24
+   */
+  ListStream<Node> streamNodes() throws DockerException, InterruptedException;
+
+  /**
+   * List swarm nodes that match the given criteria as a stream. Only available in Docker API
+   * &gt;= 1.24.
+   *
+   * <p>Unlike {@link #listNodes(Node.Criteria)}, the elements are decoded one at a time as the
+   * stream is iterated, so only one is held in memory at a time. The stream must be read to the end
+   * or closed.
+   *
+   * @param criteria Node listing and filtering options.
+   * @return A stream of nodes.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   * @since Docker 1.12, API version 1.24
+   */
+  ListStream<Node> streamNodes(Node.Criteria criteria)
+      throws DockerException, InterruptedException;
+
   /**
    * Inspects a swarm node. Only available in Docker API &gt;= 1.24.
    *
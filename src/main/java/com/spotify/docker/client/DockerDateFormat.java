@@ -28,36 +28,58 @@ import java.util.Date;
 /**
  * Docker returns timestamps with nanosecond precision
  * (e.g. <tt>2014-10-17T21:22:56.949763914Z</tt>),
- * but {@link Date} only supports milliseconds. Creating a Date from the nanosecond timestamp
- * results in the date being set to several days after what date should be. This class converts the
- * timestamp from nanoseconds to milliseconds by removing the last six digits of the timestamp, so
- * we can generate a Date with the correct value (albeit with less precision).
+ * but {@link Date} only supports milliseconds. Handing the nanosecond timestamp to
+ * {@link StdDateFormat} results in the date being set to several days after what date should be.
+ * This class parses RFC 3339 timestamps directly, truncating the fraction to milliseconds, so we
+ * can generate a Date with the correct value (albeit with less precision). Other ISO 8601 forms are
+ * left to {@link StdDateFormat}.
  *
- * <p>Note: a more complete solution would be to introduce a custom date type which can store the
- * nanosecond value in an additional field, so users can access the complete value. Or just use Java
- * 8 which has date objects with nanosecond support.
+ * <p>{@link ObjectMapperProvider} decodes dates with a dedicated deserializer that uses the same
+ * parser, so this format is only consulted for the timestamps that parser rejects. Models that
+ * need the full precision carry it separately, like {@code Event.timeNano()}.
  */
 public class DockerDateFormat extends StdDateFormat {
 
   private static final long serialVersionUID = 249048552876483658L;
 
-  // either a literal Z or an offset like -04:00 or +1200 with an optional colon separator
-  private static final String TIMEZONE_PATTERN = "(Z|[+-]\\d{2}:?\\d{2})";
+  // Rfc3339 uses the proleptic Gregorian calendar but StdDateFormat switches to the Julian calendar
+  // before 1582-10-15, so older dates are left to StdDateFormat to keep their values unchanged.
+  // Docker's zero time (0001-01-01T00:00:00Z, e.g. FinishedAt of a running container) is common
+  // enough to map directly.
+  private static final long GREGORIAN_CUTOVER_MILLIS = -12219292800000L;
+  private static final long ZERO_TIME_MILLIS = -62135596800000L;
+  private static final long JULIAN_ZERO_TIME_MILLIS = -62135769600000L;
 
   @Override
   public Date parse(String source) throws ParseException {
-    // If the date has nanosecond precision (e.g. 2014-10-17T21:22:56.949763914Z), remove the last
-    // digits so we can create a Date object, which only support milliseconds.
-    // Docker doesn't always return nine digits for the fractional seconds part,
-    // so we need to be more flexible when trimming to milliseconds.
-    // Also allow for flexible timezone formats, either 'Z' for zulu/UTC or hour offsets.
-    // StdDateFormat has logic for handling these other timezones, but only if the time portion of
-    // the string matches hh:mm:ss or hh:mm:ss.SSS
-    if (source.matches(".+\\.\\d{4,9}" + TIMEZONE_PATTERN + "$")) {
-      source = source.replaceAll("(\\.\\d{3})\\d{1,6}" + TIMEZONE_PATTERN + "$", "$1$2");
-    }
+    // Docker doesn't always return nine digits for the fractional seconds part, and uses either
+    // 'Z' for zulu/UTC or hour offsets for the timezone. Rfc3339 handles all of those, while
+    // StdDateFormat only handles other timezones if the time portion of the string matches
+    // hh:mm:ss or hh:mm:ss.SSS, so it is only a fallback for the other formats it knows about.
+    final Date date = parseRfc3339(source);
+    return date != null ? date : super.parse(source);
+  }
 
-    return super.parse(source);
+  /**
+   * Parses an RFC 3339 timestamp to millisecond precision.
+   *
+   * @param source The timestamp.
+   * @return The date, or null if the timestamp is not RFC 3339 or must be left to StdDateFormat.
+   */
+  static Date parseRfc3339(final String source) {
+    if (source == null) {
+      return null;
+    }
+    final long millis;
+    try {
+      millis = Rfc3339.parseEpochMillis(source);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (millis >= GREGORIAN_CUTOVER_MILLIS) {
+      return new Date(millis);
+    }
+    return millis == ZERO_TIME_MILLIS ? new Date(JULIAN_ZERO_TIME_MILLIS) : null;
   }
 
   @Override
@@ -0,0 +1,319 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * An HTTP request to the Docker Remote API, sent through a {@link DockerTransport}.
+ */
+public final class DockerRequest {
+
+  private final String method;
+  private final String path;
+  private final ImmutableListMultimap<String, String> query;
+  private final ImmutableMap<String, String> headers;
+  private final Body body;
+  private final long readTimeoutMillis;
+  private final long deadlineMillis;
+  private final ConnectionLane lane;
+
+  private DockerRequest(final Builder builder) {
+    this.method = builder.method;
+    this.path = builder.path;
+    this.query = builder.query.build();
+    this.headers = ImmutableMap.copyOf(builder.headers);
+    this.body = builder.body;
+    this.readTimeoutMillis = builder.readTimeoutMillis;
+    this.deadlineMillis = builder.deadlineMillis;
+    this.lane = builder.lane;
+  }
+
+  /**
+   * @return The HTTP method, e.g. {@code GET}.
+   */
+  public String method() {
+    return method;
+  }
+
+  /**
+   * @return The path relative to the API version root, starting with {@code /}.
+   */
+  public String path() {
+    return path;
+  }
+
+  /**
+   * @return The query parameters, in the order they were added. Values are not encoded.
+   */
+  public ImmutableListMultimap<String, String> query() {
+    return query;
+  }
+
+  /**
+   * @return Headers sent in addition to the transport's default headers.
+   */
+  public ImmutableMap<String, String> headers() {
+    return headers;
+  }
+
+  /**
+   * @return The request body, or {@code null} if the request has none.
+   */
+  @Nullable
+  public Body body() {
+    return body;
+  }
+
+  /**
+   * @return The socket read timeout for this request in milliseconds, 0 for none, or -1 to use
+   *     the transport's default.
+   */
+  public long readTimeoutMillis() {
+    return readTimeoutMillis;
+  }
+
+  /**
+   * @return The overall time limit in milliseconds, or -1 for none.
+   */
+  public long deadlineMillis() {
+    return deadlineMillis;
+  }
+
+  /**
+   * @return The pool partition the request leases its connection from.
+   */
+  public ConnectionLane lane() {
+    return lane;
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + path + (query.isEmpty() ? "" : " " + query);
+  }
+
+  public static Builder builder(final String method, final String path) {
+    return new Builder(method, path);
+  }
+
+  public static Builder get(final String path) {
+    return builder("GET", path);
+  }
+
+  public static Builder post(final String path) {
+    return builder("POST", path);
+  }
+
+  public static Builder delete(final String path) {
+    return builder("DELETE", path);
+  }
+
+  public static class Builder {
+
+    private final String method;
+    private final String path;
+    private final ImmutableListMultimap.Builder<String, String> query =
+        ImmutableListMultimap.builder();
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private Body body;
+    private long readTimeoutMillis = -1;
+    private long deadlineMillis = -1;
+    private ConnectionLane lane = ConnectionLane.CONTROL;
+
+    private Builder(final String method, final String path) {
+      this.method = checkNotNull(method, "method");
+      this.path = checkNotNull(path, "path");
+      checkArgument(path.startsWith("/"), "path must start with '/': %s", path);
+    }
+
+    /**
+     * Add a query parameter. Parameters may repeat.
+     *
+     * @param name The parameter name.
+     * @param value The unencoded parameter value.
+     * @return The builder.
+     */
+    public Builder queryParam(final String name, final Object value) {
+      query.put(name, String.valueOf(value));
+      return this;
+    }
+
+    public Builder header(final String name, final String value) {
+      headers.put(name, value);
+      return this;
+    }
+
+    public Builder body(final Body body) {
+      this.body = body;
+      return this;
+    }
+
+    /**
+     * Override the transport's read timeout, e.g. to wait indefinitely for a container to exit
+     * while other calls on the same connection pool keep a short timeout.
+     *
+     * @param timeout The maximum time to wait for data on the socket, or 0 to wait indefinitely.
+     * @param unit The unit of {@code timeout}.
+     * @return The builder.
+     */
+    public Builder readTimeout(final long timeout, final TimeUnit unit) {
+      checkArgument(timeout >= 0, "timeout must not be negative");
+      this.readTimeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Limit the total time of the exchange, from sending the request until the response is
+     * closed. When the deadline passes the connection is aborted: a pending
+     * {@link DockerTransport#execute(DockerRequest)} fails with a
+     * {@link java.net.SocketTimeoutException} and reads from the body fail with an
+     * {@link IOException}.
+     *
+     * @param timeout The time limit.
+     * @param unit The unit of {@code timeout}.
+     * @return The builder.
+     */
+    public Builder deadline(final long timeout, final TimeUnit unit) {
+      checkArgument(timeout > 0, "timeout must be positive");
+      this.deadlineMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * Lease the connection from the given lane. Requests that may hold their connection for a
+     * long time, such as following logs, should use {@link ConnectionLane#STREAMING}.
+     *
+     * @param lane The lane, {@link ConnectionLane#CONTROL} by default.
+     * @return The builder.
+     */
+    public Builder lane(final ConnectionLane lane) {
+      this.lane = checkNotNull(lane, "lane");
+      return this;
+    }
+
+    public DockerRequest build() {
+      return new DockerRequest(this);
+    }
+  }
+
+  /**
+   * A request body. Bodies with a known length are sent with a {@code Content-Length} header, the
+   * rest with chunked transfer encoding.
+   */
+  public abstract static class Body {
+
+    private final String contentType;
+
+    protected Body(final String contentType) {
+      this.contentType = checkNotNull(contentType, "contentType");
+    }
+
+    public String contentType() {
+      return contentType;
+    }
+
+    /**
+     * @return The length of the body in bytes, or -1 if it is not known up front.
+     */
+    public abstract long contentLength();
+
+    /**
+     * @return Whether {@link #writeTo(OutputStream)} can be called more than once, which lets the
+     *     transport retry the request.
+     */
+    public abstract boolean isRepeatable();
+
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * A body serialized as JSON with {@link ObjectMapperProvider#objectMapper()}.
+     *
+     * @param entity The entity to serialize.
+     * @return The body.
+     * @throws IOException If the entity could not be serialized.
+     */
+    public static Body json(final Object entity) throws IOException {
+      return bytes("application/json",
+                   ObjectMapperProvider.objectMapper().writeValueAsBytes(entity));
+    }
+
+    public static Body bytes(final String contentType, final byte[] content) {
+      checkNotNull(content, "content");
+      return new Body(contentType) {
+        @Override
+        public long contentLength() {
+          return content.length;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+          return true;
+        }
+
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+          out.write(content);
+        }
+      };
+    }
+
+    /**
+     * A body copied from a stream. The stream is read once and closed when the request is sent.
+     *
+     * @param contentType The content type, e.g. {@code application/tar}.
+     * @param content The stream to send.
+     * @return The body.
+     */
+    public static Body stream(final String contentType, final InputStream content) {
+      checkNotNull(content, "content");
+      return new Body(contentType) {
+        @Override
+        public long contentLength() {
+          return -1;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+          return false;
+        }
+
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+          try (InputStream in = content) {
+            ByteStreams.copy(in, out);
+          }
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.io.ByteStreams;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * A response returned by a {@link DockerTransport}. Entities are decoded with the same
+ * {@link ObjectMapperProvider#objectMapper() ObjectMapper} the Jersey client uses, so message
+ * classes read the same way through either path.
+ *
+ * <p>The body can be consumed once. Closing the response releases the connection; closing it
+ * before the body is fully read discards the connection rather than reusing it.</p>
+ */
+public abstract class DockerResponse implements Closeable {
+
+  /**
+   * @return The HTTP status code.
+   */
+  public abstract int status();
+
+  /**
+   * @param name The header name, matched case-insensitively.
+   * @return The first value of the header, or {@code null} if it is absent.
+   */
+  @Nullable
+  public abstract String header(String name);
+
+  /**
+   * @return The response body. Empty if the response has no body.
+   * @throws IOException If the body could not be opened.
+   */
+  public abstract InputStream body() throws IOException;
+
+  /**
+   * Decode the body as JSON.
+   *
+   * @param type The type to decode.
+   * @param <T> The type to decode.
+   * @return The decoded entity.
+   * @throws IOException If the body could not be read or decoded.
+   */
+  public <T> T readEntity(final Class<T> type) throws IOException {
+    try (InputStream body = body()) {
+      return ObjectMapperProvider.objectMapper().readValue(body, type);
+    }
+  }
+
+  /**
+   * Decode the body as JSON.
+   *
+   * @param type The type to decode.
+   * @param <T> The type to decode.
+   * @return The decoded entity.
+   * @throws IOException If the body could not be read or decoded.
+   */
+  public <T> T readEntity(final TypeReference<T> type) throws IOException {
+    try (InputStream body = body()) {
+      return ObjectMapperProvider.objectMapper().readValue(body, type);
+    }
+  }
+
+  /**
+   * @return The body decoded as UTF-8.
+   * @throws IOException If the body could not be read.
+   */
+  public String readString() throws IOException {
+    try (InputStream body = body()) {
+      return new String(ByteStreams.toByteArray(body), UTF_8);
+    }
+  }
+
+  @Override
+  public abstract void close() throws IOException;
+}
@@ -0,0 +1,53 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A minimal HTTP transport to the Docker Remote API. Implementations send a {@link DockerRequest}
+ * to the daemon and hand back the raw {@link DockerResponse}; they do not interpret status codes.
+ * Request paths are relative to the API version root, so {@code /containers/json} is sent to
+ * {@code <uri>/v1.32/containers/json} when the transport is pinned to API version 1.32.
+ *
+ * <p>Implementations must be safe for concurrent use and release their connections on
+ * {@link #close()}.</p>
+ *
+ * <p>A transport is used on its own, by code that builds requests itself. The endpoints of
+ * {@link DockerClient} are not implemented on top of it, and a {@link DefaultDockerClient} cannot
+ * be built on a given transport.</p>
+ *
+ * @see ApacheDockerTransport
+ * @see DefaultDockerClient#transport()
+ */
+public interface DockerTransport extends Closeable {
+
+  /**
+   * Send a request and wait for the response headers. The caller owns the returned response and
+   * must close it to release the underlying connection.
+   *
+   * @param request The request to send.
+   * @return The response.
+   * @throws IOException If the request could not be sent or the response could not be read.
+   */
+  DockerResponse execute(DockerRequest request) throws IOException;
+}
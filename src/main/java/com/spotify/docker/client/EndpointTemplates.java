@@ -0,0 +1,110 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns request paths into endpoint templates for metrics, so that
+ * {@code /v1.32/containers/4fa6e0f0c678/json} is reported as {@code /containers/{id}/json}.
+ */
+final class EndpointTemplates {
+
+  /**
+   * Resources whose second path segment identifies an object.
+   */
+  private static final ImmutableSet<String> COLLECTIONS = ImmutableSet.of(
+      "containers", "images", "networks", "volumes", "exec", "services", "tasks", "nodes",
+      "secrets", "configs", "plugins", "distribution");
+
+  /**
+   * Second segments that act on a whole collection rather than naming an object.
+   */
+  private static final ImmutableSet<String> COLLECTION_ACTIONS = ImmutableSet.of(
+      "json", "create", "prune", "search", "load", "get", "pull", "privileges");
+
+  /**
+   * Segments that follow an object name. Image and plugin names may contain slashes, so the name
+   * is everything between the collection and the first of these.
+   */
+  private static final ImmutableSet<String> OBJECT_ACTIONS = ImmutableSet.of(
+      "json", "start", "stop", "restart", "kill", "pause", "unpause", "wait", "logs", "attach",
+      "top", "changes", "export", "stats", "resize", "rename", "update", "archive", "exec",
+      "history", "push", "tag", "get", "connect", "disconnect", "enable", "disable", "upgrade",
+      "set", "remove");
+
+  private EndpointTemplates() {
+  }
+
+  static String template(final String path) {
+    final List<String> segments = new ArrayList<>();
+    int start = path.startsWith("/") ? 1 : 0;
+    while (start < path.length()) {
+      int end = path.indexOf('/', start);
+      if (end < 0) {
+        end = path.length();
+      }
+      if (end > start) {
+        segments.add(path.substring(start, end));
+      }
+      start = end + 1;
+    }
+    if (!segments.isEmpty() && isApiVersion(segments.get(0))) {
+      segments.remove(0);
+    }
+
+    final StringBuilder template = new StringBuilder();
+    if (segments.size() > 1 && COLLECTIONS.contains(segments.get(0))
+        && !COLLECTION_ACTIONS.contains(segments.get(1))) {
+      final String collection = segments.get(0);
+      template.append('/').append(collection)
+          .append(collection.equals("images") || collection.equals("plugins")
+                  || collection.equals("distribution") ? "/{name}" : "/{id}");
+      int action = 2;
+      while (action < segments.size() && !OBJECT_ACTIONS.contains(segments.get(action))) {
+        action++;
+      }
+      for (int i = action; i < segments.size(); i++) {
+        template.append('/').append(segments.get(i));
+      }
+    } else {
+      for (final String segment : segments) {
+        template.append('/').append(segment);
+      }
+    }
+    return template.length() == 0 ? "/" : template.toString();
+  }
+
+  private static boolean isApiVersion(final String segment) {
+    if (segment.length() < 2 || segment.charAt(0) != 'v') {
+      return false;
+    }
+    for (int i = 1; i < segment.length(); i++) {
+      final char ch = segment.charAt(i);
+      if ((ch < '0' || ch > '9') && ch != '.') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
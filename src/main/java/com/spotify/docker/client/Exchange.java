@@ -0,0 +1,116 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The measurements of one request while it is in flight. Created by whoever hands the request to
+ * HttpClient and made visible to the {@link LaneConnectionManager} through
+ * {@link LaneConnectionManager#enter(Exchange)}; the manager and the connections it leases fill
+ * in the timings.
+ */
+final class Exchange {
+
+  private static final Logger log = LoggerFactory.getLogger(Exchange.class);
+
+  private final String method;
+  private final String path;
+  private final ConnectionLane lane;
+  private final long startNanos = System.nanoTime();
+  private final AtomicBoolean completed = new AtomicBoolean();
+
+  // Written by the thread executing the request. A release on another thread, such as closing a
+  // LogStream, happens after the response was handed over to that thread.
+  private volatile RequestListener listener;
+  private long leaseNanos;
+  private long connectNanos;
+  private volatile long firstByteNanos = -1;
+  private volatile int status;
+  private long requestBytes;
+  private long responseBytes;
+
+  Exchange(final String method, final String path, final ConnectionLane lane) {
+    this.method = method;
+    this.path = path;
+    this.lane = checkNotNull(lane, "lane");
+  }
+
+  ConnectionLane lane() {
+    return lane;
+  }
+
+  void listener(final RequestListener listener) {
+    this.listener = listener;
+  }
+
+  void leased(final long nanos) {
+    leaseNanos += nanos;
+  }
+
+  void connected(final long nanos) {
+    connectNanos += nanos;
+  }
+
+  void responseReceived(final int status) {
+    this.status = status;
+    this.firstByteNanos = System.nanoTime() - startNanos;
+  }
+
+  void transferred(final long sent, final long received) {
+    requestBytes += sent;
+    responseBytes += received;
+  }
+
+  /**
+   * Report the exchange once a connection that received a response is released. Releases
+   * without a response are attempts that HttpClient may still retry; {@link #failed(Throwable)}
+   * reports those if they do not succeed.
+   */
+  void released() {
+    if (status != 0) {
+      complete(null);
+    }
+  }
+
+  void failed(final Throwable error) {
+    complete(error);
+  }
+
+  private void complete(final Throwable error) {
+    final RequestListener current = listener;
+    if (current == null || !completed.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      current.requestCompleted(RequestMetrics.create(
+          method, EndpointTemplates.template(path), lane, status, leaseNanos, connectNanos,
+          firstByteNanos, System.nanoTime() - startNanos, requestBytes, responseBytes,
+          error == null ? null : error.getClass()));
+    } catch (RuntimeException e) {
+      log.warn("Request listener failed", e);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2016 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * More ways to read a {@link LogStream}, kept out of that interface so that its existing
+ * implementations still compile. The log streams of this library implement it, and
+ * {@link LogStreams#extended(LogStream)} gets it for any log stream:
+ *
+ * <pre>
+ * {@code
+ * final LogCapture tail = LogStreams.extended(docker.logs(containerId, stdout(), stderr()))
+ *     .readTail(64 * 1024, 100);
+ * }
+ * </pre>
+ */
+public interface ExtendedLogStream extends LogStream {
+
+  /**
+   * Reads the stream up to a budget of bytes, for example to attach the output of a chatty
+   * container to a report without risking running out of memory. Once the budget is exceeded the
+   * stream is closed without reading the rest, so {@link LogCapture#truncatedBytes()} only counts
+   * the bytes that were read.
+   *
+   * @param maxBytes The maximum number of bytes to capture.
+   * @return The captured output, cut at a character boundary.
+   */
+  LogCapture readAtMost(int maxBytes);
+
+  /**
+   * Reads the whole stream, keeping only its last bytes in a fixed size circular buffer.
+   *
+   * @param maxBytes The maximum number of bytes to capture.
+   * @return The end of the output.
+   */
+  LogCapture readTail(int maxBytes);
+
+  /**
+   * Reads the whole stream, keeping only its last bytes in a fixed size circular buffer, and
+   * returns at most the last {@code maxLines} lines of them.
+   *
+   * @param maxBytes The maximum number of bytes to capture.
+   * @param maxLines The maximum number of lines to return.
+   * @return The end of the output.
+   */
+  LogCapture readTail(int maxBytes, int maxLines);
+
+  /**
+   * Writes the output to two channels, such as {@link java.nio.channels.FileChannel}s, buffering
+   * up to 64 KB per channel and writing at least once a second. The channels are not closed.
+   *
+   * @param stdout Channel for the standard out
+   * @param stderr Channel for the standard err, may be the same as stdout
+   * @throws IOException if an I/O error occurs
+   * @see #attach(WritableByteChannel, WritableByteChannel, int, long)
+   */
+  void attach(WritableByteChannel stdout, WritableByteChannel stderr) throws IOException;
+
+  /**
+   * Writes the output to two channels, such as {@link java.nio.channels.FileChannel}s. Instead of
+   * writing every message on its own, output is buffered and written once the buffer is full or
+   * the flush interval has passed, before waiting for more output, and at the end of the stream.
+   * Multiplexed output from the daemon is copied straight into the buffers if no message has been
+   * read from this stream yet. The channels are not closed.
+   *
+   * @param stdout              Channel for the standard out
+   * @param stderr              Channel for the standard err, may be the same as stdout
+   * @param bufferSize          The size of the buffer per channel in bytes
+   * @param flushIntervalMillis How long output may be buffered
+   * @throws IOException if an I/O error occurs
+   */
+  void attach(WritableByteChannel stdout, WritableByteChannel stderr, int bufferSize,
+              long flushIntervalMillis) throws IOException;
+
+  /**
+   * The standard out of this log, read straight from the underlying messages as they are needed,
+   * without another thread. Output for {@link #stderrStream()} read on the way is kept for it if it
+   * has been opened, up to 1 MB, after which reading it fails. Open both streams before reading
+   * either to get all of the output, and do not consume this log stream in other ways.
+   *
+   * <pre>
+   * {@code
+   * try (LogStream logs = docker.logs(containerId, stdout(), stderr())) {
+   *   final JsonNode tree = objectMapper.readTree(LogStreams.extended(logs).stdoutStream());
+   * }
+   * }
+   * </pre>
+   *
+   * @return The standard out, which ends with this log stream.
+   */
+  InputStream stdoutStream();
+
+  /**
+   * The standard err of this log, see {@link #stdoutStream()}.
+   *
+   * @return The standard err, which ends with this log stream.
+   */
+  InputStream stderrStream();
+
+  /**
+   * The standard out of this log as a channel, see {@link #stdoutStream()}. Reads from this
+   * channel and from the stream share their position.
+   *
+   * @return The standard out, which ends with this log stream.
+   */
+  ReadableByteChannel stdoutChannel();
+
+  /**
+   * The standard err of this log as a channel, see {@link #stdoutStream()}. Reads from this
+   * channel and from the stream share their position.
+   *
+   * @return The standard err, which ends with this log stream.
+   */
+  ReadableByteChannel stderrChannel();
+
+  /**
+   * Only keep the lines that pass a filter. The filter runs on the raw bytes of the log, so lines
+   * that do not pass it are never decoded and, for logs read from the daemon, their frames are
+   * read into a reused buffer instead of becoming a {@link LogMessage} each. Every message of the
+   * returned stream holds whole lines, with their line terminator. This stream should not be used
+   * anymore once it has been filtered.
+   *
+   * <pre>
+   * {@code
+   * final LogStream errors = LogStreams.extended(docker.logs(containerId, stdout(), follow()))
+   *     .filter(LogFilter.containing("ERROR", "FATAL"));
+   * }
+   * </pre>
+   *
+   * @param filter The filter lines must pass.
+   * @return A stream of the matching lines.
+   */
+  ExtendedLogStream filter(LogFilter filter);
+}
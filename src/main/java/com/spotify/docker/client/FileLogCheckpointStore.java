@@ -0,0 +1,106 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.google.common.base.Splitter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the checkpoints of all containers in one text file, with a line per container. The file
+ * is rewritten to a temporary file and moved over the old one on every save, so that a crash
+ * leaves either the old or the new checkpoints.
+ */
+public class FileLogCheckpointStore implements LogCheckpointStore {
+
+  private static final Splitter SPLITTER = Splitter.on(' ').omitEmptyStrings();
+
+  private final Path file;
+  private final Map<String, LogCheckpoint> checkpoints = new TreeMap<>();
+
+  /**
+   * Use the checkpoints in the given file, which is created on the first save if needed.
+   *
+   * @param file The file to keep checkpoints in.
+   * @throws IOException if the file exists but could not be read
+   */
+  public FileLogCheckpointStore(final Path file) throws IOException {
+    this.file = file;
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(file, UTF_8);
+    } catch (NoSuchFileException e) {
+      return;
+    }
+    for (final String line : lines) {
+      final List<String> fields = SPLITTER.splitToList(line);
+      if (fields.size() != 3) {
+        continue;
+      }
+      try {
+        checkpoints.put(fields.get(0), LogCheckpoint.create(Long.parseLong(fields.get(1)),
+                                                            Integer.parseInt(fields.get(2))));
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid checkpoint in " + file + ": " + line, e);
+      }
+    }
+  }
+
+  @Override
+  public synchronized LogCheckpoint load(final String containerId) {
+    return checkpoints.get(containerId);
+  }
+
+  @Override
+  public synchronized void save(final String containerId, final LogCheckpoint checkpoint)
+      throws IOException {
+    checkpoints.put(containerId, checkpoint);
+    final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    final StringBuilder content = new StringBuilder();
+    for (final Map.Entry<String, LogCheckpoint> entry : checkpoints.entrySet()) {
+      content.append(entry.getKey()).append(' ')
+          .append(entry.getValue().timestampNanos()).append(' ')
+          .append(entry.getValue().linesAtTimestamp()).append('\n');
+    }
+    try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+      final ByteBuffer buffer = UTF_8.encode(content.toString());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,140 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.LogMessage.Stream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Applies a {@link LogFilter} to the frames of a log, keeping lines that span frames together per
+ * stream. Only lines that pass the filter are copied into a message.
+ */
+class FrameFilter {
+
+  private final LogFilter filter;
+  private final Map<Stream, LineState> lines = new EnumMap<>(Stream.class);
+  private final ByteArrayOutputStream matched = new ByteArrayOutputStream();
+
+  FrameFilter(final LogFilter filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * Filters the lines of a frame.
+   *
+   * @return A message of the matching lines that end in this frame, or null if there are none.
+   */
+  LogMessage filter(final Stream stream, final byte[] bytes, final int offset, final int length,
+                    final String containerId) {
+    LineState line = lines.get(stream);
+    if (line == null) {
+      line = new LineState();
+      lines.put(stream, line);
+    }
+
+    final int end = offset + length;
+    int lineStart = offset;
+    int state = line.state;
+    boolean found = line.found;
+    for (int i = offset; i < end; i++) {
+      final byte value = bytes[i];
+      if (value == '\n') {
+        if (line.length > 0) {
+          line.append(bytes, lineStart, i + 1 - lineStart);
+          if (found && filter.matches(line.bytes, 0, line.length)) {
+            matched.write(line.bytes, 0, line.length);
+          }
+          line.length = 0;
+        } else if (found && filter.matches(bytes, lineStart, i + 1 - lineStart)) {
+          matched.write(bytes, lineStart, i + 1 - lineStart);
+        }
+        lineStart = i + 1;
+        state = 0;
+        found = false;
+      } else if (!found) {
+        state = filter.next(state, value);
+        found = filter.accepts(state);
+      }
+    }
+    line.append(bytes, lineStart, end - lineStart);
+    line.state = state;
+    line.found = found;
+    return drain(stream, containerId);
+  }
+
+  /**
+   * Filters the last line of each stream once the log has ended, one stream per call.
+   *
+   * @return A message with the last line of a stream, or null if there are no more.
+   */
+  LogMessage finish(final String containerId) {
+    for (final Map.Entry<Stream, LineState> entry : lines.entrySet()) {
+      final LineState line = entry.getValue();
+      if (line.length == 0) {
+        continue;
+      }
+      if (line.found && filter.matches(line.bytes, 0, line.length)) {
+        matched.write(line.bytes, 0, line.length);
+      }
+      line.length = 0;
+      line.found = false;
+      line.state = 0;
+      final LogMessage message = drain(entry.getKey(), containerId);
+      if (message != null) {
+        return message;
+      }
+    }
+    return null;
+  }
+
+  private LogMessage drain(final Stream stream, final String containerId) {
+    if (matched.size() == 0) {
+      return null;
+    }
+    final LogMessage message =
+        new LogMessage(stream, ByteBuffer.wrap(matched.toByteArray()), containerId);
+    matched.reset();
+    return message;
+  }
+
+  /**
+   * A line of a stream that has not ended yet.
+   */
+  private static class LineState {
+
+    private byte[] bytes = new byte[256];
+    private int length;
+    private int state;
+    private boolean found;
+
+    private void append(final byte[] source, final int offset, final int count) {
+      if (length + count > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+      }
+      System.arraycopy(source, offset, bytes, length, count);
+      length += count;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RequestListener} that aggregates requests per endpoint in memory, with a
+ * {@link LatencyHistogram} for each phase of the request, so that metrics can be exported
+ * without a dependency on a metrics library.
+ *
+ * <pre>
+ * InMemoryRequestMetrics metrics = new InMemoryRequestMetrics();
+ * DockerClient docker = DefaultDockerClient.fromEnv().requestListener(metrics).build();
+ * ...
+ * Endpoint inspect = metrics.endpoints().get("GET /containers/{id}/json");
+ * long p99 = inspect.total().percentile(99);
+ * </pre>
+ */
+public class InMemoryRequestMetrics implements RequestListener {
+
+  private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+  @Override
+  public void requestCompleted(final RequestMetrics metrics) {
+    endpoint(metrics.method(), metrics.endpoint()).record(metrics);
+  }
+
+  @Override
+  public void requestFailed(final String method, final String endpoint, final Exception error) {
+    endpoint(method, endpoint).failed(error.getClass());
+  }
+
+  /**
+   * @return The endpoints requested so far, keyed by method and endpoint template, e.g.
+   *     {@code GET /containers/{id}/json}.
+   */
+  public Map<String, Endpoint> endpoints() {
+    return ImmutableMap.copyOf(endpoints);
+  }
+
+  private Endpoint endpoint(final String method, final String template) {
+    final String key = method + " " + template;
+    final Endpoint endpoint = endpoints.get(key);
+    if (endpoint != null) {
+      return endpoint;
+    }
+    final Endpoint created = new Endpoint();
+    final Endpoint existing = endpoints.putIfAbsent(key, created);
+    return existing == null ? created : existing;
+  }
+
+  /**
+   * The aggregated requests of one endpoint.
+   */
+  public static class Endpoint {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<>();
+    private final LatencyHistogram lease = new LatencyHistogram();
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    void record(final RequestMetrics metrics) {
+      requests.incrementAndGet();
+      requestBytes.addAndGet(metrics.requestBytes());
+      responseBytes.addAndGet(metrics.responseBytes());
+      if (metrics.status() != 0) {
+        increment(statuses, metrics.status());
+      }
+      if (metrics.error() != null) {
+        increment(errors, metrics.error().getName());
+      }
+      lease.record(metrics.leaseNanos());
+      if (metrics.connectNanos() > 0) {
+        connect.record(metrics.connectNanos());
+      }
+      if (metrics.timeToFirstByteNanos() >= 0) {
+        timeToFirstByte.record(metrics.timeToFirstByteNanos());
+      }
+      total.record(metrics.totalNanos());
+    }
+
+    void failed(final Class<? extends Exception> error) {
+      increment(errors, error.getName());
+    }
+
+    /**
+     * @return The number of HTTP exchanges.
+     */
+    public long requests() {
+      return requests.get();
+    }
+
+    public long requestBytes() {
+      return requestBytes.get();
+    }
+
+    public long responseBytes() {
+      return responseBytes.get();
+    }
+
+    /**
+     * @return The number of responses per HTTP status.
+     */
+    public Map<Integer, Long> statuses() {
+      return snapshot(statuses);
+    }
+
+    /**
+     * @return The number of failures per exception class name, both of exchanges that received
+     *     no response and of exceptions thrown to callers.
+     */
+    public Map<String, Long> errors() {
+      return snapshot(errors);
+    }
+
+    /**
+     * @return Nanoseconds spent waiting for a pooled connection.
+     */
+    public LatencyHistogram lease() {
+      return lease;
+    }
+
+    /**
+     * @return Nanoseconds spent opening new connections; reused connections are not recorded.
+     */
+    public LatencyHistogram connect() {
+      return connect;
+    }
+
+    /**
+     * @return Nanoseconds until the response headers arrived.
+     */
+    public LatencyHistogram timeToFirstByte() {
+      return timeToFirstByte;
+    }
+
+    /**
+     * @return Nanoseconds until the connection was released.
+     */
+    public LatencyHistogram total() {
+      return total;
+    }
+
+    private static <K> void increment(final ConcurrentMap<K, AtomicLong> counters, final K key) {
+      AtomicLong counter = counters.get(key);
+      if (counter == null) {
+        final AtomicLong created = new AtomicLong();
+        counter = counters.putIfAbsent(key, created);
+        if (counter == null) {
+          counter = created;
+        }
+      }
+      counter.incrementAndGet();
+    }
+
+    private static <K> Map<K, Long> snapshot(final Map<K, AtomicLong> counters) {
+      final ImmutableMap.Builder<K, Long> snapshot = ImmutableMap.builder();
+      for (final Map.Entry<K, AtomicLong> entry : counters.entrySet()) {
+        snapshot.put(entry.getKey(), entry.getValue().get());
+      }
+      return snapshot.build();
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import javax.net.ssl.SSLSession;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ManagedHttpClientConnection;
+
+/**
+ * A pooled connection as handed out by the {@link LaneConnectionManager}. It remembers the lane
+ * and {@link Exchange} it was leased for, and records when the response headers arrive and how
+ * many bytes went over the wire during the lease.
+ */
+class InstrumentedConnection implements ManagedHttpClientConnection {
+
+  private final ManagedHttpClientConnection delegate;
+  private final ConnectionLane lane;
+  private final Exchange exchange;
+  private final long sentAtLease;
+  private final long receivedAtLease;
+
+  InstrumentedConnection(final ManagedHttpClientConnection delegate, final ConnectionLane lane,
+                         final Exchange exchange) {
+    this.delegate = delegate;
+    this.lane = lane;
+    this.exchange = exchange;
+    final HttpConnectionMetrics metrics = delegate.getMetrics();
+    this.sentAtLease = metrics.getSentBytesCount();
+    this.receivedAtLease = metrics.getReceivedBytesCount();
+  }
+
+  ManagedHttpClientConnection delegate() {
+    return delegate;
+  }
+
+  ConnectionLane lane() {
+    return lane;
+  }
+
+  Exchange exchange() {
+    return exchange;
+  }
+
+  /**
+   * Record the bytes transferred during this lease. Must be called before the connection is
+   * returned to the pool.
+   */
+  void recordTransferred() {
+    if (exchange == null) {
+      return;
+    }
+    try {
+      final HttpConnectionMetrics metrics = delegate.getMetrics();
+      exchange.transferred(metrics.getSentBytesCount() - sentAtLease,
+                           metrics.getReceivedBytesCount() - receivedAtLease);
+    } catch (RuntimeException e) {
+      // The connection was already detached from its pool entry; the byte counts are lost
+    }
+  }
+
+  @Override
+  public HttpResponse receiveResponseHeader() throws HttpException, IOException {
+    final HttpResponse response = delegate.receiveResponseHeader();
+    if (exchange != null && response.getStatusLine().getStatusCode() >= 200) {
+      exchange.responseReceived(response.getStatusLine().getStatusCode());
+    }
+    return response;
+  }
+
+  @Override
+  public boolean isResponseAvailable(final int timeout) throws IOException {
+    return delegate.isResponseAvailable(timeout);
+  }
+
+  @Override
+  public void sendRequestHeader(final HttpRequest request) throws HttpException, IOException {
+    delegate.sendRequestHeader(request);
+  }
+
+  @Override
+  public void sendRequestEntity(final HttpEntityEnclosingRequest request)
+      throws HttpException, IOException {
+    delegate.sendRequestEntity(request);
+  }
+
+  @Override
+  public void receiveResponseEntity(final HttpResponse response)
+      throws HttpException, IOException {
+    delegate.receiveResponseEntity(response);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    delegate.flush();
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public void bind(final Socket socket) throws IOException {
+    delegate.bind(socket);
+  }
+
+  @Override
+  public Socket getSocket() {
+    return delegate.getSocket();
+  }
+
+  @Override
+  public SSLSession getSSLSession() {
+    return delegate.getSSLSession();
+  }
+
+  @Override
+  public InetAddress getLocalAddress() {
+    return delegate.getLocalAddress();
+  }
+
+  @Override
+  public int getLocalPort() {
+    return delegate.getLocalPort();
+  }
+
+  @Override
+  public InetAddress getRemoteAddress() {
+    return delegate.getRemoteAddress();
+  }
+
+  @Override
+  public int getRemotePort() {
+    return delegate.getRemotePort();
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return delegate.isOpen();
+  }
+
+  @Override
+  public boolean isStale() {
+    return delegate.isStale();
+  }
+
+  @Override
+  public void setSocketTimeout(final int timeout) {
+    delegate.setSocketTimeout(timeout);
+  }
+
+  @Override
+  public int getSocketTimeout() {
+    return delegate.getSocketTimeout();
+  }
+
+  @Override
+  public void shutdown() throws IOException {
+    delegate.shutdown();
+  }
+
+  @Override
+  public HttpConnectionMetrics getMetrics() {
+    return delegate.getMetrics();
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
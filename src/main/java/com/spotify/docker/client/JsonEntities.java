@@ -0,0 +1,102 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.ws.rs.client.Entity;
+
+/**
+ * Small JSON request bodies written by hand with a {@link JsonGenerator}, as UTF-8 bytes. Each
+ * thread writes into a buffer that it keeps between requests, so a body costs one exact-size
+ * copy rather than a {@code StringWriter}, a String and another encoding pass by Jersey. For
+ * example:
+ *
+ * <pre>
+ * final JsonGenerator generator = JsonEntities.generator();
+ * generator.writeStartObject();
+ * generator.writeBooleanField("Tty", true);
+ * generator.writeEndObject();
+ * return JsonEntities.entity(generator);
+ * </pre>
+ */
+final class JsonEntities {
+
+  // Buffers that grew past this, for an unusually large body, are not kept
+  private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+  private static final ThreadLocal<Buffer> BUFFER = new ThreadLocal<Buffer>() {
+    @Override
+    protected Buffer initialValue() {
+      return new Buffer();
+    }
+  };
+
+  private JsonEntities() {
+  }
+
+  /**
+   * @return A generator that writes into this thread's buffer, discarding what was in it. Pass it
+   *     to {@link #entity(JsonGenerator)} on the same thread once the body is written.
+   * @throws IOException If the generator could not be created.
+   */
+  static JsonGenerator generator() throws IOException {
+    final Buffer buffer = BUFFER.get();
+    buffer.reset();
+    return objectMapper().getFactory().createGenerator(buffer, JsonEncoding.UTF8);
+  }
+
+  /**
+   * Closes the generator and copies what it wrote out of the buffer. The entity holds its own
+   * bytes, so it can be sent from another thread while this one writes the next body.
+   *
+   * @param generator A generator from {@link #generator()}.
+   * @return The body as an {@code application/json} entity.
+   * @throws IOException If the generator could not be flushed.
+   */
+  static Entity<byte[]> entity(final JsonGenerator generator) throws IOException {
+    generator.close();
+    final Buffer buffer = (Buffer) generator.getOutputTarget();
+    final byte[] bytes = buffer.toByteArray();
+    if (buffer.capacity() > MAX_RETAINED_SIZE) {
+      BUFFER.remove();
+    }
+    return Entity.entity(bytes, APPLICATION_JSON_TYPE);
+  }
+
+  private static final class Buffer extends ByteArrayOutputStream {
+
+    Buffer() {
+      super(512);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.exceptions.DockerException;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.LogConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the logs of containers using the json-file log driver straight from the files referenced
+ * by {@link ContainerInfo#logPath()}, including rotated {@code .1}, {@code .2}, ... files, instead
+ * of having the daemon re-encode every line into a multiplexed stream.
+ *
+ * <p>The {@code follow}, {@code stdout}, {@code stderr}, {@code since}, {@code until},
+ * {@code timestamps} and {@code tail} parameters behave like they do for
+ * {@link DockerClient#logs(String, LogsParam...)}. Whenever the log file cannot be read, e.g.
+ * because this process is not running on the Docker host or lacks permissions, the container uses
+ * another log driver, rotated files are compressed or an unsupported parameter is passed, this
+ * falls back to {@link DockerClient#logs(String, LogsParam...)}.
+ */
+public class JsonFileLogSource {
+
+  private static final Logger log = LoggerFactory.getLogger(JsonFileLogSource.class);
+
+  private static final String JSON_FILE = "json-file";
+
+  private final DockerClient docker;
+
+  public JsonFileLogSource(final DockerClient docker) {
+    this.docker = checkNotNull(docker, "docker");
+  }
+
+  /**
+   * Get the logs of a container, reading the json-file log directly when possible.
+   *
+   * @param containerId The id of the container to get logs for.
+   * @param params      Params for controlling what streams to get and whether to tail or not.
+   * @return A log message stream.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  public LogStream logs(final String containerId, final LogsParam... params)
+      throws DockerException, InterruptedException {
+    final ContainerInfo info = docker.inspectContainer(containerId);
+    final LogConfig logConfig = info.hostConfig() == null ? null : info.hostConfig().logConfig();
+    if (logConfig != null && !JSON_FILE.equals(logConfig.logType())) {
+      return docker.logs(containerId, params);
+    }
+
+    final List<Path> files = logFiles(info.logPath());
+    if (files == null) {
+      log.debug("Log of container {} is not readable, falling back to the daemon", containerId);
+      return docker.logs(containerId, params);
+    }
+
+    boolean follow = false;
+    boolean stdout = false;
+    boolean stderr = false;
+    boolean timestamps = false;
+    long since = 0;
+    long until = Long.MAX_VALUE;
+    long tail = -1;
+    try {
+      for (final LogsParam param : params) {
+        final String value = param.value();
+        switch (param.name()) {
+          case "follow":
+            follow = Boolean.parseBoolean(value);
+            break;
+          case "stdout":
+            stdout = Boolean.parseBoolean(value);
+            break;
+          case "stderr":
+            stderr = Boolean.parseBoolean(value);
+            break;
+          case "timestamps":
+            timestamps = Boolean.parseBoolean(value);
+            break;
+          case "since":
+            since = parseUnixTimestamp(value);
+            break;
+          case "until":
+            until = parseUnixTimestamp(value);
+            break;
+          case "tail":
+            tail = "all".equals(value) ? -1 : Long.parseLong(value);
+            break;
+          default:
+            return docker.logs(containerId, params);
+        }
+      }
+    } catch (NumberFormatException e) {
+      // Let the daemon report the bad parameter
+      return docker.logs(containerId, params);
+    }
+    if (!stdout && !stderr) {
+      return docker.logs(containerId, params);
+    }
+
+    try {
+      return new JsonFileLogStream(files, tail, stdout, stderr, timestamps, since, until,
+                                   follow ? docker : null, info.id());
+    } catch (IOException e) {
+      log.debug("Could not open log of container {}, falling back to the daemon", containerId, e);
+      return docker.logs(containerId, params);
+    }
+  }
+
+  /**
+   * Lists the readable log files, oldest first.
+   *
+   * @return The files, or null if they cannot all be read directly.
+   */
+  private static List<Path> logFiles(final String logPath) {
+    if (isNullOrEmpty(logPath)) {
+      return null;
+    }
+    final Path path = Paths.get(logPath);
+    if (!Files.isReadable(path)) {
+      return null;
+    }
+    final List<Path> files = new ArrayList<>();
+    files.add(path);
+    for (int i = 1; ; i++) {
+      if (Files.exists(Paths.get(logPath + "." + i + ".gz"))) {
+        return null;
+      }
+      final Path rotated = Paths.get(logPath + "." + i);
+      if (!Files.isReadable(rotated)) {
+        break;
+      }
+      files.add(rotated);
+    }
+    Collections.reverse(files);
+    return files;
+  }
+
+  /**
+   * Parses seconds since the epoch with optional fractional digits, e.g. {@code 1516889000.5},
+   * into nanoseconds.
+   */
+  private static long parseUnixTimestamp(final String value) {
+    final int dot = value.indexOf('.');
+    final long seconds = Long.parseLong(dot < 0 ? value : value.substring(0, dot));
+    long nanos = 0;
+    if (dot >= 0) {
+      final String fraction = (value.substring(dot + 1) + "000000000").substring(0, 9);
+      nanos = Long.parseLong(fraction);
+    }
+    return seconds * 1000000000L + nanos;
+  }
+}
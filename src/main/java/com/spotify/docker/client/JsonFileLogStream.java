@@ -0,0 +1,381 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Throwables;
+import com.spotify.docker.client.LogMessage.Stream;
+import com.spotify.docker.client.exceptions.DockerException;
+import com.spotify.docker.client.messages.ContainerInfo;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A {@link LogStream} reading the files written by Docker's json-file log driver, one JSON record
+ * of the form {@code {"log":"...","stream":"stdout","time":"..."}} per line.
+ *
+ * <p>Files are read with positional {@link FileChannel} reads into a reused buffer. When following,
+ * the live log file is polled for growth, and rotation (rename to {@code .1} and recreate) or
+ * truncation is detected by comparing file keys and sizes. Following ends once the container is
+ * no longer running, which is checked at most once per second while the log is idle.
+ */
+class JsonFileLogStream extends AbstractLogStream {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long POLL_MILLIS = 250;
+  private static final long RUNNING_CHECK_NANOS = SECONDS.toNanos(1);
+
+  private static final JsonFactory JSON_FACTORY = ObjectMapperProvider.objectMapper().getFactory();
+
+  private final Path logPath;
+  private final Deque<Path> files;
+  private final boolean stdout;
+  private final boolean stderr;
+  private final boolean timestamps;
+  private final long sinceNanos;
+  private final long untilNanos;
+  private final DockerClient docker;
+  private final String containerId;
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private byte[] line = new byte[BUFFER_SIZE];
+  private int lineLength;
+
+  private FileChannel channel;
+  private Object fileKey;
+  private long position;
+  private boolean rotated;
+  private boolean stopping;
+  private long lastRunningCheck = System.nanoTime();
+  private volatile boolean closed;
+
+  /**
+   * @param files       The log files to read, oldest first. The last one is the live log file.
+   * @param tail        The number of lines to read from the end, or a negative value for all.
+   * @param sinceNanos  Skip records older than this many nanoseconds since the epoch.
+   * @param untilNanos  Stop at the first record newer than this many nanoseconds since the epoch.
+   * @param docker      The client used to check whether the container is still running when
+   *                    following, or null to stop at the end of the file.
+   * @param containerId The container whose log is read.
+   */
+  JsonFileLogStream(final List<Path> files, final long tail, final boolean stdout,
+                    final boolean stderr, final boolean timestamps, final long sinceNanos,
+                    final long untilNanos, final DockerClient docker, final String containerId)
+      throws IOException {
+    this.logPath = files.get(files.size() - 1);
+    this.files = new ArrayDeque<>(files);
+    this.stdout = stdout;
+    this.stderr = stderr;
+    this.timestamps = timestamps;
+    this.sinceNanos = sinceNanos;
+    this.untilNanos = untilNanos;
+    this.docker = docker;
+    this.containerId = containerId;
+    this.buffer.flip();
+    if (tail >= 0) {
+      skipToTail(tail);
+    }
+    open(this.files.poll());
+  }
+
+  @Override
+  protected LogMessage computeNext() {
+    try {
+      while (!closed) {
+        if (readLine()) {
+          final LogMessage message = decode();
+          if (message != null) {
+            return message;
+          }
+        } else if (!advance() && (docker == null || !awaitData())) {
+          close();
+          break;
+        }
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return endOfData();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Drops all but the last {@code lines} lines by scanning the files backwards for newlines.
+   */
+  private void skipToTail(final long lines) throws IOException {
+    final Path[] paths = files.toArray(new Path[files.size()]);
+    final ByteBuffer scan = ByteBuffer.allocate(BUFFER_SIZE);
+    long newlines = 0;
+    for (int i = paths.length - 1; i >= 0; i--) {
+      try (final FileChannel channel = FileChannel.open(paths[i], StandardOpenOption.READ)) {
+        long end = channel.size();
+        while (end > 0) {
+          final int length = (int) Math.min(scan.capacity(), end);
+          final long start = end - length;
+          scan.clear();
+          scan.limit(length);
+          while (scan.hasRemaining()) {
+            if (channel.read(scan, start + scan.position()) < 0) {
+              throw new IOException("Unexpected end of " + paths[i]);
+            }
+          }
+          for (int j = length - 1; j >= 0; j--) {
+            // The newline terminating the last line doesn't start a line, hence the extra one
+            if (scan.get(j) == '\n' && ++newlines > lines) {
+              files.clear();
+              files.addAll(Arrays.asList(paths).subList(i, paths.length));
+              position = start + j + 1;
+              return;
+            }
+          }
+          end = start;
+        }
+      }
+    }
+  }
+
+  private void open(final Path path) throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    buffer.clear().flip();
+    lineLength = 0;
+    rotated = false;
+  }
+
+  /**
+   * Reads the next complete line into {@link #line}.
+   *
+   * @return false if no complete line is available yet.
+   */
+  private boolean readLine() throws IOException {
+    while (true) {
+      final int start = buffer.position();
+      for (int i = start; i < buffer.limit(); i++) {
+        if (buffer.get(i) == '\n') {
+          append(start, i - start);
+          buffer.position(i + 1);
+          return true;
+        }
+      }
+      append(start, buffer.limit() - start);
+      buffer.clear();
+      final int read = channel.read(buffer, position);
+      buffer.flip();
+      if (read <= 0) {
+        // Keep any partial line, the writer may not have finished it yet
+        return false;
+      }
+      position += read;
+    }
+  }
+
+  private void append(final int offset, final int length) {
+    if (lineLength + length > line.length) {
+      line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+    }
+    System.arraycopy(buffer.array(), offset, line, lineLength, length);
+    lineLength += length;
+  }
+
+  /**
+   * Moves on to the next rotated file, or reopens the live log file if it was rotated or
+   * truncated while reading it.
+   *
+   * @return false if there is nothing more to read right now.
+   */
+  private boolean advance() throws IOException {
+    final Path next = files.poll();
+    if (next != null) {
+      position = 0;
+      open(next);
+      return true;
+    }
+    if (docker == null) {
+      return false;
+    }
+    final BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(logPath, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      // Between the rename and the creation of the new file
+      return false;
+    }
+    if (attributes.fileKey() != null && !attributes.fileKey().equals(fileKey)) {
+      // Rotated. Read the old file once more to catch its last writes before switching.
+      if (!rotated) {
+        rotated = true;
+        return true;
+      }
+      position = 0;
+      open(logPath);
+      return true;
+    }
+    if (channel.size() < position) {
+      position = 0;
+      open(logPath);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Waits for the log to grow.
+   *
+   * @return false once the container has stopped and its log has been drained.
+   */
+  private boolean awaitData() {
+    if (stopping) {
+      return false;
+    }
+    try {
+      MILLISECONDS.sleep(POLL_MILLIS);
+      if (System.nanoTime() - lastRunningCheck > RUNNING_CHECK_NANOS) {
+        lastRunningCheck = System.nanoTime();
+        final ContainerInfo info = docker.inspectContainer(containerId);
+        stopping = info.state() == null || !Boolean.TRUE.equals(info.state().running());
+      }
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (DockerException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private LogMessage decode() throws IOException {
+    final int length = lineLength;
+    lineLength = 0;
+    String log = null;
+    String stream = null;
+    String time = null;
+    try (final JsonParser parser = JSON_FACTORY.createParser(line, 0, length)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String field = parser.getCurrentName();
+        parser.nextToken();
+        switch (field) {
+          case "log":
+            log = parser.getText();
+            break;
+          case "stream":
+            stream = parser.getText();
+            break;
+          case "time":
+            time = parser.getText();
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+    }
+    if (log == null) {
+      return null;
+    }
+
+    final Stream id;
+    if ("stderr".equals(stream)) {
+      if (!stderr) {
+        return null;
+      }
+      id = Stream.STDERR;
+    } else {
+      if (!stdout) {
+        return null;
+      }
+      id = Stream.STDOUT;
+    }
+
+    if (time != null && (sinceNanos > 0 || untilNanos < Long.MAX_VALUE)) {
+      final long nanos = Rfc3339.parseEpochNanos(time);
+      if (nanos < sinceNanos) {
+        return null;
+      }
+      if (nanos > untilNanos) {
+        // Readers that stop once hasNext() is false never call close()
+        close();
+        return null;
+      }
+    }
+
+    final String content = timestamps && time != null ? fixedWidth(time) + " " + log : log;
+    return new LogMessage(id, ByteBuffer.wrap(content.getBytes(UTF_8)));
+  }
+
+  /**
+   * Pads the fractional seconds of a json-file timestamp to nine digits, which is how the daemon
+   * formats timestamps in log streams.
+   */
+  private static String fixedWidth(final String time) {
+    final int dot = time.indexOf('.');
+    final int zone = Math.max(time.lastIndexOf('Z'), Math.max(time.lastIndexOf('+'),
+                                                              time.lastIndexOf('-')));
+    if (zone < 19) {
+      return time;
+    }
+    final int digits = dot < 0 ? 0 : zone - dot - 1;
+    if (digits == 9) {
+      return time;
+    }
+    final StringBuilder fixed = new StringBuilder(time.length() + 10);
+    fixed.append(time, 0, dot < 0 ? zone : dot + 1 + Math.min(digits, 9));
+    if (dot < 0) {
+      fixed.append('.');
+    }
+    for (int i = digits; i < 9; i++) {
+      fixed.append('0');
+    }
+    return fixed.append(time, zone, time.length()).toString();
+  }
+}
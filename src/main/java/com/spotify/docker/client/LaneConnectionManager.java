@@ -0,0 +1,333 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A connection pool partitioned into {@link ConnectionLane lanes}, on top of a
+ * {@link PoolingHttpClientConnectionManager}. Streaming leases are capped at
+ * {@code streamingLimit} so that the rest of the pool stays available to control calls, and
+ * optionally wait while control calls are waiting, so control calls go first when the pool is
+ * exhausted.
+ *
+ * <p>The lane of a lease is taken from the {@link Exchange} of the calling thread; see
+ * {@link #enter(Exchange)}. HttpClient requests connections on the thread that executes the
+ * request. Leases without an exchange count as {@link ConnectionLane#CONTROL}. The manager also
+ * records lease and connect times into the exchange and reports it to the
+ * {@link RequestListener}, if there is one, when the connection is released.</p>
+ */
+class LaneConnectionManager implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+
+  private static final ThreadLocal<Exchange> CURRENT_EXCHANGE = new ThreadLocal<>();
+
+  private final PoolingHttpClientConnectionManager pool;
+  private final int streamingLimit;
+  private final boolean prioritizeControl;
+  private final RequestListener listener;
+
+  // Guarded by this
+  private final Map<ConnectionLane, Counters> counters = new EnumMap<>(ConnectionLane.class);
+
+  LaneConnectionManager(final Registry<ConnectionSocketFactory> registry, final int maxTotal,
+                        final int streamingLimit, final boolean prioritizeControl,
+                        @Nullable final RequestListener listener) {
+    checkArgument(streamingLimit > 0 && streamingLimit <= maxTotal,
+                  "streamingLimit must be between 1 and %s: %s", maxTotal, streamingLimit);
+    this.pool = new PoolingHttpClientConnectionManager(registry);
+    pool.setMaxTotal(maxTotal);
+    pool.setDefaultMaxPerRoute(maxTotal);
+    this.streamingLimit = streamingLimit;
+    this.prioritizeControl = prioritizeControl;
+    this.listener = listener;
+    for (final ConnectionLane lane : ConnectionLane.values()) {
+      counters.put(lane, new Counters());
+    }
+  }
+
+  /**
+   * Attribute connections leased by the current thread to {@code exchange} until
+   * {@link #exit(Exchange)} is called.
+   *
+   * @param exchange The request being executed.
+   * @return The previous exchange of the thread, to pass to {@link #exit(Exchange)}.
+   */
+  static Exchange enter(final Exchange exchange) {
+    final Exchange previous = CURRENT_EXCHANGE.get();
+    CURRENT_EXCHANGE.set(exchange);
+    return previous;
+  }
+
+  static void exit(final Exchange previous) {
+    if (previous == null) {
+      CURRENT_EXCHANGE.remove();
+    } else {
+      CURRENT_EXCHANGE.set(previous);
+    }
+  }
+
+  synchronized ConnectionLaneStats stats(final ConnectionLane lane) {
+    final Counters count = counters.get(lane);
+    final int max = lane == ConnectionLane.STREAMING ? streamingLimit : getMaxTotal();
+    return ConnectionLaneStats.create(lane, count.leased, count.pending, max, count.peakLeased);
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+    final Exchange exchange = CURRENT_EXCHANGE.get();
+    final ConnectionLane lane = exchange == null ? ConnectionLane.CONTROL : exchange.lane();
+    if (exchange != null) {
+      exchange.listener(listener);
+    }
+
+    return new ConnectionRequest() {
+      private volatile ConnectionRequest request;
+
+      @Override
+      public HttpClientConnection get(final long timeout, final TimeUnit unit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+        final long start = System.nanoTime();
+        final long deadline = timeout > 0 ? start + unit.toNanos(timeout) : 0;
+        HttpClientConnection connection = null;
+        try {
+          admit(lane, deadline);
+          try {
+            request = pool.requestConnection(route, state);
+            connection = new InstrumentedConnection(
+                (ManagedHttpClientConnection) request.get(remainingMillis(deadline), MILLISECONDS),
+                lane, exchange);
+            return connection;
+          } finally {
+            leased(lane, connection != null);
+          }
+        } finally {
+          if (exchange != null) {
+            exchange.leased(System.nanoTime() - start);
+          }
+        }
+      }
+
+      @Override
+      public boolean cancel() {
+        final ConnectionRequest pending = request;
+        return pending != null && pending.cancel();
+      }
+    };
+  }
+
+  @Override
+  public void releaseConnection(final HttpClientConnection managedConn, final Object state,
+                                final long keepalive, final TimeUnit tunit) {
+    if (!(managedConn instanceof InstrumentedConnection)) {
+      pool.releaseConnection(managedConn, state, keepalive, tunit);
+      return;
+    }
+    final InstrumentedConnection connection = (InstrumentedConnection) managedConn;
+    connection.recordTransferred();
+    // Count the release first, the pool may hand the connection to a waiting lease right away
+    released(connection.lane());
+    pool.releaseConnection(connection.delegate(), state, keepalive, tunit);
+    if (connection.exchange() != null) {
+      connection.exchange().released();
+    }
+  }
+
+  @Override
+  public void connect(final HttpClientConnection managedConn, final HttpRoute route,
+                      final int connectTimeout, final HttpContext context) throws IOException {
+    final long start = System.nanoTime();
+    try {
+      pool.connect(unwrap(managedConn), route, connectTimeout, context);
+    } finally {
+      final Exchange exchange = managedConn instanceof InstrumentedConnection
+                                ? ((InstrumentedConnection) managedConn).exchange()
+                                : null;
+      if (exchange != null) {
+        exchange.connected(System.nanoTime() - start);
+      }
+    }
+  }
+
+  @Override
+  public void upgrade(final HttpClientConnection managedConn, final HttpRoute route,
+                      final HttpContext context) throws IOException {
+    pool.upgrade(unwrap(managedConn), route, context);
+  }
+
+  @Override
+  public void routeComplete(final HttpClientConnection managedConn, final HttpRoute route,
+                            final HttpContext context) throws IOException {
+    pool.routeComplete(unwrap(managedConn), route, context);
+  }
+
+  @Override
+  public void closeIdleConnections(final long idletime, final TimeUnit tunit) {
+    pool.closeIdleConnections(idletime, tunit);
+  }
+
+  @Override
+  public void closeExpiredConnections() {
+    pool.closeExpiredConnections();
+  }
+
+  @Override
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  @Override
+  public void setMaxTotal(final int max) {
+    pool.setMaxTotal(max);
+  }
+
+  @Override
+  public int getMaxTotal() {
+    return pool.getMaxTotal();
+  }
+
+  @Override
+  public void setDefaultMaxPerRoute(final int max) {
+    pool.setDefaultMaxPerRoute(max);
+  }
+
+  @Override
+  public int getDefaultMaxPerRoute() {
+    return pool.getDefaultMaxPerRoute();
+  }
+
+  @Override
+  public void setMaxPerRoute(final HttpRoute route, final int max) {
+    pool.setMaxPerRoute(route, max);
+  }
+
+  @Override
+  public int getMaxPerRoute(final HttpRoute route) {
+    return pool.getMaxPerRoute(route);
+  }
+
+  @Override
+  public PoolStats getTotalStats() {
+    return pool.getTotalStats();
+  }
+
+  @Override
+  public PoolStats getStats(final HttpRoute route) {
+    return pool.getStats(route);
+  }
+
+  /**
+   * Wait until a lease of {@code lane} may enter the pool.
+   */
+  private synchronized void admit(final ConnectionLane lane, final long deadline)
+      throws InterruptedException, ConnectionPoolTimeoutException {
+    final Counters count = counters.get(lane);
+    count.pending++;
+    if (lane != ConnectionLane.STREAMING) {
+      return;
+    }
+
+    final Counters control = counters.get(ConnectionLane.CONTROL);
+    boolean admitted = false;
+    try {
+      while (count.admitted >= streamingLimit || (prioritizeControl && control.pending > 0)) {
+        if (deadline == 0) {
+          wait();
+        } else {
+          final long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            throw new ConnectionPoolTimeoutException(
+                "Timeout waiting for a streaming connection (limit " + streamingLimit + ")");
+          }
+          NANOSECONDS.timedWait(this, remaining);
+        }
+      }
+      count.admitted++;
+      admitted = true;
+    } finally {
+      if (!admitted) {
+        count.pending--;
+      }
+    }
+  }
+
+  private synchronized void leased(final ConnectionLane lane, final boolean success) {
+    final Counters count = counters.get(lane);
+    count.pending--;
+    if (success) {
+      count.leased++;
+      count.peakLeased = Math.max(count.peakLeased, count.leased);
+    } else if (lane == ConnectionLane.STREAMING) {
+      count.admitted--;
+    }
+    notifyAll();
+  }
+
+  private synchronized void released(final ConnectionLane lane) {
+    final Counters count = counters.get(lane);
+    count.leased--;
+    if (lane == ConnectionLane.STREAMING) {
+      count.admitted--;
+    }
+    notifyAll();
+  }
+
+  private static HttpClientConnection unwrap(final HttpClientConnection managedConn) {
+    return managedConn instanceof InstrumentedConnection
+           ? ((InstrumentedConnection) managedConn).delegate()
+           : managedConn;
+  }
+
+  private static long remainingMillis(final long deadline) {
+    if (deadline == 0) {
+      return 0;
+    }
+    // The pool treats 0 as "wait forever", so never hand it less than a millisecond
+    return Math.max(1, NANOSECONDS.toMillis(deadline - System.nanoTime()));
+  }
+
+  private static class Counters {
+    int pending;
+    int admitted;
+    int leased;
+    int peakLeased;
+  }
+}
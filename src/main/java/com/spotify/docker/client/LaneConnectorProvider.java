@@ -0,0 +1,126 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.util.concurrent.Future;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+/**
+ * Wraps another connector so that each request is tracked as an {@link Exchange} by the
+ * {@link LaneConnectionManager} while it executes. The lane is taken from the
+ * {@link #LANE_PROPERTY} request property; requests without it use {@link ConnectionLane#CONTROL}.
+ * Requests with a {@link #DEFAULT_READ_TIMEOUT_PROPERTY} get it as their read timeout, unless
+ * they set {@link ClientProperties#READ_TIMEOUT} themselves.
+ */
+class LaneConnectorProvider implements ConnectorProvider {
+
+  static final String LANE_PROPERTY = "com.spotify.docker.client.connectionLane";
+  static final String DEFAULT_READ_TIMEOUT_PROPERTY =
+      "com.spotify.docker.client.defaultReadTimeout";
+
+  private final ConnectorProvider delegate;
+
+  LaneConnectorProvider(final ConnectorProvider delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Connector getConnector(final Client client, final Configuration runtimeConfig) {
+    return new LaneConnector(delegate.getConnector(client, runtimeConfig));
+  }
+
+  private static class LaneConnector implements Connector {
+
+    private final Connector delegate;
+
+    LaneConnector(final Connector delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public ClientResponse apply(final ClientRequest request) {
+      defaultReadTimeout(request);
+      final Exchange exchange = exchange(request);
+      final Exchange previous = LaneConnectionManager.enter(exchange);
+      try {
+        return delegate.apply(request);
+      } catch (RuntimeException e) {
+        exchange.failed(e.getCause() == null ? e : e.getCause());
+        throw e;
+      } finally {
+        LaneConnectionManager.exit(previous);
+      }
+    }
+
+    @Override
+    public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+      defaultReadTimeout(request);
+      final Exchange exchange = exchange(request);
+      final Exchange previous = LaneConnectionManager.enter(exchange);
+      try {
+        return delegate.apply(request, new AsyncConnectorCallback() {
+          @Override
+          public void response(final ClientResponse response) {
+            callback.response(response);
+          }
+
+          @Override
+          public void failure(final Throwable failure) {
+            exchange.failed(failure.getCause() == null ? failure : failure.getCause());
+            callback.failure(failure);
+          }
+        });
+      } finally {
+        LaneConnectionManager.exit(previous);
+      }
+    }
+
+    @Override
+    public String getName() {
+      return delegate.getName();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+
+    private static void defaultReadTimeout(final ClientRequest request) {
+      final Object timeout = request.getProperty(DEFAULT_READ_TIMEOUT_PROPERTY);
+      if (timeout != null && request.getProperty(ClientProperties.READ_TIMEOUT) == null) {
+        request.setProperty(ClientProperties.READ_TIMEOUT, timeout);
+      }
+    }
+
+    private static Exchange exchange(final ClientRequest request) {
+      final ConnectionLane lane = request.resolveProperty(LANE_PROPERTY, ConnectionLane.class);
+      return new Exchange(request.getMethod(), request.getUri().getRawPath(),
+                          lane == null ? ConnectionLane.CONTROL : lane);
+    }
+  }
+}
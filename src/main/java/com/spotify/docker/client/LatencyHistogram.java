@@ -0,0 +1,116 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative durations in the style of HdrHistogram: values are
+ * counted in buckets whose width grows with the magnitude of the value, 32 buckets per power of
+ * two, so any recorded value is reported with a relative error of at most about 3% and the whole
+ * range of {@code long} fits in under two thousand counters.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param value A duration; negative values are recorded as 0.
+   */
+  public void record(final long value) {
+    final long recorded = Math.max(0, value);
+    counts.incrementAndGet(index(recorded));
+    count.incrementAndGet();
+    sum.addAndGet(recorded);
+    long current = max.get();
+    while (recorded > current && !max.compareAndSet(current, recorded)) {
+      current = max.get();
+    }
+  }
+
+  public long count() {
+    return count.get();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    final long total = count.get();
+    return total == 0 ? 0 : (double) sum.get() / total;
+  }
+
+  /**
+   * @param percentile A percentile between 0 and 100.
+   * @return The upper bound of the bucket holding the value at {@code percentile}, capped at the
+   *     largest recorded value, or 0 if nothing was recorded.
+   */
+  public long percentile(final double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100, "percentile must be within [0, 100]");
+    final long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  static int index(final long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  static long highestEquivalentValue(final int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    final int shift = index / SUB_BUCKETS - 1;
+    final long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{count=" + count() + ", p50=" + percentile(50) + ", p99="
+           + percentile(99) + ", max=" + max() + "}";
+  }
+}
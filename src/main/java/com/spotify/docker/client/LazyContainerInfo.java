@@ -0,0 +1,204 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerMount;
+import com.spotify.docker.client.messages.ContainerState;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.NetworkSettings;
+
+import java.util.Date;
+
+/**
+ * A {@link ContainerInfo} that keeps the JSON it was sent as and decodes each field the first time
+ * it is read. Equality, hashing and {@link #toString()} decode a full copy each time.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE)
+final class LazyContainerInfo extends ContainerInfo {
+
+  private static final TypeFactory TYPES = objectMapper().getTypeFactory();
+  private static final JavaType STRING_LIST =
+      TYPES.constructCollectionType(ImmutableList.class, String.class);
+  private static final JavaType STRING_MAP =
+      TYPES.constructMapType(ImmutableMap.class, String.class, String.class);
+  private static final JavaType BOOLEAN_MAP =
+      TYPES.constructMapType(ImmutableMap.class, String.class, Boolean.class);
+  private static final JavaType MOUNT_LIST =
+      TYPES.constructCollectionType(ImmutableList.class, ContainerMount.class);
+
+  private final RawJsonObject json;
+
+  LazyContainerInfo(final RawJsonObject json) {
+    this.json = json;
+  }
+
+  @Override
+  public String id() {
+    return json.get("Id", String.class);
+  }
+
+  @Override
+  public Date created() {
+    return json.get("Created", Date.class);
+  }
+
+  @Override
+  public String path() {
+    return json.get("Path", String.class);
+  }
+
+  @Override
+  public ImmutableList<String> args() {
+    return json.get("Args", STRING_LIST);
+  }
+
+  @Override
+  public ContainerConfig config() {
+    return json.get("Config", ContainerConfig.class);
+  }
+
+  @Override
+  public HostConfig hostConfig() {
+    return json.get("HostConfig", HostConfig.class);
+  }
+
+  @Override
+  public ContainerState state() {
+    return json.get("State", ContainerState.class);
+  }
+
+  @Override
+  public String image() {
+    return json.get("Image", String.class);
+  }
+
+  @Override
+  public NetworkSettings networkSettings() {
+    return json.get("NetworkSettings", NetworkSettings.class);
+  }
+
+  @Override
+  public String resolvConfPath() {
+    return json.get("ResolvConfPath", String.class);
+  }
+
+  @Override
+  public String hostnamePath() {
+    return json.get("HostnamePath", String.class);
+  }
+
+  @Override
+  public String hostsPath() {
+    return json.get("HostsPath", String.class);
+  }
+
+  @Override
+  public String name() {
+    return json.get("Name", String.class);
+  }
+
+  @Override
+  public String driver() {
+    return json.get("Driver", String.class);
+  }
+
+  @Override
+  public String execDriver() {
+    return json.get("ExecDriver", String.class);
+  }
+
+  @Override
+  public String processLabel() {
+    return json.get("ProcessLabel", String.class);
+  }
+
+  @Override
+  public String mountLabel() {
+    return json.get("MountLabel", String.class);
+  }
+
+  @Override
+  @Deprecated
+  public ImmutableMap<String, String> volumes() {
+    return json.get("Volumes", STRING_MAP);
+  }
+
+  @Override
+  @Deprecated
+  public ImmutableMap<String, Boolean> volumesRw() {
+    return json.get("VolumesRW", BOOLEAN_MAP);
+  }
+
+  @Override
+  public String appArmorProfile() {
+    return json.get("AppArmorProfile", String.class);
+  }
+
+  @Override
+  public ImmutableList<String> execIds() {
+    return json.get("ExecIDs", STRING_LIST);
+  }
+
+  @Override
+  public String logPath() {
+    return json.get("LogPath", String.class);
+  }
+
+  @Override
+  public Long restartCount() {
+    return json.get("RestartCount", Long.class);
+  }
+
+  @Override
+  public ImmutableList<ContainerMount> mounts() {
+    return json.get("Mounts", MOUNT_LIST);
+  }
+
+  @Override
+  public Node node() {
+    return json.get("Node", Node.class);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return json.decode(ContainerInfo.class).equals(obj);
+  }
+
+  @Override
+  public int hashCode() {
+    return json.decode(ContainerInfo.class).hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return json.decode(ContainerInfo.class).toString();
+  }
+}
@@ -0,0 +1,128 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ImageInfo;
+import com.spotify.docker.client.messages.RootFs;
+
+import java.util.Date;
+
+/**
+ * An {@link ImageInfo} that keeps the JSON it was sent as and decodes each field the first time it
+ * is read. Equality, hashing and {@link #toString()} decode a full copy each time.
+ */
+@JsonAutoDetect(fieldVisibility = Visibility.NONE)
+final class LazyImageInfo extends ImageInfo {
+
+  private final RawJsonObject json;
+
+  LazyImageInfo(final RawJsonObject json) {
+    this.json = json;
+  }
+
+  @Override
+  public String id() {
+    return json.get("Id", String.class);
+  }
+
+  @Override
+  public String parent() {
+    return json.get("Parent", String.class);
+  }
+
+  @Override
+  public String comment() {
+    return json.get("Comment", String.class);
+  }
+
+  @Override
+  public Date created() {
+    return json.get("Created", Date.class);
+  }
+
+  @Override
+  public String container() {
+    return json.get("Container", String.class);
+  }
+
+  @Override
+  public ContainerConfig containerConfig() {
+    return json.get("ContainerConfig", ContainerConfig.class);
+  }
+
+  @Override
+  public String dockerVersion() {
+    return json.get("DockerVersion", String.class);
+  }
+
+  @Override
+  public String author() {
+    return json.get("Author", String.class);
+  }
+
+  @Override
+  public ContainerConfig config() {
+    return json.get("Config", ContainerConfig.class);
+  }
+
+  @Override
+  public String architecture() {
+    return json.get("Architecture", String.class);
+  }
+
+  @Override
+  public String os() {
+    return json.get("Os", String.class);
+  }
+
+  @Override
+  public Long size() {
+    return json.get("Size", Long.class);
+  }
+
+  @Override
+  public Long virtualSize() {
+    return json.get("VirtualSize", Long.class);
+  }
+
+  @Override
+  public RootFs rootFs() {
+    return json.get("RootFS", RootFs.class);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return json.decode(ImageInfo.class).equals(obj);
+  }
+
+  @Override
+  public int hashCode() {
+    return json.decode(ImageInfo.class).hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return json.decode(ImageInfo.class).toString();
+  }
+}
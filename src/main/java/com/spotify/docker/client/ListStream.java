@@ -0,0 +1,97 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * The elements of a JSON array response, e.g. of {@link DockerClient#streamTasks()}, decoded one
+ * at a time as they are iterated rather than all at once into a list. Only the element being
+ * decoded is held in memory. With a {@link Projection}, only its fields of each element are
+ * decoded.
+ *
+ * <p>The connection is returned to the pool once the last element has been read. Close the stream
+ * to give up on the rest of the response early; it is safe to close it more than once.</p>
+ *
+ * @param <T> The type of the elements.
+ */
+public class ListStream<T> extends AbstractIterator<T> implements Closeable {
+
+  private final CloseableHttpResponse response;
+  private final Projection<T> projection;
+  private JsonParser parser;
+
+  ListStream(final CloseableHttpResponse response, final Projection<T> projection) {
+    this.response = response;
+    this.projection = projection;
+  }
+
+  @Override
+  protected T computeNext() {
+    try {
+      if (parser == null) {
+        parser = objectMapper().getFactory().createParser(response.getEntity().getContent());
+        final JsonToken start = parser.nextToken();
+        if (start == JsonToken.VALUE_NULL) {
+          return finish();
+        }
+        if (start != JsonToken.START_ARRAY) {
+          throw new IOException("Expected a JSON array but got " + start);
+        }
+      }
+      final JsonToken token = parser.nextToken();
+      if (token == JsonToken.END_ARRAY || token == null) {
+        return finish();
+      }
+      return projection.read(parser);
+    } catch (IOException e) {
+      close();
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private T finish() throws IOException {
+    // Reading to the end lets the connection be reused instead of closed
+    EntityUtils.consume(response.getEntity());
+    close();
+    return endOfData();
+  }
+
+  @Override
+  public void close() {
+    try {
+      response.close();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Log output captured with a bounded amount of memory, see
+ * {@link ExtendedLogStream#readAtMost(int)} and {@link ExtendedLogStream#readTail(int, int)}.
+ */
+public final class LogCapture {
+
+  private final String content;
+  private final long totalBytes;
+  private final long truncatedBytes;
+
+  LogCapture(final String content, final long totalBytes, final long truncatedBytes) {
+    this.content = content;
+    this.totalBytes = totalBytes;
+    this.truncatedBytes = truncatedBytes;
+  }
+
+  /**
+   * The captured output.
+   */
+  public String content() {
+    return content;
+  }
+
+  /**
+   * The number of bytes read from the log stream, including the ones that were not captured.
+   */
+  public long totalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * The number of bytes read from the log stream but left out of the {@link #content()}.
+   */
+  public long truncatedBytes() {
+    return truncatedBytes;
+  }
+
+  public boolean truncated() {
+    return truncatedBytes > 0;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("totalBytes", totalBytes)
+        .add("truncatedBytes", truncatedBytes)
+        .toString();
+  }
+}
@@ -0,0 +1,39 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * The position up to which the log of a container has been delivered: the timestamp of the last
+ * delivered line, and how many lines with that same timestamp were delivered.
+ */
+@AutoValue
+public abstract class LogCheckpoint {
+
+  public abstract long timestampNanos();
+
+  public abstract int linesAtTimestamp();
+
+  public static LogCheckpoint create(final long timestampNanos, final int linesAtTimestamp) {
+    return new AutoValue_LogCheckpoint(timestampNanos, linesAtTimestamp);
+  }
+}
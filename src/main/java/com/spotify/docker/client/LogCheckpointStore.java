@@ -0,0 +1,47 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+
+/**
+ * Stores how far the log of each container has been delivered by a {@link LogShipper}.
+ */
+public interface LogCheckpointStore {
+
+  /**
+   * Get the checkpoint of a container.
+   *
+   * @param containerId The container.
+   * @return The last saved checkpoint, or null if there is none.
+   * @throws IOException if the checkpoint could not be read
+   */
+  LogCheckpoint load(String containerId) throws IOException;
+
+  /**
+   * Replace the checkpoint of a container. It must be durable once this returns.
+   *
+   * @param containerId The container.
+   * @param checkpoint  The new checkpoint.
+   * @throws IOException if the checkpoint could not be written
+   */
+  void save(String containerId, LogCheckpoint checkpoint) throws IOException;
+}
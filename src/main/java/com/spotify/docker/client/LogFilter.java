@@ -0,0 +1,184 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the lines of a log that contain one of a set of literals, and optionally also match a
+ * regular expression. See {@link ExtendedLogStream#filter(LogFilter)}.
+ *
+ * <p>The literals are matched on the raw UTF-8 bytes of the log with an Aho-Corasick automaton,
+ * so a line is scanned once whatever the number of literals, and lines that do not contain any of
+ * them are never decoded. The regular expression is only applied to the lines that do.
+ */
+public final class LogFilter {
+
+  private static final int ALPHABET = 256;
+
+  private final List<String> literals;
+  private final int[] transitions;
+  private final boolean[] accepting;
+  private final Pattern pattern;
+
+  private LogFilter(final List<String> literals, final int[] transitions,
+                    final boolean[] accepting, final Pattern pattern) {
+    this.literals = literals;
+    this.transitions = transitions;
+    this.accepting = accepting;
+    this.pattern = pattern;
+  }
+
+  /**
+   * Select the lines that contain at least one of the literals.
+   *
+   * @param literals The literals to look for.
+   * @return The filter.
+   */
+  public static LogFilter containing(final String... literals) {
+    return containingAny(Arrays.asList(literals));
+  }
+
+  /**
+   * Select the lines that contain at least one of the literals.
+   *
+   * @param literals The literals to look for.
+   * @return The filter.
+   */
+  public static LogFilter containingAny(final Collection<String> literals) {
+    checkArgument(!literals.isEmpty(), "no literals");
+    final List<byte[]> patterns = new ArrayList<>();
+    for (final String literal : literals) {
+      checkArgument(!literal.isEmpty(), "empty literal");
+      checkArgument(literal.indexOf('\n') < 0, "literal spans lines: %s", literal);
+      patterns.add(literal.getBytes(UTF_8));
+    }
+
+    // Build the trie, -1 meaning no edge yet
+    final List<int[]> trie = new ArrayList<>();
+    final List<Boolean> output = new ArrayList<>();
+    trie.add(newNode());
+    output.add(false);
+    for (final byte[] bytes : patterns) {
+      int state = 0;
+      for (final byte value : bytes) {
+        final int symbol = value & 0xff;
+        if (trie.get(state)[symbol] < 0) {
+          trie.get(state)[symbol] = trie.size();
+          trie.add(newNode());
+          output.add(false);
+        }
+        state = trie.get(state)[symbol];
+      }
+      output.set(state, true);
+    }
+
+    // Turn it into a complete automaton breadth first, following failure links for missing edges
+    final int states = trie.size();
+    final int[] transitions = new int[states * ALPHABET];
+    final boolean[] accepting = new boolean[states];
+    final int[] failure = new int[states];
+    final Queue<Integer> queue = new ArrayDeque<>();
+    accepting[0] = output.get(0);
+    for (int symbol = 0; symbol < ALPHABET; symbol++) {
+      final int next = trie.get(0)[symbol];
+      if (next < 0) {
+        transitions[symbol] = 0;
+      } else {
+        transitions[symbol] = next;
+        failure[next] = 0;
+        queue.add(next);
+      }
+    }
+    while (!queue.isEmpty()) {
+      final int state = queue.remove();
+      accepting[state] = output.get(state) || accepting[failure[state]];
+      for (int symbol = 0; symbol < ALPHABET; symbol++) {
+        final int next = trie.get(state)[symbol];
+        final int fallback = transitions[failure[state] * ALPHABET + symbol];
+        if (next < 0) {
+          transitions[state * ALPHABET + symbol] = fallback;
+        } else {
+          transitions[state * ALPHABET + symbol] = next;
+          failure[next] = fallback;
+          queue.add(next);
+        }
+      }
+    }
+    return new LogFilter(ImmutableList.copyOf(literals), transitions, accepting, null);
+  }
+
+  /**
+   * Additionally require the lines that contain one of the literals to match the pattern.
+   *
+   * @param pattern The pattern to find in the line, without its line terminator.
+   * @return A new filter.
+   */
+  public LogFilter matching(final Pattern pattern) {
+    return new LogFilter(literals, transitions, accepting, checkNotNull(pattern, "pattern"));
+  }
+
+  public List<String> literals() {
+    return literals;
+  }
+
+  int next(final int state, final byte value) {
+    return transitions[state * ALPHABET + (value & 0xff)];
+  }
+
+  boolean accepts(final int state) {
+    return accepting[state];
+  }
+
+  /**
+   * Applies the pattern, if any, to a line that contains one of the literals.
+   */
+  boolean matches(final byte[] line, final int offset, final int length) {
+    if (pattern == null) {
+      return true;
+    }
+    int end = offset + length;
+    if (end > offset && line[end - 1] == '\n') {
+      end--;
+    }
+    if (end > offset && line[end - 1] == '\r') {
+      end--;
+    }
+    return pattern.matcher(new String(line, offset, end - offset, UTF_8)).find();
+  }
+
+  private static int[] newNode() {
+    final int[] node = new int[ALPHABET];
+    Arrays.fill(node, -1);
+    return node;
+  }
+}
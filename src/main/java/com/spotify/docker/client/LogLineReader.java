@@ -0,0 +1,336 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.spotify.docker.client.LogMessage.Stream;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Reads the messages of a {@link LogStream} as lines of UTF-8 text.
+ *
+ * <p>Frames rarely line up with line boundaries, so partial lines and partial multi-byte
+ * sequences are carried over to the next frame of the same stream. Stdout and stderr are assembled
+ * separately and lines are returned in the order they are completed. Malformed input is replaced
+ * with U+FFFD.
+ *
+ * <p>To avoid allocating, the {@link Line} returned by {@link #readLine()} is a view of an internal
+ * buffer that is only valid until the next call; use {@link Line#toString()} to keep it.
+ *
+ * <pre>
+ * {@code
+ * try (LogLineReader reader = new LogLineReader(docker.logs(id, stdout(), stderr()))) {
+ *   LogLineReader.Line line;
+ *   while ((line = reader.readLine()) != null) {
+ *     ...
+ *   }
+ * }
+ * }
+ * </pre>
+ */
+public class LogLineReader implements Closeable {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final LogStream stream;
+  private final int maxLineLength;
+  private final Map<Stream, Assembler> assemblers = new EnumMap<>(Stream.class);
+  private final Line line = new Line();
+  private Assembler active;
+  private boolean finished;
+  private long droppedLines;
+
+  /**
+   * Reads lines of any length.
+   *
+   * @param stream The log stream to read lines from.
+   */
+  public LogLineReader(final LogStream stream) {
+    this(stream, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Reads lines of at most {@code maxLineLength} chars. Longer lines are dropped without being
+   * buffered in full, see {@link #droppedLines()}.
+   *
+   * @param stream        The log stream to read lines from.
+   * @param maxLineLength The maximum length of a line, excluding its terminator.
+   */
+  public LogLineReader(final LogStream stream, final int maxLineLength) {
+    checkArgument(maxLineLength > 0, "maxLineLength must be positive");
+    this.stream = checkNotNull(stream, "stream");
+    this.maxLineLength = maxLineLength;
+  }
+
+  /**
+   * Read the next line. The line terminator, {@code \n} or {@code \r\n}, is not included. A last
+   * line without terminator is returned once the log stream ends.
+   *
+   * @return The next line, valid until the next call, or null at the end of the stream.
+   */
+  public Line readLine() {
+    while (true) {
+      if (active != null) {
+        if (active.nextLine()) {
+          return line;
+        }
+        if (active.input != null && active.input.hasRemaining()) {
+          active.decode();
+          continue;
+        }
+      }
+      if (finished || !stream.hasNext()) {
+        return finish();
+      }
+      final LogMessage message = stream.next();
+      active = assembler(message.stream());
+      active.input = message.content();
+      active.decode();
+    }
+  }
+
+  /**
+   * The number of lines dropped so far for being longer than the maximum line length.
+   */
+  public long droppedLines() {
+    return droppedLines;
+  }
+
+  @Override
+  public void close() {
+    stream.close();
+  }
+
+  private Line finish() {
+    finished = true;
+    active = null;
+    for (final Assembler assembler : assemblers.values()) {
+      if (assembler.lastLine()) {
+        active = assembler;
+        return line;
+      }
+    }
+    return null;
+  }
+
+  private Assembler assembler(final Stream stream) {
+    Assembler assembler = assemblers.get(stream);
+    if (assembler == null) {
+      assembler = new Assembler(stream);
+      assemblers.put(stream, assembler);
+    }
+    return assembler;
+  }
+
+  /**
+   * Decodes the frames of one stream into a buffer holding the current partial line.
+   */
+  private class Assembler {
+
+    private final Stream stream;
+    private final CharsetDecoder decoder = UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // Incomplete multi-byte sequence at the end of the previous frame
+    private final ByteBuffer carry = ByteBuffer.allocate(8);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_CAPACITY);
+    private ByteBuffer input;
+    // Chars of the line returned last, removed before looking for the next line
+    private int consumed;
+    // Chars before this position are known not to contain a line terminator
+    private int scanned;
+    private boolean dropping;
+    private boolean ended;
+
+    private Assembler(final Stream stream) {
+      this.stream = stream;
+    }
+
+    /**
+     * Finds the next complete line in the buffer, skipping lines that are too long.
+     */
+    private boolean nextLine() {
+      compact();
+      final char[] array = chars.array();
+      final int end = chars.position();
+      for (int i = scanned; i < end; i++) {
+        if (array[i] != '\n') {
+          continue;
+        }
+        consumed = i + 1;
+        scanned = 0;
+        if (dropping) {
+          dropping = false;
+          compact();
+          return nextLine();
+        }
+        final int length = i > 0 && array[i - 1] == '\r' ? i - 1 : i;
+        if (length > maxLineLength) {
+          droppedLines++;
+          compact();
+          return nextLine();
+        }
+        line.set(stream, array, length);
+        return true;
+      }
+      scanned = end;
+      if (end > maxLineLength) {
+        if (!dropping) {
+          droppedLines++;
+          dropping = true;
+        }
+        chars.clear();
+        scanned = 0;
+      }
+      return false;
+    }
+
+    /**
+     * Returns what is left without line terminator once the log stream has ended.
+     */
+    private boolean lastLine() {
+      if (ended) {
+        return nextLine();
+      }
+      ended = true;
+      compact();
+      carry.flip();
+      ensureCapacity(carry.remaining() + 2);
+      decoder.decode(carry, chars, true);
+      decoder.flush(chars);
+      carry.clear();
+      if (nextLine()) {
+        return true;
+      }
+      final int length = chars.position();
+      if (length == 0 || dropping) {
+        return false;
+      }
+      consumed = length;
+      line.set(stream, chars.array(), length);
+      return true;
+    }
+
+    private void decode() {
+      ensureCapacity(2);
+      if (carry.position() > 0) {
+        while (input.hasRemaining() && carry.hasRemaining()) {
+          carry.put(input.get());
+          carry.flip();
+          decoder.decode(carry, chars, false);
+          final boolean complete = !carry.hasRemaining();
+          carry.compact();
+          if (complete) {
+            break;
+          }
+        }
+        if (carry.position() > 0) {
+          return;
+        }
+      }
+      final CoderResult result = decoder.decode(input, chars, false);
+      if (result.isUnderflow() && input.hasRemaining()) {
+        // An incomplete sequence at the end of the frame, completed by the next one
+        carry.put(input);
+      }
+    }
+
+    private void compact() {
+      if (consumed == 0) {
+        return;
+      }
+      final int remaining = chars.position() - consumed;
+      System.arraycopy(chars.array(), consumed, chars.array(), 0, remaining);
+      chars.position(remaining);
+      consumed = 0;
+    }
+
+    private void ensureCapacity(final int needed) {
+      if (chars.remaining() >= needed) {
+        return;
+      }
+      final CharBuffer grown = CharBuffer.allocate(
+          Math.max(chars.capacity() * 2, chars.position() + needed));
+      chars.flip();
+      grown.put(chars);
+      chars = grown;
+    }
+  }
+
+  /**
+   * A line of a log, backed by the buffers of the reader that returned it.
+   */
+  public static final class Line implements CharSequence {
+
+    private Stream stream;
+    private char[] chars;
+    private int length;
+
+    private Line() {
+    }
+
+    private void set(final Stream stream, final char[] chars, final int length) {
+      this.stream = stream;
+      this.chars = chars;
+      this.length = length;
+    }
+
+    public Stream stream() {
+      return stream;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      if (start < 0 || end > length || start > end) {
+        throw new IndexOutOfBoundsException(start + ", " + end);
+      }
+      return CharBuffer.wrap(chars, start, end - start).slice();
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, 0, length);
+    }
+  }
+}
@@ -24,24 +24,41 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.nio.ByteBuffer;
 
+import javax.annotation.Nullable;
+
 public class LogMessage {
 
   final Stream stream;
   final ByteBuffer content;
+  final String containerId;
 
   public LogMessage(final int streamId, final ByteBuffer content) {
     this(Stream.of(streamId), content);
   }
 
   public LogMessage(final Stream stream, final ByteBuffer content) {
+    this(stream, content, null);
+  }
+
+  public LogMessage(final Stream stream, final ByteBuffer content, final String containerId) {
     this.stream = checkNotNull(stream, "stream");
     this.content = checkNotNull(content, "content");
+    this.containerId = containerId;
   }
 
   public Stream stream() {
     return stream;
   }
 
+  /**
+   * The container that wrote this message, if known. Only set for messages read from several
+   * containers at once, see {@link MergedLogStream}.
+   */
+  @Nullable
+  public String containerId() {
+    return containerId;
+  }
+
   public ByteBuffer content() {
     return content.asReadOnlyBuffer();
   }
@@ -37,6 +37,10 @@ public class LogReader implements Closeable {
   public static final int HEADER_SIZE = 8;
   public static final int FRAME_SIZE_OFFSET = 4;
 
+  // Reused by nextMessage(FrameFilter)
+  private final byte[] filterHeader = new byte[HEADER_SIZE];
+  private byte[] filterFrame = new byte[8 * 1024];
+
   public LogReader(final InputStream stream) {
     this.stream = stream;
   }
@@ -70,6 +74,103 @@ public class LogReader implements Closeable {
     return new LogMessage(streamId, ByteBuffer.wrap(frame));
   }
 
+  /**
+   * Reads frames into a reused buffer until one of them ends lines that pass the filter, without
+   * creating a {@link LogMessage} for the others.
+   *
+   * @return A message with the matching lines, or null at the end of the stream.
+   */
+  LogMessage nextMessage(final FrameFilter filter) throws IOException {
+    final ByteBuffer header = ByteBuffer.wrap(filterHeader);
+    while (true) {
+      stream.mark(HEADER_SIZE);
+      final int n = ByteStreams.read(stream, filterHeader, 0, HEADER_SIZE);
+      if (n == 0) {
+        return filter.finish(null);
+      }
+      final int idZ = header.getInt(0);
+      Stream frameStream = Stream.STDOUT;
+      final int frameSize;
+      if (n == HEADER_SIZE && (idZ == 0 || idZ == 0x01000000 || idZ == 0x02000000)) {
+        frameStream = Stream.of(filterHeader[0]);
+        frameSize = header.getInt(FRAME_SIZE_OFFSET);
+      } else {
+        stream.reset();
+        frameSize = stream.available();
+      }
+      if (filterFrame.length < frameSize) {
+        filterFrame = new byte[Math.max(frameSize, filterFrame.length * 2)];
+      }
+      ByteStreams.readFully(stream, filterFrame, 0, frameSize);
+      final LogMessage message = filter.filter(frameStream, filterFrame, 0, frameSize, null);
+      if (message != null) {
+        return message;
+      }
+    }
+  }
+
+  /**
+   * Copies the remaining frames to the writers without creating a {@link LogMessage} for each.
+   * Output that is not multiplexed, as for containers with a TTY, all goes to stdout.
+   */
+  void transferTo(final BufferedChannelWriter stdout, final BufferedChannelWriter stderr)
+      throws IOException {
+    final byte[] headerBytes = new byte[HEADER_SIZE];
+    final ByteBuffer header = ByteBuffer.wrap(headerBytes);
+    while (true) {
+      final int available = stream.available();
+      stdout.beforeRead(available);
+      stderr.beforeRead(available);
+      stream.mark(HEADER_SIZE);
+      final int n = readHeader(headerBytes);
+      if (n == 0) {
+        return;
+      }
+      final int idZ = header.getInt(0);
+      if (n < HEADER_SIZE || (idZ != 0 && idZ != 0x01000000 && idZ != 0x02000000)) {
+        stream.reset();
+        stdout.transferFrom(stream, -1);
+        return;
+      }
+      final int frameSize = header.getInt(FRAME_SIZE_OFFSET);
+      if (headerBytes[0] == Stream.STDOUT.id()) {
+        stdout.transferFrom(stream, frameSize);
+      } else if (headerBytes[0] == Stream.STDERR.id()) {
+        stderr.transferFrom(stream, frameSize);
+      } else {
+        ByteStreams.skipFully(stream, frameSize);
+      }
+    }
+  }
+
+  /**
+   * Reads up to a frame header, but no further than the first byte that cannot be part of one, so
+   * that output without frames is not held back until eight bytes of it have arrived.
+   */
+  private int readHeader(final byte[] headerBytes) throws IOException {
+    int length = 0;
+    while (length < HEADER_SIZE) {
+      final int read = stream.read(headerBytes, length, HEADER_SIZE - length);
+      if (read < 0) {
+        break;
+      }
+      length += read;
+      for (int i = 0; i < Math.min(length, FRAME_SIZE_OFFSET); i++) {
+        if (i == 0 ? (headerBytes[0] & 0xff) > 2 : headerBytes[i] != 0) {
+          return length;
+        }
+      }
+    }
+    return length;
+  }
+
+  /**
+   * @return What can be read without blocking, as estimated by {@link InputStream#available()}.
+   */
+  int available() throws IOException {
+    return stream.available();
+  }
+
   @Override
   public void close() throws IOException {
     // Jersey will close the stream and release the connection after we read all the data.
@@ -0,0 +1,293 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.exceptions.DockerException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivers the log of a container in batches of lines, and resumes where it left off after a
+ * restart.
+ *
+ * <p>Logs are requested with {@link LogsParam#timestamps()}. After each batch has been delivered,
+ * the timestamp of its last line is saved in a {@link LogCheckpointStore}. When shipping starts
+ * again, the log is requested {@link LogsParam#since(Integer)} the second of the checkpoint, and
+ * the lines up to the checkpoint are skipped with nanosecond precision. A batch that failed to be
+ * delivered is sent again, so delivery is at least once.
+ *
+ * <pre>
+ * {@code
+ * final LogShipper shipper = new LogShipper(docker, new FileLogCheckpointStore(path), sink);
+ * shipper.ship(containerId, stdout(), stderr(), follow());
+ * }
+ * </pre>
+ */
+public class LogShipper {
+
+  private static final Logger log = LoggerFactory.getLogger(LogShipper.class);
+
+  public static final int DEFAULT_BATCH_SIZE = 500;
+  public static final long DEFAULT_MAX_BATCH_DELAY_MILLIS = 1000;
+
+  private final DockerClient docker;
+  private final LogCheckpointStore checkpoints;
+  private final Sink sink;
+  private final int batchSize;
+  private final long maxBatchDelayNanos;
+
+  public LogShipper(final DockerClient docker, final LogCheckpointStore checkpoints,
+                    final Sink sink) {
+    this(docker, checkpoints, sink, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY_MILLIS);
+  }
+
+  /**
+   * Create a log shipper.
+   *
+   * @param docker              The client to read logs with.
+   * @param checkpoints         Where to keep how far each log has been delivered.
+   * @param sink                Where to deliver lines to.
+   * @param batchSize           The maximum number of lines per batch.
+   * @param maxBatchDelayMillis How long a line may wait for its batch to fill up. It is checked
+   *                            when a line arrives, and when the log ends.
+   */
+  public LogShipper(final DockerClient docker, final LogCheckpointStore checkpoints,
+                    final Sink sink, final int batchSize, final long maxBatchDelayMillis) {
+    checkArgument(batchSize > 0, "batchSize must be positive");
+    this.docker = checkNotNull(docker, "docker");
+    this.checkpoints = checkNotNull(checkpoints, "checkpoints");
+    this.sink = checkNotNull(sink, "sink");
+    this.batchSize = batchSize;
+    this.maxBatchDelayNanos = MILLISECONDS.toNanos(maxBatchDelayMillis);
+  }
+
+  /**
+   * Ship the log of a container from its checkpoint until the log ends, which is never for logs
+   * that are followed until the container stops.
+   *
+   * @param containerId The container to ship the log of.
+   * @param params      Params for controlling what streams to get and whether to follow or not.
+   *                    Without a checkpoint, {@code since} and {@code tail} control where to
+   *                    start.
+   * @return The number of lines delivered.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   * @throws DeliveryException    if the sink failed to deliver a batch
+   * @throws IOException          if a checkpoint could not be read or saved
+   */
+  public long ship(final String containerId, final LogsParam... params)
+      throws DockerException, InterruptedException, DeliveryException, IOException {
+    final LogCheckpoint checkpoint = checkpoints.load(containerId);
+    final List<LogsParam> logsParams = new ArrayList<>();
+    for (final LogsParam param : params) {
+      final String name = param.name();
+      if (name.equals("timestamps")
+          || (checkpoint != null && (name.equals("since") || name.equals("tail")))) {
+        continue;
+      }
+      logsParams.add(param);
+    }
+    logsParams.add(LogsParam.timestamps());
+    if (checkpoint != null) {
+      logsParams.add(LogsParam.since(
+          (int) NANOSECONDS.toSeconds(checkpoint.timestampNanos())));
+    }
+
+    final Batch batch = new Batch(containerId, checkpoint);
+    long skipped = 0;
+    long lastNanos = checkpoint == null ? Long.MIN_VALUE : checkpoint.timestampNanos();
+    try (LogLineReader reader = new LogLineReader(
+        docker.logs(containerId, logsParams.toArray(new LogsParam[logsParams.size()])))) {
+      LogLineReader.Line line;
+      while ((line = reader.readLine()) != null) {
+        final int space = indexOf(line, ' ');
+        String content = null;
+        if (space > 0) {
+          try {
+            lastNanos = Rfc3339.parseEpochNanos(line, 0, space);
+            content = line.subSequence(space + 1, line.length()).toString();
+          } catch (IllegalArgumentException e) {
+            // a line without timestamp belongs with the one before it
+          }
+        }
+        if (content == null) {
+          content = line.toString();
+        }
+        if (batch.skip(lastNanos)) {
+          skipped++;
+          continue;
+        }
+        batch.add(Line.create(containerId, line.stream(), lastNanos, content));
+        if (batch.lines.size() >= batchSize
+            || System.nanoTime() - batch.started >= maxBatchDelayNanos) {
+          batch.deliver();
+        }
+      }
+    }
+    batch.deliver();
+    log.debug("Shipped {} lines of container {}, skipped {} already delivered",
+              batch.delivered, containerId, skipped);
+    return batch.delivered;
+  }
+
+  private static int indexOf(final CharSequence chars, final char ch) {
+    for (int i = 0; i < chars.length(); i++) {
+      if (chars.charAt(i) == ch) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The lines waiting to be delivered, and how far delivery got.
+   */
+  private class Batch {
+
+    private final String containerId;
+    private final List<Line> lines = new ArrayList<>();
+    private final LogCheckpoint resumeFrom;
+    private long started;
+    private long delivered;
+    private long timestampNanos = Long.MIN_VALUE;
+    private int linesAtTimestamp;
+    private int skippedAtTimestamp;
+
+    private Batch(final String containerId, final LogCheckpoint resumeFrom) {
+      this.containerId = containerId;
+      this.resumeFrom = resumeFrom;
+      if (resumeFrom != null) {
+        this.timestampNanos = resumeFrom.timestampNanos();
+        this.linesAtTimestamp = resumeFrom.linesAtTimestamp();
+      }
+    }
+
+    /**
+     * Whether a line was delivered before the checkpoint this shipping resumed from.
+     */
+    private boolean skip(final long nanos) {
+      if (resumeFrom == null || nanos > resumeFrom.timestampNanos()) {
+        return false;
+      }
+      if (nanos < resumeFrom.timestampNanos()) {
+        return true;
+      }
+      return skippedAtTimestamp++ < resumeFrom.linesAtTimestamp();
+    }
+
+    private void add(final Line line) {
+      if (lines.isEmpty()) {
+        started = System.nanoTime();
+      }
+      lines.add(line);
+    }
+
+    private void deliver() throws InterruptedException, IOException {
+      if (lines.isEmpty()) {
+        return;
+      }
+      try {
+        sink.deliver(containerId, lines);
+      } catch (IOException e) {
+        throw new DeliveryException(containerId, lines.size(), e);
+      }
+      for (final Line line : lines) {
+        if (line.timestampNanos() == timestampNanos) {
+          linesAtTimestamp++;
+        } else {
+          timestampNanos = line.timestampNanos();
+          linesAtTimestamp = 1;
+        }
+      }
+      checkpoints.save(containerId, LogCheckpoint.create(timestampNanos, linesAtTimestamp));
+      delivered += lines.size();
+      lines.clear();
+    }
+  }
+
+  /**
+   * Receives the lines of a log.
+   */
+  public interface Sink {
+
+    /**
+     * Deliver a batch of lines. Once this returns, the lines are considered delivered and will not
+     * be delivered again.
+     *
+     * @param containerId The container the lines come from.
+     * @param lines       The lines in the order of the log. The list is reused once this returns.
+     * @throws IOException if the lines could not be delivered, which stops shipping.
+     * @throws InterruptedException If the thread is interrupted
+     */
+    void deliver(String containerId, List<Line> lines) throws IOException, InterruptedException;
+  }
+
+  /**
+   * Thrown by {@link #ship(String, LogsParam...)} when the sink failed to deliver a batch. The
+   * batch was not checkpointed, so it is delivered again when shipping is restarted.
+   */
+  public static class DeliveryException extends IOException {
+
+    private final String containerId;
+
+    public DeliveryException(final String containerId, final int lines, final Throwable cause) {
+      super("Failed to deliver " + lines + " lines of container " + containerId, cause);
+      this.containerId = containerId;
+    }
+
+    public String getContainerId() {
+      return containerId;
+    }
+  }
+
+  /**
+   * A line of a log, without its timestamp and line terminator.
+   */
+  @AutoValue
+  public abstract static class Line {
+
+    public abstract String containerId();
+
+    public abstract LogMessage.Stream stream();
+
+    /**
+     * The timestamp of the line in nanoseconds since the epoch.
+     */
+    public abstract long timestampNanos();
+
+    public abstract String content();
+
+    static Line create(final String containerId, final LogMessage.Stream stream,
+                       final long timestampNanos, final String content) {
+      return new AutoValue_LogShipper_Line(containerId, stream, timestampNanos, content);
+    }
+  }
+}
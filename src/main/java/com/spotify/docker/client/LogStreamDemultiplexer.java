@@ -0,0 +1,189 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.LogMessage.Stream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Splits the messages of a log stream into one {@link InputStream} per stream, reading the next
+ * message only when a view runs out of data. Messages for the other views are queued without
+ * copying, up to a maximum number of bytes per view.
+ */
+class LogStreamDemultiplexer {
+
+  private final Iterator<LogMessage> messages;
+  private final int maxBufferedBytes;
+  private final Map<Stream, View> views = new EnumMap<>(Stream.class);
+
+  LogStreamDemultiplexer(final Iterator<LogMessage> messages, final int maxBufferedBytes) {
+    this.messages = messages;
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  synchronized View view(final Stream stream) {
+    View view = views.get(stream);
+    if (view == null) {
+      view = new View(stream);
+      views.put(stream, view);
+    }
+    return view;
+  }
+
+  /**
+   * Returns the buffer the view should read from next, reading messages until one is found.
+   *
+   * @return A buffer with remaining bytes, or null at the end of the log stream.
+   */
+  private synchronized ByteBuffer next(final View view) throws IOException {
+    while (true) {
+      if (view.closed) {
+        throw new ClosedChannelException();
+      }
+      if (view.overflowed) {
+        throw new IOException(view.stream + " output exceeded the buffer of " + maxBufferedBytes
+                              + " bytes while reading the other streams");
+      }
+      final ByteBuffer head = view.pending.peek();
+      if (head != null) {
+        if (head.hasRemaining()) {
+          return head;
+        }
+        view.pending.poll();
+        view.pendingBytes -= head.limit();
+        continue;
+      }
+      final LogMessage message;
+      try {
+        if (!messages.hasNext()) {
+          return null;
+        }
+        message = messages.next();
+      } catch (RuntimeException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw e;
+      }
+      final View target = views.get(message.stream());
+      if (target == null || target.closed || target.overflowed) {
+        continue;
+      }
+      // sliced so that its limit is its size once consumed
+      final ByteBuffer content = message.content().slice();
+      if (target != view && target.pendingBytes + content.remaining() > maxBufferedBytes) {
+        target.overflowed = true;
+        target.pending.clear();
+        target.pendingBytes = 0;
+        continue;
+      }
+      target.pending.add(content);
+      target.pendingBytes += content.remaining();
+    }
+  }
+
+  private synchronized void close(final View view) {
+    view.closed = true;
+    view.pending.clear();
+    view.pendingBytes = 0;
+  }
+
+  /**
+   * Reads one stream of the log, as an {@link InputStream} or as a {@link ReadableByteChannel}.
+   */
+  class View extends InputStream implements ReadableByteChannel {
+
+    private final Stream stream;
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+    private long pendingBytes;
+    private boolean closed;
+    private boolean overflowed;
+
+    private View(final Stream stream) {
+      this.stream = stream;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final ByteBuffer buffer = next(this);
+      return buffer == null ? -1 : buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      final ByteBuffer buffer = next(this);
+      if (buffer == null) {
+        return -1;
+      }
+      final int size = Math.min(len, buffer.remaining());
+      buffer.get(bytes, off, size);
+      return size;
+    }
+
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+      if (!dst.hasRemaining()) {
+        return 0;
+      }
+      final ByteBuffer buffer = next(this);
+      if (buffer == null) {
+        return -1;
+      }
+      final int size = Math.min(dst.remaining(), buffer.remaining());
+      final int limit = buffer.limit();
+      buffer.limit(buffer.position() + size);
+      dst.put(buffer);
+      buffer.limit(limit);
+      return size;
+    }
+
+    @Override
+    public int available() {
+      synchronized (LogStreamDemultiplexer.this) {
+        final ByteBuffer head = pending.peek();
+        return head == null ? 0 : head.remaining();
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      synchronized (LogStreamDemultiplexer.this) {
+        return !closed;
+      }
+    }
+
+    @Override
+    public void close() {
+      LogStreamDemultiplexer.this.close(this);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+/**
+ * Static utility methods for {@link LogStream}s.
+ */
+public final class LogStreams {
+
+  private LogStreams() {
+  }
+
+  /**
+   * The operations of {@link ExtendedLogStream} on a log stream. The log streams of this library,
+   * such as those of {@link DefaultDockerClient#logs}, are returned as they are. Others are
+   * wrapped, and should then only be read through the returned stream.
+   *
+   * @param stream The log stream.
+   * @return The stream itself, or a stream that reads it.
+   */
+  public static ExtendedLogStream extended(final LogStream stream) {
+    if (stream instanceof ExtendedLogStream) {
+      return (ExtendedLogStream) stream;
+    }
+    return new ForwardingLogStream(stream);
+  }
+
+  private static class ForwardingLogStream extends AbstractLogStream {
+
+    private final LogStream delegate;
+
+    private ForwardingLogStream(final LogStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    protected LogMessage computeNext() {
+      return delegate.hasNext() ? delegate.next() : endOfData();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+}
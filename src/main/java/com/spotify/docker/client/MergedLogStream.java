@@ -0,0 +1,394 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.exceptions.DockerException;
+import com.spotify.docker.client.messages.swarm.Task;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the logs of several containers into a single stream ordered by timestamp. Every
+ * {@link LogMessage} is tagged with the {@link LogMessage#containerId()} it came from, and starts
+ * with its RFC 3339 timestamp just like with {@link LogsParam#timestamps()}, which is always
+ * requested.
+ *
+ * <p>The logs of all containers are opened and read concurrently, each into a bounded read-ahead
+ * buffer, and merged with a heap on their timestamps. Without {@link LogsParam#follow()} the result
+ * is totally ordered. When following, a container that stays quiet would hold back everyone else,
+ * so a message is also released once it has waited for {@code maxDelayMillis}.
+ */
+public class MergedLogStream extends AbstractLogStream {
+
+  private static final Logger log = LoggerFactory.getLogger(MergedLogStream.class);
+
+  public static final int DEFAULT_READ_AHEAD = 1024;
+  public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+  private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(final Entry first, final Entry second) {
+      if (first.nanos != second.nanos) {
+        return first.nanos < second.nanos ? -1 : 1;
+      }
+      if (first.source.index != second.source.index) {
+        return first.source.index < second.source.index ? -1 : 1;
+      }
+      return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+    }
+  };
+
+  private final List<Source> sources;
+  private final PriorityQueue<Entry> heap;
+  private final List<Source> waiting;
+  private final Semaphore available = new Semaphore(0);
+  private final ExecutorService executor;
+  private final boolean follow;
+  private final long maxDelayNanos;
+  private volatile boolean closed;
+
+  private MergedLogStream(final DockerClient docker, final Collection<String> containerIds,
+                          final int readAhead, final long maxDelayMillis,
+                          final LogsParam... params) {
+    checkArgument(readAhead > 0, "readAhead must be positive");
+    final List<LogsParam> withTimestamps = new ArrayList<>();
+    boolean follow = false;
+    for (final LogsParam param : params) {
+      if (param.name().equals("follow")) {
+        follow = Boolean.parseBoolean(param.value());
+      }
+      if (!param.name().equals("timestamps")) {
+        withTimestamps.add(param);
+      }
+    }
+    withTimestamps.add(LogsParam.timestamps());
+    final LogsParam[] sourceParams = withTimestamps.toArray(new LogsParam[withTimestamps.size()]);
+
+    this.follow = follow;
+    this.maxDelayNanos = MILLISECONDS.toNanos(maxDelayMillis);
+    this.heap = new PriorityQueue<>(Math.max(1, containerIds.size()), ORDER);
+    this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+        .setNameFormat("merged-log-stream-%d")
+        .setDaemon(true)
+        .build());
+
+    final ImmutableList.Builder<Source> sources = ImmutableList.builder();
+    int index = 0;
+    for (final String containerId : containerIds) {
+      final Source source = new Source(index++, docker, containerId, sourceParams, readAhead);
+      sources.add(source);
+      executor.execute(source);
+    }
+    this.sources = sources.build();
+    this.waiting = new ArrayList<>(this.sources);
+  }
+
+  /**
+   * Open the merged logs of the given containers.
+   *
+   * @param docker       The client to read the logs with.
+   * @param containerIds The containers to read the logs of.
+   * @param params       Params for controlling what streams to get and whether to tail or not.
+   * @return A merged log message stream.
+   */
+  public static MergedLogStream create(final DockerClient docker,
+                                       final Collection<String> containerIds,
+                                       final LogsParam... params) {
+    return create(docker, containerIds, DEFAULT_READ_AHEAD, DEFAULT_MAX_DELAY_MILLIS, params);
+  }
+
+  /**
+   * Open the merged logs of the given containers.
+   *
+   * @param docker         The client to read the logs with.
+   * @param containerIds   The containers to read the logs of.
+   * @param readAhead      The maximum number of messages buffered per container.
+   * @param maxDelayMillis When following, how long a message may be held back waiting for older
+   *                       messages from quiet containers.
+   * @param params         Params for controlling what streams to get and whether to tail or not.
+   * @return A merged log message stream.
+   */
+  public static MergedLogStream create(final DockerClient docker,
+                                       final Collection<String> containerIds,
+                                       final int readAhead, final long maxDelayMillis,
+                                       final LogsParam... params) {
+    checkNotNull(docker, "docker");
+    checkNotNull(containerIds, "containerIds");
+    return new MergedLogStream(docker, containerIds, readAhead, maxDelayMillis, params);
+  }
+
+  /**
+   * Open the merged logs of the containers running the tasks of a swarm service on the node the
+   * client is connected to. Use a client per node to cover tasks scheduled elsewhere.
+   *
+   * @param docker    The client to read the logs with.
+   * @param serviceId The id or name of the service.
+   * @param params    Params for controlling what streams to get and whether to tail or not.
+   * @return A merged log message stream.
+   * @throws DockerException      if a server error occurred (500)
+   * @throws InterruptedException If the thread is interrupted
+   */
+  public static MergedLogStream forService(final DockerClient docker, final String serviceId,
+                                           final LogsParam... params)
+      throws DockerException, InterruptedException {
+    final String nodeId = docker.info().swarm().nodeId();
+    final List<Task> tasks = docker.listTasks(Task.Criteria.builder()
+        .serviceName(serviceId)
+        .nodeId(nodeId)
+        .build());
+    final List<String> containerIds = new ArrayList<>();
+    for (final Task task : tasks) {
+      if (task.status() != null && task.status().containerStatus() != null
+          && task.status().containerStatus().containerId() != null) {
+        containerIds.add(task.status().containerStatus().containerId());
+      }
+    }
+    return create(docker, containerIds, params);
+  }
+
+  @Override
+  protected LogMessage computeNext() {
+    try {
+      while (!closed) {
+        available.drainPermits();
+        fill();
+        final Entry head = heap.peek();
+        if (waiting.isEmpty() || (follow && head != null
+                                  && System.nanoTime() - head.arrival >= maxDelayNanos)) {
+          if (head == null) {
+            break;
+          }
+          heap.poll();
+          if (!head.source.finished) {
+            waiting.add(head.source);
+          }
+          return head.message;
+        }
+        if (follow && head != null) {
+          available.tryAcquire(maxDelayNanos - (System.nanoTime() - head.arrival), NANOSECONDS);
+        } else {
+          available.acquire();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return endOfData();
+  }
+
+  /**
+   * Moves the next buffered message of every source that has none in the heap into the heap.
+   */
+  private void fill() {
+    for (int i = waiting.size() - 1; i >= 0; i--) {
+      final Source source = waiting.get(i);
+      final Entry entry = source.queue.poll();
+      if (entry == null) {
+        continue;
+      }
+      waiting.remove(i);
+      if (entry.message == null) {
+        source.finished = true;
+        if (source.failure != null) {
+          throw Throwables.propagate(source.failure);
+        }
+      } else {
+        heap.add(entry);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+    for (final Source source : sources) {
+      source.close();
+    }
+  }
+
+  private static class Entry {
+
+    private final Source source;
+    private final long nanos;
+    private final long sequence;
+    private final long arrival;
+    private final LogMessage message;
+
+    private Entry(final Source source, final long nanos, final long sequence,
+                  final LogMessage message) {
+      this.source = source;
+      this.nanos = nanos;
+      this.sequence = sequence;
+      this.arrival = System.nanoTime();
+      this.message = message;
+    }
+  }
+
+  /**
+   * Reads the log of one container into its bounded queue, ending with an entry without message.
+   */
+  private class Source implements Runnable {
+
+    private final int index;
+    private final DockerClient docker;
+    private final String containerId;
+    private final LogsParam[] params;
+    private final BlockingQueue<Entry> queue;
+    private final AsciiSequence timestamp = new AsciiSequence();
+    private volatile LogStream stream;
+    private volatile Exception failure;
+    private boolean finished;
+
+    private Source(final int index, final DockerClient docker, final String containerId,
+                   final LogsParam[] params, final int readAhead) {
+      this.index = index;
+      this.docker = docker;
+      this.containerId = containerId;
+      this.params = params;
+      this.queue = new ArrayBlockingQueue<>(readAhead);
+    }
+
+    @Override
+    public void run() {
+      long sequence = 0;
+      long nanos = Long.MIN_VALUE;
+      try {
+        stream = docker.logs(containerId, params);
+        if (closed) {
+          stream.close();
+        }
+        while (!closed && stream.hasNext()) {
+          final LogMessage message = stream.next();
+          final ByteBuffer content = message.content();
+          nanos = parseTimestamp(content, nanos);
+          queue.put(new Entry(this, nanos, sequence++,
+                              new LogMessage(message.stream(), content, containerId)));
+          available.release();
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (Exception e) {
+        if (!closed) {
+          log.debug("Failed to read logs of container {}", containerId, e);
+          failure = e;
+        }
+      }
+      try {
+        queue.put(new Entry(this, Long.MAX_VALUE, sequence, null));
+        available.release();
+      } catch (InterruptedException e) {
+        // closed
+      }
+    }
+
+    /**
+     * Parses the timestamp prefix of a message. Messages without one, such as the continuation
+     * of a long line, keep the timestamp of the previous message.
+     */
+    private long parseTimestamp(final ByteBuffer content, final long previous) {
+      final int start = content.position();
+      for (int i = start; i < content.limit(); i++) {
+        if (content.get(i) == ' ') {
+          timestamp.wrap(content, start, i);
+          try {
+            return Rfc3339.parseEpochNanos(timestamp);
+          } catch (IllegalArgumentException e) {
+            return previous;
+          }
+        }
+      }
+      return previous;
+    }
+
+    private void close() {
+      final LogStream stream = this.stream;
+      if (stream != null) {
+        try {
+          stream.close();
+        } catch (RuntimeException e) {
+          log.debug("Failed to close logs of container {}", containerId, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * A reusable {@link CharSequence} view of ASCII bytes, to parse timestamps without decoding them
+   * into Strings first.
+   */
+  private static class AsciiSequence implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+
+    private void wrap(final ByteBuffer buffer, final int start, final int end) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public int length() {
+      return end - start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      return (char) (buffer.get(start + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(final int from, final int to) {
+      final StringBuilder chars = new StringBuilder(to - from);
+      for (int i = from; i < to; i++) {
+        chars.append(charAt(i));
+      }
+      return chars;
+    }
+
+    @Override
+    public String toString() {
+      return subSequence(0, length()).toString();
+    }
+  }
+}
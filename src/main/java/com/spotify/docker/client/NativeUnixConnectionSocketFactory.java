@@ -0,0 +1,86 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+
+import org.apache.http.HttpHost;
+import org.apache.http.annotation.Contract;
+import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Provides a ConnectionSocketFactory for connecting Apache HTTP clients to Unix sockets with the
+ * Unix domain socket channels of JDK 16 and later, instead of jnr-unixsocket. Used by {@link
+ * DefaultDockerClient} whenever {@link #isSupported()}.
+ */
+@Contract(threading = ThreadingBehavior.IMMUTABLE_CONDITIONAL)
+public class NativeUnixConnectionSocketFactory implements ConnectionSocketFactory {
+
+  private final SocketAddress socketAddress;
+
+  public NativeUnixConnectionSocketFactory(final URI socketUri) throws IOException {
+    final String filename = socketUri.toString()
+        .replaceAll("^unix:///", "unix://localhost/")
+        .replaceAll("^unix://localhost", "");
+
+    this.socketAddress = UnixDomainSockets.address(filename);
+  }
+
+  /**
+   * Whether the JDK supports Unix domain socket channels.
+   */
+  public static boolean isSupported() {
+    return UnixDomainSockets.isSupported();
+  }
+
+  @Override
+  public Socket createSocket(final HttpContext context) throws IOException {
+    return new NativeUnixSocket(socketAddress);
+  }
+
+  @Override
+  public Socket connectSocket(final int connectTimeout,
+                              final Socket socket,
+                              final HttpHost host,
+                              final InetSocketAddress remoteAddress,
+                              final InetSocketAddress localAddress,
+                              final HttpContext context) throws IOException {
+    if (!(socket instanceof NativeUnixSocket)) {
+      throw new AssertionError("Unexpected socket: " + socket);
+    }
+
+    try {
+      ((NativeUnixSocket) socket).connect(connectTimeout);
+    } catch (SocketTimeoutException e) {
+      socket.close();
+      throw new ConnectTimeoutException(e, host, remoteAddress.getAddress());
+    }
+    return socket;
+  }
+}
@@ -0,0 +1,342 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Adapts a JDK Unix domain {@link SocketChannel}, which has no {@link Socket} of its own, to the
+ * socket Apache HttpClient expects. The channel is non-blocking and waits on a selector of its
+ * own, so that connect and read timeouts are enforced instead of blocking forever.
+ */
+class NativeUnixSocket extends Socket {
+
+  private final SocketAddress address;
+  private final SocketChannel channel;
+  private final Selector selector;
+  private final SelectionKey key;
+  private final InputStream inputStream = new ChannelInputStream();
+  private final OutputStream outputStream = new ChannelOutputStream();
+  private volatile int soTimeout;
+  private volatile boolean inputShutdown;
+  private volatile boolean outputShutdown;
+  private volatile boolean closed;
+
+  NativeUnixSocket(final SocketAddress address) throws IOException {
+    this.address = address;
+    this.channel = UnixDomainSockets.openChannel();
+    this.selector = Selector.open();
+    try {
+      channel.configureBlocking(false);
+      this.key = channel.register(selector, 0);
+    } catch (IOException e) {
+      channel.close();
+      selector.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Connects to the socket file.
+   *
+   * @param timeout The connect timeout in milliseconds, or 0 for none.
+   * @throws SocketTimeoutException if the connection could not be made in time
+   */
+  void connect(final int timeout) throws IOException {
+    if (!channel.connect(address)) {
+      await(SelectionKey.OP_CONNECT, timeout);
+      channel.finishConnect();
+    }
+  }
+
+  @Override
+  public void connect(final SocketAddress endpoint, final int timeout) throws IOException {
+    connect(timeout);
+  }
+
+  /**
+   * Waits until the channel is ready for the operation. The selector also returns early when it is
+   * woken up or the thread is interrupted, so it is waited on again for the time that is left.
+   */
+  private void await(final int operation, final int timeout) throws IOException {
+    synchronized (selector) {
+      key.interestOps(operation);
+      try {
+        final long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeout);
+        long remaining = timeout;
+        while (selector.select(remaining) == 0) {
+          if (closed) {
+            throw new SocketException("Socket closed");
+          }
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted waiting on " + address);
+          }
+          if (timeout > 0) {
+            final long left = deadline - System.nanoTime();
+            if (left <= 0) {
+              throw new SocketTimeoutException("Timed out waiting on " + address);
+            }
+            // at least a millisecond, since 0 would wait without a timeout
+            remaining = Math.max(1, NANOSECONDS.toMillis(left));
+          }
+        }
+        selector.selectedKeys().clear();
+      } finally {
+        if (key.isValid()) {
+          key.interestOps(0);
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void wakeup() {
+    selector.wakeup();
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    checkOpen();
+    return inputStream;
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    checkOpen();
+    return outputStream;
+  }
+
+  private void checkOpen() throws SocketException {
+    if (closed) {
+      throw new SocketException("Socket closed");
+    }
+  }
+
+  @Override
+  public void setSoTimeout(final int timeout) {
+    this.soTimeout = timeout;
+  }
+
+  @Override
+  public int getSoTimeout() {
+    return soTimeout;
+  }
+
+  @Override
+  public boolean isConnected() {
+    return channel.isConnected();
+  }
+
+  @Override
+  public boolean isBound() {
+    return channel.isConnected();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public boolean isInputShutdown() {
+    return inputShutdown;
+  }
+
+  @Override
+  public boolean isOutputShutdown() {
+    return outputShutdown;
+  }
+
+  @Override
+  public void shutdownInput() throws IOException {
+    channel.shutdownInput();
+    inputShutdown = true;
+  }
+
+  @Override
+  public void shutdownOutput() throws IOException {
+    channel.shutdownOutput();
+    outputShutdown = true;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      channel.close();
+    } finally {
+      selector.close();
+    }
+  }
+
+  @Override
+  public SocketAddress getRemoteSocketAddress() {
+    return address;
+  }
+
+  @Override
+  public SocketAddress getLocalSocketAddress() {
+    return null;
+  }
+
+  @Override
+  public InetAddress getInetAddress() {
+    return null;
+  }
+
+  @Override
+  public InetAddress getLocalAddress() {
+    return null;
+  }
+
+  @Override
+  public int getPort() {
+    return 0;
+  }
+
+  @Override
+  public int getLocalPort() {
+    return -1;
+  }
+
+  // TCP options do not apply to Unix domain sockets
+
+  @Override
+  public void setTcpNoDelay(final boolean on) {
+  }
+
+  @Override
+  public boolean getTcpNoDelay() {
+    return false;
+  }
+
+  @Override
+  public void setKeepAlive(final boolean on) {
+  }
+
+  @Override
+  public boolean getKeepAlive() {
+    return false;
+  }
+
+  @Override
+  public void setReuseAddress(final boolean on) {
+  }
+
+  @Override
+  public boolean getReuseAddress() {
+    return false;
+  }
+
+  @Override
+  public void setSoLinger(final boolean on, final int linger) {
+  }
+
+  @Override
+  public int getSoLinger() {
+    return -1;
+  }
+
+  @Override
+  public void setSendBufferSize(final int size) {
+  }
+
+  @Override
+  public void setReceiveBufferSize(final int size) {
+  }
+
+  @Override
+  public String toString() {
+    return "NativeUnixSocket[" + address + "]";
+  }
+
+  private class ChannelInputStream extends InputStream {
+
+    private final byte[] single = new byte[1];
+
+    @Override
+    public int read() throws IOException {
+      final int read = read(single, 0, 1);
+      return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes, off, len);
+      int read = channel.read(buffer);
+      while (read == 0) {
+        await(SelectionKey.OP_READ, soTimeout);
+        read = channel.read(buffer);
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      NativeUnixSocket.this.close();
+    }
+  }
+
+  private class ChannelOutputStream extends OutputStream {
+
+    @Override
+    public void write(final int value) throws IOException {
+      write(new byte[]{(byte) value}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int off, final int len) throws IOException {
+      final ByteBuffer buffer = ByteBuffer.wrap(bytes, off, len);
+      while (buffer.hasRemaining()) {
+        if (channel.write(buffer) == 0) {
+          await(SelectionKey.OP_WRITE, 0);
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      NativeUnixSocket.this.close();
+    }
+  }
+}
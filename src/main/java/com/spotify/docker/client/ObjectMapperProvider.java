@@ -23,21 +23,142 @@ package com.spotify.docker.client;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
-import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
+import com.spotify.docker.client.messages.AttachedNetwork;
+import com.spotify.docker.client.messages.BlockIoStats;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerChange;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ContainerCreation;
+import com.spotify.docker.client.messages.ContainerExit;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerMount;
+import com.spotify.docker.client.messages.ContainerState;
+import com.spotify.docker.client.messages.ContainerStats;
+import com.spotify.docker.client.messages.ContainerUpdate;
+import com.spotify.docker.client.messages.CpuStats;
+import com.spotify.docker.client.messages.Device;
+import com.spotify.docker.client.messages.EndpointConfig;
+import com.spotify.docker.client.messages.Event;
+import com.spotify.docker.client.messages.ExecCreation;
+import com.spotify.docker.client.messages.ExecState;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.Image;
+import com.spotify.docker.client.messages.ImageHistory;
+import com.spotify.docker.client.messages.ImageInfo;
+import com.spotify.docker.client.messages.ImageSearchResult;
+import com.spotify.docker.client.messages.Info;
+import com.spotify.docker.client.messages.Ipam;
+import com.spotify.docker.client.messages.IpamConfig;
+import com.spotify.docker.client.messages.LogConfig;
+import com.spotify.docker.client.messages.MemoryStats;
+import com.spotify.docker.client.messages.Network;
+import com.spotify.docker.client.messages.NetworkConfig;
+import com.spotify.docker.client.messages.NetworkConnection;
+import com.spotify.docker.client.messages.NetworkCreation;
+import com.spotify.docker.client.messages.NetworkSettings;
+import com.spotify.docker.client.messages.NetworkStats;
+import com.spotify.docker.client.messages.PidsStats;
+import com.spotify.docker.client.messages.PortBinding;
+import com.spotify.docker.client.messages.ProcessConfig;
+import com.spotify.docker.client.messages.ProgressDetail;
+import com.spotify.docker.client.messages.ProgressMessage;
+import com.spotify.docker.client.messages.RegistryAuth;
+import com.spotify.docker.client.messages.RegistryConfigs;
+import com.spotify.docker.client.messages.RemovedImage;
+import com.spotify.docker.client.messages.RootFs;
+import com.spotify.docker.client.messages.ServiceCreateResponse;
+import com.spotify.docker.client.messages.TopResults;
+import com.spotify.docker.client.messages.Version;
+import com.spotify.docker.client.messages.Volume;
+import com.spotify.docker.client.messages.VolumeList;
+import com.spotify.docker.client.messages.mount.BindOptions;
+import com.spotify.docker.client.messages.mount.Driver;
+import com.spotify.docker.client.messages.mount.Mount;
+import com.spotify.docker.client.messages.mount.TmpfsOptions;
+import com.spotify.docker.client.messages.mount.VolumeOptions;
+import com.spotify.docker.client.messages.swarm.CaConfig;
+import com.spotify.docker.client.messages.swarm.Config;
+import com.spotify.docker.client.messages.swarm.ConfigBind;
+import com.spotify.docker.client.messages.swarm.ConfigCreateResponse;
+import com.spotify.docker.client.messages.swarm.ConfigFile;
+import com.spotify.docker.client.messages.swarm.ConfigSpec;
+import com.spotify.docker.client.messages.swarm.ContainerSpec;
+import com.spotify.docker.client.messages.swarm.ContainerStatus;
+import com.spotify.docker.client.messages.swarm.DispatcherConfig;
+import com.spotify.docker.client.messages.swarm.DnsConfig;
+import com.spotify.docker.client.messages.swarm.EncryptionConfig;
+import com.spotify.docker.client.messages.swarm.Endpoint;
+import com.spotify.docker.client.messages.swarm.EndpointSpec;
+import com.spotify.docker.client.messages.swarm.EndpointVirtualIp;
+import com.spotify.docker.client.messages.swarm.EngineConfig;
+import com.spotify.docker.client.messages.swarm.EnginePlugin;
+import com.spotify.docker.client.messages.swarm.ExternalCa;
+import com.spotify.docker.client.messages.swarm.GlobalService;
+import com.spotify.docker.client.messages.swarm.IpamOptions;
+import com.spotify.docker.client.messages.swarm.JoinTokens;
+import com.spotify.docker.client.messages.swarm.ManagerStatus;
+import com.spotify.docker.client.messages.swarm.NetworkAttachment;
+import com.spotify.docker.client.messages.swarm.NetworkAttachmentConfig;
+import com.spotify.docker.client.messages.swarm.NetworkSpec;
+import com.spotify.docker.client.messages.swarm.Node;
+import com.spotify.docker.client.messages.swarm.NodeDescription;
+import com.spotify.docker.client.messages.swarm.NodeInfo;
+import com.spotify.docker.client.messages.swarm.NodeSpec;
+import com.spotify.docker.client.messages.swarm.NodeStatus;
+import com.spotify.docker.client.messages.swarm.OrchestrationConfig;
+import com.spotify.docker.client.messages.swarm.Placement;
+import com.spotify.docker.client.messages.swarm.Platform;
+import com.spotify.docker.client.messages.swarm.PortConfig;
+import com.spotify.docker.client.messages.swarm.Preference;
+import com.spotify.docker.client.messages.swarm.RaftConfig;
+import com.spotify.docker.client.messages.swarm.RemoteManager;
+import com.spotify.docker.client.messages.swarm.ReplicatedService;
+import com.spotify.docker.client.messages.swarm.ResourceRequirements;
+import com.spotify.docker.client.messages.swarm.Resources;
+import com.spotify.docker.client.messages.swarm.RestartPolicy;
+import com.spotify.docker.client.messages.swarm.Secret;
+import com.spotify.docker.client.messages.swarm.SecretBind;
+import com.spotify.docker.client.messages.swarm.SecretCreateResponse;
+import com.spotify.docker.client.messages.swarm.SecretFile;
+import com.spotify.docker.client.messages.swarm.SecretSpec;
+import com.spotify.docker.client.messages.swarm.Service;
+import com.spotify.docker.client.messages.swarm.ServiceMode;
+import com.spotify.docker.client.messages.swarm.ServiceSpec;
+import com.spotify.docker.client.messages.swarm.Spread;
+import com.spotify.docker.client.messages.swarm.Swarm;
+import com.spotify.docker.client.messages.swarm.SwarmCluster;
+import com.spotify.docker.client.messages.swarm.SwarmInfo;
+import com.spotify.docker.client.messages.swarm.SwarmInit;
+import com.spotify.docker.client.messages.swarm.SwarmJoin;
+import com.spotify.docker.client.messages.swarm.SwarmSpec;
+import com.spotify.docker.client.messages.swarm.Task;
+import com.spotify.docker.client.messages.swarm.TaskDefaults;
+import com.spotify.docker.client.messages.swarm.TaskSpec;
+import com.spotify.docker.client.messages.swarm.TaskStatus;
+import com.spotify.docker.client.messages.swarm.UnlockKey;
+import com.spotify.docker.client.messages.swarm.UpdateConfig;
+import com.spotify.docker.client.messages.swarm.UpdateStatus;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Map;
+import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import javax.ws.rs.Produces;
@@ -55,13 +176,6 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
 
   private static final Logger log = LoggerFactory.getLogger(ObjectMapperProvider.class);
 
-  private static final Function<? super Object, ?> EMPTY_MAP = new Function<Object, Object>() {
-    @Override
-    public Object apply(final Object input) {
-      return Collections.emptyMap();
-    }
-  };
-
   private static final SimpleModule MODULE = new SimpleModule();
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
@@ -69,8 +183,10 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
     try {
       MODULE.addSerializer(Set.class, new SetSerializer());
       MODULE.addDeserializer(Set.class, new SetDeserializer());
-      MODULE.addSerializer(ImmutableSet.class, new ImmutableSetSerializer());
-      MODULE.addDeserializer(ImmutableSet.class, new ImmutableSetDeserializer());
+      MODULE.addSerializer(ImmutableSet.class, new SetSerializer());
+      MODULE.addDeserializer(ImmutableSet.class, new SetDeserializer());
+      MODULE.addDeserializer(Date.class, new DateDeserializer());
+      MODULE.addDeserializer(String.class, new CanonicalStringDeserializer(null));
       OBJECT_MAPPER.registerModule(new GuavaModule());
       OBJECT_MAPPER.registerModule(MODULE);
       OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
@@ -82,6 +198,61 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
     }
   }
 
+  // Every message type of the Docker API, nested ones included, so that none is left to be
+  // introspected on first use. ObjectMapperProviderTest checks that new messages are added here.
+  static final List<Class<?>> MESSAGE_TYPES = ImmutableList.<Class<?>>of(
+      AttachedNetwork.class, BindOptions.class, BlockIoStats.class, CaConfig.class,
+      com.spotify.docker.client.messages.swarm.Driver.class,
+      com.spotify.docker.client.messages.swarm.IpamConfig.class,
+      com.spotify.docker.client.messages.swarm.Network.class,
+      com.spotify.docker.client.messages.swarm.Version.class, Config.class, ConfigBind.class,
+      ConfigCreateResponse.class, ConfigFile.class, ConfigSpec.class, Container.class,
+      Container.PortMapping.class, ContainerChange.class, ContainerConfig.class,
+      ContainerConfig.Healthcheck.class, ContainerConfig.NetworkingConfig.class,
+      ContainerCreation.class, ContainerExit.class, ContainerInfo.class, ContainerInfo.Node.class,
+      ContainerMount.class, ContainerSpec.class, ContainerState.class, ContainerState.Health.class,
+      ContainerState.HealthLog.class, ContainerStats.class, ContainerStatus.class,
+      ContainerUpdate.class, CpuStats.class, CpuStats.CpuUsage.class, CpuStats.ThrottlingData.class,
+      Device.class, DispatcherConfig.class, DnsConfig.class, Driver.class, EncryptionConfig.class,
+      Endpoint.class, EndpointConfig.class, EndpointSpec.class, EndpointVirtualIp.class,
+      EngineConfig.class, EnginePlugin.class, Event.Actor.class, Event.class, ExecCreation.class,
+      ExecState.class, ExternalCa.class, GlobalService.class, HostConfig.BlkioDeviceRate.class,
+      HostConfig.BlkioWeightDevice.class, HostConfig.class, HostConfig.LxcConfParameter.class,
+      HostConfig.RestartPolicy.class, HostConfig.Ulimit.class, Image.class, ImageHistory.class,
+      ImageInfo.class, ImageSearchResult.class, Info.class, Info.IndexConfig.class,
+      Info.Plugins.class, Info.RegistryConfig.class, Ipam.class, IpamConfig.class,
+      IpamOptions.class, JoinTokens.class, LogConfig.class, ManagerStatus.class, MemoryStats.class,
+      MemoryStats.Stats.class, Mount.class, Network.class, Network.Container.class,
+      NetworkAttachment.class, NetworkAttachmentConfig.class, NetworkConfig.class,
+      NetworkConnection.class, NetworkCreation.class, NetworkSettings.class, NetworkSpec.class,
+      NetworkStats.class, Node.class, NodeDescription.class, NodeInfo.class, NodeSpec.class,
+      NodeStatus.class, OrchestrationConfig.class, PidsStats.class, Placement.class, Platform.class,
+      PortBinding.class, PortConfig.class, Preference.class, ProcessConfig.class,
+      ProgressDetail.class, ProgressMessage.class, RaftConfig.class, RegistryAuth.class,
+      RegistryConfigs.class, RemoteManager.class, RemovedImage.class, ReplicatedService.class,
+      ResourceRequirements.class, Resources.class, RestartPolicy.class, RootFs.class, Secret.class,
+      SecretBind.class, SecretCreateResponse.class, SecretFile.class, SecretSpec.class,
+      Service.class, ServiceCreateResponse.class, ServiceMode.class, ServiceSpec.class,
+      Spread.class, Swarm.class, SwarmCluster.class, SwarmInfo.class, SwarmInit.class,
+      SwarmJoin.class, SwarmSpec.class, Task.class, TaskDefaults.class, TaskSpec.class,
+      TaskStatus.class, TmpfsOptions.class, TopResults.class, UnlockKey.class, UpdateConfig.class,
+      UpdateStatus.class, Version.class, Volume.class, VolumeList.class, VolumeOptions.class);
+
+  // The element types of the lists DefaultDockerClient reads
+  static final List<Class<?>> MESSAGE_LIST_TYPES = ImmutableList.<Class<?>>of(
+      Config.class, Container.class, ContainerChange.class, Image.class, ImageHistory.class,
+      ImageSearchResult.class, Network.class, Node.class, RemovedImage.class, Secret.class,
+      Service.class, Task.class);
+
+  // Properties whose values recur across the elements of a list: what an object runs, where, and
+  // in which state. Labels covers the values of label maps, whose keys, like all field names, are
+  // already canonicalized by Jackson's symbol table.
+  private static final Set<String> REPETITIVE_PROPERTIES = ImmutableSet.of(
+      "Command", "DesiredState", "Driver", "Gateway", "Image", "ImageID", "Labels", "Mode",
+      "NetworkID", "NodeID", "Propagation", "ServiceID", "State", "Status", "Type");
+
+  private static volatile StringInterner interner;
+
   @Override
   public ObjectMapper getContext(Class<?> type) {
     return OBJECT_MAPPER;
@@ -91,43 +262,168 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
     return OBJECT_MAPPER;
   }
 
+  /**
+   * Builds the Jackson serializers and deserializers of the Docker API messages ahead of use.
+   * Jackson introspects each type and its nested types the first time it is read or written, and
+   * caches the result, so the first call of every kind is much slower than the ones after it.
+   * Calling this once at startup, possibly from a background thread, moves that cost out of the
+   * first requests. It is safe to call more than once or concurrently with requests.
+   */
+  public static void preloadCodecs() {
+    preloadCodecs(OBJECT_MAPPER);
+  }
+
+  static void preloadCodecs(final ObjectMapper objectMapper) {
+    final TypeFactory typeFactory = objectMapper.getTypeFactory();
+    for (final Class<?> type : MESSAGE_TYPES) {
+      preload(objectMapper, typeFactory.constructType(type));
+    }
+    for (final Class<?> type : MESSAGE_LIST_TYPES) {
+      preload(objectMapper, typeFactory.constructCollectionType(List.class, type));
+    }
+  }
+
+  private static void preload(final ObjectMapper objectMapper, final JavaType type) {
+    // Both prefetch and cache the codec of the root type
+    objectMapper.readerFor(type);
+    objectMapper.writerFor(type);
+  }
+
+  /**
+   * Makes decoded messages share a single String instance for each value of properties that
+   * repeat across large lists, such as image names, label values, states and node ids. Without it
+   * a list of thousands of containers or tasks holds a separate copy of every occurrence, which
+   * adds up when the results are kept around, e.g. in an inventory cache.
+   *
+   * <p>The strings are canonicalized through a fixed-size table of {@code capacity} entries, so
+   * memory stays bounded. When more distinct values than that are in use, some duplicates remain.
+   * Interning costs some decoding time, so it is off by default. It applies to everything decoded
+   * after the call.</p>
+   *
+   * @param capacity The number of distinct strings to keep canonical copies of.
+   */
+  public static void enableStringInterning(final int capacity) {
+    interner = new StringInterner(capacity);
+  }
+
+  /**
+   * Turns off {@link #enableStringInterning(int) string interning} and releases its table.
+   */
+  public static void disableStringInterning() {
+    interner = null;
+  }
+
+  /**
+   * Writes a set the way the Docker API encodes sets such as {@code ExposedPorts} and
+   * {@code Volumes}: as an object whose field names are the elements and whose values are all
+   * empty objects.
+   */
   private static class SetSerializer extends JsonSerializer<Set> {
 
     @Override
     public void serialize(final Set value, final JsonGenerator jgen,
                           final SerializerProvider provider) throws IOException {
-      final Map map = (value == null) ? null : Maps.asMap(value, EMPTY_MAP);
-      OBJECT_MAPPER.writeValue(jgen, map);
+      jgen.writeStartObject();
+      for (final Object element : value) {
+        if (element == null) {
+          provider.reportMappingProblem("Null element in a Set is not allowed in JSON");
+        }
+        jgen.writeFieldName(element.toString());
+        jgen.writeStartObject();
+        jgen.writeEndObject();
+      }
+      jgen.writeEndObject();
     }
   }
 
-  private static class SetDeserializer extends JsonDeserializer<Set> {
+  /**
+   * Reads a set encoded as by {@link SetSerializer}, keeping the field names and skipping their
+   * values, whatever they are.
+   */
+  private static class SetDeserializer extends JsonDeserializer<ImmutableSet> {
 
     @Override
-    public Set<?> deserialize(final JsonParser jp, final DeserializationContext ctxt)
+    public ImmutableSet<?> deserialize(final JsonParser jp, final DeserializationContext ctxt)
         throws IOException {
-      final Map map = OBJECT_MAPPER.readValue(jp, Map.class);
-      return (map == null) ? null : map.keySet();
+      JsonToken token = jp.getCurrentToken();
+      if (token == JsonToken.START_OBJECT) {
+        token = jp.nextToken();
+      } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+        return (ImmutableSet<?>) ctxt.handleUnexpectedToken(Set.class, jp);
+      }
+      final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+      for (; token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+        builder.add(jp.getCurrentName());
+        jp.nextToken();
+        jp.skipChildren();
+      }
+      return builder.build();
     }
   }
 
-  private static class ImmutableSetSerializer extends JsonSerializer<ImmutableSet> {
+  /**
+   * Decodes strings as Jackson does, and if {@link #enableStringInterning(int) interning} is on and
+   * the property being decoded is one of {@link #REPETITIVE_PROPERTIES}, canonicalizes them.
+   */
+  private static class CanonicalStringDeserializer extends StdScalarDeserializer<String>
+      implements ContextualDeserializer {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String property;
+
+    CanonicalStringDeserializer(final String property) {
+      super(String.class);
+      this.property = property;
+    }
 
     @Override
-    public void serialize(final ImmutableSet value, final JsonGenerator jgen,
-                          final SerializerProvider provider) throws IOException {
-      final Map map = (value == null) ? null : Maps.asMap(value, EMPTY_MAP);
-      OBJECT_MAPPER.writeValue(jgen, map);
+    public JsonDeserializer<?> createContextual(final DeserializationContext ctxt,
+                                                final BeanProperty property) {
+      if (property != null && REPETITIVE_PROPERTIES.contains(property.getName())) {
+        return new CanonicalStringDeserializer(property.getName());
+      }
+      // Let Jackson use its own fast paths for all other strings
+      return StringDeserializer.instance;
+    }
+
+    @Override
+    public String deserialize(final JsonParser jp, final DeserializationContext ctxt)
+        throws IOException {
+      final String value = StringDeserializer.instance.deserialize(jp, ctxt);
+      final StringInterner interner = ObjectMapperProvider.interner;
+      return (interner == null || property == null) ? value : interner.intern(value);
+    }
+
+    @Override
+    public boolean isCachable() {
+      return true;
     }
   }
 
-  private static class ImmutableSetDeserializer extends JsonDeserializer<ImmutableSet> {
+  /**
+   * Decodes the RFC 3339 timestamps Docker sends straight from the parser's text. It is stateless,
+   * so unlike going through {@link DockerDateFormat} there is no per-call clone of the mapper's
+   * DateFormat. Numbers, and strings that are not RFC 3339, get Jackson's usual date handling.
+   */
+  private static class DateDeserializer extends StdScalarDeserializer<Date> {
+
+    private static final long serialVersionUID = 1L;
+
+    DateDeserializer() {
+      super(Date.class);
+    }
 
     @Override
-    public ImmutableSet<?> deserialize(final JsonParser jp, final DeserializationContext ctxt)
+    public Date deserialize(final JsonParser jp, final DeserializationContext ctxt)
         throws IOException {
-      final Map map = OBJECT_MAPPER.readValue(jp, Map.class);
-      return (map == null) ? null : ImmutableSet.copyOf(map.keySet());
+      if (jp.hasToken(JsonToken.VALUE_STRING)) {
+        final Date date = DockerDateFormat.parseRfc3339(jp.getText());
+        if (date != null) {
+          return date;
+        }
+      }
+      return _parseDate(jp, ctxt);
     }
   }
 }
@@ -0,0 +1,230 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fields of a Docker API response to decode, leaving the rest unread. For example, to poll the
+ * inventory of containers without decoding their ports, mounts and network settings:
+ *
+ * <pre>
+ * Projection&lt;JsonNode&gt; projection = Projection.of("Id", "Names", "State", "Labels");
+ * for (JsonNode container : docker.listContainers(projection)) {
+ *   String id = container.get("Id").asText();
+ * }
+ * </pre>
+ *
+ * <p>Fields are named as in the JSON of the Docker Remote API and nested fields are separated by
+ * dots, e.g. {@code NetworkSettings.Networks} or {@code State.Status}. Naming a field includes
+ * everything beneath it. Within arrays the projection applies to each element. The JSON of fields
+ * that are not named is skipped without being decoded.</p>
+ *
+ * <p>By default each response, or each element of a list response, is decoded to a
+ * {@link JsonNode} holding only the named fields. {@link #as(Class)} decodes them into a type of
+ * the caller's instead, which must accept the other fields being absent; most message classes do
+ * not. Objects on the path to a named field are kept even if they have none of the fields beneath
+ * them, so a response or list element that has none of the named fields decodes as an empty
+ * object.</p>
+ *
+ * <p>Projections are immutable and can be shared between threads.</p>
+ *
+ * @param <T> The type that responses are decoded to.
+ */
+public final class Projection<T> {
+
+  private static final Splitter PATH_SPLITTER = Splitter.on('.');
+
+  private final Set<String> paths;
+  private final PathFilter filter;
+  private final ObjectReader reader;
+
+  private Projection(final Set<String> paths, final PathFilter filter,
+                     final ObjectReader reader) {
+    this.paths = paths;
+    this.filter = filter;
+    this.reader = reader;
+  }
+
+  /**
+   * Creates a projection of the named fields, decoded to {@link JsonNode}s.
+   *
+   * @param paths The dot-separated paths of the fields.
+   * @return The projection.
+   */
+  public static Projection<JsonNode> of(final String... paths) {
+    return of(Arrays.asList(paths));
+  }
+
+  /**
+   * Creates a projection of the named fields, decoded to {@link JsonNode}s.
+   *
+   * @param paths The dot-separated paths of the fields.
+   * @return The projection.
+   */
+  public static Projection<JsonNode> of(final Iterable<String> paths) {
+    final ImmutableSet<String> pathSet = ImmutableSet.copyOf(paths);
+    checkArgument(!pathSet.isEmpty(), "no fields to project");
+    final PathFilter root = new PathFilter();
+    for (final String path : pathSet) {
+      PathFilter node = root;
+      for (final String name : PATH_SPLITTER.split(path)) {
+        checkArgument(!name.isEmpty(), "invalid field path: %s", path);
+        if (node.children == null) {
+          // A shorter path already includes all of this one
+          break;
+        }
+        PathFilter child = node.children.get(name);
+        if (child == null) {
+          child = new PathFilter();
+          node.children.put(name, child);
+        }
+        node = child;
+      }
+      // Everything beneath the last name of the path is included
+      node.children = null;
+    }
+    return new Projection<>(pathSet, root, objectMapper().readerFor(JsonNode.class));
+  }
+
+  /**
+   * A projection of every field, decoded to the given type.
+   */
+  static <T> Projection<T> all(final Class<T> type) {
+    return new Projection<>(ImmutableSet.<String>of(), null, objectMapper().readerFor(type));
+  }
+
+  /**
+   * Returns a projection of the same fields that decodes them into the given type. Any fields the
+   * type requires must be part of the projection.
+   *
+   * @param type The type to decode to.
+   * @param <R> The type to decode to.
+   * @return The projection.
+   */
+  public <R> Projection<R> as(final Class<R> type) {
+    checkNotNull(type, "type");
+    return new Projection<>(paths, filter, objectMapper().readerFor(type));
+  }
+
+  /**
+   * The projected field paths, or an empty set if all fields are decoded.
+   *
+   * @return The field paths.
+   */
+  public Set<String> paths() {
+    return paths;
+  }
+
+  /**
+   * Decodes the projected fields of the value at the current token of a parser, leaving the parser
+   * at the last token of the value.
+   */
+  T read(final JsonParser parser) throws IOException {
+    if (filter == null) {
+      return reader.readValue(parser);
+    }
+    // Jackson's FilteringParserDelegate drops the objects it empties and, in 2.9, loses the end
+    // of an array whose last element it drops, so the projected tokens are copied by hand
+    final TokenBuffer buffer = new TokenBuffer(parser);
+    if (parser.getCurrentToken().isStructStart()) {
+      filter.copy(parser, buffer);
+    } else {
+      buffer.writeStartObject();
+      buffer.writeEndObject();
+    }
+    return reader.readValue(buffer.asParser());
+  }
+
+  @Override
+  public String toString() {
+    return "Projection" + (filter == null ? "[*]" : paths);
+  }
+
+  /**
+   * One level of the projected paths. {@code children} is null where everything beneath is
+   * included.
+   */
+  private static class PathFilter {
+
+    private Map<String, PathFilter> children = new HashMap<>();
+
+    /**
+     * Copies the object or array at the current token of a parser, with only the projected fields
+     * of the objects in it. The objects themselves are kept even if they have none of them.
+     */
+    void copy(final JsonParser parser, final JsonGenerator out) throws IOException {
+      if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+        out.writeStartArray();
+        for (JsonToken token = next(parser); token != JsonToken.END_ARRAY; token = next(parser)) {
+          // A scalar where an object with projected fields was expected has none of them
+          if (token.isStructStart()) {
+            copy(parser, out);
+          }
+        }
+        out.writeEndArray();
+        return;
+      }
+      out.writeStartObject();
+      for (JsonToken token = next(parser); token != JsonToken.END_OBJECT; token = next(parser)) {
+        final String name = parser.getCurrentName();
+        final PathFilter child = children.get(name);
+        final JsonToken value = next(parser);
+        if (child == null) {
+          parser.skipChildren();
+        } else if (child.children == null) {
+          out.writeFieldName(name);
+          out.copyCurrentStructure(parser);
+        } else if (value.isStructStart()) {
+          out.writeFieldName(name);
+          child.copy(parser, out);
+        }
+      }
+      out.writeEndObject();
+    }
+
+    private static JsonToken next(final JsonParser parser) throws IOException {
+      final JsonToken token = parser.nextToken();
+      if (token == null) {
+        throw new EOFException("Unexpected end of JSON input");
+      }
+      return token;
+    }
+  }
+}
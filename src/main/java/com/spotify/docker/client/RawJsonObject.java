@@ -0,0 +1,126 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The encoded form of a JSON object, whose fields are decoded one at a time when first asked for
+ * and then kept. Creating it only tokenizes the object, to check it and to note where each field
+ * starts, so until fields are read it costs little more than the bytes themselves.
+ */
+final class RawJsonObject {
+
+  // Stands in for fields that decoded to null, which ConcurrentHashMap cannot hold
+  private static final Object NULL = new Object();
+
+  private final byte[] json;
+  // The start and end offsets of each field's value
+  private final Map<String, int[]> spans;
+  private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<>();
+
+  private RawJsonObject(final byte[] json, final Map<String, int[]> spans) {
+    this.json = json;
+    this.spans = spans;
+  }
+
+  /**
+   * @param json The UTF-8 encoded JSON object. It is kept, not copied.
+   * @return The object.
+   * @throws IOException If the bytes are not a well-formed JSON object.
+   */
+  static RawJsonObject parse(final byte[] json) throws IOException {
+    final Map<String, int[]> spans = new HashMap<>();
+    try (final JsonParser parser = objectMapper().getFactory().createParser(json)) {
+      JsonToken token = parser.nextToken();
+      if (token != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object but got " + token);
+      }
+      while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+        final String name = parser.getCurrentName();
+        parser.nextToken();
+        final int start = (int) parser.getTokenLocation().getByteOffset();
+        // Moves past the end of the value; strings are otherwise only read when asked for
+        parser.skipChildren();
+        parser.finishToken();
+        spans.put(name, new int[] {start, (int) parser.getCurrentLocation().getByteOffset()});
+      }
+      if (token != JsonToken.END_OBJECT) {
+        throw new IOException("Unexpected end of JSON object");
+      }
+    }
+    return new RawJsonObject(json, ImmutableMap.copyOf(spans));
+  }
+
+  /**
+   * Decodes a field, or returns it if it was decoded before.
+   *
+   * @param field The name of the field.
+   * @param type The type to decode it to.
+   * @return The value of the field, or null if it is null or absent.
+   */
+  @SuppressWarnings("unchecked")
+  <T> T get(final String field, final JavaType type) {
+    Object value = values.get(field);
+    if (value == null) {
+      final int[] span = spans.get(field);
+      final Object decoded = (span == null) ? null : decode(span[0], span[1], type);
+      // Threads that race to decode a field all return the first value stored
+      final Object previous = values.putIfAbsent(field, (decoded == null) ? NULL : decoded);
+      value = (previous == null) ? decoded : previous;
+    }
+    return (value == NULL) ? null : (T) value;
+  }
+
+  <T> T get(final String field, final Class<T> type) {
+    return get(field, objectMapper().constructType(type));
+  }
+
+  /**
+   * Decodes the whole object, without keeping the result.
+   *
+   * @param type The type to decode it to.
+   * @return The object.
+   */
+  <T> T decode(final Class<T> type) {
+    return decode(0, json.length, objectMapper().constructType(type));
+  }
+
+  private <T> T decode(final int start, final int end, final JavaType type) {
+    try {
+      return objectMapper().readerFor(type).readValue(json, start, end - start);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+}
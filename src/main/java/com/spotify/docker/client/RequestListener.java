@@ -0,0 +1,52 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+/**
+ * Receives measurements of the requests a {@link DefaultDockerClient} or
+ * {@link ApacheDockerTransport} sends. Callbacks run on the thread that completes the request, so
+ * implementations must be thread-safe and should return quickly.
+ *
+ * @see DefaultDockerClient.Builder#requestListener(RequestListener)
+ * @see InMemoryRequestMetrics
+ */
+public interface RequestListener {
+
+  /**
+   * Called once per HTTP exchange, when its connection goes back to the pool, or when it failed
+   * without a response. For streaming calls such as logs that is when the stream is closed.
+   *
+   * @param metrics The measurements of the exchange.
+   */
+  void requestCompleted(RequestMetrics metrics);
+
+  /**
+   * Called when a {@link DefaultDockerClient} call fails, with the exception thrown to the caller.
+   * The exchange itself, if one took place, has been reported to
+   * {@link #requestCompleted(RequestMetrics)} already.
+   *
+   * @param method The HTTP method.
+   * @param endpoint The endpoint template, e.g. {@code /containers/{id}/json}.
+   * @param error The exception, typically a
+   *              {@link com.spotify.docker.client.exceptions.DockerException}.
+   */
+  void requestFailed(String method, String endpoint, Exception error);
+}
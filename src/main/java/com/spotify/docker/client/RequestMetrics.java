@@ -0,0 +1,94 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.google.auto.value.AutoValue;
+import javax.annotation.Nullable;
+
+/**
+ * Measurements of a single HTTP exchange with the Docker daemon. Durations are in nanoseconds and
+ * measured from the moment the request was handed to the HTTP client.
+ */
+@AutoValue
+public abstract class RequestMetrics {
+
+  public abstract String method();
+
+  /**
+   * @return The path with identifiers and the API version replaced, e.g.
+   *     {@code /containers/{id}/json}.
+   */
+  public abstract String endpoint();
+
+  public abstract ConnectionLane lane();
+
+  /**
+   * @return The response status, or 0 if no response was received.
+   */
+  public abstract int status();
+
+  /**
+   * @return Time spent waiting for a connection from the pool.
+   */
+  public abstract long leaseNanos();
+
+  /**
+   * @return Time spent opening a new connection, 0 if a pooled connection was reused.
+   */
+  public abstract long connectNanos();
+
+  /**
+   * @return Time until the response headers were received, or -1 if they never were.
+   */
+  public abstract long timeToFirstByteNanos();
+
+  /**
+   * @return Time until the connection was released, including reading the response body.
+   */
+  public abstract long totalNanos();
+
+  /**
+   * @return Bytes written to the connection, headers included.
+   */
+  public abstract long requestBytes();
+
+  /**
+   * @return Bytes read from the connection, headers included.
+   */
+  public abstract long responseBytes();
+
+  /**
+   * @return The exception that failed the exchange before a response was received, if any.
+   */
+  @Nullable
+  public abstract Class<? extends Throwable> error();
+
+  static RequestMetrics create(final String method, final String endpoint,
+                               final ConnectionLane lane, final int status,
+                               final long leaseNanos, final long connectNanos,
+                               final long timeToFirstByteNanos, final long totalNanos,
+                               final long requestBytes, final long responseBytes,
+                               final Class<? extends Throwable> error) {
+    return new AutoValue_RequestMetrics(method, endpoint, lane, status, leaseNanos, connectNanos,
+                                        timeToFirstByteNanos, totalNanos, requestBytes,
+                                        responseBytes, error);
+  }
+}
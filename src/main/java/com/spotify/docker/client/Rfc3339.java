@@ -0,0 +1,193 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+/**
+ * Parses the RFC 3339 timestamps found in Docker API responses and log streams, e.g.
+ * {@code 2018-01-25T14:03:07.123456789Z} or {@code 2016-06-03T06:57:17.4782869-04:00}, without
+ * regular expressions or intermediate objects.
+ */
+final class Rfc3339 {
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long MILLIS_PER_SECOND = 1000L;
+
+  // Epoch nanoseconds only fit a long between 1677 and 2262
+  private static final long MAX_NANOS_SECONDS = Long.MAX_VALUE / NANOS_PER_SECOND - 1;
+
+  private Rfc3339() {
+  }
+
+  /**
+   * Parses a timestamp into nanoseconds since the epoch.
+   *
+   * @param source The timestamp.
+   * @return Nanoseconds since the epoch.
+   * @throws IllegalArgumentException if the timestamp is malformed or out of range
+   */
+  static long parseEpochNanos(final CharSequence source) {
+    return parseEpochNanos(source, 0, source.length());
+  }
+
+  /**
+   * Parses the timestamp occupying {@code source[start, end)} into nanoseconds since the epoch.
+   */
+  static long parseEpochNanos(final CharSequence source, final int start, final int end) {
+    return parse(source, start, end, NANOS_PER_SECOND, 9);
+  }
+
+  /**
+   * Parses a timestamp into milliseconds since the epoch, truncating any finer precision.
+   */
+  static long parseEpochMillis(final CharSequence source) {
+    return parse(source, 0, source.length(), MILLIS_PER_SECOND, 3);
+  }
+
+  private static long parse(final CharSequence text, final int start, final int end,
+                            final long unitsPerSecond, final int digits) {
+    if (end - start < 20) {
+      throw invalid(text, start, end);
+    }
+    int pos = start;
+    final int year = digits(text, pos, 4, start, end);
+    pos = expect(text, pos + 4, '-', start, end);
+    final int month = digits(text, pos, 2, start, end);
+    pos = expect(text, pos + 2, '-', start, end);
+    final int day = digits(text, pos, 2, start, end);
+    pos += 2;
+    final char separator = text.charAt(pos++);
+    if (separator != 'T' && separator != 't' && separator != ' ') {
+      throw invalid(text, start, end);
+    }
+    final int hour = digits(text, pos, 2, start, end);
+    pos = expect(text, pos + 2, ':', start, end);
+    final int minute = digits(text, pos, 2, start, end);
+    pos = expect(text, pos + 2, ':', start, end);
+    final int second = digits(text, pos, 2, start, end);
+    pos += 2;
+    if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59
+        || second > 60) {
+      throw invalid(text, start, end);
+    }
+
+    // Fractional seconds, truncated to the requested number of digits
+    long fraction = 0;
+    int fractionDigits = 0;
+    if (pos < end && text.charAt(pos) == '.') {
+      pos++;
+      final int fractionStart = pos;
+      while (pos < end && isDigit(text.charAt(pos))) {
+        if (fractionDigits < digits) {
+          fraction = fraction * 10 + (text.charAt(pos) - '0');
+          fractionDigits++;
+        }
+        pos++;
+      }
+      if (pos == fractionStart) {
+        throw invalid(text, start, end);
+      }
+    }
+    for (; fractionDigits < digits; fractionDigits++) {
+      fraction *= 10;
+    }
+
+    // Zone offset: Z, +hh:mm or +hhmm
+    if (pos >= end) {
+      throw invalid(text, start, end);
+    }
+    final char zone = text.charAt(pos++);
+    int offsetSeconds = 0;
+    if (zone == '+' || zone == '-') {
+      final int offsetHours = digits(text, pos, 2, start, end);
+      pos += 2;
+      if (pos < end && text.charAt(pos) == ':') {
+        pos++;
+      }
+      final int offsetMinutes = digits(text, pos, 2, start, end);
+      pos += 2;
+      offsetSeconds = (offsetHours * 60 + offsetMinutes) * 60;
+      if (zone == '-') {
+        offsetSeconds = -offsetSeconds;
+      }
+    } else if (zone != 'Z' && zone != 'z') {
+      throw invalid(text, start, end);
+    }
+    if (pos != end) {
+      throw invalid(text, start, end);
+    }
+
+    final long epochSeconds = daysFromCivil(year, month, day) * 86400L
+                              + hour * 3600L + minute * 60L + second - offsetSeconds;
+    if (unitsPerSecond == NANOS_PER_SECOND
+        && (epochSeconds > MAX_NANOS_SECONDS || epochSeconds < -MAX_NANOS_SECONDS)) {
+      throw new IllegalArgumentException(
+          "Timestamp out of range for nanosecond precision: " + text.subSequence(start, end));
+    }
+    return epochSeconds * unitsPerSecond + fraction;
+  }
+
+  /**
+   * Days since 1970-01-01 of a date in the proleptic Gregorian calendar. See
+   * http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+   */
+  private static long daysFromCivil(final int year, final int month, final int day) {
+    final long y = month <= 2 ? year - 1 : year;
+    final long era = (y >= 0 ? y : y - 399) / 400;
+    final long yearOfEra = y - era * 400;
+    final long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  private static int digits(final CharSequence text, final int pos, final int count,
+                            final int start, final int end) {
+    if (pos + count > end) {
+      throw invalid(text, start, end);
+    }
+    int value = 0;
+    for (int i = pos; i < pos + count; i++) {
+      final char ch = text.charAt(i);
+      if (!isDigit(ch)) {
+        throw invalid(text, start, end);
+      }
+      value = value * 10 + (ch - '0');
+    }
+    return value;
+  }
+
+  private static int expect(final CharSequence text, final int pos, final char expected,
+                            final int start, final int end) {
+    if (pos >= end || text.charAt(pos) != expected) {
+      throw invalid(text, start, end);
+    }
+    return pos + 1;
+  }
+
+  private static boolean isDigit(final char ch) {
+    return ch >= '0' && ch <= '9';
+  }
+
+  private static IllegalArgumentException invalid(final CharSequence text, final int start,
+                                                  final int end) {
+    return new IllegalArgumentException(
+        "Invalid RFC 3339 timestamp: " + text.subSequence(start, Math.min(end, text.length())));
+  }
+}
@@ -0,0 +1,804 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.spotify.docker.client.DockerClient.AttachParameter;
+import com.spotify.docker.client.DockerClient.EventsParam;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.exceptions.DockerRequestException;
+import com.spotify.docker.client.messages.ContainerStats;
+import com.spotify.docker.client.messages.Event;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows many long-lived streams of the Docker daemon, such as logs, attached containers, events
+ * and stats, on a single thread.
+ *
+ * <p>Every stream has its own non-blocking connection, and all of them share one selector. The
+ * multiplexed log framing and newline-delimited JSON are decoded incrementally as bytes arrive,
+ * and the decoded messages are passed to a {@link Callback}. So the number of threads stays the
+ * same however many streams are open, unlike with the blocking streams of {@link DockerClient},
+ * which each need a thread to read them.
+ *
+ * <p>Callbacks are called on the reactor thread and must not block. Connections are made over
+ * TCP, or over Unix domain sockets on JDK 16 and later. TLS is not supported.
+ *
+ * <p>Should the reactor thread fail, every stream fails with an {@link IOException}, including
+ * those subscribed to afterwards, whose callback is then called on the subscribing thread.
+ *
+ * <pre>
+ * {@code
+ * final StreamReactor reactor = new StreamReactor(URI.create("unix:///var/run/docker.sock"), null);
+ * final StreamReactor.Subscription subscription = reactor.logs(containerId, callback,
+ *     LogsParam.follow(), LogsParam.stdout(), LogsParam.stderr());
+ * }
+ * </pre>
+ */
+public class StreamReactor implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(StreamReactor.class);
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_ERROR_BODY = 4 * 1024;
+  private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+
+  private final SocketAddress address;
+  private final boolean unix;
+  private final String host;
+  private final String apiVersion;
+  private final ObjectMapper objectMapper = ObjectMapperProvider.objectMapper();
+  private final Selector selector;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final Thread thread;
+  private volatile boolean closed;
+  // Why the reactor thread stopped, if it did not stop because it was closed
+  private volatile Exception failure;
+
+  /**
+   * Start a reactor thread.
+   *
+   * @param uri        The daemon to connect to, {@code unix://}, {@code tcp://} or {@code http://}.
+   * @param apiVersion The API version to request, or null for the version of the daemon.
+   * @throws IOException if the selector could not be opened
+   */
+  public StreamReactor(final URI uri, final String apiVersion) throws IOException {
+    checkNotNull(uri, "uri");
+    switch (uri.getScheme()) {
+      case "unix":
+        this.address = UnixDomainSockets.address(uri.getPath());
+        this.unix = true;
+        this.host = "docker";
+        break;
+      case "tcp":
+      case "http":
+        final int port = uri.getPort() < 0 ? 2375 : uri.getPort();
+        this.address = new InetSocketAddress(uri.getHost(), port);
+        this.unix = false;
+        this.host = uri.getHost() + ":" + port;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported scheme: " + uri);
+    }
+    this.apiVersion = apiVersion;
+    this.selector = Selector.open();
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        loop();
+      }
+    }, "docker-stream-reactor");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Follow the log of a container, see {@link DockerClient#logs(String, LogsParam...)}.
+   *
+   * @param containerId The id of the container.
+   * @param callback    Receives the log messages.
+   * @param params      Params for controlling what streams to get and whether to follow or not.
+   * @return The subscription, to close the stream with.
+   */
+  public Subscription logs(final String containerId, final Callback<LogMessage> callback,
+                           final LogsParam... params) {
+    final Map<String, String> query = new LinkedHashMap<>();
+    for (final LogsParam param : params) {
+      query.put(param.name(), param.value());
+    }
+    return subscribe("GET", "/containers/" + containerId + "/logs", query,
+                     new LogFrameDecoder(callback), callback);
+  }
+
+  /**
+   * Attach to a container, see {@link DockerClient#attachContainer(String, AttachParameter...)}.
+   *
+   * @param containerId The id of the container.
+   * @param callback    Receives the output of the container.
+   * @param params      Params for controlling what streams to get.
+   * @return The subscription, to close the stream with.
+   */
+  public Subscription attach(final String containerId, final Callback<LogMessage> callback,
+                             final AttachParameter... params) {
+    final Map<String, String> query = new LinkedHashMap<>();
+    for (final AttachParameter param : params) {
+      query.put(param.name().toLowerCase(Locale.ROOT), "true");
+    }
+    return subscribe("POST", "/containers/" + containerId + "/attach", query,
+                     new LogFrameDecoder(callback), callback);
+  }
+
+  /**
+   * Follow the events of the daemon, see {@link DockerClient#events(EventsParam...)}.
+   *
+   * @param callback Receives the events.
+   * @param params   Params for filtering events.
+   * @return The subscription, to close the stream with.
+   * @throws IOException if the filters could not be encoded
+   */
+  public Subscription events(final Callback<Event> callback, final EventsParam... params)
+      throws IOException {
+    final Map<String, String> query = new LinkedHashMap<>();
+    final Map<String, List<String>> filters = new LinkedHashMap<>();
+    for (final EventsParam param : params) {
+      if (param instanceof DockerClient.FilterParam) {
+        if (!filters.containsKey(param.name())) {
+          filters.put(param.name(), Lists.<String>newArrayList());
+        }
+        filters.get(param.name()).add(param.value());
+      } else {
+        query.put(param.name(), param.value());
+      }
+    }
+    if (!filters.isEmpty()) {
+      query.put("filters", objectMapper.writeValueAsString(filters));
+    }
+    return subscribe("GET", "/events", query, new JsonDecoder<>(Event.class, callback), callback);
+  }
+
+  /**
+   * Follow the resource usage of a container, see {@link DockerClient#stats(String)}.
+   *
+   * @param containerId The id of the container.
+   * @param callback    Receives the stats, about once a second.
+   * @return The subscription, to close the stream with.
+   */
+  public Subscription stats(final String containerId, final Callback<ContainerStats> callback) {
+    final Map<String, String> query = new LinkedHashMap<>();
+    query.put("stream", "1");
+    return subscribe("GET", "/containers/" + containerId + "/stats", query,
+                     new JsonDecoder<>(ContainerStats.class, callback), callback);
+  }
+
+  /**
+   * Stops the reactor thread and closes all streams, without calling their callbacks.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  private Subscription subscribe(final String method, final String path,
+                                 final Map<String, String> query, final BodyDecoder decoder,
+                                 final Callback<?> callback) {
+    final StringBuilder request = new StringBuilder(method).append(' ');
+    if (!isNullOrEmpty(apiVersion)) {
+      request.append('/').append(apiVersion);
+    }
+    request.append(path);
+    char separator = '?';
+    for (final Map.Entry<String, String> param : query.entrySet()) {
+      request.append(separator).append(urlEncode(param.getKey()))
+          .append('=').append(urlEncode(param.getValue()));
+      separator = '&';
+    }
+    final String target = request.substring(method.length() + 1);
+    request.append(" HTTP/1.1\r\n")
+        .append("Host: ").append(host).append("\r\n")
+        .append("Accept: application/vnd.docker.raw-stream, application/json\r\n")
+        .append("Content-Length: 0\r\n")
+        .append("\r\n");
+
+    final Connection connection = new Connection(
+        method, target, ByteBuffer.wrap(request.toString().getBytes(UTF_8)), decoder, callback);
+    execute(new Start(connection));
+    return new Subscription(connection);
+  }
+
+  @VisibleForTesting
+  void execute(final Runnable task) {
+    if (closed && failure == null) {
+      throw new IllegalStateException("closed");
+    }
+    tasks.add(task);
+    selector.wakeup();
+    if (closed) {
+      // The reactor thread has stopped, or is stopping and may not see the task
+      abandonTasks();
+    }
+  }
+
+  /**
+   * Drops the tasks left when the reactor thread has stopped, failing the streams they would have
+   * started if it failed.
+   */
+  private void abandonTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      if (task instanceof Start && failure != null) {
+        ((Start) task).connection.fail(new IOException("Stream reactor failed", failure));
+      }
+    }
+  }
+
+  private void loop() {
+    try {
+      while (!closed) {
+        selector.select();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+          task.run();
+        }
+        final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          final SelectionKey key = keys.next();
+          keys.remove();
+          ((Connection) key.attachment()).ready(key);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      log.error("Stream reactor failed", e);
+      failure = e;
+    } finally {
+      closed = true;
+      for (final SelectionKey key : selector.keys()) {
+        final Connection connection = (Connection) key.attachment();
+        if (failure == null) {
+          connection.close();
+        } else {
+          connection.fail(new IOException("Stream reactor failed", failure));
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        log.debug("Failed to close selector", e);
+      }
+      abandonTasks();
+    }
+  }
+
+  private static String urlEncode(final String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Receives the messages of a stream, on the reactor thread.
+   */
+  public interface Callback<T> {
+
+    void onMessage(T message);
+
+    /**
+     * The stream failed, for example because the request was rejected with a {@link
+     * DockerRequestException}. No more methods are called.
+     */
+    void onError(Exception error);
+
+    /**
+     * The stream ended. No more methods are called.
+     */
+    void onComplete();
+  }
+
+  /**
+   * An open stream.
+   */
+  public final class Subscription implements Closeable {
+
+    private final Connection connection;
+
+    private Subscription(final Connection connection) {
+      this.connection = connection;
+    }
+
+    /**
+     * Closes the stream without calling its callback anymore.
+     */
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      execute(new Runnable() {
+        @Override
+        public void run() {
+          connection.close();
+        }
+      });
+    }
+  }
+
+  /**
+   * Starts the stream of a subscription on the reactor thread.
+   */
+  private static class Start implements Runnable {
+
+    private final Connection connection;
+
+    private Start(final Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public void run() {
+      connection.start();
+    }
+  }
+
+  /**
+   * Decodes the body of a response incrementally.
+   */
+  private interface BodyDecoder {
+
+    void decode(byte[] bytes, int offset, int length) throws IOException;
+
+    void end() throws IOException;
+  }
+
+  /**
+   * Sends a request and reads its response, following HTTP/1.1 chunked transfer encoding.
+   */
+  private class Connection {
+
+    private final String method;
+    private final String target;
+    private final ByteBuffer request;
+    private final BodyDecoder decoder;
+    private final Callback<?> callback;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private SocketChannel channel;
+    private SelectionKey key;
+    private boolean headersRead;
+    private boolean done;
+    private int status;
+    private boolean chunked;
+    private long contentLength = -1;
+    // Bytes left in the current chunk, -1 before a chunk size line, -2 before the chunk's CRLF
+    private long chunkRemaining = -1;
+    private ByteArrayOutputStream errorBody;
+
+    private Connection(final String method, final String target, final ByteBuffer request,
+                       final BodyDecoder decoder, final Callback<?> callback) {
+      this.method = method;
+      this.target = target;
+      this.request = request;
+      this.decoder = decoder;
+      this.callback = callback;
+    }
+
+    private void start() {
+      try {
+        channel = unix ? UnixDomainSockets.openChannel() : SocketChannel.open();
+        channel.configureBlocking(false);
+        if (channel.connect(address)) {
+          key = channel.register(selector, SelectionKey.OP_WRITE, this);
+        } else {
+          key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+        }
+      } catch (IOException | RuntimeException e) {
+        fail(e);
+      }
+    }
+
+    private void ready(final SelectionKey key) {
+      try {
+        if (key.isValid() && key.isConnectable() && channel.finishConnect()) {
+          key.interestOps(SelectionKey.OP_WRITE);
+        }
+        if (key.isValid() && key.isWritable()) {
+          channel.write(request);
+          if (!request.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ);
+          }
+        }
+        if (key.isValid() && key.isReadable()) {
+          read();
+        }
+      } catch (IOException | RuntimeException e) {
+        fail(e);
+      }
+    }
+
+    private void read() throws IOException {
+      while (!done) {
+        final int read = channel.read(buffer);
+        if (read == 0) {
+          return;
+        }
+        if (read < 0) {
+          if (headersRead && !chunked && contentLength < 0) {
+            complete();
+          } else {
+            fail(new EOFException("Connection closed before the end of the response"));
+          }
+          return;
+        }
+        buffer.flip();
+        process();
+        buffer.compact();
+      }
+    }
+
+    private void process() throws IOException {
+      if (!headersRead && !readHeaders()) {
+        return;
+      }
+      while (!done && buffer.hasRemaining()) {
+        if (!chunked) {
+          final int length = contentLength < 0
+                             ? buffer.remaining()
+                             : (int) Math.min(buffer.remaining(), contentLength);
+          body(length);
+          if (contentLength >= 0) {
+            contentLength -= length;
+            if (contentLength == 0) {
+              complete();
+            }
+          }
+        } else if (chunkRemaining > 0) {
+          final int length = (int) Math.min(buffer.remaining(), chunkRemaining);
+          body(length);
+          chunkRemaining -= length;
+          if (chunkRemaining == 0) {
+            chunkRemaining = -2;
+          }
+        } else if (chunkRemaining == -2) {
+          if (buffer.remaining() < 2) {
+            return;
+          }
+          buffer.position(buffer.position() + 2);
+          chunkRemaining = -1;
+        } else {
+          final int end = indexOf(buffer, (byte) '\n');
+          if (end < 0) {
+            checkBufferNotFull("chunk size");
+            return;
+          }
+          final String line = ascii(buffer.position(), end);
+          buffer.position(end + 1);
+          final int extension = line.indexOf(';');
+          final long size = Long.parseLong(
+              (extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+          if (size == 0) {
+            complete();
+          } else {
+            chunkRemaining = size;
+          }
+        }
+      }
+    }
+
+    private boolean readHeaders() throws IOException {
+      int end = -1;
+      for (int i = buffer.position(); i + HEADERS_END.length <= buffer.limit(); i++) {
+        if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n'
+            && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n') {
+          end = i;
+          break;
+        }
+      }
+      if (end < 0) {
+        checkBufferNotFull("response headers");
+        return false;
+      }
+      final String[] lines = ascii(buffer.position(), end).split("\r\n");
+      buffer.position(end + HEADERS_END.length);
+      final String[] statusLine = lines[0].split(" ", 3);
+      if (statusLine.length < 2) {
+        throw new IOException("Invalid status line: " + lines[0]);
+      }
+      status = Integer.parseInt(statusLine[1]);
+      for (int i = 1; i < lines.length; i++) {
+        final int colon = lines[i].indexOf(':');
+        if (colon < 0) {
+          continue;
+        }
+        final String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+        final String value = lines[i].substring(colon + 1).trim();
+        if (name.equals("transfer-encoding")) {
+          chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+        } else if (name.equals("content-length")) {
+          contentLength = Long.parseLong(value);
+        }
+      }
+      if (status == 101) {
+        // Upgraded for attach, the raw stream follows until the connection closes
+        chunked = false;
+        contentLength = -1;
+      } else if (status < 200 || status >= 300) {
+        errorBody = new ByteArrayOutputStream();
+      }
+      headersRead = true;
+      if (contentLength == 0) {
+        complete();
+      }
+      return true;
+    }
+
+    private void body(final int length) throws IOException {
+      final int offset = buffer.arrayOffset() + buffer.position();
+      if (errorBody != null) {
+        errorBody.write(buffer.array(), offset,
+                        Math.max(0, Math.min(length, MAX_ERROR_BODY - errorBody.size())));
+      } else {
+        decoder.decode(buffer.array(), offset, length);
+      }
+      buffer.position(buffer.position() + length);
+    }
+
+    private void complete() {
+      if (done) {
+        return;
+      }
+      if (errorBody != null) {
+        fail(new DockerRequestException(method, URI.create(target), status,
+                                        new String(errorBody.toByteArray(), UTF_8), null));
+        return;
+      }
+      try {
+        decoder.end();
+      } catch (IOException | RuntimeException e) {
+        fail(e);
+        return;
+      }
+      close();
+      try {
+        callback.onComplete();
+      } catch (RuntimeException e) {
+        log.warn("Stream callback failed", e);
+      }
+    }
+
+    private void fail(final Exception error) {
+      if (done) {
+        return;
+      }
+      close();
+      try {
+        callback.onError(error);
+      } catch (RuntimeException e) {
+        log.warn("Stream callback failed", e);
+      }
+    }
+
+    private void close() {
+      done = true;
+      if (key != null) {
+        key.cancel();
+      }
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          log.debug("Failed to close stream connection", e);
+        }
+      }
+    }
+
+    private void checkBufferNotFull(final String what) throws IOException {
+      if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+        throw new IOException("Too large " + what);
+      }
+    }
+
+    private String ascii(final int start, final int end) {
+      return new String(buffer.array(), buffer.arrayOffset() + start, end - start, ISO_8859_1);
+    }
+  }
+
+  private static int indexOf(final ByteBuffer buffer, final byte value) {
+    for (int i = buffer.position(); i < buffer.limit(); i++) {
+      if (buffer.get(i) == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the multiplexed stream of logs and attached containers into log messages, or passes
+   * output through as stdout if it is not multiplexed, as for containers with a TTY.
+   */
+  private static class LogFrameDecoder implements BodyDecoder {
+
+    private final Callback<LogMessage> callback;
+    private final byte[] header = new byte[LogReader.HEADER_SIZE];
+    private int headerLength;
+    private byte[] frame;
+    private int frameLength;
+    private boolean framed;
+    private boolean raw;
+
+    private LogFrameDecoder(final Callback<LogMessage> callback) {
+      this.callback = callback;
+    }
+
+    @Override
+    public void decode(final byte[] bytes, final int offset, final int length) throws IOException {
+      int position = offset;
+      final int end = offset + length;
+      while (position < end) {
+        if (raw) {
+          emit(LogMessage.Stream.STDOUT, Arrays.copyOfRange(bytes, position, end));
+          return;
+        }
+        if (frame == null) {
+          final int size = Math.min(header.length - headerLength, end - position);
+          System.arraycopy(bytes, position, header, headerLength, size);
+          headerLength += size;
+          position += size;
+          if (headerLength < header.length) {
+            return;
+          }
+          final ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+          final int idZ = headerBuffer.getInt(0);
+          if (idZ != 0 && idZ != 0x01000000 && idZ != 0x02000000) {
+            if (framed) {
+              throw new IOException("Invalid log frame header");
+            }
+            raw = true;
+            headerLength = 0;
+            emit(LogMessage.Stream.STDOUT, header.clone());
+            continue;
+          }
+          framed = true;
+          headerLength = 0;
+          final int frameSize = headerBuffer.getInt(LogReader.FRAME_SIZE_OFFSET);
+          if (frameSize == 0) {
+            // A header-only frame is complete as it is
+            continue;
+          }
+          frame = new byte[frameSize];
+          frameLength = 0;
+        }
+        final int size = Math.min(frame.length - frameLength, end - position);
+        System.arraycopy(bytes, position, frame, frameLength, size);
+        frameLength += size;
+        position += size;
+        if (frameLength == frame.length) {
+          final byte[] complete = frame;
+          frame = null;
+          emit(LogMessage.Stream.of(header[0]), complete);
+        }
+      }
+    }
+
+    @Override
+    public void end() throws IOException {
+      if (headerLength > 0 && !framed) {
+        emit(LogMessage.Stream.STDOUT, Arrays.copyOf(header, headerLength));
+      } else if (headerLength > 0 || frame != null) {
+        throw new EOFException("Log stream ended within a frame");
+      }
+    }
+
+    private void emit(final LogMessage.Stream stream, final byte[] content) {
+      if (content.length > 0) {
+        callback.onMessage(new LogMessage(stream, ByteBuffer.wrap(content)));
+      }
+    }
+  }
+
+  /**
+   * Decodes newline-delimited JSON, parsing every line straight from the read buffer unless it
+   * spans reads.
+   */
+  private class JsonDecoder<T> implements BodyDecoder {
+
+    private final Class<T> type;
+    private final Callback<T> callback;
+    private byte[] line = new byte[256];
+    private int lineLength;
+
+    private JsonDecoder(final Class<T> type, final Callback<T> callback) {
+      this.type = type;
+      this.callback = callback;
+    }
+
+    @Override
+    public void decode(final byte[] bytes, final int offset, final int length) throws IOException {
+      final int end = offset + length;
+      int start = offset;
+      for (int i = offset; i < end; i++) {
+        if (bytes[i] != '\n') {
+          continue;
+        }
+        if (lineLength == 0) {
+          parse(bytes, start, i - start);
+        } else {
+          append(bytes, start, i - start);
+          parse(line, 0, lineLength);
+          lineLength = 0;
+        }
+        start = i + 1;
+      }
+      append(bytes, start, end - start);
+    }
+
+    @Override
+    public void end() throws IOException {
+      parse(line, 0, lineLength);
+      lineLength = 0;
+    }
+
+    private void parse(final byte[] bytes, final int offset, final int length) throws IOException {
+      for (int i = offset; i < offset + length; i++) {
+        if (!Character.isWhitespace(bytes[i])) {
+          callback.onMessage(objectMapper.readValue(bytes, offset, length, type));
+          return;
+        }
+      }
+    }
+
+    private void append(final byte[] bytes, final int offset, final int length) {
+      if (lineLength + length > line.length) {
+        line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+      }
+      System.arraycopy(bytes, offset, line, lineLength, length);
+      lineLength += length;
+    }
+  }
+}
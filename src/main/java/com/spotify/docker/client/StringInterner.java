@@ -0,0 +1,67 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size cache of canonical strings. Each string hashes to one slot; if the slot holds an
+ * equal string that one is returned, otherwise the string takes the slot. A collision therefore
+ * only evicts, so memory stays bounded however many distinct strings pass through, and strings
+ * that recur often keep their slot. Lookups never block.
+ */
+final class StringInterner {
+
+  private final AtomicReferenceArray<String> slots;
+  private final int mask;
+
+  /**
+   * @param capacity The number of slots, rounded up to a power of two.
+   */
+  StringInterner(final int capacity) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity out of range: %s", capacity);
+    final int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+    this.mask = slots.length() - 1;
+  }
+
+  String intern(final String value) {
+    if (value == null) {
+      return null;
+    }
+    final int hash = value.hashCode();
+    // Spread the high bits, as HashMap does, so that short keys don't crowd the low slots
+    final int slot = (hash ^ (hash >>> 16)) & mask;
+    final String cached = slots.get(slot);
+    if (value.equals(cached)) {
+      return cached;
+    }
+    // A racing writer may win the slot; either string is a fine answer
+    slots.lazySet(slot, value);
+    return value;
+  }
+
+  int capacity() {
+    return slots.length();
+  }
+}
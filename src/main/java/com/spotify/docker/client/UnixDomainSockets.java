@@ -0,0 +1,97 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Access to the Unix domain socket channels of JDK 16 and later, through reflection so that the
+ * client still runs on older JDKs, where {@link #isSupported()} is false.
+ */
+final class UnixDomainSockets {
+
+  private static final ProtocolFamily UNIX;
+  private static final Method OPEN_CHANNEL;
+  private static final Method OPEN_SERVER_CHANNEL;
+  private static final Method ADDRESS_OF;
+
+  static {
+    ProtocolFamily unix = null;
+    Method openChannel = null;
+    Method openServerChannel = null;
+    Method addressOf = null;
+    try {
+      unix = StandardProtocolFamily.valueOf("UNIX");
+      openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+      openServerChannel = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+      addressOf = Class.forName("java.net.UnixDomainSocketAddress")
+          .getMethod("of", String.class);
+    } catch (IllegalArgumentException | ReflectiveOperationException e) {
+      unix = null;
+    }
+    UNIX = unix;
+    OPEN_CHANNEL = openChannel;
+    OPEN_SERVER_CHANNEL = openServerChannel;
+    ADDRESS_OF = addressOf;
+  }
+
+  private UnixDomainSockets() {
+  }
+
+  static boolean isSupported() {
+    return UNIX != null;
+  }
+
+  static SocketChannel openChannel() throws IOException {
+    return (SocketChannel) invoke(OPEN_CHANNEL, UNIX);
+  }
+
+  static ServerSocketChannel openServerChannel() throws IOException {
+    return (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, UNIX);
+  }
+
+  static SocketAddress address(final String path) throws IOException {
+    return (SocketAddress) invoke(ADDRESS_OF, path);
+  }
+
+  private static Object invoke(final Method method, final Object argument) throws IOException {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Unix domain socket channels require JDK 16");
+    }
+    try {
+      return method.invoke(null, argument);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IOException(e);
+    }
+  }
+}
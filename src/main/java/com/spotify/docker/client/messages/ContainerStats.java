@@ -60,6 +60,10 @@ public abstract class ContainerStats {
   @JsonProperty("precpu_stats")
   public abstract CpuStats precpuStats();
 
+  @Nullable
+  @JsonProperty("pids_stats")
+  public abstract PidsStats pidsStats();
+
   @JsonCreator
   static ContainerStats create(
       @JsonProperty("read") final Date read,
@@ -68,10 +72,11 @@ public abstract class ContainerStats {
       @JsonProperty("memory_stats") final MemoryStats memoryStats,
       @JsonProperty("blkio_stats") final BlockIoStats blockIoStats,
       @JsonProperty("cpu_stats") final CpuStats cpuStats,
-      @JsonProperty("precpu_stats") final CpuStats precpuStats) {
+      @JsonProperty("precpu_stats") final CpuStats precpuStats,
+      @JsonProperty("pids_stats") final PidsStats pidsStats) {
     final ImmutableMap<String, NetworkStats> networksCopy = networks == null
                                                             ? null : ImmutableMap.copyOf(networks);
     return new AutoValue_ContainerStats(read, networkStats, networksCopy,
-        memoryStats, blockIoStats, cpuStats, precpuStats);
+        memoryStats, blockIoStats, cpuStats, precpuStats, pidsStats);
   }
 }
@@ -0,0 +1,239 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ContainerCreation;
+import java.io.ByteArrayInputStream;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ApacheDockerTransportTest {
+
+  private final MockWebServer server = new MockWebServer();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private ApacheDockerTransport transport;
+
+  @Before
+  public void setUp() throws Exception {
+    server.start();
+    transport = ApacheDockerTransport.create(DefaultDockerClient.builder()
+        .uri(server.url("/").uri())
+        .apiVersion("v1.32")
+        .header("User-Agent", "test-agent"));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    transport.close();
+    server.shutdown();
+  }
+
+  @Test
+  public void testGetWithQuery() throws Exception {
+    server.enqueue(new MockResponse().setBody("[{\"Id\":\"a\"},{\"Id\":\"b\"}]"));
+
+    final List<Map<String, String>> containers;
+    try (DockerResponse response = transport.execute(
+        DockerRequest.get("/containers/json")
+            .queryParam("all", 1)
+            .queryParam("filters", "{\"name\":[\"a b\"]}")
+            .build())) {
+      assertThat(response.status(), equalTo(200));
+      containers = response.readEntity(new TypeReference<List<Map<String, String>>>() { });
+    }
+
+    assertThat(containers.size(), equalTo(2));
+    assertThat(containers.get(1).get("Id"), equalTo("b"));
+    final RecordedRequest request = server.takeRequest();
+    assertThat(request.getMethod(), equalTo("GET"));
+    assertThat(request.getPath(), equalTo(
+        "/v1.32/containers/json?all=1&filters=%7B%22name%22%3A%5B%22a+b%22%5D%7D"));
+    assertThat(request.getHeader("User-Agent"), equalTo("test-agent"));
+  }
+
+  @Test
+  public void testPathSegmentsAreEscaped() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404).setBody("no such image"));
+
+    try (DockerResponse response = transport.execute(
+        DockerRequest.get("/images/my image:latest/json").build())) {
+      assertThat(response.status(), equalTo(404));
+      assertThat(response.readString(), equalTo("no such image"));
+    }
+
+    assertThat(server.takeRequest().getPath(), equalTo("/v1.32/images/my%20image:latest/json"));
+  }
+
+  @Test
+  public void testPostJsonBody() throws Exception {
+    server.enqueue(new MockResponse()
+                       .setResponseCode(201)
+                       .addHeader("Content-Type", "application/json")
+                       .setBody("{\"Id\":\"abc\",\"Warnings\":null}"));
+
+    final ContainerConfig config = ContainerConfig.builder().image("busybox").build();
+    final ContainerCreation creation;
+    try (DockerResponse response = transport.execute(
+        DockerRequest.post("/containers/create")
+            .queryParam("name", "test")
+            .body(DockerRequest.Body.json(config))
+            .build())) {
+      assertThat(response.header("content-type"), equalTo("application/json"));
+      assertThat(response.header("X-Missing"), nullValue());
+      creation = response.readEntity(ContainerCreation.class);
+    }
+
+    assertThat(creation.id(), equalTo("abc"));
+    final RecordedRequest request = server.takeRequest();
+    assertThat(request.getPath(), equalTo("/v1.32/containers/create?name=test"));
+    assertThat(request.getHeader("Content-Type"), equalTo("application/json"));
+    final ContainerConfig sent = ObjectMapperProvider.objectMapper()
+        .readValue(request.getBody().readByteArray(), ContainerConfig.class);
+    assertThat(sent.image(), equalTo("busybox"));
+  }
+
+  @Test
+  public void testBodyContent() throws Exception {
+    final HttpEntity entity = entity(DockerRequest.post("/containers/create")
+        .body(DockerRequest.Body.bytes("application/json", "{}".getBytes(UTF_8)))
+        .build());
+
+    assertThat(EntityUtils.toString(entity, UTF_8), equalTo("{}"));
+    // repeatable, so it can be read again
+    assertThat(EntityUtils.toString(entity, UTF_8), equalTo("{}"));
+  }
+
+  @Test
+  public void testStreamBodyContentIsNotReadable() throws Exception {
+    final HttpEntity entity = entity(DockerRequest.post("/images/load")
+        .body(DockerRequest.Body.stream("application/x-tar",
+                                        new ByteArrayInputStream(new byte[16])))
+        .build());
+
+    thrown.expect(IllegalStateException.class);
+    entity.getContent();
+  }
+
+  @Test
+  public void testStreamBodyIsChunked() throws Exception {
+    server.enqueue(new MockResponse());
+    server.enqueue(new MockResponse());
+
+    final byte[] tar = "not really a tar".getBytes(UTF_8);
+    transport.execute(DockerRequest.post("/build")
+                          .header("X-Registry-Config", "e30=")
+                          .body(DockerRequest.Body.stream(
+                              "application/tar", new ByteArrayInputStream(tar)))
+                          .build())
+        .close();
+    transport.execute(DockerRequest.builder("HEAD", "/_ping").build()).close();
+
+    final RecordedRequest request = server.takeRequest();
+    assertThat(request.getHeader("Transfer-Encoding"), equalTo("chunked"));
+    assertThat(request.getHeader("X-Registry-Config"), equalTo("e30="));
+    assertThat(request.getBody().readUtf8(), equalTo("not really a tar"));
+    assertThat(server.takeRequest().getMethod(), equalTo("HEAD"));
+  }
+
+  @Test
+  public void testRequestHeadersOverrideDefaults() throws Exception {
+    server.enqueue(new MockResponse());
+
+    transport.execute(DockerRequest.get("/info")
+                          .header("User-Agent", "override")
+                          .build())
+        .close();
+
+    assertThat(server.takeRequest().getHeader("User-Agent"), equalTo("override"));
+  }
+
+  @Test
+  public void testReadTimeoutOverride() throws Exception {
+    transport.close();
+    transport = ApacheDockerTransport.create(DefaultDockerClient.builder()
+        .uri(server.url("/").uri())
+        .readTimeoutMillis(200));
+    server.enqueue(new MockResponse()
+                       .setBodyDelay(600, MILLISECONDS)
+                       .setBody("{\"StatusCode\":0}"));
+    server.enqueue(new MockResponse()
+                       .setBodyDelay(600, MILLISECONDS)
+                       .setBody("{}"));
+
+    try (DockerResponse response = transport.execute(
+        DockerRequest.post("/containers/a/wait").readTimeout(0, MILLISECONDS).build())) {
+      assertThat(response.readString(), equalTo("{\"StatusCode\":0}"));
+    }
+
+    thrown.expect(SocketTimeoutException.class);
+    try (DockerResponse response = transport.execute(DockerRequest.get("/containers/a/json")
+                                                         .build())) {
+      response.readString();
+    }
+  }
+
+  @Test
+  public void testDeadlineAbortsRequest() throws Exception {
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+    thrown.expect(SocketTimeoutException.class);
+    thrown.expectMessage("Deadline of 200 ms exceeded");
+    transport.execute(DockerRequest.post("/containers/a/wait")
+                          .readTimeout(0, MILLISECONDS)
+                          .deadline(200, MILLISECONDS)
+                          .build());
+  }
+
+  @Test
+  public void testRequestToString() {
+    assertThat(DockerRequest.get("/info").build().toString(), equalTo("GET /info"));
+    assertThat(DockerRequest.delete("/containers/a").queryParam("force", true).build().toString(),
+               equalTo("DELETE /containers/a {force=[true]}"));
+  }
+
+  private HttpEntity entity(final DockerRequest request) {
+    return ((HttpEntityEnclosingRequest) transport.toHttpRequest(request)).getEntity();
+  }
+}
@@ -0,0 +1,188 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Joiner;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerStats;
+import com.spotify.docker.client.messages.HostConfig;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CgroupStatsProviderTest {
+
+  private static final String ID = "0123456789abcdef";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final DockerClient docker = mock(DockerClient.class);
+  private final ContainerInfo info = mock(ContainerInfo.class);
+
+  private Path root;
+  private Path procStat;
+
+  @Before
+  public void setUp() throws Exception {
+    root = folder.newFolder("cgroup").toPath();
+    procStat = folder.newFile("stat").toPath();
+    write(procStat, "cpu  100 0 50 1000 0 0 0 0 0 0", "cpu0 100 0 50 1000 0 0 0 0 0 0");
+
+    when(info.id()).thenReturn(ID);
+    when(docker.inspectContainer("web")).thenReturn(info);
+  }
+
+  @Test
+  public void testCgroupV1() throws Exception {
+    write(root.resolve("cpuacct/docker/" + ID + "/cpuacct.usage"), "3000");
+    write(root.resolve("cpuacct/docker/" + ID + "/cpuacct.usage_percpu"), "1000 2000 ");
+    write(root.resolve("cpuacct/docker/" + ID + "/cpuacct.stat"), "user 2", "system 1");
+    write(root.resolve("cpu/docker/" + ID + "/cpu.stat"),
+          "nr_periods 10", "nr_throttled 2", "throttled_time 500");
+    write(root.resolve("memory/docker/" + ID + "/memory.usage_in_bytes"), "4096");
+    write(root.resolve("memory/docker/" + ID + "/memory.max_usage_in_bytes"), "8192");
+    write(root.resolve("memory/docker/" + ID + "/memory.failcnt"), "0");
+    write(root.resolve("memory/docker/" + ID + "/memory.limit_in_bytes"), "9223372036854771712");
+    write(root.resolve("memory/docker/" + ID + "/memory.stat"), "cache 1", "rss 2");
+    write(root.resolve("blkio/docker/" + ID + "/blkio.throttle.io_service_bytes_recursive"),
+          "8:0 Read 4096", "8:0 Write 0", "Total 4096");
+    write(root.resolve("pids/docker/" + ID + "/pids.current"), "3");
+    write(root.resolve("pids/docker/" + ID + "/pids.max"), "max");
+
+    final CgroupStatsProvider provider = new CgroupStatsProvider(docker, root, procStat);
+    final ContainerStats stats = provider.stats("web");
+
+    assertThat(stats.cpuStats().cpuUsage().totalUsage(), is(3000L));
+    assertThat(stats.cpuStats().cpuUsage().percpuUsage(), contains(1000L, 2000L));
+    assertThat(stats.cpuStats().cpuUsage().usageInUsermode(), is(20000000L));
+    assertThat(stats.cpuStats().cpuUsage().usageInKernelmode(), is(10000000L));
+    assertThat(stats.cpuStats().systemCpuUsage(), is(11500000000L));
+    assertThat(stats.cpuStats().throttlingData().throttledPeriods(), is(2L));
+    assertThat(stats.precpuStats().cpuUsage().totalUsage(), is(0L));
+    assertThat(stats.memoryStats().usage(), is(4096L));
+    assertThat(stats.memoryStats().maxUsage(), is(8192L));
+    // memory.stat is incomplete, so the breakdown is left out rather than failing
+    assertThat(stats.memoryStats().stats(), is(nullValue()));
+    assertThat(stats.blockIoStats().ioServiceBytesRecursive().size(), is(2));
+    final Map<?, ?> read = (Map<?, ?>) stats.blockIoStats().ioServiceBytesRecursive().get(0);
+    assertThat(read.get("op"), is((Object) "Read"));
+    assertThat(read.get("value"), is((Object) 4096L));
+    assertThat(stats.pidsStats().current(), is(3L));
+    assertThat(stats.pidsStats().limit(), is(nullValue()));
+
+    write(root.resolve("cpuacct/docker/" + ID + "/cpuacct.usage"), "5000");
+    final ContainerStats next = provider.stats("web");
+    assertThat(next.cpuStats().cpuUsage().totalUsage(), is(5000L));
+    assertThat(next.precpuStats().cpuUsage().totalUsage(), is(3000L));
+
+    // the cgroup is resolved only once
+    verify(docker, times(1)).inspectContainer("web");
+    verify(docker, never()).stats("web");
+  }
+
+  @Test
+  public void testCgroupV2SystemdSlice() throws Exception {
+    when(info.hostConfig()).thenReturn(HostConfig.builder().cgroupParent("my-app.slice").build());
+    write(root.resolve("cgroup.controllers"), "cpu io memory pids");
+    final Path dir = root.resolve("my.slice/my-app.slice/docker-" + ID + ".scope");
+    write(dir.resolve("cpu.stat"), "usage_usec 3", "user_usec 2", "system_usec 1",
+          "nr_periods 0", "nr_throttled 0", "throttled_usec 0");
+    write(dir.resolve("memory.current"), "4096");
+    write(dir.resolve("memory.max"), "max");
+    write(dir.resolve("io.stat"), "8:0 rbytes=4096 wbytes=512 rios=1 wios=2 dbytes=0 dios=0");
+    write(dir.resolve("pids.current"), "1");
+    write(dir.resolve("pids.max"), "100");
+
+    final ContainerStats stats = new CgroupStatsProvider(docker, root, procStat).stats("web");
+
+    assertThat(stats.cpuStats().cpuUsage().totalUsage(), is(3000L));
+    assertThat(stats.cpuStats().cpuUsage().usageInUsermode(), is(2000L));
+    assertThat(stats.memoryStats().usage(), is(4096L));
+    assertThat(stats.memoryStats().limit(), is(nullValue()));
+    assertThat(stats.blockIoStats().ioServiceBytesRecursive().size(), is(2));
+    assertThat(stats.blockIoStats().ioServicedRecursive().size(), is(2));
+    assertThat(stats.pidsStats().limit(), is(100L));
+  }
+
+  @Test
+  public void testFallsBackToDaemon() throws Exception {
+    final ContainerStats daemonStats = mock(ContainerStats.class);
+    when(docker.stats("web")).thenReturn(daemonStats);
+
+    final CgroupStatsProvider provider = new CgroupStatsProvider(docker, root, procStat);
+
+    assertThat(provider.stats("web"), is(sameInstance(daemonStats)));
+    assertThat(provider.stats("web"), is(sameInstance(daemonStats)));
+
+    // the fallback is cached, so the container is not inspected again
+    verify(docker, times(1)).inspectContainer("web");
+    verify(docker, times(2)).stats("web");
+  }
+
+  @Test
+  public void testFallsBackToDaemonAfterReadFailure() throws Exception {
+    final ContainerStats daemonStats = mock(ContainerStats.class);
+    when(docker.stats("web")).thenReturn(daemonStats);
+    // the memory controller resolves the cgroup, but there is nothing to read in it
+    Files.createDirectories(root.resolve("memory/docker/" + ID));
+
+    final CgroupStatsProvider provider = new CgroupStatsProvider(docker, root, procStat);
+
+    assertThat(provider.stats("web"), is(sameInstance(daemonStats)));
+    assertThat(provider.stats("web"), is(sameInstance(daemonStats)));
+
+    verify(docker, times(1)).inspectContainer("web");
+    verify(docker, times(2)).stats("web");
+  }
+
+  @Test
+  public void testCandidates() throws Exception {
+    assertThat(CgroupStatsProvider.candidates(ID, null),
+               contains("docker/" + ID, "system.slice/docker-" + ID + ".scope"));
+    assertThat(CgroupStatsProvider.candidates(ID, "/custom/"), contains("custom/" + ID));
+    assertThat(CgroupStatsProvider.candidates(ID, "a-b-c.slice"),
+               contains("a.slice/a-b.slice/a-b-c.slice/docker-" + ID + ".scope",
+                        "a-b-c.slice/" + ID));
+  }
+
+  private static void write(final Path path, final String... lines) throws IOException {
+    Files.createDirectories(path.getParent());
+    Files.write(path, Joiner.on('\n').join(lines).getBytes(StandardCharsets.UTF_8));
+  }
+}
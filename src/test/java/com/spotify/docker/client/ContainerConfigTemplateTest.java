@@ -0,0 +1,136 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.PortBinding;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ContainerConfigTemplateTest {
+
+  private static final Map<String, List<PortBinding>> PORT_BINDINGS =
+      ImmutableMap.<String, List<PortBinding>>of(
+          "8080/tcp", ImmutableList.of(PortBinding.of("0.0.0.0", 18080)));
+
+  private static final ContainerConfig CONFIG = ContainerConfig.builder()
+      .image("busybox:latest")
+      .env("A=1", "B=2")
+      .cmd("sh", "-c", "sleep 60")
+      .labels(ImmutableMap.of("team", "infra"))
+      .exposedPorts("8080/tcp")
+      .hostConfig(HostConfig.builder()
+          .memory(64L << 20)
+          .portBindings(PORT_BINDINGS)
+          .build())
+      .build();
+
+  @Test
+  public void testUnchanged() throws Exception {
+    final ContainerConfigTemplate template = ContainerConfigTemplate.of(CONFIG);
+
+    assertThat(template.toConfig(), equalTo(CONFIG));
+    assertEncodes(template, CONFIG);
+  }
+
+  @Test
+  public void testPatched() throws Exception {
+    final Map<String, List<PortBinding>> portBindings =
+        ImmutableMap.<String, List<PortBinding>>of(
+            "8080/tcp", ImmutableList.of(PortBinding.of("0.0.0.0", 28080)));
+    final ContainerConfigTemplate template = ContainerConfigTemplate.of(CONFIG)
+        .withEnv("A=3")
+        .withCmd("true")
+        .withLabels(ImmutableMap.of("team", "web", "shard", "7"))
+        .withPortBindings(portBindings);
+
+    final ContainerConfig expected = CONFIG.toBuilder()
+        .env("A=3")
+        .cmd("true")
+        .labels(ImmutableMap.of("team", "web", "shard", "7"))
+        .hostConfig(CONFIG.hostConfig().toBuilder().portBindings(portBindings).build())
+        .build();
+    assertThat(template.toConfig(), equalTo(expected));
+    assertEncodes(template, expected);
+  }
+
+  @Test
+  public void testPartsRemoved() throws Exception {
+    final ContainerConfigTemplate template = ContainerConfigTemplate.of(CONFIG)
+        .withEnv((List<String>) null)
+        .withCmd((List<String>) null)
+        .withLabels(null)
+        .withPortBindings(null);
+
+    final JsonNode json = objectMapper().readTree(template.toJson());
+    assertThat(json.get("Env"), nullValue());
+    assertThat(json.get("HostConfig").get("PortBindings"), nullValue());
+    assertEncodes(template, template.toConfig());
+  }
+
+  @Test
+  public void testMinimalConfig() throws Exception {
+    final ContainerConfig config = ContainerConfig.builder().build();
+
+    assertEncodes(ContainerConfigTemplate.of(config), config);
+    assertEncodes(ContainerConfigTemplate.of(config).withEnv("A=1"),
+        config.toBuilder().env("A=1").build());
+  }
+
+  @Test
+  public void testPortBindingsWithoutHostConfig() throws Exception {
+    final ContainerConfig config = ContainerConfig.builder().image("busybox:latest").build();
+    final ContainerConfigTemplate template =
+        ContainerConfigTemplate.of(config).withPortBindings(PORT_BINDINGS);
+
+    assertThat(template.toConfig().hostConfig().portBindings(), equalTo(PORT_BINDINGS));
+    assertEncodes(template, template.toConfig());
+  }
+
+  @Test
+  public void testEmptyHostConfig() throws Exception {
+    final ContainerConfig config = ContainerConfig.builder()
+        .hostConfig(HostConfig.builder().portBindings(PORT_BINDINGS).build())
+        .build();
+
+    assertEncodes(ContainerConfigTemplate.of(config), config);
+    assertEncodes(ContainerConfigTemplate.of(config).withPortBindings(null),
+        config.toBuilder().hostConfig(HostConfig.builder().build()).build());
+  }
+
+  private static void assertEncodes(final ContainerConfigTemplate template,
+                                    final ContainerConfig expected) throws Exception {
+    assertThat(objectMapper().readTree(template.toJson()),
+        equalTo(objectMapper().readTree(objectMapper().writeValueAsBytes(expected))));
+  }
+}
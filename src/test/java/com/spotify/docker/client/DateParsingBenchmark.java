@@ -0,0 +1,149 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.FixtureUtil.fixture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.DateDeserializers;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerStats;
+import com.spotify.docker.client.messages.swarm.Task;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the regex-based timestamp handling {@link DockerDateFormat} used to do with the
+ * {@link Rfc3339} parser, both on a single nanosecond timestamp and when decoding fixtures that
+ * carry several. The legacy mapper is the shared one with Jackson's own Date deserializer and the
+ * old format put back. Run {@link #main(String[])} from the test classpath; add {@code -prof gc}
+ * to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateParsingBenchmark {
+
+  private static final String TIMESTAMP = "2017-07-09T13:21:26.541067155Z";
+
+  private static final Map<String, Class<?>> FIXTURES = ImmutableMap.<String, Class<?>>of(
+      "fixtures/1.24/containerInfo.json", ContainerInfo.class,
+      "fixtures/1.30/containerStats.json", ContainerStats.class,
+      "fixtures/1.30/task.json", Task.class);
+
+  private final LegacyDockerDateFormat legacyFormat = new LegacyDockerDateFormat();
+
+  @State(Scope.Benchmark)
+  public static class Fixture {
+
+    @Param({"fixtures/1.24/containerInfo.json", "fixtures/1.30/containerStats.json",
+            "fixtures/1.30/task.json"})
+    public String fixture;
+
+    private ObjectMapper mapper;
+    private ObjectMapper legacyMapper;
+    private String json;
+    private Class<?> type;
+
+    @Setup
+    public void setUp() throws Exception {
+      mapper = ObjectMapperProvider.objectMapper();
+      final SimpleModule module = new SimpleModule();
+      module.addDeserializer(Date.class, new DateDeserializers.DateDeserializer());
+      legacyMapper = mapper.copy().registerModule(module)
+          .setDateFormat(new LegacyDockerDateFormat());
+      json = fixture(fixture);
+      type = FIXTURES.get(fixture);
+    }
+  }
+
+  @Benchmark
+  public Date parseLegacy() throws Exception {
+    return legacyFormat.clone().parse(TIMESTAMP);
+  }
+
+  @Benchmark
+  public Date parseRfc3339() throws Exception {
+    return new Date(Rfc3339.parseEpochMillis(TIMESTAMP));
+  }
+
+  @Benchmark
+  public Object decodeLegacy(final Fixture fixture) throws Exception {
+    return fixture.legacyMapper.readValue(fixture.json, fixture.type);
+  }
+
+  @Benchmark
+  public Object decode(final Fixture fixture) throws Exception {
+    return fixture.mapper.readValue(fixture.json, fixture.type);
+  }
+
+  /**
+   * {@link DockerDateFormat} as it was before it used {@link Rfc3339}.
+   */
+  private static class LegacyDockerDateFormat extends StdDateFormat {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String TIMEZONE_PATTERN = "(Z|[+-]\\d{2}:?\\d{2})";
+
+    @Override
+    public Date parse(String source) throws ParseException {
+      if (source.matches(".+\\.\\d{4,9}" + TIMEZONE_PATTERN + "$")) {
+        source = source.replaceAll("(\\.\\d{3})\\d{1,6}" + TIMEZONE_PATTERN + "$", "$1$2");
+      }
+      return super.parse(source);
+    }
+
+    @Override
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    public LegacyDockerDateFormat clone() {
+      return new LegacyDockerDateFormat();
+    }
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(DateParsingBenchmark.class.getSimpleName())
+                   .build())
+        .run();
+  }
+}
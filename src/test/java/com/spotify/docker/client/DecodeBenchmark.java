@@ -0,0 +1,239 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.FixtureUtil.fixture;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ImageInfo;
+import com.spotify.docker.client.messages.Info;
+import com.spotify.docker.client.messages.swarm.Node;
+import com.spotify.docker.client.messages.swarm.NodeInfo;
+import com.spotify.docker.client.messages.swarm.Service;
+import com.spotify.docker.client.messages.swarm.Task;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures decoding of Docker API responses with {@link ObjectMapperProvider#objectMapper()}: the
+ * per-version fixtures of the inspect and info endpoints, and synthetic {@code /containers/json}
+ * and {@code /tasks} responses with 10k and 50k entries built from the fixtures. Every benchmark
+ * reports throughput and sampled latency percentiles, and {@link #main(String[])} adds the GC
+ * profiler, whose {@code gc.alloc.rate.norm} is the allocation per decoded response. Use it to
+ * check changes to ObjectMapperProvider and the message classes for regressions.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DecodeBenchmark {
+
+  private static final ObjectMapper MAPPER = ObjectMapperProvider.objectMapper();
+  private static final TypeFactory TYPES = MAPPER.getTypeFactory();
+
+  // Fixture file names up to their variant suffix
+  private static final Map<String, JavaType> FIXTURE_TYPES =
+      ImmutableMap.<String, JavaType>builder()
+          .put("containerInfo", TYPES.constructType(ContainerInfo.class))
+          .put("imageInfo", TYPES.constructType(ImageInfo.class))
+          .put("infoSwarm", TYPES.constructType(Info.class))
+          .put("inspectCreateResponse", TYPES.constructType(Service.class))
+          .put("listNodes", TYPES.constructCollectionType(List.class, Node.class))
+          .put("nodeInfo", TYPES.constructType(NodeInfo.class))
+          .put("service", TYPES.constructType(Service.class))
+          .put("task", TYPES.constructType(Task.class))
+          .build();
+
+  @State(Scope.Benchmark)
+  public static class Fixture {
+
+    @Param({
+        "1.22/containerInfo.json",
+        "1.24/containerInfo.json",
+        "1.22/imageInfo.json",
+        "1.24/imageInfo.json",
+        "1.24/infoSwarmActive.json",
+        "1.26/infoSwarmActive.json",
+        "1.29/infoSwarmActive.json",
+        "1.30/task.json",
+        "1.30/service.json",
+        "1.30/inspectCreateResponseWithPlacementPrefs.json",
+        "1.27/nodeInfoNonLeader.json",
+        "1.28/nodeInfo.json",
+        "1.28/listNodes.json"})
+    public String fixture;
+
+    private byte[] json;
+    private JavaType type;
+
+    @Setup
+    public void setUp() throws Exception {
+      json = fixture("fixtures/" + fixture).getBytes(UTF_8);
+      final String name = fixture.substring(fixture.indexOf('/') + 1);
+      for (final Map.Entry<String, JavaType> entry : FIXTURE_TYPES.entrySet()) {
+        if (name.startsWith(entry.getKey())) {
+          type = entry.getValue();
+          break;
+        }
+      }
+      if (type == null) {
+        throw new IllegalArgumentException("No message type for " + fixture);
+      }
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class LargeList {
+
+    @Param({"containers", "tasks"})
+    public String list;
+
+    private byte[] json;
+    private JavaType type;
+    private Projection<JsonNode> projection;
+
+    @Setup
+    public void setUp() throws Exception {
+      if (list.equals("containers")) {
+        json = repeat(fixture("fixtures/1.33/listContainers.json"), "Id", 10000);
+        type = TYPES.constructCollectionType(List.class, Container.class);
+        projection = Projection.of("Id", "Names", "State", "Labels");
+      } else {
+        json = repeat(fixture("fixtures/1.30/task.json"), "ID", 50000);
+        type = TYPES.constructCollectionType(List.class, Task.class);
+        projection = Projection.of("ID", "ServiceID", "NodeID", "Status.State");
+      }
+    }
+
+    /**
+     * Builds a compact JSON array of {@code count} copies of {@code template}, or of its first
+     * element if it is an array, each with a distinct {@code idField}.
+     */
+    private static byte[] repeat(final String template, final String idField, final int count)
+        throws Exception {
+      final JsonNode tree = MAPPER.readTree(template);
+      final ObjectNode entry = (ObjectNode) (tree.isArray() ? tree.get(0) : tree);
+      final StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < count; i++) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        entry.put(idField, String.format("%064x", i));
+        sb.append(MAPPER.writeValueAsString(entry));
+      }
+      return sb.append(']').toString().getBytes(UTF_8);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Inspection {
+
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws Exception {
+      json = fixture("fixtures/1.24/containerInfo.json").getBytes(UTF_8);
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object decodeFixture(final Fixture fixture) throws Exception {
+    return MAPPER.readValue(fixture.json, fixture.type);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Object decodeLargeList(final LargeList list) throws Exception {
+    return MAPPER.readValue(list.json, list.type);
+  }
+
+  /**
+   * Decodes the same list as {@link #decodeLargeList(LargeList)}, but only the fields an inventory
+   * poll needs, the way {@link ListStream} does.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public Object decodeProjectedList(final LargeList list) throws Exception {
+    final List<JsonNode> result = new ArrayList<>();
+    try (final JsonParser parser = MAPPER.getFactory().createParser(list.json)) {
+      parser.nextToken();
+      while (parser.nextToken() == JsonToken.START_OBJECT) {
+        result.add(list.projection.read(parser));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Inspects a container and reads its state, as {@link DefaultDockerClient#inspectContainer}
+   * decodes it.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object decodeContainerState(final Inspection inspection) throws Exception {
+    return MAPPER.readValue(inspection.json, ContainerInfo.class).state();
+  }
+
+  /**
+   * Inspects a container and reads its state, as {@link DefaultDockerClient#inspectContainerLazily}
+   * decodes it.
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object decodeLazyContainerState(final Inspection inspection) throws Exception {
+    return new LazyContainerInfo(RawJsonObject.parse(inspection.json)).state();
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(DecodeBenchmark.class.getSimpleName())
+                   .addProfiler(GCProfiler.class)
+                   .build())
+        .run();
+  }
+}
@@ -26,38 +26,57 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.Resources;
+import com.spotify.docker.client.DockerClient.ExecCreateParam;
+import com.spotify.docker.client.DockerClient.ExecStartParameter;
+import com.spotify.docker.client.DockerClient.ListContainersParam;
 import com.spotify.docker.client.DockerClient.Signal;
 import com.spotify.docker.client.auth.RegistryAuthSupplier;
+import com.spotify.docker.client.exceptions.BadParamException;
 import com.spotify.docker.client.exceptions.ConflictException;
+import com.spotify.docker.client.exceptions.ContainerNotFoundException;
 import com.spotify.docker.client.exceptions.DockerCertificateException;
 import com.spotify.docker.client.exceptions.DockerException;
+import com.spotify.docker.client.exceptions.DockerRequestException;
+import com.spotify.docker.client.exceptions.DockerTimeoutException;
 import com.spotify.docker.client.exceptions.NodeNotFoundException;
 import com.spotify.docker.client.exceptions.NonSwarmNodeException;
 import com.spotify.docker.client.exceptions.NotFoundException;
 import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ContainerCreation;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ExecCreation;
 import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.HostConfig.Bind;
+import com.spotify.docker.client.messages.ImageInfo;
 import com.spotify.docker.client.messages.RegistryAuth;
 import com.spotify.docker.client.messages.RegistryConfigs;
 import com.spotify.docker.client.messages.ServiceCreateResponse;
@@ -79,6 +98,7 @@ import com.spotify.docker.client.messages.swarm.Service;
 import com.spotify.docker.client.messages.swarm.ServiceSpec;
 import com.spotify.docker.client.messages.swarm.Spread;
 import com.spotify.docker.client.messages.swarm.SwarmJoin;
+import com.spotify.docker.client.messages.swarm.Task;
 import com.spotify.docker.client.messages.swarm.TaskSpec;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -86,12 +106,14 @@ import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import okhttp3.HttpUrl;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
 import okio.Buffer;
 import org.glassfish.jersey.internal.util.Base64;
 import org.junit.After;
@@ -281,6 +303,72 @@ public class DefaultDockerClientUnitTest {
     assertThat(childrenTextNodes((ArrayNode) capAddNode), containsInAnyOrder("baz", "qux"));
   }
 
+  @Test
+  public void testCreateContainerFromTemplate() throws Exception {
+    final DefaultDockerClient dockerClient = new DefaultDockerClient(builder);
+    final ContainerConfigTemplate template = ContainerConfigTemplate.of(ContainerConfig.builder()
+        .image("busybox:latest")
+        .hostConfig(HostConfig.builder().capAdd("NET_ADMIN").build())
+        .build());
+
+    server.enqueue(new MockResponse()
+        .setResponseCode(201)
+        .addHeader("Content-Type", "application/json")
+        .setBody("{\"Id\": \"abc123\", \"Warnings\": []}"));
+
+    final ContainerCreation creation =
+        dockerClient.createContainer(template.withEnv("WORKER=7"), "worker-7");
+
+    final RecordedRequest recordedRequest = takeRequestImmediately();
+    assertThat(recordedRequest.getMethod(), is("POST"));
+    assertThat(recordedRequest.getPath(), is("/containers/create?name=worker-7"));
+    assertThat(recordedRequest.getHeader("Content-Type"), is("application/json"));
+    assertThat(toJson(recordedRequest.getBody()), equalTo(ObjectMapperProvider.objectMapper()
+        .readTree(ObjectMapperProvider.objectMapper().writeValueAsBytes(template
+            .withEnv("WORKER=7").toConfig()))));
+    assertThat(creation.id(), is("abc123"));
+  }
+
+  @Test
+  public void testExecBodies() throws Exception {
+    final DefaultDockerClient dockerClient = new DefaultDockerClient(builder);
+
+    server.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .addHeader("Content-Type", "application/json")
+        .setBody(fixture("fixtures/1.24/containerInfo.json")));
+    server.enqueue(new MockResponse()
+        .setResponseCode(201)
+        .addHeader("Content-Type", "application/json")
+        .setBody("{\"Id\": \"exec123\"}"));
+    server.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .addHeader("Content-Type", "application/vnd.docker.raw-stream"));
+
+    // A non-ASCII argument, to check the body is sent as UTF-8
+    final String echo = "echo h" + (char) 0xE9 + "llo";
+    final ExecCreation creation = dockerClient.execCreate(
+        "abc123", new String[] {"sh", "-c", echo},
+        ExecCreateParam.attachStdout(), ExecCreateParam.user("nobody"));
+    dockerClient.execStart(creation.id(), ExecStartParameter.TTY).close();
+
+    takeRequestImmediately();
+    final RecordedRequest createRequest = takeRequestImmediately();
+    assertThat(createRequest.getPath(), is("/containers/abc123/exec"));
+    assertThat(createRequest.getHeader("Content-Type"), is("application/json"));
+    final ObjectNode createBody = createObjectNode()
+        .put("AttachStdout", true)
+        .put("User", "nobody");
+    createBody.putArray("Cmd").add("sh").add("-c").add(echo);
+    assertThat(toJson(createRequest.getBody()), equalTo((JsonNode) createBody));
+
+    final RecordedRequest startRequest = takeRequestImmediately();
+    assertThat(startRequest.getPath(), is("/exec/exec123/start"));
+    assertThat(startRequest.getHeader("Content-Type"), is("application/json"));
+    assertThat(toJson(startRequest.getBody()),
+        equalTo((JsonNode) createObjectNode().put("Tty", true)));
+  }
+
   private static Set<String> childrenTextNodes(ArrayNode arrayNode) {
     final Set<String> texts = new HashSet<>();
     for (JsonNode child : arrayNode) {
@@ -1135,6 +1223,360 @@ public class DefaultDockerClientUnitTest {
     )));
   }
 
+  @Test
+  public void testLongRunningCallsIgnoreReadTimeoutOnSharedPool() throws Exception {
+    final DefaultDockerClient dockerClient = builder.readTimeoutMillis(200).build();
+
+    server.enqueue(new MockResponse()
+        .addHeader("Content-Type", "application/json")
+        .setBodyDelay(600, TimeUnit.MILLISECONDS)
+        .setBody("{\"StatusCode\":3}"));
+    assertThat(dockerClient.waitContainer("abc123").statusCode(), equalTo(3));
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+    thrown.expect(DockerTimeoutException.class);
+    dockerClient.inspectContainer("abc123");
+  }
+
+  @Test
+  public void testWithReadTimeout() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    final DefaultDockerClient shortWait = dockerClient.withReadTimeout(200, TimeUnit.MILLISECONDS);
+
+    // Closing the view leaves the pool it shares open
+    shortWait.close();
+    server.enqueue(new MockResponse()
+        .addHeader("Content-Type", "application/json")
+        .setBodyDelay(600, TimeUnit.MILLISECONDS)
+        .setBody("{\"StatusCode\":3}"));
+    assertThat(dockerClient.waitContainer("abc123").statusCode(), equalTo(3));
+
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+    thrown.expect(DockerTimeoutException.class);
+    shortWait.waitContainer("abc123");
+  }
+
+  @Test
+  public void testWithDeadline() throws Exception {
+    final DefaultDockerClient dockerClient = builder.readTimeoutMillis(200).build();
+    final DefaultDockerClient longWait = dockerClient.withDeadline(5, TimeUnit.SECONDS);
+
+    // Long running calls wait until the deadline rather than the read timeout of the client
+    server.enqueue(new MockResponse()
+        .addHeader("Content-Type", "application/json")
+        .setBodyDelay(600, TimeUnit.MILLISECONDS)
+        .setBody("{\"StatusCode\":3}"));
+    assertThat(longWait.waitContainer("abc123").statusCode(), equalTo(3));
+
+    // Other calls keep it
+    server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+    try {
+      longWait.inspectContainer("abc123");
+      fail("Expected the read timeout to pass");
+    } catch (DockerTimeoutException expected) {
+      // expected
+    }
+
+    // A byte every 100 ms never trips the read timeout, only the deadline
+    server.enqueue(new MockResponse()
+        .addHeader("Content-Type", "application/json")
+        .setBody("{\"StatusCode\":3}")
+        .throttleBody(1, 100, TimeUnit.MILLISECONDS));
+    final long started = System.nanoTime();
+    try {
+      dockerClient.withDeadline(300, TimeUnit.MILLISECONDS).waitContainer("abc123");
+      fail("Expected the deadline to pass");
+    } catch (DockerTimeoutException e) {
+      assertThat(System.nanoTime() - started, lessThan(TimeUnit.SECONDS.toNanos(1)));
+    }
+  }
+
+  @Test
+  public void testViewsLeaveSharedPoolOpen() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    DefaultDockerClient view = dockerClient.withReadTimeout(5, TimeUnit.SECONDS);
+    for (int i = 0; i < 10; i++) {
+      server.enqueue(new MockResponse());
+      view.killContainer("abc123");
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("{\"StatusCode\":0}"));
+      view.waitContainer("abc123");
+    }
+
+    // Anything Jersey built for the calls above is finalized before the pool is used again
+    view = null;
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      System.runFinalization();
+    }
+
+    server.enqueue(new MockResponse().setBody("OK"));
+    assertThat(dockerClient.ping(), equalTo("OK"));
+  }
+
+  @Test
+  public void testTransportSharesClientSettings() throws Exception {
+    final DefaultDockerClient dockerClient = builder
+        .apiVersion("v1.32")
+        .header("X-Test", "shared")
+        .build();
+
+    server.enqueue(new MockResponse().setBody("OK"));
+    try (DockerResponse response = dockerClient.transport().execute(
+        DockerRequest.get("/_ping").build())) {
+      assertThat(response.readString(), equalTo("OK"));
+    }
+
+    final RecordedRequest request = server.takeRequest();
+    assertThat(request.getPath(), equalTo("/v1.32/_ping"));
+    assertThat(request.getHeader("X-Test"), equalTo("shared"));
+  }
+
+  @Test
+  public void testStreamingCallsUseStreamingLane() throws Exception {
+    final DefaultDockerClient dockerClient = builder
+        .connectionPoolSize(4)
+        .streamingConnectionLimit(2)
+        .build();
+    assertThat(dockerClient.laneStats(ConnectionLane.STREAMING).max(), equalTo(2));
+
+    server.enqueue(new MockResponse()
+        .addHeader("Content-Type", "application/vnd.docker.raw-stream")
+        .setBody("log line\n"));
+    try (LogStream logs = dockerClient.logs("abc123", DockerClient.LogsParam.stdout())) {
+      assertThat(dockerClient.laneStats(ConnectionLane.STREAMING).leased(), equalTo(1));
+      assertThat(dockerClient.laneStats(ConnectionLane.CONTROL).leased(), equalTo(0));
+    }
+    assertThat(dockerClient.laneStats(ConnectionLane.STREAMING).leased(), equalTo(0));
+    assertThat(dockerClient.laneStats(ConnectionLane.STREAMING).peakLeased(), equalTo(1));
+
+    enqueueServerApiEmptyResponse(200);
+    dockerClient.startContainer("abc123");
+    assertThat(dockerClient.laneStats(ConnectionLane.CONTROL).peakLeased(), equalTo(1));
+  }
+
+  @Test
+  public void testRequestListener() throws Exception {
+    final InMemoryRequestMetrics metrics = new InMemoryRequestMetrics();
+    final DefaultDockerClient dockerClient = builder
+        .apiVersion("v1.32")
+        .requestListener(metrics)
+        .build();
+
+    enqueueServerApiResponse(200, "fixtures/1.24/containerInfo.json");
+    enqueueServerApiEmptyResponse(404);
+    dockerClient.inspectContainer("abc123");
+    try {
+      dockerClient.inspectContainer("def456");
+    } catch (ContainerNotFoundException expected) {
+      // expected
+    }
+
+    final InMemoryRequestMetrics.Endpoint inspect =
+        metrics.endpoints().get("GET /containers/{id}/json");
+    assertThat(inspect.requests(), equalTo(2L));
+    assertThat(inspect.statuses(), 
+               equalTo((Map<Integer, Long>) ImmutableMap.of(200, 1L, 404, 1L)));
+    assertThat(inspect.errors(), hasKey(DockerRequestException.class.getName()));
+    assertThat(inspect.requestBytes(), greaterThan(0L));
+    assertThat(inspect.responseBytes(), greaterThan(0L));
+    assertThat(inspect.connect().count(), greaterThanOrEqualTo(1L));
+    assertThat(inspect.timeToFirstByte().count(), equalTo(2L));
+    assertThat(inspect.total().max(), greaterThanOrEqualTo(inspect.timeToFirstByte().max()));
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test
+  public void testStreamTasks() throws Exception {
+    final DefaultDockerClient dockerClient = builder.apiVersion("v1.30").build();
+    final String task = fixture("fixtures/1.30/task.json");
+    enqueueServerApiVersion("1.30");
+    server.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .addHeader("Content-Type", "application/json")
+        .setChunkedBody("[" + task + "," + task + "]", 512));
+
+    final List<Task> tasks = Lists.newArrayList();
+    try (final ListStream<Task> stream = dockerClient.streamTasks(
+        Task.Criteria.builder().serviceName("web").build())) {
+      assertThat(dockerClient.poolStats().getLeased(), equalTo(1));
+      Iterators.addAll(tasks, stream);
+      assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+    }
+
+    assertThat(tasks, hasSize(2));
+    assertThat(tasks.get(1), equalTo(
+        ObjectMapperProvider.objectMapper().readValue(task, Task.class)));
+    takeRequestImmediately();
+    final RecordedRequest request = takeRequestImmediately();
+    assertThat(request.getMethod(), equalTo("GET"));
+    assertThat(request.getPath(), startsWith("/v1.30/tasks?filters="));
+    assertThat(request.getHeader("Accept"), equalTo("application/json"));
+  }
+
+  @Test
+  public void testStreamClosedEarly() throws Exception {
+    final DefaultDockerClient dockerClient = builder.apiVersion("v1.30").build();
+    final String task = fixture("fixtures/1.30/task.json");
+    enqueueServerApiVersion("1.30");
+    server.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .addHeader("Content-Type", "application/json")
+        .setChunkedBody("[" + task + "," + task + "]", 512));
+
+    try (final ListStream<Task> stream = dockerClient.streamTasks()) {
+      stream.next();
+    }
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test
+  public void testStreamEmptyAndNullLists() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    server.enqueue(new MockResponse().setResponseCode(200).setBody("[]"));
+    server.enqueue(new MockResponse().setResponseCode(200).setBody("null"));
+
+    assertThat(dockerClient.streamNetworks().hasNext(), is(false));
+    assertThat(dockerClient.streamImages().hasNext(), is(false));
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test(expected = BadParamException.class)
+  public void testStreamContainersBadParam() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    server.enqueue(new MockResponse().setResponseCode(400).setBody("bad filter"));
+
+    dockerClient.streamContainers(ListContainersParam.filter("foo", "bar"));
+  }
+
+  @Test
+  public void testListContainersProjection() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    enqueueServerApiResponse(200, "fixtures/1.33/listContainers.json");
+
+    final List<JsonNode> containers = dockerClient.listContainers(
+        Projection.of("Id", "State", "NetworkSettings.Networks.bridge.IPAddress"));
+
+    assertThat(containers, hasSize(2));
+    for (final JsonNode container : containers) {
+      assertThat(ImmutableList.copyOf(container.fieldNames()),
+          contains("Id", "State", "NetworkSettings"));
+      assertThat(ImmutableList.copyOf(container.path("NetworkSettings").path("Networks")
+              .path("bridge").fieldNames()),
+          contains("IPAddress"));
+    }
+    assertThat(containers.get(0).path("State").asText(), equalTo("exited"));
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test
+  public void testInspectContainerProjection() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    enqueueServerApiResponse(200, "fixtures/1.24/containerInfo.json");
+
+    final ContainerSummary summary = dockerClient.inspectContainer(
+        "129f31f34ebc", Projection.of("Id", "State.Status").as(ContainerSummary.class));
+
+    final RecordedRequest recordedRequest = takeRequestImmediately();
+    assertThat(recordedRequest.getRequestUrl().encodedPath(),
+        equalTo("/containers/129f31f34ebc/json"));
+    assertThat(summary.id, startsWith("129f31f34ebc"));
+    assertThat(summary.state.status, equalTo("running"));
+    assertThat(summary.state.pid, is(nullValue()));
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test
+  public void testProjectionKeepsObjectsWithoutTheFields() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    server.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .addHeader("Content-Type", "application/json")
+        .setBody("[{\"Id\": \"a\", \"Status\": \"Up\"}, {\"Status\": \"Created\"},"
+                 + " {\"Id\": \"c\", \"Ports\": [{\"PrivatePort\": 80}, {\"Type\": \"tcp\"}]}]"));
+    server.enqueue(new MockResponse()
+        .setResponseCode(200)
+        .addHeader("Content-Type", "application/json")
+        .setBody("{\"Status\": \"Created\"}"));
+
+    final List<JsonNode> containers =
+        dockerClient.listContainers(Projection.of("Id", "Ports.PrivatePort"));
+
+    final ObjectNode withPorts = createObjectNode().put("Id", "c");
+    final ArrayNode ports = withPorts.putArray("Ports");
+    ports.addObject().put("PrivatePort", 80);
+    ports.addObject();
+    assertThat(containers, contains(
+        (JsonNode) createObjectNode().put("Id", "a"), createObjectNode(), withPorts));
+    assertThat(dockerClient.inspectContainer("b", Projection.of("Id")),
+        equalTo((JsonNode) createObjectNode()));
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test(expected = ContainerNotFoundException.class)
+  public void testInspectContainerProjectionNotFound() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    server.enqueue(new MockResponse().setResponseCode(404));
+
+    dockerClient.inspectContainer("abc123", Projection.of("Id"));
+  }
+
+  @Test
+  public void testInspectContainerLazily() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    enqueueServerApiResponse(200, "fixtures/1.24/containerInfo.json");
+
+    final ContainerInfo info = dockerClient.inspectContainerLazily("129f31f34ebc");
+    final ContainerInfo expected = ObjectMapperProvider.objectMapper()
+        .readValue(fixture("fixtures/1.24/containerInfo.json"), ContainerInfo.class);
+
+    assertThat(info.state(), equalTo(expected.state()));
+    assertThat(info.hostConfig(), sameInstance(info.hostConfig()));
+    assertThat(info.node(), is(nullValue()));
+    assertThat(info, equalTo(expected));
+    assertThat(expected, equalTo(info));
+    assertThat(info.hashCode(), equalTo(expected.hashCode()));
+    assertThat(ObjectMapperProvider.objectMapper().readValue(
+        ObjectMapperProvider.objectMapper().writeValueAsString(info), ContainerInfo.class),
+        equalTo(expected));
+    assertThat(dockerClient.poolStats().getLeased(), equalTo(0));
+  }
+
+  @Test(expected = ContainerNotFoundException.class)
+  public void testInspectContainerLazilyNotFound() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    server.enqueue(new MockResponse().setResponseCode(404));
+
+    dockerClient.inspectContainerLazily("abc123");
+  }
+
+  @Test
+  public void testInspectImageLazily() throws Exception {
+    final DefaultDockerClient dockerClient = builder.build();
+    enqueueServerApiResponse(200, "fixtures/1.24/imageInfo.json");
+
+    final ImageInfo info = dockerClient.inspectImageLazily("busybox:latest");
+    final ImageInfo expected = ObjectMapperProvider.objectMapper()
+        .readValue(fixture("fixtures/1.24/imageInfo.json"), ImageInfo.class);
+
+    final RecordedRequest recordedRequest = takeRequestImmediately();
+    assertThat(recordedRequest.getRequestUrl().encodedPath(),
+        equalTo("/images/busybox:latest/json"));
+    assertThat(info.config(), equalTo(expected.config()));
+    assertThat(info, equalTo(expected));
+  }
+
+  private static class ContainerSummary {
+    @JsonProperty("Id") String id;
+    @JsonProperty("State") ContainerSummaryState state;
+  }
+
+  private static class ContainerSummaryState {
+    @JsonProperty("Status") String status;
+    @JsonProperty("Pid") Integer pid;
+  }
+
   private void enqueueServerApiResponse(final int statusCode, final String fileName)
       throws IOException {
     server.enqueue(new MockResponse()
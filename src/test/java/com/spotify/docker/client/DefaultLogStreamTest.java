@@ -20,13 +20,30 @@
 
 package com.spotify.docker.client;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 
@@ -53,7 +70,240 @@ public class DefaultLogStreamTest {
     assertThat(stderr.toString(), is("oops\n"));
   }
 
+  @Test
+  public void testAttachChannels() throws Exception {
+    final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    frame(frames, LogMessage.Stream.STDOUT, "hello\n");
+    frame(frames, LogMessage.Stream.STDERR, "oops\n");
+    frame(frames, LogMessage.Stream.STDIN, "ignored\n");
+    frame(frames, LogMessage.Stream.STDOUT, "world!\n");
+    final DefaultLogStream logStream = new DefaultLogStream(
+        new LogReader(new ByteArrayInputStream(frames.toByteArray())));
+
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    logStream.attach(Channels.newChannel(stdout), Channels.newChannel(stderr), 4, 1000);
+
+    assertThat(stdout.toString(), is("hello\nworld!\n"));
+    assertThat(stderr.toString(), is("oops\n"));
+    assertThat(logStream.hasNext(), is(false));
+  }
+
+  @Test
+  public void testAttachChannelsTty() throws Exception {
+    final DefaultLogStream logStream = new DefaultLogStream(
+        new LogReader(new ByteArrayInputStream("no frames here\n".getBytes(UTF_8))));
+
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+    logStream.attach(Channels.newChannel(stdout), Channels.newChannel(stderr));
+
+    assertThat(stdout.toString(), is("no frames here\n"));
+    assertThat(stderr.size(), is(0));
+  }
+
+  @Test
+  public void testAttachChannelsWhileFollowing() throws Exception {
+    assertFollowed(false);
+  }
+
+  @Test
+  public void testAttachChannelsTtyWhileFollowing() throws Exception {
+    assertFollowed(true);
+  }
+
+  /**
+   * Follows a log that is written slowly and never fills the buffer, and checks that each line
+   * reaches the channel within the flush interval rather than at the end of the stream.
+   */
+  private static void assertFollowed(final boolean tty) throws Exception {
+    final PipedOutputStream daemon = new PipedOutputStream();
+    final DefaultLogStream logStream = new DefaultLogStream(
+        new LogReader(new BufferedInputStream(new PipedInputStream(daemon, 64 * 1024))));
+    final BlockingQueue<String> writes = new LinkedBlockingQueue<>();
+    final WritableByteChannel channel = new WritableByteChannel() {
+      @Override
+      public int write(final ByteBuffer src) {
+        final int size = src.remaining();
+        writes.add(UTF_8.decode(src).toString());
+        return size;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return true;
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<Void> attached = executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          logStream.attach(channel, channel, 64 * 1024, 1000);
+          return null;
+        }
+      });
+      for (final String line : new String[]{"hello\n", "world!\n"}) {
+        if (tty) {
+          daemon.write(line.getBytes(UTF_8));
+        } else {
+          final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+          frame(frame, LogMessage.Stream.STDOUT, line);
+          daemon.write(frame.toByteArray());
+        }
+        daemon.flush();
+        assertThat(writes.poll(1000, MILLISECONDS), is(line));
+      }
+      daemon.close();
+      attached.get(5, SECONDS);
+      assertThat(writes.isEmpty(), is(true));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testAttachChannelsAfterRead() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "hello\n"),
+        logMessage(LogMessage.Stream.STDERR, "oops\n"),
+        logMessage(LogMessage.Stream.STDOUT, "world!\n"),
+        null
+    );
+    assertThat(logStream.hasNext(), is(true));
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final WritableByteChannel channel = Channels.newChannel(output);
+    logStream.attach(channel, channel);
+
+    assertThat(output.toString(), is("hello\noops\nworld!\n"));
+  }
+
+  @Test
+  public void testFilter() throws Exception {
+    final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    frame(frames, LogMessage.Stream.STDOUT, "INFO starting\nWARN low disk\nERR");
+    frame(frames, LogMessage.Stream.STDERR, "ERROR code=1\n");
+    frame(frames, LogMessage.Stream.STDOUT, "OR code=2\nINFO done\n");
+    frame(frames, LogMessage.Stream.STDOUT, "ERROR no code\nERROR code=3");
+    final DefaultLogStream logStream = new DefaultLogStream(
+        new LogReader(new ByteArrayInputStream(frames.toByteArray())));
+
+    final LogStream filtered = logStream.filter(
+        LogFilter.containing("ERROR", "WARN").matching(Pattern.compile("disk|code=\\d")));
+
+    assertThat(read(filtered.next()), is("STDOUT:WARN low disk\n"));
+    assertThat(read(filtered.next()), is("STDERR:ERROR code=1\n"));
+    assertThat(read(filtered.next()), is("STDOUT:ERROR code=2\n"));
+    assertThat(read(filtered.next()), is("STDOUT:ERROR code=3"));
+    assertThat(filtered.hasNext(), is(false));
+  }
+
+  @Test
+  public void testFilterMessages() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "hello\n"),
+        logMessage(LogMessage.Stream.STDOUT, "oops, a"),
+        logMessage(LogMessage.Stream.STDOUT, "n error\nworld!\n"),
+        null
+    );
+    assertThat(logStream.hasNext(), is(true));
+
+    final LogStream filtered = logStream.filter(LogFilter.containing("error"));
+
+    assertThat(filtered.readFully(), is("oops, an error\n"));
+  }
+
+  @Test
+  public void testReadAtMost() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "hello\n"),
+        logMessage(LogMessage.Stream.STDERR, "wörld\n"),
+        logMessage(LogMessage.Stream.STDOUT, "never read\n"),
+        null
+    );
+
+    final LogCapture capture = logStream.readAtMost(8);
+
+    assertThat(capture.content(), is("hello\nw"));
+    assertThat(capture.totalBytes(), is(13L));
+    assertThat(capture.truncatedBytes(), is(6L));
+    verify(reader).close();
+  }
+
+  @Test
+  public void testReadAtMostWithinBudget() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "hello\n"),
+        null
+    );
+
+    final LogCapture capture = logStream.readAtMost(6);
+
+    assertThat(capture.content(), is("hello\n"));
+    assertThat(capture.truncated(), is(false));
+  }
+
+  @Test
+  public void testReadTail() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "one\ntwo\n"),
+        logMessage(LogMessage.Stream.STDERR, "thrëe\nfour\nfi"),
+        logMessage(LogMessage.Stream.STDOUT, "ve\n"),
+        null
+    );
+
+    final LogCapture capture = logStream.readTail(13);
+
+    assertThat(capture.content(), is("e\nfour\nfive\n"));
+    assertThat(capture.totalBytes(), is(25L));
+    assertThat(capture.truncatedBytes(), is(13L));
+  }
+
+  @Test
+  public void testReadTailSkipsPartialCharacter() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "thrëe\nfour\nfive\n"),
+        null
+    );
+
+    assertThat(logStream.readTail(13).content(), is("e\nfour\nfive\n"));
+  }
+
+  @Test
+  public void testReadTailLines() throws Exception {
+    when(reader.nextMessage()).thenReturn(
+        logMessage(LogMessage.Stream.STDOUT, "one\ntwo\nthree\n"),
+        logMessage(LogMessage.Stream.STDOUT, "four\nfive"),
+        null
+    );
+
+    final LogCapture capture = logStream.readTail(1024, 2);
+
+    assertThat(capture.content(), is("four\nfive"));
+    assertThat(capture.truncatedBytes(), is(14L));
+  }
+
+  private static String read(final LogMessage message) {
+    return message.stream() + ":" + UTF_8.decode(message.content());
+  }
+
+  private static void frame(final ByteArrayOutputStream output, final LogMessage.Stream stream,
+                            final String msg) throws Exception {
+    final byte[] content = msg.getBytes(UTF_8);
+    output.write(ByteBuffer.allocate(LogReader.HEADER_SIZE)
+                     .put(0, (byte) stream.id())
+                     .putInt(LogReader.FRAME_SIZE_OFFSET, content.length)
+                     .array());
+    output.write(content);
+  }
+
   private static LogMessage logMessage(LogMessage.Stream stream, String msg) {
-    return new LogMessage(stream, ByteBuffer.wrap(msg.getBytes()));
+    return new LogMessage(stream, ByteBuffer.wrap(msg.getBytes(UTF_8)));
   }
 }
@@ -21,8 +21,11 @@
 package com.spotify.docker.client;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 
 import java.util.Date;
@@ -74,4 +77,33 @@ public class DockerDateFormatTest {
         new DateTime(2016, 6, 3, 6, 57, 17, 478, DateTimeZone.forOffsetHours(-4)).toDate();
     assertThat(dockerDateFormat.parse("2016-06-03T06:57:17.4782869-04:00"), equalTo(expected));
   }
+
+  @Test
+  public void testFallsBackToStdDateFormat() throws Exception {
+    assertThat(dockerDateFormat.parse("2015-09-18"),
+               equalTo(new StdDateFormat().parse("2015-09-18")));
+  }
+
+  @Test
+  public void testKeepsJulianCalendarBeforeCutover() throws Exception {
+    for (final String date : new String[] {"0001-01-01T00:00:00Z", "1582-10-04T12:00:00Z"}) {
+      assertThat(dockerDateFormat.parse(date), equalTo(new StdDateFormat().parse(date)));
+    }
+  }
+
+  @Test
+  public void testObjectMapperDecodesDates() throws Exception {
+    final ObjectMapper mapper = ObjectMapperProvider.objectMapper();
+    assertThat(mapper.readValue("\"2015-09-18T17:44:28.145855389Z\"", Date.class),
+               equalTo(expected));
+    assertThat(mapper.readValue("\"2015-09-18T17:44:28.145\"", Date.class), equalTo(expected));
+    assertThat(mapper.readValue(String.valueOf(expected.getTime()), Date.class),
+               equalTo(expected));
+    assertThat(mapper.readValue("\"\"", Date.class), nullValue());
+  }
+
+  @Test(expected = JsonMappingException.class)
+  public void testObjectMapperRejectsGarbage() throws Exception {
+    ObjectMapperProvider.objectMapper().readValue("\"yesterday\"", Date.class);
+  }
 }
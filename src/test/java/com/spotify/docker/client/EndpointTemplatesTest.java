@@ -0,0 +1,49 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class EndpointTemplatesTest {
+
+  @Test
+  public void testTemplates() {
+    assertTemplate("/v1.32/containers/4fa6e0f0c678/json", "/containers/{id}/json");
+    assertTemplate("/containers/4fa6e0f0c678/attach/ws", "/containers/{id}/attach/ws");
+    assertTemplate("/v1.32/containers/json", "/containers/json");
+    assertTemplate("/v1.32/containers/create", "/containers/create");
+    assertTemplate("/v1.32/containers/4fa6e0f0c678", "/containers/{id}");
+    assertTemplate("/v1.32/images/registry.example.com/team/app:1.0/push",
+                   "/images/{name}/push");
+    assertTemplate("/v1.32/images/busybox%3Alatest", "/images/{name}");
+    assertTemplate("/v1.32/exec/abc/start", "/exec/{id}/start");
+    assertTemplate("/v1.32/swarm/init", "/swarm/init");
+    assertTemplate("/_ping", "/_ping");
+    assertTemplate("/v1.32/", "/");
+  }
+
+  private static void assertTemplate(final String path, final String template) {
+    assertThat(EndpointTemplates.template(path), equalTo(template));
+  }
+}
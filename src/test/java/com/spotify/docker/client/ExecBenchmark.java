@@ -0,0 +1,148 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.spotify.docker.client.DockerClient.ExecCreateParam;
+import com.spotify.docker.client.DockerClient.ExecStartParameter;
+import com.spotify.docker.client.messages.ExecCreation;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the exec create body written through {@link JsonEntities} with the one it replaced,
+ * which went through a {@code StringWriter} and {@code Entity.json(String)}: encoding alone, and
+ * posted by Jersey to a stand-in server on loopback TCP. {@link #execRoundTrip()} is the whole
+ * {@code execCreate} and {@code execStart}, including the container inspection before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecBenchmark {
+
+  private static final String[] CMD = {"sh", "-c", "cat /proc/loadavg"};
+
+  private static final ExecCreateParam[] PARAMS = {
+      ExecCreateParam.attachStdout(), ExecCreateParam.attachStderr(),
+      ExecCreateParam.user("nobody")
+  };
+
+  private StandInDockerServer server;
+  private DefaultDockerClient client;
+  private WebTarget exec;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = StandInDockerServer.tcp();
+    client = DefaultDockerClient.builder().uri(server.uri()).apiVersion("v1.32").build();
+    exec = client.getClient().target(server.uri())
+        .path("v1.32").path("containers").path("abc123").path("exec");
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public Entity<String> encodeLegacy() throws Exception {
+    final StringWriter writer = new StringWriter();
+    final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
+    writeFields(generator);
+    generator.close();
+    return Entity.json(writer.toString());
+  }
+
+  @Benchmark
+  public Entity<byte[]> encode() throws Exception {
+    final JsonGenerator generator = JsonEntities.generator();
+    writeFields(generator);
+    return JsonEntities.entity(generator);
+  }
+
+  @Benchmark
+  public ExecCreation postLegacy() throws Exception {
+    return exec.request(APPLICATION_JSON_TYPE).post(encodeLegacy(), ExecCreation.class);
+  }
+
+  @Benchmark
+  public ExecCreation post() throws Exception {
+    return exec.request(APPLICATION_JSON_TYPE).post(encode(), ExecCreation.class);
+  }
+
+  @Benchmark
+  public void execRoundTrip() throws Exception {
+    final ExecCreation creation = client.execCreate("abc123", CMD, PARAMS);
+    client.execStart(creation.id(), ExecStartParameter.DETACH).close();
+  }
+
+  /**
+   * Writes the body the way {@link DefaultDockerClient#execCreate} does.
+   */
+  private static void writeFields(final JsonGenerator generator) throws IOException {
+    generator.writeStartObject();
+    for (final ExecCreateParam param : PARAMS) {
+      if (param.value().equals("true") || param.value().equals("false")) {
+        generator.writeBooleanField(param.name(), Boolean.valueOf(param.value()));
+      } else {
+        generator.writeStringField(param.name(), param.value());
+      }
+    }
+    generator.writeArrayFieldStart("Cmd");
+    for (final String s : CMD) {
+      generator.writeString(s);
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(ExecBenchmark.class.getSimpleName())
+                   .addProfiler(GCProfiler.class)
+                   .build())
+        .run();
+  }
+}
@@ -0,0 +1,187 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.FixtureUtil.fixture;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.swarm.Task;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@link ObjectMapperProvider#enableStringInterning(int)} on synthetic inventories: 10k
+ * containers running 20 images, and 50k tasks of 50 services spread over 100 nodes. The JMH
+ * benchmarks report the decoding cost with interning off and on, and {@link #main(String[])}
+ * then prints the heap the decoded inventories retain in each mode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class InterningBenchmark {
+
+  private static final ObjectMapper MAPPER = ObjectMapperProvider.objectMapper();
+  private static final TypeFactory TYPES = MAPPER.getTypeFactory();
+
+  @State(Scope.Benchmark)
+  public static class Inventory {
+
+    @Param({"containers", "tasks"})
+    public String list;
+
+    @Param({"false", "true"})
+    public boolean interning;
+
+    private byte[] json;
+    private JavaType type;
+
+    @Setup
+    public void setUp() throws Exception {
+      if (list.equals("containers")) {
+        json = containers(10000);
+        type = TYPES.constructCollectionType(List.class, Container.class);
+      } else {
+        json = tasks(50000);
+        type = TYPES.constructCollectionType(List.class, Task.class);
+      }
+      if (interning) {
+        ObjectMapperProvider.enableStringInterning(4096);
+      }
+    }
+
+    @TearDown
+    public void tearDown() {
+      ObjectMapperProvider.disableStringInterning();
+    }
+  }
+
+  @Benchmark
+  public Object decode(final Inventory inventory) throws Exception {
+    return MAPPER.readValue(inventory.json, inventory.type);
+  }
+
+  private static byte[] containers(final int count) throws Exception {
+    final ObjectNode entry =
+        (ObjectNode) MAPPER.readTree(fixture("fixtures/1.33/listContainers.json")).get(0);
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < count; i++) {
+      final int image = i % 20;
+      entry.put("Id", String.format("%064x", i));
+      entry.putArray("Names").add("/container-" + i);
+      entry.put("Image", "registry.example.com/team/app-" + image + ":1.0." + image);
+      entry.put("ImageID", String.format("sha256:%064x", image));
+      entry.put("State", i % 10 == 0 ? "exited" : "running");
+      ((ObjectNode) entry.get("Labels")).put("com.example.version", "1.0." + image);
+      append(sb, i, entry);
+    }
+    return sb.append(']').toString().getBytes(UTF_8);
+  }
+
+  private static byte[] tasks(final int count) throws Exception {
+    final ObjectNode entry = (ObjectNode) MAPPER.readTree(fixture("fixtures/1.30/task.json"));
+    final ObjectNode containerSpec = (ObjectNode) entry.get("Spec").get("ContainerSpec");
+    final StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < count; i++) {
+      final int service = i % 50;
+      entry.put("ID", String.format("%025x", i));
+      entry.put("ServiceID", String.format("%025x", service));
+      entry.put("NodeID", String.format("%025x", i % 100));
+      containerSpec.put("Image", "registry.example.com/team/service-" + service + ":2.0");
+      ((ObjectNode) containerSpec.get("Labels")).put("app.service", "service-" + service);
+      append(sb, i, entry);
+    }
+    return sb.append(']').toString().getBytes(UTF_8);
+  }
+
+  private static void append(final StringBuilder sb, final int index, final JsonNode entry)
+      throws Exception {
+    if (index > 0) {
+      sb.append(',');
+    }
+    sb.append(MAPPER.writeValueAsString(entry));
+  }
+
+  private static long retainedHeap(final byte[] json, final JavaType type) throws Exception {
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    final long before = usedHeapAfterGc(memory);
+    final Object inventory = MAPPER.readValue(json, type);
+    final long after = usedHeapAfterGc(memory);
+    if (inventory.hashCode() == 0) {
+      // Keeps the inventory reachable until after the second measurement
+      System.out.print("");
+    }
+    return after - before;
+  }
+
+  private static long usedHeapAfterGc(final MemoryMXBean memory) throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(InterningBenchmark.class.getSimpleName())
+                   .addProfiler(GCProfiler.class)
+                   .build())
+        .run();
+
+    final byte[] containers = containers(10000);
+    final byte[] tasks = tasks(50000);
+    final JavaType containerList = TYPES.constructCollectionType(List.class, Container.class);
+    final JavaType taskList = TYPES.constructCollectionType(List.class, Task.class);
+    for (final boolean interning : new boolean[] {false, true}) {
+      if (interning) {
+        ObjectMapperProvider.enableStringInterning(4096);
+      }
+      System.out.printf("interning=%s retained heap: containers %,d bytes, tasks %,d bytes%n",
+          interning, retainedHeap(containers, containerList), retainedHeap(tasks, taskList));
+    }
+    ObjectMapperProvider.disableStringInterning();
+  }
+}
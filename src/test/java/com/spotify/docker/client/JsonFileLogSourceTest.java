@@ -0,0 +1,231 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.DockerClient.LogsParam.follow;
+import static com.spotify.docker.client.DockerClient.LogsParam.since;
+import static com.spotify.docker.client.DockerClient.LogsParam.stderr;
+import static com.spotify.docker.client.DockerClient.LogsParam.stdout;
+import static com.spotify.docker.client.DockerClient.LogsParam.tail;
+import static com.spotify.docker.client.DockerClient.LogsParam.timestamps;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerState;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.LogConfig;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class JsonFileLogSourceTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final DockerClient docker = mock(DockerClient.class);
+  private final ContainerInfo info = mock(ContainerInfo.class);
+  private final ContainerState state = mock(ContainerState.class);
+  private final AtomicBoolean running = new AtomicBoolean(true);
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  private Path logPath;
+  private JsonFileLogSource source;
+
+  @Before
+  public void setUp() throws Exception {
+    logPath = folder.getRoot().toPath().resolve("abc-json.log");
+    when(info.id()).thenReturn("abc");
+    when(info.logPath()).thenReturn(logPath.toString());
+    when(info.state()).thenReturn(state);
+    when(state.running()).thenAnswer(new Answer<Boolean>() {
+      @Override
+      public Boolean answer(final InvocationOnMock invocation) throws Throwable {
+        return running.get();
+      }
+    });
+    when(docker.inspectContainer("abc")).thenReturn(info);
+    source = new JsonFileLogSource(docker);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testReadsRotatedFilesInOrder() throws Exception {
+    append(logPath.resolveSibling("abc-json.log.2"), record("one\n", "stdout", 1));
+    append(logPath.resolveSibling("abc-json.log.1"), record("two\n", "stderr", 2));
+    append(logPath, record("three\n", "stdout", 3));
+
+    assertThat(readAll(stdout(), stderr()), is("one\ntwo\nthree\n"));
+    assertThat(readAll(stdout()), is("one\nthree\n"));
+    assertThat(readAll(stderr()), is("two\n"));
+  }
+
+  @Test
+  public void testTailAcrossFiles() throws Exception {
+    append(logPath.resolveSibling("abc-json.log.1"),
+           record("one\n", "stdout", 1) + record("two\n", "stdout", 2));
+    append(logPath, record("three\n", "stdout", 3));
+
+    assertThat(readAll(stdout(), tail(2)), is("two\nthree\n"));
+    assertThat(readAll(stdout(), tail(1)), is("three\n"));
+    assertThat(readAll(stdout(), tail(0)), is(""));
+    assertThat(readAll(stdout(), tail(10)), is("one\ntwo\nthree\n"));
+  }
+
+  @Test
+  public void testSinceAndTimestamps() throws Exception {
+    append(logPath, record("one\n", "stdout", 1) + record("two\n", "stdout", 2)
+                    + "{\"log\":\"three\\n\",\"stream\":\"stdout\","
+                    + "\"time\":\"1970-01-01T00:00:03.5Z\"}\n");
+
+    assertThat(readAll(stdout(), since(2)), is("two\nthree\n"));
+    assertThat(readAll(stdout(), since(3), timestamps()),
+               is("1970-01-01T00:00:03.500000000Z three\n"));
+  }
+
+  @Test
+  public void testUntilReleasesFile() throws Exception {
+    assumeTrue(Files.isDirectory(Paths.get("/proc/self/fd")));
+    append(logPath, record("one\n", "stdout", 1) + record("two\n", "stdout", 2)
+                    + record("three\n", "stdout", 3));
+
+    // Read until hasNext() is false, without closing the stream
+    final LogStream stream = source.logs("abc", stdout(), new LogsParam("until", "2"));
+    assertThat(next(stream), is("one\n"));
+    assertThat(next(stream), is("two\n"));
+    assertThat(stream.hasNext(), is(false));
+
+    assertThat(isOpen(logPath), is(false));
+  }
+
+  @Test
+  public void testFollowAcrossRotation() throws Exception {
+    append(logPath, record("one\n", "stdout", 1));
+
+    final LogStream stream = source.logs("abc", stdout(), follow());
+    assertThat(next(stream), is("one\n"));
+
+    final Future<String> second = executor.submit(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return next(stream);
+      }
+    });
+    TimeUnit.MILLISECONDS.sleep(300);
+    append(logPath, record("two\n", "stdout", 2));
+    assertThat(second.get(5, TimeUnit.SECONDS), is("two\n"));
+
+    // Rotate the way the json-file driver does, then write to the new file
+    append(logPath, record("three\n", "stdout", 3));
+    Files.move(logPath, logPath.resolveSibling("abc-json.log.1"));
+    append(logPath, record("four\n", "stdout", 4));
+    running.set(false);
+
+    final Future<String> rest = executor.submit(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return stream.readFully();
+      }
+    });
+    assertThat(rest.get(10, TimeUnit.SECONDS), is("three\nfour\n"));
+  }
+
+  @Test
+  public void testFallsBackToDaemon() throws Exception {
+    final LogStream daemonStream = mock(LogStream.class);
+    when(docker.logs("abc", stdout())).thenReturn(daemonStream);
+
+    // no log file
+    assertThat(source.logs("abc", stdout()), is(sameInstance(daemonStream)));
+
+    // other log driver
+    append(logPath, record("one\n", "stdout", 1));
+    when(info.hostConfig())
+        .thenReturn(HostConfig.builder().logConfig(LogConfig.create("journald")).build());
+    assertThat(source.logs("abc", stdout()), is(sameInstance(daemonStream)));
+  }
+
+  private String readAll(final LogsParam... params) throws Exception {
+    try (final LogStream stream = source.logs("abc", params)) {
+      return stream.readFully();
+    }
+  }
+
+  /**
+   * Whether this process has a file descriptor open on the file.
+   */
+  private static boolean isOpen(final Path path) throws IOException {
+    final Path file = path.toRealPath();
+    try (final DirectoryStream<Path> fds = Files.newDirectoryStream(Paths.get("/proc/self/fd"))) {
+      for (final Path fd : fds) {
+        try {
+          if (Files.readSymbolicLink(fd).equals(file)) {
+            return true;
+          }
+        } catch (IOException e) {
+          // closed since it was listed
+        }
+      }
+    }
+    return false;
+  }
+
+  private static String next(final LogStream stream) {
+    return UTF_8.decode(stream.next().content()).toString();
+  }
+
+  private static String record(final String log, final String stream, final int second) {
+    return String.format("{\"log\":\"%s\",\"stream\":\"%s\",\"time\":\"1970-01-01T00:00:0%dZ\"}\n",
+                         log.replace("\n", "\\n"), stream, second);
+  }
+
+  private static void append(final Path path, final String records) throws Exception {
+    Files.write(path, records.getBytes(UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+  }
+}
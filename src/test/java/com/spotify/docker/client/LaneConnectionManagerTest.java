@@ -0,0 +1,175 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.junit.After;
+import org.junit.Test;
+
+public class LaneConnectionManagerTest {
+
+  private static final HttpRoute ROUTE = new HttpRoute(new HttpHost("localhost", 2375));
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private LaneConnectionManager manager;
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    manager.shutdown();
+  }
+
+  @Test
+  public void testStreamingLimitReservesControlConnections() throws Exception {
+    manager = manager(3, 2, false);
+
+    final HttpClientConnection first = lease(ConnectionLane.STREAMING, 100);
+    lease(ConnectionLane.STREAMING, 100);
+    try {
+      lease(ConnectionLane.STREAMING, 100);
+      fail("Expected the streaming lane to be exhausted");
+    } catch (ConnectionPoolTimeoutException expected) {
+      // expected
+    }
+    lease(ConnectionLane.CONTROL, 100);
+
+    assertStats(ConnectionLane.STREAMING, 2, 0, 2, 2);
+    assertStats(ConnectionLane.CONTROL, 1, 0, 3, 1);
+
+    release(first);
+    lease(ConnectionLane.STREAMING, 100);
+    assertStats(ConnectionLane.STREAMING, 2, 0, 2, 2);
+  }
+
+  @Test
+  public void testLeasesDefaultToControl() throws Exception {
+    manager = manager(2, 1, false);
+
+    final HttpClientConnection connection = manager.requestConnection(ROUTE, null)
+        .get(100, MILLISECONDS);
+
+    assertStats(ConnectionLane.CONTROL, 1, 0, 2, 1);
+    release(connection);
+    assertStats(ConnectionLane.CONTROL, 0, 0, 2, 1);
+  }
+
+  @Test
+  public void testControlLeasesGoFirst() throws Exception {
+    manager = manager(1, 1, true);
+    final HttpClientConnection held = lease(ConnectionLane.CONTROL, 100);
+
+    final Future<HttpClientConnection> control = leaseAsync(ConnectionLane.CONTROL);
+    awaitPending(ConnectionLane.CONTROL, 1);
+    final Future<HttpClientConnection> streaming = leaseAsync(ConnectionLane.STREAMING);
+    awaitPending(ConnectionLane.STREAMING, 1);
+
+    release(held);
+    release(control.get(5, SECONDS));
+    streaming.get(5, SECONDS);
+
+    assertStats(ConnectionLane.CONTROL, 0, 0, 1, 1);
+    assertStats(ConnectionLane.STREAMING, 1, 0, 1, 1);
+  }
+
+  @Test
+  public void testStreamingWaitsWhileControlIsPending() throws Exception {
+    manager = manager(1, 1, true);
+    final HttpClientConnection held = lease(ConnectionLane.CONTROL, 100);
+    final Future<HttpClientConnection> control = leaseAsync(ConnectionLane.CONTROL);
+    awaitPending(ConnectionLane.CONTROL, 1);
+
+    try {
+      lease(ConnectionLane.STREAMING, 100);
+      fail("Expected the streaming lease to yield to the control lease");
+    } catch (ConnectionPoolTimeoutException expected) {
+      // expected
+    }
+    assertStats(ConnectionLane.STREAMING, 0, 0, 1, 0);
+
+    release(held);
+    control.get(5, SECONDS);
+  }
+
+  private static LaneConnectionManager manager(final int maxTotal, final int streamingLimit,
+                                               final boolean prioritizeControl) {
+    return new LaneConnectionManager(
+        RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .build(),
+        maxTotal, streamingLimit, prioritizeControl, null);
+  }
+
+  private HttpClientConnection lease(final ConnectionLane lane, final long timeoutMillis)
+      throws Exception {
+    final Exchange previous = LaneConnectionManager.enter(new Exchange("GET", "/_ping", lane));
+    try {
+      return manager.requestConnection(ROUTE, null).get(timeoutMillis, MILLISECONDS);
+    } finally {
+      LaneConnectionManager.exit(previous);
+    }
+  }
+
+  private Future<HttpClientConnection> leaseAsync(final ConnectionLane lane) {
+    return executor.submit(new Callable<HttpClientConnection>() {
+      @Override
+      public HttpClientConnection call() throws Exception {
+        return lease(lane, 5000);
+      }
+    });
+  }
+
+  private void release(final HttpClientConnection connection) {
+    manager.releaseConnection(connection, null, 0, MILLISECONDS);
+  }
+
+  private void awaitPending(final ConnectionLane lane, final int pending) throws Exception {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (manager.stats(lane).pending() != pending) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for " + pending + " pending " + lane + " leases");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private void assertStats(final ConnectionLane lane, final int leased, final int pending,
+                           final int max, final int peakLeased) {
+    assertThat(manager.stats(lane),
+               equalTo(ConnectionLaneStats.create(lane, leased, pending, max, peakLeased)));
+  }
+}
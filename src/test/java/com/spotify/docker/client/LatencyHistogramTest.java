@@ -0,0 +1,76 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBucketsAreContiguous() {
+    for (int index = 1; index <= LatencyHistogram.index(Long.MAX_VALUE); index++) {
+      final long lowest = LatencyHistogram.highestEquivalentValue(index - 1) + 1;
+      assertThat(LatencyHistogram.index(lowest), equalTo(index));
+      assertThat(LatencyHistogram.index(LatencyHistogram.highestEquivalentValue(index)),
+                 equalTo(index));
+    }
+    assertThat(LatencyHistogram.highestEquivalentValue(LatencyHistogram.index(Long.MAX_VALUE)),
+               equalTo(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 10000; value++) {
+      histogram.record(value * 1000);
+    }
+
+    assertThat(histogram.count(), equalTo(10000L));
+    assertThat(histogram.max(), equalTo(10000000L));
+    assertThat(histogram.mean(), closeTo(5000500, 1));
+    assertWithin(histogram.percentile(50), 5000000);
+    assertWithin(histogram.percentile(99), 9900000);
+    assertThat(histogram.percentile(100), equalTo(10000000L));
+    assertWithin(histogram.percentile(0), 1000);
+  }
+
+  @Test
+  public void testEmptyAndNegative() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.percentile(99), equalTo(0L));
+    assertThat(histogram.mean(), closeTo(0, 0));
+
+    histogram.record(-5);
+    assertThat(histogram.count(), equalTo(1L));
+    assertThat(histogram.percentile(50), equalTo(0L));
+  }
+
+  private static void assertWithin(final long actual, final long expected) {
+    assertThat(actual, greaterThanOrEqualTo(expected));
+    assertThat(actual, lessThanOrEqualTo(expected + expected / 32));
+  }
+}
@@ -0,0 +1,78 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class LogFilterTest {
+
+  @Test
+  public void testFindsAnyLiteral() {
+    final LogFilter filter = LogFilter.containing("he", "she", "his", "hers");
+
+    assertThat(contains(filter, "ushers"), is(true));
+    assertThat(contains(filter, "this"), is(true));
+    assertThat(contains(filter, "shh"), is(false));
+    assertThat(contains(filter, "hi s"), is(false));
+    assertThat(contains(filter, "ahishers"), is(true));
+  }
+
+  @Test
+  public void testFindsLiteralAfterPartialMatch() {
+    final LogFilter filter = LogFilter.containing("aab", "abc");
+
+    assertThat(contains(filter, "aaabc"), is(true));
+    assertThat(contains(filter, "aaac"), is(false));
+  }
+
+  @Test
+  public void testMatchesUtf8() {
+    final LogFilter filter = LogFilter.containing("échec");
+
+    assertThat(contains(filter, "l'échec du test"), is(true));
+    assertThat(contains(filter, "echec"), is(false));
+  }
+
+  @Test
+  public void testPattern() {
+    final LogFilter filter = LogFilter.containing("ERROR").matching(Pattern.compile("code=\\d+$"));
+    final byte[] line = "ERROR code=42\r\n".getBytes(UTF_8);
+
+    assertThat(filter.matches(line, 0, line.length), is(true));
+    assertThat(filter.matches(line, 0, 10), is(false));
+  }
+
+  private static boolean contains(final LogFilter filter, final String text) {
+    int state = 0;
+    for (final byte value : text.getBytes(UTF_8)) {
+      state = filter.next(state, value);
+      if (filter.accepts(state)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
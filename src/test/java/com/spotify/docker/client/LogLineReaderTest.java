@@ -0,0 +1,127 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.primitives.Bytes;
+import com.spotify.docker.client.LogMessage.Stream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+
+public class LogLineReaderTest {
+
+  private final List<LogMessage> messages = new ArrayList<>();
+
+  @Test
+  public void testAssemblesLinesAcrossFrames() throws Exception {
+    frame(STDOUT, "first li");
+    frame(STDERR, "error\r\nerr");
+    frame(STDOUT, "ne\nsecond line\n\nlast");
+    frame(STDERR, "or end");
+
+    assertThat(readLines(new LogLineReader(stream())),
+               contains("STDERR:error", "STDOUT:first line", "STDOUT:second line", "STDOUT:",
+                        "STDOUT:last", "STDERR:error end"));
+  }
+
+  @Test
+  public void testSplitMultiByteSequences() throws Exception {
+    final byte[] bytes = "café 😀\n".getBytes(UTF_8);
+    for (final byte b : bytes) {
+      frame(STDOUT, new byte[]{b});
+    }
+
+    assertThat(readLines(new LogLineReader(stream())), contains("STDOUT:café 😀"));
+  }
+
+  @Test
+  public void testMalformedInputIsReplaced() throws Exception {
+    frame(STDOUT, Bytes.concat("a".getBytes(UTF_8), new byte[]{(byte) 0xff, '\n', (byte) 0xe2}));
+
+    assertThat(readLines(new LogLineReader(stream())), contains("STDOUT:a�", "STDOUT:�"));
+  }
+
+  @Test
+  public void testGrowsForLongLines() throws Exception {
+    final char[] chars = new char[10000];
+    Arrays.fill(chars, 'x');
+    final String longLine = new String(chars);
+    frame(STDOUT, longLine.substring(0, 3000));
+    frame(STDOUT, longLine.substring(3000) + "\nshort\n");
+
+    assertThat(readLines(new LogLineReader(stream())),
+               contains("STDOUT:" + longLine, "STDOUT:short"));
+  }
+
+  @Test
+  public void testBoundedDropsLongLines() throws Exception {
+    final char[] chars = new char[1000];
+    Arrays.fill(chars, 'x');
+    final String longLine = new String(chars);
+    frame(STDOUT, "ok\n" + longLine.substring(0, 500));
+    frame(STDOUT, longLine.substring(500) + "\nfits\n0123456789\n" + longLine);
+
+    final LogLineReader reader = new LogLineReader(stream(), 10);
+    assertThat(readLines(reader), contains("STDOUT:ok", "STDOUT:fits", "STDOUT:0123456789"));
+    assertThat(reader.droppedLines(), is(2L));
+  }
+
+  private void frame(final Stream stream, final String content) {
+    frame(stream, content.getBytes(UTF_8));
+  }
+
+  private void frame(final Stream stream, final byte[] content) {
+    messages.add(new LogMessage(stream, ByteBuffer.wrap(content)));
+  }
+
+  private LogStream stream() {
+    final Iterator<LogMessage> iterator = messages.iterator();
+    return new AbstractLogStream() {
+      @Override
+      protected LogMessage computeNext() {
+        return iterator.hasNext() ? iterator.next() : endOfData();
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  private static List<String> readLines(final LogLineReader reader) {
+    final List<String> lines = new ArrayList<>();
+    LogLineReader.Line line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line.stream() + ":" + line);
+    }
+    return lines;
+  }
+}
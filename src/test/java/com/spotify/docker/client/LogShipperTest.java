@@ -0,0 +1,133 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Joiner;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LogShipperTest {
+
+  private static final String CONTAINER = "container";
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final DockerClient docker = mock(DockerClient.class);
+  private final List<String> delivered = new ArrayList<>();
+  private final LogShipper.Sink sink = new LogShipper.Sink() {
+    @Override
+    public void deliver(final String containerId, final List<LogShipper.Line> lines) {
+      final List<String> batch = new ArrayList<>();
+      for (final LogShipper.Line line : lines) {
+        batch.add(line.content());
+      }
+      delivered.add(Joiner.on(',').join(batch));
+    }
+  };
+
+  @Test
+  public void testResumesFromCheckpoint() throws Exception {
+    final Path file = folder.getRoot().toPath().resolve("checkpoints");
+
+    logs("2018-01-01T00:00:01.5Z a\n",
+         "2018-01-01T00:00:02.000000001Z b\n2018-01-01T00:00:02.000000001Z c\n");
+    final LogShipper shipper = new LogShipper(docker, new FileLogCheckpointStore(file), sink, 2,
+                                              60000);
+    assertThat(shipper.ship(CONTAINER, LogsParam.stdout()), is(3L));
+    assertThat(delivered, contains("a,b", "c"));
+
+    delivered.clear();
+    logs("2018-01-01T00:00:02.000000001Z b\n",
+         "2018-01-01T00:00:02.000000001Z c\n2018-01-01T00:00:02.000000001Z d\n",
+         "2018-01-01T00:00:03Z e\n");
+    final LogShipper restarted = new LogShipper(docker, new FileLogCheckpointStore(file), sink,
+                                                2, 60000);
+    assertThat(restarted.ship(CONTAINER, LogsParam.stdout(), LogsParam.tail(10)), is(2L));
+    assertThat(delivered, contains("d,e"));
+    verify(docker).logs(CONTAINER, LogsParam.stdout(), LogsParam.timestamps(),
+                        LogsParam.since(1514764802));
+    assertThat(new FileLogCheckpointStore(file).load(CONTAINER),
+               is(LogCheckpoint.create(1514764803000000000L, 1)));
+  }
+
+  @Test
+  public void testDoesNotCheckpointFailedBatch() throws Exception {
+    final LogCheckpointStore checkpoints =
+        new FileLogCheckpointStore(folder.getRoot().toPath().resolve("checkpoints"));
+    logs("2018-01-01T00:00:01Z a\n");
+    final LogShipper shipper = new LogShipper(docker, checkpoints, new LogShipper.Sink() {
+      @Override
+      public void deliver(final String containerId, final List<LogShipper.Line> lines)
+          throws IOException {
+        throw new IOException("unavailable");
+      }
+    });
+
+    try {
+      shipper.ship(CONTAINER);
+      fail();
+    } catch (LogShipper.DeliveryException e) {
+      assertThat(e.getContainerId(), is(CONTAINER));
+      assertThat(e.getCause().getMessage(), is("unavailable"));
+    }
+    assertThat(checkpoints.load(CONTAINER), is(nullValue()));
+  }
+
+  private void logs(final String... frames) throws Exception {
+    final List<LogMessage> messages = new ArrayList<>();
+    for (final String frame : frames) {
+      messages.add(new LogMessage(LogMessage.Stream.STDOUT,
+                                  ByteBuffer.wrap(frame.getBytes(UTF_8))));
+    }
+    final Iterator<LogMessage> iterator = messages.iterator();
+    when(docker.logs(eq(CONTAINER), (LogsParam[]) anyVararg())).thenReturn(new AbstractLogStream() {
+      @Override
+      protected LogMessage computeNext() {
+        return iterator.hasNext() ? iterator.next() : endOfData();
+      }
+
+      @Override
+      public void close() {
+      }
+    });
+  }
+}
@@ -0,0 +1,109 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.spotify.docker.client.LogMessage.Stream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LogStreamDemultiplexerTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private final List<LogMessage> messages = new ArrayList<>();
+
+  @Test
+  public void testSplitsStreams() throws Exception {
+    message(STDOUT, "hello ");
+    message(STDERR, "oops\n");
+    message(STDOUT, "world!\n");
+    message(STDERR, "again\n");
+    final LogStreamDemultiplexer demultiplexer =
+        new LogStreamDemultiplexer(messages.iterator(), 64);
+    final InputStream stdout = demultiplexer.view(STDOUT);
+    final InputStream stderr = demultiplexer.view(STDERR);
+
+    assertThat(CharStreams.toString(new InputStreamReader(stdout, UTF_8)), is("hello world!\n"));
+    assertThat(CharStreams.toString(new InputStreamReader(stderr, UTF_8)), is("oops\nagain\n"));
+  }
+
+  @Test
+  public void testChannel() throws Exception {
+    message(STDOUT, "hello ");
+    message(STDOUT, "world!\n");
+    final ReadableByteChannel stdout =
+        new LogStreamDemultiplexer(messages.iterator(), 64).view(STDOUT);
+
+    final ByteBuffer buffer = ByteBuffer.allocate(4);
+    final StringBuilder read = new StringBuilder();
+    while (stdout.read(buffer) >= 0) {
+      buffer.flip();
+      read.append(UTF_8.decode(buffer));
+      buffer.clear();
+    }
+    assertThat(read.toString(), is("hello world!\n"));
+  }
+
+  @Test
+  public void testDiscardsStreamsNotOpened() throws Exception {
+    message(STDERR, "0123456789");
+    message(STDOUT, "hello");
+    final InputStream stdout = new LogStreamDemultiplexer(messages.iterator(), 4).view(STDOUT);
+
+    assertThat(new String(ByteStreams.toByteArray(stdout), UTF_8), is("hello"));
+  }
+
+  @Test
+  public void testOverflow() throws Exception {
+    message(STDERR, "012");
+    message(STDERR, "345");
+    message(STDOUT, "hello");
+    final LogStreamDemultiplexer demultiplexer =
+        new LogStreamDemultiplexer(messages.iterator(), 4);
+    final InputStream stdout = demultiplexer.view(STDOUT);
+    final InputStream stderr = demultiplexer.view(STDERR);
+
+    assertThat(new String(ByteStreams.toByteArray(stdout), UTF_8), is("hello"));
+    exception.expect(IOException.class);
+    stderr.read();
+  }
+
+  private void message(final Stream stream, final String content) {
+    messages.add(new LogMessage(stream, ByteBuffer.wrap(content.getBytes(UTF_8))));
+  }
+}
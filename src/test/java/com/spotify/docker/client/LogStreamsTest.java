@@ -0,0 +1,124 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.io.CharStreams;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Test;
+
+public class LogStreamsTest {
+
+  @Test
+  public void testExtendedReturnsLibraryStreams() throws Exception {
+    final DefaultLogStream logStream =
+        DefaultLogStream.create(new ByteArrayInputStream(new byte[0]));
+    assertThat(LogStreams.extended(logStream), is(sameInstance((LogStream) logStream)));
+  }
+
+  @Test
+  public void testExtendedWrapsOtherStreams() throws Exception {
+    final ExtendedLogStream extended = LogStreams.extended(new ListLogStream(
+        logMessage(LogMessage.Stream.STDOUT, "one\n"),
+        logMessage(LogMessage.Stream.STDERR, "two\n"),
+        logMessage(LogMessage.Stream.STDOUT, "three\n")));
+
+    assertThat(extended.readTail(1024, 2).content(), is("two\nthree\n"));
+  }
+
+  @Test
+  public void testExtendedViewsShareTheStream() throws Exception {
+    final ExtendedLogStream extended = LogStreams.extended(new ListLogStream(
+        logMessage(LogMessage.Stream.STDOUT, "one\n"),
+        logMessage(LogMessage.Stream.STDERR, "two\n"),
+        logMessage(LogMessage.Stream.STDOUT, "three\n")));
+
+    final InputStream stdout = extended.stdoutStream();
+    final InputStream stderr = extended.stderrStream();
+    assertThat(read(stdout), is("one\nthree\n"));
+    assertThat(read(stderr), is("two\n"));
+  }
+
+  private static String read(final InputStream stream) throws Exception {
+    return CharStreams.toString(new InputStreamReader(stream, UTF_8));
+  }
+
+  private static LogMessage logMessage(final LogMessage.Stream stream, final String msg) {
+    return new LogMessage(stream, ByteBuffer.wrap(msg.getBytes(UTF_8)));
+  }
+
+  /**
+   * A log stream implemented outside of this library.
+   */
+  private static class ListLogStream implements LogStream {
+
+    private final Iterator<LogMessage> messages;
+
+    private ListLogStream(final LogMessage... messages) {
+      this.messages = Arrays.asList(messages).iterator();
+    }
+
+    @Override
+    public String readFully() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void attach(final OutputStream stdout, final OutputStream stderr) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void attach(final OutputStream stdout, final OutputStream stderr,
+                       final boolean closeAtEof) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return messages.hasNext();
+    }
+
+    @Override
+    public LogMessage next() {
+      return messages.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
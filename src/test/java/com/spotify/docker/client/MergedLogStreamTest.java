@@ -0,0 +1,107 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.exceptions.DockerException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class MergedLogStreamTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private final DockerClient docker = mock(DockerClient.class);
+
+  @Test
+  public void testMergesByTimestamp() throws Exception {
+    logs("a",
+         "2018-01-01T00:00:00.000000001Z a1\n",
+         "2018-01-01T00:00:02Z a2\n",
+         "2018-01-01T00:00:04.5Z a3\n");
+    logs("b",
+         "2018-01-01T00:00:01Z b1\n",
+         "2018-01-01T00:00:02Z b2\n",
+         "2018-01-01T00:00:03Z b3\n",
+         "continued\n");
+    logs("c");
+
+    try (MergedLogStream stream = MergedLogStream.create(
+        docker, ImmutableList.of("a", "b", "c"), 2, 1000)) {
+      final List<String> lines = new ArrayList<>();
+      while (stream.hasNext()) {
+        final LogMessage message = stream.next();
+        final String line = UTF_8.decode(message.content()).toString();
+        lines.add(message.containerId() + ":" + line.substring(line.indexOf(' ') + 1).trim());
+      }
+      assertThat(lines, contains("a:a1", "b:b1", "a:a2", "b:b2", "b:b3", "b:continued", "a:a3"));
+    }
+  }
+
+  @Test
+  public void testPropagatesFailure() throws Exception {
+    when(docker.logs(eq("a"), (LogsParam[]) anyVararg()))
+        .thenThrow(new DockerException("boom"));
+    logs("b", "2018-01-01T00:00:01Z b1\n");
+
+    exception.expect(RuntimeException.class);
+    try (MergedLogStream stream = MergedLogStream.create(docker, ImmutableList.of("a", "b"))) {
+      while (stream.hasNext()) {
+        stream.next();
+      }
+    }
+  }
+
+  private void logs(final String containerId, final String... lines) throws Exception {
+    final List<LogMessage> messages = new ArrayList<>();
+    for (final String line : lines) {
+      messages.add(new LogMessage(LogMessage.Stream.STDOUT, ByteBuffer.wrap(line.getBytes(UTF_8))));
+    }
+    final Iterator<LogMessage> iterator = messages.iterator();
+    when(docker.logs(eq(containerId), (LogsParam[]) anyVararg()))
+        .thenReturn(new AbstractLogStream() {
+          @Override
+          protected LogMessage computeNext() {
+            return iterator.hasNext() ? iterator.next() : endOfData();
+          }
+
+          @Override
+          public void close() {
+          }
+        });
+  }
+}
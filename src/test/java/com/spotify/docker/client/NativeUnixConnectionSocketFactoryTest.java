@@ -0,0 +1,210 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.net.ssl.SSLSocket;
+import org.apache.http.HttpHost;
+import org.apache.http.protocol.HttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+public class NativeUnixConnectionSocketFactoryTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private ServerSocketChannel server;
+  private Path socketFile;
+  private NativeUnixConnectionSocketFactory sut;
+
+  @Before
+  public void setUp() throws Exception {
+    assumeTrue(NativeUnixConnectionSocketFactory.isSupported());
+    socketFile = folder.getRoot().toPath().resolve("docker.sock");
+    server = UnixDomainSockets.openServerChannel();
+    server.bind(UnixDomainSockets.address(socketFile.toString()));
+    sut = new NativeUnixConnectionSocketFactory(URI.create("unix://" + socketFile));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @Test
+  public void testReadAndWrite() throws Exception {
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try (SocketChannel channel = server.accept()) {
+          final ByteBuffer buffer = ByteBuffer.allocate(4);
+          while (buffer.hasRemaining()) {
+            channel.read(buffer);
+          }
+          buffer.flip();
+          channel.write(buffer);
+        }
+        return null;
+      }
+    });
+
+    try (Socket socket = connect(1000)) {
+      final OutputStream output = socket.getOutputStream();
+      output.write("ping".getBytes(UTF_8));
+      final InputStream input = socket.getInputStream();
+      final byte[] read = new byte[4];
+      int length = 0;
+      while (length < read.length) {
+        length += input.read(read, length, read.length - length);
+      }
+      assertThat(new String(read, UTF_8), is("ping"));
+      assertThat(input.read(), is(-1));
+    }
+  }
+
+  @Test
+  public void testReadTimeout() throws Exception {
+    try (Socket socket = connect(1000)) {
+      socket.setSoTimeout(50);
+      exception.expect(SocketTimeoutException.class);
+      socket.getInputStream().read();
+    }
+  }
+
+  @Test
+  public void testReadTimeoutAfterWakeup() throws Exception {
+    try (final Socket socket = connect(1000)) {
+      socket.setSoTimeout(500);
+      executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          Thread.sleep(100);
+          ((NativeUnixSocket) socket).wakeup();
+          return null;
+        }
+      });
+      final long started = System.nanoTime();
+      try {
+        socket.getInputStream().read();
+        fail("Expected the read to time out");
+      } catch (SocketTimeoutException e) {
+        assertThat(System.nanoTime() - started, greaterThanOrEqualTo(MILLISECONDS.toNanos(500)));
+      }
+    }
+  }
+
+  @Test
+  public void testReadInterrupted() throws Exception {
+    try (Socket socket = connect(1000)) {
+      socket.setSoTimeout(5000);
+      Thread.currentThread().interrupt();
+      try {
+        socket.getInputStream().read();
+        fail("Expected the read to be interrupted");
+      } catch (InterruptedIOException e) {
+        assertThat(e, not(instanceOf(SocketTimeoutException.class)));
+      } finally {
+        Thread.interrupted();
+      }
+    }
+  }
+
+  @Test
+  public void testConnectMissingSocket() throws Exception {
+    final NativeUnixConnectionSocketFactory missing = new NativeUnixConnectionSocketFactory(
+        URI.create("unix://" + folder.getRoot().toPath().resolve("missing.sock")));
+    exception.expect(IOException.class);
+    missing.connectSocket(1000, missing.createSocket(mock(HttpContext.class)),
+                          HttpHost.create("http://foo.com"),
+                          InetSocketAddress.createUnresolved("foo.com", 80),
+                          null, mock(HttpContext.class));
+  }
+
+  @Test(expected = AssertionError.class)
+  public void testConnectSocketNotNativeUnixSocket() throws Exception {
+    sut.connectSocket(10, mock(SSLSocket.class), HttpHost.create("http://foo.com"),
+        mock(InetSocketAddress.class), mock(InetSocketAddress.class), mock(HttpContext.class));
+  }
+
+  @Test
+  public void testDefaultDockerClientUsesNativeSockets() throws Exception {
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try (SocketChannel channel = server.accept()) {
+          channel.read(ByteBuffer.allocate(4096));
+          channel.write(UTF_8.encode(
+              "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 2\r\n\r\nOK"));
+        }
+        return null;
+      }
+    });
+
+    try (DefaultDockerClient client = new DefaultDockerClient("unix://" + socketFile)) {
+      assertThat(client.ping(), is("OK"));
+    }
+  }
+
+  private Socket connect(final int timeout) throws Exception {
+    final Socket socket = sut.createSocket(mock(HttpContext.class));
+    assertThat(socket, instanceOf(NativeUnixSocket.class));
+    return sut.connectSocket(timeout, socket, HttpHost.create("http://foo.com"),
+                             InetSocketAddress.createUnresolved("foo.com", 80), null,
+                             mock(HttpContext.class));
+  }
+}
@@ -0,0 +1,246 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.FixtureUtil.fixture;
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import com.fasterxml.jackson.databind.ser.SerializerFactory;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerConfig;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ObjectMapperProviderTest {
+
+  private static final TypeReference<List<Container>> CONTAINERS =
+      new TypeReference<List<Container>>() { };
+
+  @After
+  public void tearDown() {
+    ObjectMapperProvider.disableStringInterning();
+  }
+
+  @Test
+  public void testSetSerialization() throws Exception {
+    final ContainerConfig config = ContainerConfig.builder()
+        .exposedPorts("80/tcp", "443/tcp")
+        .volumes(ImmutableSet.<String>of())
+        .build();
+
+    final JsonNode json = objectMapper().valueToTree(config);
+
+    assertThat(json.get("ExposedPorts").toString(), equalTo("{\"80/tcp\":{},\"443/tcp\":{}}"));
+    assertThat(json.get("Volumes").toString(), equalTo("{}"));
+  }
+
+  @Test
+  public void testSetDeserialization() throws Exception {
+    final ContainerConfig config = objectMapper().readValue(
+        "{\"ExposedPorts\": {\"80/tcp\": {}, \"443/tcp\": null, \"53/udp\": {\"a\": [1]}},"
+        + " \"Volumes\": {}}",
+        ContainerConfig.class);
+
+    assertThat(config.exposedPorts(), contains("80/tcp", "443/tcp", "53/udp"));
+    assertThat(config.volumes(), empty());
+    assertThat(objectMapper().readValue("{\"Volumes\": null}", ContainerConfig.class).volumes(),
+        nullValue());
+    assertThat(objectMapper().readValue("{\"a\": {}}", Set.class),
+        equalTo((Set) ImmutableSet.of("a")));
+  }
+
+  @Test(expected = JsonMappingException.class)
+  public void testSetDeserializationRejectsArrays() throws Exception {
+    objectMapper().readValue("{\"ExposedPorts\": [\"80/tcp\"]}", ContainerConfig.class);
+  }
+
+  @Test
+  public void testPreloadCodecs() throws Exception {
+    final CodecCacheMapper mapper = new CodecCacheMapper(objectMapper());
+    ObjectMapperProvider.preloadCodecs(mapper);
+
+    final TypeFactory types = mapper.getTypeFactory();
+    for (final Class<?> type : ObjectMapperProvider.MESSAGE_TYPES) {
+      assertPreloaded(mapper, types.constructType(type));
+    }
+    for (final Class<?> type : ObjectMapperProvider.MESSAGE_LIST_TYPES) {
+      assertPreloaded(mapper, types.constructCollectionType(List.class, type));
+    }
+  }
+
+  @Test
+  public void testEveryMessageTypeIsPreloaded() throws Exception {
+    // The test classes share the package, so look in the directory the main classes came from
+    final String messages = Container.class.getPackage().getName();
+    final File classes =
+        new File(Container.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    final Set<Class<?>> missing = Sets.newHashSet();
+    for (final Class<?> type : messageTypes(new File(classes, messages.replace('.', '/')),
+                                            messages)) {
+      if (!ObjectMapperProvider.MESSAGE_TYPES.contains(type)) {
+        missing.add(type);
+      }
+    }
+
+    assertThat("Add these to ObjectMapperProvider.MESSAGE_TYPES", missing, empty());
+  }
+
+  @Test
+  public void testStringInterning() throws Exception {
+    ObjectMapperProvider.enableStringInterning(1024);
+    final String json = fixture("fixtures/1.33/listContainers.json");
+    final List<Container> first = objectMapper().readValue(json, CONTAINERS);
+    final List<Container> second = objectMapper().readValue(json, CONTAINERS);
+
+    assertThat(first.get(1).image(), sameInstance(first.get(0).image()));
+    assertThat(second.get(0).image(), sameInstance(first.get(0).image()));
+    assertThat(second.get(0).state(), sameInstance(first.get(0).state()));
+    assertThat(second.get(0).labels().get("com.example.vendor"),
+        sameInstance(first.get(0).labels().get("com.example.vendor")));
+    // Names are unique to a container, so they are left alone
+    assertThat(second.get(0).names().get(0), equalTo(first.get(0).names().get(0)));
+    assertThat(second.get(0).names().get(0), not(sameInstance(first.get(0).names().get(0))));
+  }
+
+  @Test
+  public void testStringInterningDisabled() throws Exception {
+    final String json = fixture("fixtures/1.33/listContainers.json");
+    final List<Container> first = objectMapper().readValue(json, CONTAINERS);
+    final List<Container> second = objectMapper().readValue(json, CONTAINERS);
+
+    assertThat(second.get(0).image(), equalTo(first.get(0).image()));
+    assertThat(second.get(0).image(), not(sameInstance(first.get(0).image())));
+  }
+
+  private static void assertPreloaded(final CodecCacheMapper mapper, final JavaType type) {
+    assertThat("Deserializer of " + type, mapper.hasDeserializer(type), is(true));
+    assertThat("Serializer of " + type, mapper.hasSerializer(type), is(true));
+  }
+
+  /**
+   * The classes AutoValue generated under a package directory are the value types of the
+   * package; those Jackson is told how to read are its messages.
+   */
+  private static Set<Class<?>> messageTypes(final File directory, final String packageName)
+      throws ClassNotFoundException {
+    final Set<Class<?>> types = Sets.newHashSet();
+    for (final File file : directory.listFiles()) {
+      final String name = file.getName();
+      if (file.isDirectory()) {
+        types.addAll(messageTypes(file, packageName + "." + name));
+      } else if (name.startsWith("AutoValue_") && name.endsWith(".class") && !name.contains("$")) {
+        final Class<?> generated =
+            Class.forName(packageName + "." + name.substring(0, name.length() - 6));
+        final Class<?> type = generated.getSuperclass();
+        if (isJsonMessage(type)) {
+          types.add(type);
+        }
+      }
+    }
+    return types;
+  }
+
+  private static boolean isJsonMessage(final Class<?> type) {
+    if (type.isAnnotationPresent(JsonAutoDetect.class)) {
+      return true;
+    }
+    for (final Method method : type.getDeclaredMethods()) {
+      if (method.isAnnotationPresent(JsonCreator.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A copy of a mapper that can tell which root types it has cached codecs for.
+   */
+  private static class CodecCacheMapper extends ObjectMapper {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SerializerCacheProvider serializers = new SerializerCacheProvider();
+
+    CodecCacheMapper(final ObjectMapper src) {
+      super(src);
+      setSerializerProvider(serializers);
+    }
+
+    boolean hasDeserializer(final JavaType type) {
+      return _rootDeserializers.containsKey(type);
+    }
+
+    boolean hasSerializer(final JavaType type) {
+      return serializers.hasSerializer(type);
+    }
+  }
+
+  private static class SerializerCacheProvider extends DefaultSerializerProvider {
+
+    private static final long serialVersionUID = 1L;
+
+    SerializerCacheProvider() {
+    }
+
+    private SerializerCacheProvider(final SerializerCacheProvider src,
+                                    final SerializationConfig config,
+                                    final SerializerFactory factory) {
+      super(src, config, factory);
+    }
+
+    @Override
+    public DefaultSerializerProvider createInstance(final SerializationConfig config,
+                                                   final SerializerFactory factory) {
+      // Instances share the cache of the provider they were created from
+      return new SerializerCacheProvider(this, config, factory);
+    }
+
+    boolean hasSerializer(final JavaType type) {
+      return _serializerCache.typedValueSerializer(type) != null;
+    }
+  }
+}
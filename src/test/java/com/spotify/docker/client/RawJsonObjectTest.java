@@ -0,0 +1,83 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class RawJsonObjectTest {
+
+  @Rule
+  public ExpectedException exception = ExpectedException.none();
+
+  @Test
+  public void testGet() throws Exception {
+    final RawJsonObject json = RawJsonObject.parse(bytes(
+        "{\"Id\": \"abc\", \"Args\": [\"a\", \"b\"], \"Node\": null,"
+        + " \"Size\": 42, \"State\": {\"Status\": \"running\", \"Running\": true},"
+        + " \"Name\": \"/é\"}"));
+
+    assertThat(json.get("Id", String.class), equalTo("abc"));
+    assertThat(json.get("Args", List.class), equalTo((List) ImmutableList.of("a", "b")));
+    assertThat(json.get("Node", String.class), nullValue());
+    assertThat(json.get("Size", Long.class), equalTo(42L));
+    assertThat(json.get("Missing", String.class), nullValue());
+    assertThat(json.get("State", Map.class).get("Status"), equalTo((Object) "running"));
+    assertThat(json.get("State", Map.class), sameInstance(json.get("State", Map.class)));
+    assertThat(json.get("Name", String.class), equalTo("/é"));
+  }
+
+  @Test
+  public void testLastDuplicateWins() throws Exception {
+    final RawJsonObject json = RawJsonObject.parse(bytes("{\"Id\": \"a\", \"Id\": \"b\"}"));
+
+    assertThat(json.get("Id", String.class), equalTo("b"));
+  }
+
+  @Test
+  public void testRejectsArray() throws Exception {
+    exception.expect(IOException.class);
+    RawJsonObject.parse(bytes("[]"));
+  }
+
+  @Test
+  public void testRejectsTruncatedObject() throws Exception {
+    exception.expect(IOException.class);
+    RawJsonObject.parse(bytes("{\"Id\": \"abc\", \"Args\": [\"a\""));
+  }
+
+  private static byte[] bytes(final String json) {
+    return json.getBytes(UTF_8);
+  }
+}
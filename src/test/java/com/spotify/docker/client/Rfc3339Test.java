@@ -0,0 +1,77 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class Rfc3339Test {
+
+  @Test
+  public void testParseEpochNanos() throws Exception {
+    assertThat(Rfc3339.parseEpochNanos("1970-01-01T00:00:00Z"), is(0L));
+    assertThat(Rfc3339.parseEpochNanos("1970-01-01T00:00:01.000000001Z"), is(1000000001L));
+    assertThat(Rfc3339.parseEpochNanos("1970-01-01T00:00:01.5Z"), is(1500000000L));
+    assertThat(Rfc3339.parseEpochNanos("1969-12-31T23:59:59Z"), is(-1000000000L));
+    assertThat(Rfc3339.parseEpochNanos("2015-09-18T17:44:28.145855389Z"),
+               is(1442598268145855389L));
+  }
+
+  @Test
+  public void testParseEpochNanosInRange() throws Exception {
+    final String line = "2015-09-18T17:44:28.145855389Z hello";
+    assertThat(Rfc3339.parseEpochNanos(line, 0, line.indexOf(' ')), is(1442598268145855389L));
+  }
+
+  @Test
+  public void testParseEpochMillis() throws Exception {
+    assertThat(Rfc3339.parseEpochMillis("2015-09-18T17:44:28.145855389Z"),
+               is(new StdDateFormat().parse("2015-09-18T17:44:28.145Z").getTime()));
+    assertThat(Rfc3339.parseEpochMillis("2016-06-03T06:57:17.4782869-04:00"),
+               is(new DateTime(2016, 6, 3, 6, 57, 17, 478, DateTimeZone.forOffsetHours(-4))
+                      .getMillis()));
+    assertThat(Rfc3339.parseEpochMillis("2016-06-03T06:57:17+0530"),
+               is(new DateTime(2016, 6, 3, 6, 57, 17, 0,
+                               DateTimeZone.forOffsetHoursMinutes(5, 30)).getMillis()));
+    assertThat(Rfc3339.parseEpochMillis("0001-01-01T00:00:00Z"), is(-62135596800000L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsGarbage() throws Exception {
+    Rfc3339.parseEpochNanos("2015-09-18 nope");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsMissingZone() throws Exception {
+    Rfc3339.parseEpochNanos("2015-09-18T17:44:28.145");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNanosOutOfRange() throws Exception {
+    Rfc3339.parseEpochNanos("0001-01-01T00:00:00Z");
+  }
+}
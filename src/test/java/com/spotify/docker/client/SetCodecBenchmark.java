@@ -0,0 +1,191 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.spotify.docker.client.messages.ContainerConfig;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the streaming Set codecs of {@link ObjectMapperProvider} with the ones it used to have,
+ * which went through a Map and the mapper again, on a {@link ContainerConfig} with 20 exposed ports
+ * and 10 volumes. The legacy mapper is the shared one with the old codecs put back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@SuppressWarnings({"rawtypes", "unchecked"})
+public class SetCodecBenchmark {
+
+  private ObjectMapper mapper;
+  private ObjectMapper legacyMapper;
+  private ContainerConfig config;
+  private String json;
+
+  @Setup
+  public void setUp() throws Exception {
+    mapper = ObjectMapperProvider.objectMapper();
+    legacyMapper = mapper.copy();
+    final SimpleModule module = new SimpleModule();
+    module.addSerializer(Set.class, new LegacySetSerializer(legacyMapper));
+    module.addDeserializer(Set.class, new LegacySetDeserializer(legacyMapper));
+    module.addSerializer(ImmutableSet.class, new LegacySetSerializer(legacyMapper));
+    module.addDeserializer(ImmutableSet.class, new LegacyImmutableSetDeserializer(legacyMapper));
+    legacyMapper.registerModule(module);
+
+    final ImmutableSet.Builder<String> ports = ImmutableSet.builder();
+    for (int i = 0; i < 20; i++) {
+      ports.add((8000 + i) + "/tcp");
+    }
+    final ImmutableSet.Builder<String> volumes = ImmutableSet.builder();
+    for (int i = 0; i < 10; i++) {
+      volumes.add("/var/lib/data-" + i);
+    }
+    config = ContainerConfig.builder()
+        .image("registry.example.com/team/app:1.0")
+        .exposedPorts(ports.build())
+        .volumes(volumes.build())
+        .build();
+    json = mapper.writeValueAsString(config);
+  }
+
+  @Benchmark
+  public String serializeLegacy() throws Exception {
+    return legacyMapper.writeValueAsString(config);
+  }
+
+  @Benchmark
+  public String serialize() throws Exception {
+    return mapper.writeValueAsString(config);
+  }
+
+  @Benchmark
+  public ContainerConfig deserializeLegacy() throws Exception {
+    return legacyMapper.readValue(json, ContainerConfig.class);
+  }
+
+  @Benchmark
+  public ContainerConfig deserialize() throws Exception {
+    return mapper.readValue(json, ContainerConfig.class);
+  }
+
+  private static final Function<Object, Object> EMPTY_MAP = new Function<Object, Object>() {
+    @Override
+    public Object apply(final Object input) {
+      return Collections.emptyMap();
+    }
+  };
+
+  /**
+   * The Set and ImmutableSet serializer of {@link ObjectMapperProvider} before they streamed.
+   */
+  private static class LegacySetSerializer extends JsonSerializer<Set> {
+
+    private final ObjectMapper mapper;
+
+    LegacySetSerializer(final ObjectMapper mapper) {
+      this.mapper = mapper;
+    }
+
+    @Override
+    public void serialize(final Set value, final JsonGenerator jgen,
+                          final SerializerProvider provider) throws IOException {
+      final Map map = (value == null) ? null : Maps.asMap(value, EMPTY_MAP);
+      mapper.writeValue(jgen, map);
+    }
+  }
+
+  /**
+   * The Set deserializer of {@link ObjectMapperProvider} before it streamed.
+   */
+  private static class LegacySetDeserializer extends JsonDeserializer<Set> {
+
+    private final ObjectMapper mapper;
+
+    LegacySetDeserializer(final ObjectMapper mapper) {
+      this.mapper = mapper;
+    }
+
+    @Override
+    public Set<?> deserialize(final JsonParser jp, final DeserializationContext ctxt)
+        throws IOException {
+      final Map map = mapper.readValue(jp, Map.class);
+      return (map == null) ? null : map.keySet();
+    }
+  }
+
+  /**
+   * The ImmutableSet deserializer of {@link ObjectMapperProvider} before it streamed.
+   */
+  private static class LegacyImmutableSetDeserializer extends JsonDeserializer<ImmutableSet> {
+
+    private final ObjectMapper mapper;
+
+    LegacyImmutableSetDeserializer(final ObjectMapper mapper) {
+      this.mapper = mapper;
+    }
+
+    @Override
+    public ImmutableSet<?> deserialize(final JsonParser jp, final DeserializationContext ctxt)
+        throws IOException {
+      final Map map = mapper.readValue(jp, Map.class);
+      return (map == null) ? null : ImmutableSet.copyOf(map.keySet());
+    }
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(SetCodecBenchmark.class.getSimpleName())
+                   .addProfiler(GCProfiler.class)
+                   .build())
+        .run();
+  }
+}
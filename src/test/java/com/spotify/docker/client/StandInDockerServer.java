@@ -0,0 +1,217 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static com.spotify.docker.FixtureUtil.fixture;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal keep-alive HTTP server for benchmarks. It answers {@code /large} with a 1 MB body,
+ * {@code /version} with a version document, container inspection with a running container, exec
+ * creation with an exec id and everything else with the {@code /_ping} reply, regardless of method
+ * or API version prefix. Request bodies are skipped.
+ */
+final class StandInDockerServer implements Closeable {
+
+  static final String VERSION = "{\"ApiVersion\":\"1.32\",\"Arch\":\"amd64\","
+      + "\"GitCommit\":\"afdb6d4\",\"GoVersion\":\"go1.8.3\",\"KernelVersion\":\"4.9.49\","
+      + "\"Os\":\"linux\",\"Version\":\"17.09.0-ce\"}";
+
+  private static final String CONTAINER;
+
+  private static final String EXEC_CREATION = "{\"Id\":\"exec123\"}";
+
+  private static final byte[] LARGE_BODY = new byte[1024 * 1024];
+
+  static {
+    try {
+      CONTAINER = fixture("fixtures/1.24/containerInfo.json");
+    } catch (IOException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final ServerSocketChannel server;
+  private final URI uri;
+  private final Path socketFile;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  private StandInDockerServer(final ServerSocketChannel server, final URI uri,
+                              final Path socketFile) {
+    this.server = server;
+    this.uri = uri;
+    this.socketFile = socketFile;
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        accept();
+      }
+    });
+  }
+
+  static StandInDockerServer tcp() throws IOException {
+    final ServerSocketChannel server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    final InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+    return new StandInDockerServer(
+        server, URI.create("http://127.0.0.1:" + address.getPort()), null);
+  }
+
+  /**
+   * Listen on a Unix domain socket. Requires JDK 16 or later.
+   */
+  static StandInDockerServer unix(final Path socketFile) throws IOException {
+    final ServerSocketChannel server = UnixDomainSockets.openServerChannel();
+    server.bind(UnixDomainSockets.address(socketFile.toString()));
+    return new StandInDockerServer(server, URI.create("unix://" + socketFile), socketFile);
+  }
+
+  URI uri() {
+    return uri;
+  }
+
+  @Override
+  public void close() throws IOException {
+    server.close();
+    executor.shutdownNow();
+    if (socketFile != null) {
+      Files.deleteIfExists(socketFile);
+    }
+  }
+
+  private void accept() {
+    while (server.isOpen()) {
+      try {
+        final SocketChannel channel = server.accept();
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            serve(channel);
+          }
+        });
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private static void serve(final SocketChannel channel) {
+    final ByteBuffer request = ByteBuffer.allocate(8192);
+    final ByteBuffer ping = ISO_8859_1.encode("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nOK");
+    final ByteBuffer version = json(VERSION);
+    final ByteBuffer container = json(CONTAINER);
+    final ByteBuffer execCreation = json(EXEC_CREATION);
+    final ByteBuffer largeHeaders = ISO_8859_1.encode(
+        "HTTP/1.1 200 OK\r\nContent-Length: " + LARGE_BODY.length + "\r\n\r\n");
+    try (SocketChannel ignored = channel) {
+      while (channel.read(request) >= 0) {
+        final String received = new String(request.array(), 0, request.position(), ISO_8859_1);
+        final int end = received.indexOf("\r\n\r\n");
+        if (end < 0) {
+          continue;
+        }
+        final int consumed = requestEnd(received, end);
+        if (consumed < 0) {
+          continue;
+        }
+        final String target = received.substring(0, received.indexOf("\r\n"));
+        final ByteBuffer[] response;
+        if (target.contains("/large ")) {
+          response = new ByteBuffer[]{largeHeaders.duplicate(), ByteBuffer.wrap(LARGE_BODY)};
+        } else if (target.contains("/version ")) {
+          response = new ByteBuffer[]{version.duplicate()};
+        } else if (target.startsWith("GET ") && target.contains("/json ")) {
+          response = new ByteBuffer[]{container.duplicate()};
+        } else if (target.contains("/exec ")) {
+          response = new ByteBuffer[]{execCreation.duplicate()};
+        } else {
+          response = new ByteBuffer[]{ping.duplicate()};
+        }
+        for (final ByteBuffer buffer : response) {
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+        }
+        final byte[] rest = Arrays.copyOfRange(request.array(), consumed, request.position());
+        request.clear();
+        request.put(rest);
+      }
+    } catch (IOException e) {
+      // client went away
+    }
+  }
+
+  /**
+   * @return The length of the request whose headers end at {@code end}, or -1 if its body has not
+   *     all been received yet.
+   */
+  private static int requestEnd(final String received, final int end) {
+    final String headers = received.substring(0, end).toLowerCase(Locale.ROOT);
+    final int bodyStart = end + 4;
+    final int contentLength = headers.indexOf("\r\ncontent-length:");
+    if (contentLength >= 0) {
+      final int valueStart = contentLength + "\r\ncontent-length:".length();
+      int valueEnd = headers.indexOf("\r\n", valueStart);
+      if (valueEnd < 0) {
+        valueEnd = headers.length();
+      }
+      final int requestEnd =
+          bodyStart + Integer.parseInt(headers.substring(valueStart, valueEnd).trim());
+      return (received.length() >= requestEnd) ? requestEnd : -1;
+    }
+    if (headers.contains("\r\ntransfer-encoding: chunked")) {
+      // The body ends with an empty chunk and no trailers
+      if (received.startsWith("0\r\n\r\n", bodyStart)) {
+        return bodyStart + 5;
+      }
+      final int lastChunk = received.indexOf("\r\n0\r\n\r\n", bodyStart);
+      return (lastChunk < 0) ? -1 : lastChunk + 7;
+    }
+    return bodyStart;
+  }
+
+  private static ByteBuffer json(final String body) {
+    final byte[] bytes = body.getBytes(UTF_8);
+    final ByteBuffer headers = ISO_8859_1.encode(
+        "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+        + bytes.length + "\r\n\r\n");
+    final ByteBuffer response = ByteBuffer.allocate(headers.remaining() + bytes.length);
+    response.put(headers).put(bytes);
+    response.flip();
+    return response;
+  }
+}
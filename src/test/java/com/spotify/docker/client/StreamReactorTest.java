@@ -0,0 +1,284 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.exceptions.DockerRequestException;
+import com.spotify.docker.client.messages.Event;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamReactorTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final List<String> requests = new CopyOnWriteArrayList<>();
+  private ServerSocket server;
+  private StreamReactor reactor;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    reactor = new StreamReactor(
+        URI.create("http://127.0.0.1:" + server.getLocalPort()), "v1.30");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    reactor.close();
+    server.close();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testLogs() throws Exception {
+    final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    frame(frames, LogMessage.Stream.STDOUT, "hello\n");
+    frame(frames, LogMessage.Stream.STDERR, "oops\n");
+    frame(frames, LogMessage.Stream.STDOUT, "world!\n");
+    final byte[] body = frames.toByteArray();
+    // split the frames over chunks at odd places
+    serve("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n",
+          chunk(body, 0, 3), chunk(body, 3, 17), chunk(body, 17, body.length), "0\r\n\r\n");
+
+    final Recorder<LogMessage> recorder = new Recorder<>();
+    reactor.logs("abc", recorder, LogsParam.follow(), LogsParam.stdout(), LogsParam.stderr());
+
+    assertTrue(recorder.done.await(10, SECONDS));
+    assertThat(requests.get(0),
+               is("GET /v1.30/containers/abc/logs?follow=true&stdout=true&stderr=true HTTP/1.1"));
+    assertThat(recorder.messages,
+               contains("STDOUT:hello\n", "STDERR:oops\n", "STDOUT:world!\n", "complete"));
+  }
+
+  @Test
+  public void testLogsEndingWithEmptyFrame() throws Exception {
+    final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    frame(frames, LogMessage.Stream.STDOUT, "hello\n");
+    frame(frames, LogMessage.Stream.STDERR, "");
+    final byte[] body = frames.toByteArray();
+    serve("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n",
+          new String(body, UTF_8));
+
+    final Recorder<LogMessage> recorder = new Recorder<>();
+    reactor.logs("abc", recorder, LogsParam.stdout(), LogsParam.stderr());
+
+    assertTrue(recorder.done.await(10, SECONDS));
+    assertThat(recorder.error, is(nullValue()));
+    assertThat(recorder.messages, contains("STDOUT:hello\n", "complete"));
+  }
+
+  @Test
+  public void testRawLogs() throws Exception {
+    serve("HTTP/1.1 200 OK\r\n\r\n", "tty output\n");
+
+    final Recorder<LogMessage> recorder = new Recorder<>();
+    reactor.logs("abc", recorder, LogsParam.stdout());
+
+    assertTrue(recorder.done.await(10, SECONDS));
+    assertThat(recorder.messages.get(recorder.messages.size() - 1), is("complete"));
+    final StringBuilder output = new StringBuilder();
+    for (final String message : recorder.messages.subList(0, recorder.messages.size() - 1)) {
+      output.append(message.substring("STDOUT:".length()));
+    }
+    assertThat(output.toString(), is("tty output\n"));
+  }
+
+  @Test
+  public void testEvents() throws Exception {
+    final String first = "{\"Type\":\"container\",\"Action\":\"start\",\"time\":1}\n";
+    final String second = "{\"Type\":\"container\",\"Action\":\"die\",\"time\":2}\n";
+    serve("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+          + "Transfer-Encoding: chunked\r\n\r\n",
+          chunk((first + second.substring(0, 10)).getBytes(UTF_8)),
+          chunk(second.substring(10).getBytes(UTF_8)), "0\r\n\r\n");
+
+    final Recorder<Event> recorder = new Recorder<>();
+    reactor.events(recorder);
+
+    assertTrue(recorder.done.await(10, SECONDS));
+    assertThat(recorder.messages, contains("start", "die", "complete"));
+  }
+
+  @Test
+  public void testError() throws Exception {
+    serve("HTTP/1.1 404 Not Found\r\nContent-Length: 27\r\n\r\n",
+          "{\"message\":\"No such thing\"}");
+
+    final Recorder<LogMessage> recorder = new Recorder<>();
+    reactor.logs("missing", recorder, LogsParam.stdout());
+
+    assertTrue(recorder.done.await(10, SECONDS));
+    assertThat(recorder.error, instanceOf(DockerRequestException.class));
+    assertThat(((DockerRequestException) recorder.error).status(), is(404));
+    assertThat(recorder.error.getMessage(), startsWith("Request error: GET /v1.30/containers"));
+  }
+
+  @Test
+  public void testFailedReactorFailsStreams() throws Exception {
+    final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+    frame(frames, LogMessage.Stream.STDOUT, "hello\n");
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try (Socket socket = server.accept()) {
+          final OutputStream output = socket.getOutputStream();
+          output.write(("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + chunk(frames.toByteArray())).getBytes(UTF_8));
+          output.flush();
+          release.await();
+        }
+        return null;
+      }
+    });
+    final Recorder<LogMessage> running = new Recorder<>();
+    reactor.logs("abc123", running, LogsParam.stdout(), LogsParam.follow());
+    for (int i = 0; i < 100 && running.messages.isEmpty(); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(running.messages, contains("STDOUT:hello\n"));
+
+    reactor.execute(new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("boom");
+      }
+    });
+    final Recorder<LogMessage> later = new Recorder<>();
+    reactor.logs("abc123", later, LogsParam.stdout());
+
+    try {
+      assertTrue(running.done.await(10, SECONDS));
+      assertThat(running.error, instanceOf(IOException.class));
+      assertTrue(later.done.await(10, SECONDS));
+      assertThat(later.error, instanceOf(IOException.class));
+
+      // Subscribing once the reactor thread has stopped fails straight away
+      final Recorder<LogMessage> after = new Recorder<>();
+      reactor.logs("abc123", after, LogsParam.stdout());
+      assertThat(after.done.getCount(), is(0L));
+      assertThat(after.error.getCause().getMessage(), is("boom"));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  private void serve(final String... response) {
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        try (Socket socket = server.accept()) {
+          final BufferedReader reader =
+              new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+          String line = reader.readLine();
+          requests.add(line);
+          while (line != null && !line.isEmpty()) {
+            line = reader.readLine();
+          }
+          final OutputStream output = socket.getOutputStream();
+          for (final String part : response) {
+            output.write(part.getBytes(UTF_8));
+            output.flush();
+            Thread.sleep(10);
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  private static String chunk(final byte[] bytes, final int from, final int to) {
+    final byte[] part = new byte[to - from];
+    System.arraycopy(bytes, from, part, 0, part.length);
+    return chunk(part);
+  }
+
+  private static String chunk(final byte[] bytes) {
+    // only valid for ASCII payloads, which the tests stick to
+    return Integer.toHexString(bytes.length) + "\r\n" + new String(bytes, UTF_8) + "\r\n";
+  }
+
+  private static void frame(final ByteArrayOutputStream output, final LogMessage.Stream stream,
+                            final String msg) throws Exception {
+    final byte[] content = msg.getBytes(UTF_8);
+    output.write(ByteBuffer.allocate(LogReader.HEADER_SIZE)
+                     .put(0, (byte) stream.id())
+                     .putInt(LogReader.FRAME_SIZE_OFFSET, content.length)
+                     .array());
+    output.write(content);
+  }
+
+  private static class Recorder<T> implements StreamReactor.Callback<T> {
+
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Exception error;
+
+    @Override
+    public void onMessage(final T message) {
+      if (message instanceof LogMessage) {
+        final LogMessage logMessage = (LogMessage) message;
+        messages.add(logMessage.stream() + ":" + UTF_8.decode(logMessage.content()));
+      } else {
+        messages.add(((Event) message).action());
+      }
+    }
+
+    @Override
+    public void onError(final Exception error) {
+      this.error = error;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      messages.add("complete");
+      done.countDown();
+    }
+  }
+}
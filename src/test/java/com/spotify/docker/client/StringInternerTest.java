@@ -0,0 +1,60 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class StringInternerTest {
+
+  @Test
+  public void testReturnsFirstInstance() {
+    final StringInterner interner = new StringInterner(16);
+    final String first = new String("ubuntu:latest");
+    final String second = new String("ubuntu:latest");
+
+    assertThat(interner.intern(first), sameInstance(first));
+    assertThat(interner.intern(second), sameInstance(first));
+    assertThat(interner.intern(null), nullValue());
+  }
+
+  @Test
+  public void testCapacityIsRoundedUp() {
+    assertThat(new StringInterner(1).capacity(), equalTo(1));
+    assertThat(new StringInterner(100).capacity(), equalTo(128));
+    assertThat(new StringInterner(128).capacity(), equalTo(128));
+  }
+
+  @Test
+  public void testEvictsOnCollision() {
+    final StringInterner interner = new StringInterner(1);
+    final String running = new String("running");
+
+    assertThat(interner.intern(running), sameInstance(running));
+    assertThat(interner.intern("exited"), equalTo("exited"));
+    final String again = new String("running");
+    assertThat(interner.intern(again), sameInstance(again));
+  }
+}
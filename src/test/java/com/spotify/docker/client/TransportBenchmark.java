@@ -0,0 +1,116 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.messages.Version;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the Jersey-based {@link DefaultDockerClient} with {@link ApacheDockerTransport}: the
+ * cost of creating and closing a client, and the per-request overhead of {@code /_ping} and of
+ * decoding {@code /version}, against a stand-in server on loopback TCP. Run
+ * {@link #main(String[])} from the test classpath; add {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+  private static final DockerRequest PING = DockerRequest.get("/_ping").build();
+  private static final DockerRequest VERSION = DockerRequest.get("/version").build();
+
+  private StandInDockerServer server;
+  private DefaultDockerClient.Builder builder;
+  private DefaultDockerClient client;
+  private ApacheDockerTransport transport;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = StandInDockerServer.tcp();
+    builder = DefaultDockerClient.builder().uri(server.uri()).apiVersion("v1.32");
+    client = builder.build();
+    transport = ApacheDockerTransport.create(builder);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+    transport.close();
+    server.close();
+  }
+
+  @Benchmark
+  public void createJersey() {
+    builder.build().close();
+  }
+
+  @Benchmark
+  public void createTransport() throws Exception {
+    ApacheDockerTransport.create(builder).close();
+  }
+
+  @Benchmark
+  public String pingJersey() throws Exception {
+    return client.ping();
+  }
+
+  @Benchmark
+  public String pingTransport() throws Exception {
+    try (DockerResponse response = transport.execute(PING)) {
+      return response.readString();
+    }
+  }
+
+  @Benchmark
+  public Version versionJersey() throws Exception {
+    return client.version();
+  }
+
+  @Benchmark
+  public Version versionTransport() throws Exception {
+    try (DockerResponse response = transport.execute(VERSION)) {
+      return response.readEntity(Version.class);
+    }
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(TransportBenchmark.class.getSimpleName())
+                   .build())
+        .run();
+  }
+}
@@ -0,0 +1,117 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares request latency and throughput of the jnr-unixsocket and the JDK Unix domain socket
+ * factories, against a stand-in server on a local Unix socket. Requires JDK 16 or later. Run
+ * {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnixSocketBenchmark {
+
+  private static final String BASE_URI = "unix://localhost:80";
+
+  @Param({"jnr", "native"})
+  public String factory;
+
+  private Path directory;
+  private StandInDockerServer server;
+  private CloseableHttpClient client;
+
+  @Setup
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("docker-client-benchmark");
+    server = StandInDockerServer.unix(directory.resolve("docker.sock"));
+
+    final URI uri = server.uri();
+    final ConnectionSocketFactory socketFactory = factory.equals("native")
+        ? new NativeUnixConnectionSocketFactory(uri)
+        : new UnixConnectionSocketFactory(uri);
+    client = HttpClients.custom()
+        .setConnectionManager(new PoolingHttpClientConnectionManager(
+            RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("unix", socketFactory)
+                .build()))
+        .build();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public String ping() throws IOException {
+    try (CloseableHttpResponse response = client.execute(new HttpGet(BASE_URI + "/_ping"))) {
+      return EntityUtils.toString(response.getEntity());
+    }
+  }
+
+  @Benchmark
+  public int largeResponse() throws IOException {
+    try (CloseableHttpResponse response = client.execute(new HttpGet(BASE_URI + "/large"))) {
+      return EntityUtils.toByteArray(response.getEntity()).length;
+    }
+  }
+
+  public static void main(final String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(UnixSocketBenchmark.class.getSimpleName())
+                   .build())
+        .run();
+  }
+}
@@ -0,0 +1,150 @@
+/*-
+ * -\-\-
+ * docker-client
+ * --
+ * Copyright (C) 2018 Spotify AB
+ * --
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * -/-/-
+ */
+
+package com.spotify.docker.client.messages;
+
+import static com.spotify.docker.FixtureUtil.fixture;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+import com.spotify.docker.client.ObjectMapperProvider;
+import com.spotify.docker.client.messages.swarm.Config;
+import com.spotify.docker.client.messages.swarm.ConfigCreateResponse;
+import com.spotify.docker.client.messages.swarm.ContainerSpec;
+import com.spotify.docker.client.messages.swarm.DnsConfig;
+import com.spotify.docker.client.messages.swarm.Driver;
+import com.spotify.docker.client.messages.swarm.Node;
+import com.spotify.docker.client.messages.swarm.NodeInfo;
+import com.spotify.docker.client.messages.swarm.NodeSpec;
+import com.spotify.docker.client.messages.swarm.Service;
+import com.spotify.docker.client.messages.swarm.ServiceSpec;
+import com.spotify.docker.client.messages.swarm.SwarmInit;
+import com.spotify.docker.client.messages.swarm.Task;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Decodes every JSON fixture of every API version, encodes it again and checks that nothing is
+ * lost on the way, with the codecs preloaded the way applications are expected to do at startup.
+ */
+@RunWith(Parameterized.class)
+public class MessageFixturesTest {
+
+  private static final TypeFactory TYPES = TypeFactory.defaultInstance();
+
+  // Fixture file names, minus the .json extension and any suffix after the type name
+  private static final Map<String, JavaType> FIXTURE_TYPES =
+      ImmutableMap.<String, JavaType>builder()
+          .put("configCreateResponse", TYPES.constructType(ConfigCreateResponse.class))
+          .put("containerConfig", TYPES.constructType(ContainerConfig.class))
+          .put("containerInfo", TYPES.constructType(ContainerInfo.class))
+          .put("containerSpec", TYPES.constructType(ContainerSpec.class))
+          .put("containerStats", TYPES.constructType(ContainerStats.class))
+          .put("createServiceResponse", TYPES.constructType(ServiceCreateResponse.class))
+          .put("dnsConfig", TYPES.constructType(DnsConfig.class))
+          .put("driver", TYPES.constructType(Driver.class))
+          .put("imageInfo", TYPES.constructType(ImageInfo.class))
+          .put("info", TYPES.constructType(Info.class))
+          .put("inspectConfig", TYPES.constructType(Config.class))
+          .put("inspectCreateResponse", TYPES.constructType(Service.class))
+          .put("inspectVolume", TYPES.constructType(Volume.class))
+          .put("ipam", TYPES.constructType(Ipam.class))
+          .put("listConfigs", TYPES.constructCollectionType(List.class, Config.class))
+          .put("listContainers", TYPES.constructCollectionType(List.class, Container.class))
+          .put("listNodes", TYPES.constructCollectionType(List.class, Node.class))
+          .put("network", TYPES.constructType(Network.class))
+          .put("nodeInfo", TYPES.constructType(NodeInfo.class))
+          .put("nodeSpec", TYPES.constructType(NodeSpec.class))
+          .put("service", TYPES.constructType(Service.class))
+          .put("serviceSpec", TYPES.constructType(ServiceSpec.class))
+          .put("swarmInit", TYPES.constructType(SwarmInit.class))
+          .put("task", TYPES.constructType(Task.class))
+          .build();
+
+  private final ObjectMapper objectMapper = ObjectMapperProvider.objectMapper();
+
+  @Parameter
+  public String path;
+
+  @Parameters(name = "{0}")
+  public static Iterable<Object[]> data() throws Exception {
+    final List<Object[]> data = Lists.newArrayList();
+    final File fixtures = new File(Resources.getResource("fixtures").toURI());
+    for (final File version : fixtures.listFiles()) {
+      if (!version.isDirectory() || !version.getName().startsWith("1.")) {
+        continue;
+      }
+      for (final File file : version.listFiles()) {
+        if (file.getName().endsWith(".json")) {
+          data.add(new Object[] {"fixtures/" + version.getName() + "/" + file.getName()});
+        }
+      }
+    }
+    return data;
+  }
+
+  @BeforeClass
+  public static void preloadCodecs() {
+    ObjectMapperProvider.preloadCodecs();
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    final JavaType type = typeOf(path);
+    final Object decoded = objectMapper.readValue(fixture(path), type);
+    final String encoded = objectMapper.writeValueAsString(decoded);
+    final Object redecoded = objectMapper.readValue(encoded, type);
+
+    assertThat(redecoded, equalTo(decoded));
+    assertThat(objectMapper.writeValueAsString(redecoded), is(encoded));
+  }
+
+  private static JavaType typeOf(final String path) {
+    final String name = path.substring(path.lastIndexOf('/') + 1);
+    JavaType type = null;
+    int matched = 0;
+    for (final Map.Entry<String, JavaType> entry : FIXTURE_TYPES.entrySet()) {
+      if (name.startsWith(entry.getKey()) && entry.getKey().length() > matched) {
+        type = entry.getValue();
+        matched = entry.getKey().length();
+      }
+    }
+    if (type == null) {
+      throw new AssertionError("Add the message type of " + path + " to FIXTURE_TYPES");
+    }
+    return type;
+  }
+}